@@ -0,0 +1,83 @@
+package compiler.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates synthetic source files out of the language features the compiler supports:
+ * function literals, while loops, let bindings, arithmetic, comments, strings, print and input.
+ */
+public final class Corpus {
+    private static final String[] NAMES = {
+            "a", "b", "c", "nums", "count", "total", "index", "fibonacci", "value_1", "limit"
+    };
+
+    private Corpus() {
+    }
+
+    /**
+     * Generates a source of roughly the requested size.
+     * @param sizeBytes The approximate number of bytes to generate.
+     * @param seed The random seed, so the same arguments always give the same corpus.
+     * @return The generated source.
+     */
+    public static String generate(int sizeBytes, long seed) {
+        Random random = new Random(seed);
+        StringBuilder source = new StringBuilder(sizeBytes + 256);
+        int function = 0;
+
+        while (source.length() < sizeBytes) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    source.append("// helper number ").append(function).append(": keeps a running total\n");
+                    break;
+                case 1:
+                    source.append("/* generated block ").append(function)
+                            .append("\n   spans several lines; with {braces} and \"quotes\" */\n");
+                    break;
+                default:
+                    break;
+            }
+
+            String name = "f" + function++;
+            source.append("let ").append(name).append(" = function(nums) {\n");
+            source.append("    let a = ").append(random.nextInt(100)).append(";\n");
+            source.append("    let b = 1;\n");
+            source.append("    print(\"entering ").append(name).append(" with a long string literal\");\n");
+            source.append("    while (nums > 0) {\n");
+            for (int i = random.nextInt(4); i >= 0; i--) {
+                String target = NAMES[random.nextInt(NAMES.length)];
+                String left = NAMES[random.nextInt(NAMES.length)];
+                String right = NAMES[random.nextInt(NAMES.length)];
+                source.append("        let ").append(target).append(" = ").append(left)
+                        .append(random.nextBoolean() ? " + " : " - ").append(right).append(";\n");
+            }
+            source.append("        if (a >= b) {\n");
+            source.append("            print(a);\n");
+            source.append("        }\n");
+            source.append("        nums--;\n");
+            source.append("    }\n");
+            source.append("}\n\n");
+            source.append("input(nums);\n");
+            source.append(name).append("(nums);\n\n");
+        }
+        return source.toString();
+    }
+
+    /**
+     * Generates a source of roughly the requested size into a temporary file.
+     * @param sizeBytes The approximate number of bytes to generate.
+     * @param seed The random seed.
+     * @return The path of the temporary file, deleted when the JVM exits.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static Path write(int sizeBytes, long seed) throws IOException {
+        Path file = Files.createTempFile("corpus-" + sizeBytes + "-", ".txt");
+        file.toFile().deleteOnExit();
+        Files.writeString(file, generate(sizeBytes, seed), StandardCharsets.UTF_8);
+        return file;
+    }
+}
@@ -0,0 +1,79 @@
+package compiler.benchmarks;
+
+import compiler.codegen.CodegenException;
+import compiler.interp.BytecodeCompiler;
+import compiler.interp.Interpreter;
+import compiler.interp.InterpreterException;
+import compiler.interp.Program;
+import compiler.parser.ParseException;
+import compiler.parser.Parser;
+import compiler.scanner.Scanner;
+import compiler.scanner.SourceBuffer;
+import compiler.scanner.SymbolTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Running a compiled program, recursive calls and then a long loop, in each execution mode: only
+ * interpreting, tiered, and compiling everything to JVM classes before it starts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecutionBenchmark {
+    private static final String SOURCE = "let fib = function(n) {\n"
+            + "    if (n < 2) { return n; }\n"
+            + "    return fib(n - 1) + fib(n - 2);\n"
+            + "}\n"
+            + "let s = 0;\n"
+            + "for (let i = 0; i < 1000000; i++) { if (i > 10) { s = s + i; } else { s = s - 1; } }\n"
+            + "print(fib(20), s);\n";
+
+    @Param({"interpret", "tiered", "jit"})
+    public String mode;
+
+    private Program program;
+    private int compileThreshold;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, ParseException, CodegenException {
+        Scanner scanner = new Scanner(new SourceBuffer(SOURCE.toCharArray(), SOURCE.length()), new SymbolTable());
+        program = BytecodeCompiler.compile(new Parser(scanner.tokenize()).parse());
+        scanner.close();
+        switch (mode) {
+            case "interpret":
+                compileThreshold = Interpreter.NO_COMPILATION;
+                break;
+            case "tiered":
+                compileThreshold = Interpreter.DEFAULT_COMPILE_THRESHOLD;
+                break;
+            default:
+                compileThreshold = 0;
+                break;
+        }
+    }
+
+    @Benchmark
+    public long run() throws IOException, InterpreterException {
+        return new Interpreter(new ByteArrayInputStream(new byte[0]), OutputStream.nullOutputStream(),
+                Interpreter.DEFAULT_MAX_DEPTH, compileThreshold).run(program);
+    }
+}
@@ -0,0 +1,75 @@
+package compiler.benchmarks;
+
+import compiler.optimizer.ConstantFolding;
+import compiler.optimizer.DeadCodeElimination;
+import compiler.optimizer.LoopInvariantHoisting;
+import compiler.optimizer.Pass;
+import compiler.optimizer.Pipeline;
+import compiler.parser.Ast;
+import compiler.parser.ParseException;
+import compiler.parser.Parser;
+import compiler.scanner.Scanner;
+import compiler.scanner.SymbolTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each optimization pass on its own, and the standard pipeline, over a parsed corpus.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OptimizerBenchmark {
+    @Param({"65536", "1048576"})
+    public int sizeBytes;
+
+    @Param({"constant-folding", "dead-code", "loop-invariant-hoisting", "standard"})
+    public String pass;
+
+    @Param("42")
+    public long seed;
+
+    private Ast ast;
+    private Pipeline pipeline;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, ParseException {
+        Scanner scanner = new Scanner(Corpus.write(sizeBytes, seed).toString(), new SymbolTable());
+        ast = new Parser(scanner.tokenize()).parse();
+        scanner.close();
+        pipeline = pass.equals("standard") ? Pipeline.standard() : new Pipeline(List.of(create(pass)));
+    }
+
+    private static Pass create(String name) {
+        switch (name) {
+            case "constant-folding":
+                return new ConstantFolding();
+            case "dead-code":
+                return new DeadCodeElimination();
+            default:
+                return new LoopInvariantHoisting();
+        }
+    }
+
+    @Benchmark
+    public Ast run() {
+        return pipeline.run(ast);
+    }
+}
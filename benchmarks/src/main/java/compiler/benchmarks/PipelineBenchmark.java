@@ -0,0 +1,76 @@
+package compiler.benchmarks;
+
+import compiler.Main;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole Main flow, from reading the source file to writing the target file.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PipelineBenchmark {
+    @Param({"65536", "1048576", "16777216"})
+    public int sizeBytes;
+
+    @Param("42")
+    public long seed;
+
+    private String sourceFile;
+    private Path targetFile;
+    private long fileBytes;
+
+    /**
+     * Per-iteration counters reported next to the score.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void clean() {
+            bytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path source = Corpus.write(sizeBytes, seed);
+        sourceFile = source.toString();
+        fileBytes = Files.size(source);
+        targetFile = Files.createTempFile("target-", ".txt");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(targetFile);
+    }
+
+    @Benchmark
+    public void compile(Counters counters) throws IOException {
+        Main.compile(sourceFile, targetFile.toString());
+        counters.bytes += fileBytes;
+    }
+}
@@ -0,0 +1,148 @@
+package compiler.benchmarks;
+
+import compiler.scanner.DfaScanner;
+import compiler.scanner.Scanner;
+import compiler.scanner.Token;
+import compiler.scanner.TokenBuffer;
+import compiler.scanner.TokenType;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scanner throughput over a synthetic corpus.
+ * The tokens and bytes counters turn the per-file score into tokens/s and bytes/s.
+ * Run with -prof gc: nextTokenBatch then reports gc.alloc.rate.norm in bytes per token.
+ * The fork adds the Vector API module so Scanner uses its vectorized skipping;
+ * pass -jvmArgsAppend -Dcompiler.scanner.simd=false to measure the scalar loops.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class ScannerBenchmark {
+    private static final int BATCH = 1024;
+
+    @Param({"65536", "1048576", "16777216"})
+    public int sizeBytes;
+
+    @Param("42")
+    public long seed;
+
+    private String file;
+    private long fileBytes;
+    private long fileTokens;
+
+    /**
+     * Per-iteration counters reported next to the score.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long tokens;
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void clean() {
+            tokens = 0;
+            bytes = 0;
+        }
+    }
+
+    /**
+     * A scanner that is reopened whenever it reaches EOF, for fixed-size batches of tokens.
+     */
+    @State(Scope.Thread)
+    public static class Stream {
+        private Scanner scanner;
+
+        Token next(String file) throws IOException {
+            if (scanner == null) {
+                scanner = new Scanner(file);
+            }
+            Token token = scanner.nextToken();
+            if (token.getType() == TokenType.EOF) {
+                scanner.close();
+                scanner = new Scanner(file);
+            }
+            return token;
+        }
+    }
+
+    /**
+     * A TokenBuffer kept across invocations so tokenize reuses its arrays.
+     */
+    @State(Scope.Thread)
+    public static class Reused {
+        private final TokenBuffer tokens = new TokenBuffer(new char[0]);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path path = Corpus.write(sizeBytes, seed);
+        file = path.toString();
+        fileBytes = Files.size(path);
+
+        Scanner scanner = new Scanner(file);
+        fileTokens = scanner.tokenize().size();
+        scanner.close();
+    }
+
+    @Benchmark
+    public void nextToken(Counters counters, Blackhole blackhole) throws IOException {
+        Scanner scanner = new Scanner(file);
+        for (Token tok = scanner.nextToken(); tok.getType() != TokenType.EOF; tok = scanner.nextToken()) {
+            blackhole.consume(tok);
+        }
+        scanner.close();
+        counters.tokens += fileTokens;
+        counters.bytes += fileBytes;
+    }
+
+    @Benchmark
+    public void tokenize(Counters counters, Reused reused, Blackhole blackhole) throws IOException {
+        Scanner scanner = new Scanner(file);
+        scanner.tokenize(reused.tokens);
+        scanner.close();
+        blackhole.consume(reused.tokens.size());
+        counters.tokens += fileTokens;
+        counters.bytes += fileBytes;
+    }
+
+    @Benchmark
+    public void dfaTokenize(Counters counters, Reused reused, Blackhole blackhole) throws IOException {
+        DfaScanner scanner = new DfaScanner(file);
+        scanner.tokenize(reused.tokens);
+        scanner.close();
+        blackhole.consume(reused.tokens.size());
+        counters.tokens += fileTokens;
+        counters.bytes += fileBytes;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void nextTokenBatch(Stream stream, Blackhole blackhole) throws IOException {
+        for (int i = 0; i < BATCH; i++) {
+            blackhole.consume(stream.next(file));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package compiler.benchmarks;
+
+import compiler.scanner.Scanner;
+import compiler.scanner.ScannerPool;
+import compiler.scanner.SourceBuffer;
+import compiler.scanner.SymbolTable;
+import compiler.scanner.Token;
+import compiler.scanner.TokenType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scanning many tiny in-memory sources, where setting a scanner up costs more than lexing.
+ * fresh builds a new SymbolTable and Scanner per snippet, pooled resets the thread's scanner from a ScannerPool.
+ * Run with -prof gc to compare the allocation per snippet.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class SnippetBenchmark {
+    private static final int SNIPPETS = 1024;
+
+    @Param({"64", "512"})
+    public int sizeBytes;
+
+    @Param("42")
+    public long seed;
+
+    private String[] snippets;
+    private final ScannerPool pool = new ScannerPool();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        snippets = new String[SNIPPETS];
+        for (int i = 0; i < SNIPPETS; i++) {
+            snippets[i] = Corpus.generate(sizeBytes, seed + i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SNIPPETS)
+    public void fresh(Blackhole blackhole) throws IOException {
+        for (String snippet : snippets) {
+            drain(new Scanner(SourceBuffer.of(snippet), new SymbolTable()), blackhole);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SNIPPETS)
+    public void pooled(Blackhole blackhole) throws IOException {
+        for (String snippet : snippets) {
+            drain(pool.get(snippet), blackhole);
+        }
+    }
+
+    private static void drain(Scanner scanner, Blackhole blackhole) throws IOException {
+        for (Token tok = scanner.nextToken(); tok.getType() != TokenType.EOF; tok = scanner.nextToken()) {
+            blackhole.consume(tok);
+        }
+    }
+}
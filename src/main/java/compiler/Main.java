@@ -1,25 +1,656 @@
 package compiler;
 
+import compiler.cache.CompilationCache;
+import compiler.cache.CompiledUnit;
+import compiler.cache.TokenCache;
+import compiler.codegen.CGenerator;
+import compiler.codegen.CodegenException;
+import compiler.daemon.CompileDaemon;
+import compiler.daemon.CompileRequest;
+import compiler.daemon.CompileResult;
+import compiler.daemon.DaemonClient;
+import compiler.driver.CompilationDriver;
+import compiler.driver.FileReport;
+import compiler.interp.BytecodeCompiler;
+import compiler.interp.Interpreter;
+import compiler.interp.InterpreterException;
+import compiler.interp.Program;
+import compiler.metrics.CompilerMetrics;
+import compiler.metrics.Phase;
+import compiler.metrics.PhaseTimer;
+import compiler.optimizer.PassTiming;
+import compiler.optimizer.Pipeline;
+import compiler.output.TokenEncoding;
+import compiler.output.TokenOutput;
+import compiler.parser.Ast;
+import compiler.parser.LexicalException;
+import compiler.parser.ParseException;
+import compiler.parser.Parser;
+import compiler.scanner.ByteScanner;
+import compiler.scanner.Diagnostics;
 import compiler.scanner.Scanner;
-import compiler.scanner.Token;
-import compiler.scanner.TokenType;
+import compiler.scanner.SourceBuffer;
+import compiler.scanner.SymbolTable;
+import compiler.scanner.TokenBuffer;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import javax.management.JMException;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class Main {
+    // Output stages keep their encode buffers, so each thread reuses one across files
+    private static final ThreadLocal<TokenOutput> OUTPUT = ThreadLocal.withInitial(TokenOutput::new);
+
+    /**
+     * Compiles the bundled example, or with arguments "[--cache dir] [--charset name] [--binary] outputDir input...",
+     * every given file and directory. With --cache, token streams of unchanged sources are read from the cache
+     * directory. --charset names the encoding of the sources, the platform default unless given; UTF-8, US-ASCII
+     * and ISO-8859-1 sources are lexed as bytes without being decoded first. With --binary, targets are written in
+     * the binary token format instead of as text.
+     * With arguments "--c [-O0] [--time-passes] [--cache dir] input output", the input is optimized and
+     * translated to C instead. -O0 skips the optimization passes and --time-passes prints what each pass cost.
+     * With arguments "--run [-O0] [--jit | --tiered] [--cache dir] input", the input is compiled to bytecode
+     * and run, and main's return value is the exit status. --jit compiles the whole program to JVM classes
+     * first, and --tiered compiles functions and loops once they get hot. In both modes, --cache keeps
+     * compiled units in a CompilationCache directory, so an unchanged input is not scanned or parsed again,
+     * nor translated to C again.
+     * With arguments "--daemon [--cache dir] address", a resident compiler listens on a Unix domain socket path or
+     * a loopback port until a client stops it, and with "--client address [--c [-O0] | --binary] input output"
+     * or "--client address --shutdown", a source is compiled by that daemon instead of in this process.
+     * Any mode may be preceded by "--stats file", which records what each phase cost, writes it to the file as
+     * JSON on exit and exposes it through JMX while running.
+     * @param args The command line arguments.
+     */
     public static void main(String[] args) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter("src/main/resources/targetCode.txt"))) {
+        try {
+            if (args.length > 1 && args[0].equals("--stats")) {
+                Path statsFile = Path.of(args[1]);
+                args = Arrays.copyOfRange(args, 2, args.length);
+                CompilerMetrics.setEnabled(true);
+                CompilerMetrics.register();
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        Files.writeString(statsFile, CompilerMetrics.toJson(), StandardCharsets.UTF_8);
+                    } catch (IOException e) {
+                        System.err.println("Could not write " + statsFile + ": " + e.getMessage());
+                    }
+                }));
+            }
+            if (args.length == 0) {
+                compile("src/main/resources/sourceCode.txt", "src/main/resources/targetCode.txt");
+                return;
+            }
+            if (args[0].equals("--run")) {
+                int next = 1;
+                Pipeline pipeline = Pipeline.standard();
+                int compileThreshold = Interpreter.NO_COMPILATION;
+                CompilationCache cache = null;
+                for (; next < args.length && args[next].startsWith("-"); next++) {
+                    if (args[next].equals("-O0")) {
+                        pipeline = Pipeline.none();
+                    } else if (args[next].equals("--cache") && next + 1 < args.length) {
+                        cache = new CompilationCache(Path.of(args[++next]));
+                    } else if (args[next].equals("--jit")) {
+                        compileThreshold = 0;
+                    } else if (args[next].equals("--tiered")) {
+                        compileThreshold = Interpreter.DEFAULT_COMPILE_THRESHOLD;
+                    } else {
+                        break;
+                    }
+                }
+                if (args.length - next != 1) {
+                    System.err.println("Usage: Main --run [-O0] [--jit | --tiered] [--cache dir] input");
+                    System.exit(2);
+                }
+                long status = run(args[next], pipeline, compileThreshold, cache);
+                if (status != 0) {
+                    System.exit((int) status);
+                }
+                return;
+            }
+            if (args[0].equals("--daemon")) {
+                CompilationCache cache = null;
+                int next = 1;
+                if (next + 1 < args.length && args[next].equals("--cache")) {
+                    cache = new CompilationCache(Path.of(args[next + 1]));
+                    next += 2;
+                }
+                if (args.length - next != 1) {
+                    System.err.println("Usage: Main --daemon [--cache dir] address");
+                    System.exit(2);
+                }
+                CompilerMetrics.register();
+                try (CompileDaemon daemon = new CompileDaemon(CompileDaemon.parseAddress(args[next]),
+                        CompileDaemon.DEFAULT_WORKERS, cache)) {
+                    System.err.println("Listening on " + daemon.getAddress());
+                    daemon.serve();
+                }
+                return;
+            }
+            if (args[0].equals("--client")) {
+                if (!client(args)) {
+                    System.exit(1);
+                }
+                return;
+            }
+            if (args[0].equals("--c")) {
+                int next = 1;
+                Pipeline pipeline = Pipeline.standard();
+                boolean timePasses = false;
+                CompilationCache cache = null;
+                for (; next < args.length && args[next].startsWith("-"); next++) {
+                    if (args[next].equals("-O0")) {
+                        pipeline = Pipeline.none();
+                    } else if (args[next].equals("--cache") && next + 1 < args.length) {
+                        cache = new CompilationCache(Path.of(args[++next]));
+                    } else if (args[next].equals("--time-passes")) {
+                        timePasses = true;
+                    } else {
+                        break;
+                    }
+                }
+                if (args.length - next != 2) {
+                    System.err.println("Usage: Main --c [-O0] [--time-passes] [--cache dir] input output");
+                    System.exit(2);
+                }
+                compileToC(args[next], args[next + 1], pipeline, cache);
+                if (timePasses) {
+                    for (PassTiming timing : pipeline.getTimings()) {
+                        System.err.println(timing);
+                    }
+                }
+                return;
+            }
+
+            int next = 0;
+            Path cacheDir = null;
+            Charset charset = Charset.defaultCharset();
+            TokenEncoding encoding = TokenEncoding.TEXT;
+            for (; next < args.length; next++) {
+                if (args[next].equals("--cache") && next + 1 < args.length) {
+                    cacheDir = Path.of(args[++next]);
+                } else if (args[next].equals("--charset") && next + 1 < args.length) {
+                    charset = Charset.forName(args[++next]);
+                } else if (args[next].equals("--binary")) {
+                    encoding = TokenEncoding.BINARY;
+                } else {
+                    break;
+                }
+            }
+            if (args.length - next < 2) {
+                System.err.println("Usage: Main [[--cache dir] [--charset name] [--binary] outputDir input...]");
+                System.exit(2);
+            }
+            TokenCache cache = cacheDir != null ? new TokenCache(cacheDir, charset) : null;
 
-            Scanner scanner = new Scanner("src/main/resources/sourceCode.txt");
+            Path outputDir = Path.of(args[next++]);
+            List<Path> inputs = new ArrayList<>();
+            while (next < args.length) {
+                inputs.add(Path.of(args[next++]));
+            }
 
-            for (Token tok = scanner.nextToken(); tok.getType() != TokenType.EOF; tok = scanner.nextToken()) {
-                writer.write(tok.toString());
-                writer.newLine();
+            boolean failed = false;
+            CompilationDriver driver = new CompilationDriver(Runtime.getRuntime().availableProcessors(), cache, encoding, charset);
+            for (FileReport report : driver.compile(inputs, outputDir)) {
+                System.out.println(report);
+                failed |= !report.isSuccess();
+            }
+            if (failed) {
+                System.exit(1);
             }
-        } catch (IOException e) {
+        } catch (ParseException | CodegenException | InterpreterException | IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (IOException | JMException e) {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * Sends the compilation described by "--client" arguments to a daemon and writes what it answers.
+     * @param args The command line arguments, starting with "--client".
+     * @return true if the source compiled, false if the daemon's diagnostics were printed instead.
+     * @throws IOException If no daemon answers or a file cannot be read or written.
+     */
+    private static boolean client(String[] args) throws IOException {
+        if (args.length == 3 && args[2].equals("--shutdown")) {
+            try (DaemonClient client = new DaemonClient(CompileDaemon.parseAddress(args[1]))) {
+                client.send(CompileRequest.shutdown());
+            }
+            return true;
+        }
+        int next = 2;
+        boolean c = false;
+        boolean optimize = true;
+        TokenEncoding encoding = TokenEncoding.TEXT;
+        for (; next < args.length && args[next].startsWith("-"); next++) {
+            if (args[next].equals("--c")) {
+                c = true;
+            } else if (args[next].equals("-O0")) {
+                optimize = false;
+            } else if (args[next].equals("--binary")) {
+                encoding = TokenEncoding.BINARY;
+            } else {
+                break;
+            }
+        }
+        if (args.length < 2 || args.length - next != 2) {
+            System.err.println("Usage: Main --client address [--c [-O0] | --binary] input output");
+            System.exit(2);
+        }
+
+        byte[] source = Files.readAllBytes(Path.of(args[next]));
+        CompileRequest request = c ? CompileRequest.c(source, optimize) : CompileRequest.tokens(source, encoding);
+        CompileResult result;
+        try (DaemonClient client = new DaemonClient(CompileDaemon.parseAddress(args[1]))) {
+            result = client.send(request);
+        }
+        if (!result.isSuccess()) {
+            System.err.println(result.getDiagnostics());
+            return false;
+        }
+        Files.write(Path.of(args[next + 1]), result.getOutput());
+        return true;
+    }
+
+    /**
+     * Parses a source file, optimizes it with the standard passes and streams its C translation to a target file.
+     * @param sourceFile The name of the file to compile.
+     * @param targetFile The name of the C file to write.
+     * @throws IOException If an I/O error occurs.
+     * @throws ParseException If the source is not a valid program.
+     * @throws CodegenException If the program uses a feature that has no C translation.
+     */
+    public static void compileToC(String sourceFile, String targetFile)
+            throws IOException, ParseException, CodegenException {
+        compileToC(sourceFile, targetFile, Pipeline.standard());
+    }
+
+    /**
+     * Parses a source file, optimizes it and streams its C translation to a target file.
+     * @param sourceFile The name of the file to compile.
+     * @param targetFile The name of the C file to write.
+     * @param pipeline The optimization passes to run, whose timings are kept for the caller.
+     * @throws IOException If an I/O error occurs.
+     * @throws ParseException If the source is not a valid program.
+     * @throws CodegenException If the program uses a feature that has no C translation.
+     */
+    public static void compileToC(String sourceFile, String targetFile, Pipeline pipeline)
+            throws IOException, ParseException, CodegenException {
+        Ast ast = optimize(pipeline, parse(scan(load(sourceFile), new SymbolTable())), Main::checkC);
+        CGenerator generator = new CGenerator(ast);
+        PhaseTimer timer = CompilerMetrics.start(Phase.CODEGEN);
+        try (Writer out = Files.newBufferedWriter(Path.of(targetFile), StandardCharsets.UTF_8)) {
+            generator.generate(out);
+        }
+        timer.stop(timer.isRecording() ? Files.size(Path.of(targetFile)) : 0);
+    }
+
+    /**
+     * Translates a source file to C, or copies the C of an identical earlier compilation from a cache.
+     * @param sourceFile The name of the file to compile.
+     * @param targetFile The name of the C file to write.
+     * @param pipeline The optimization passes to run before translating.
+     * @param cache The compilation cache, or null to always compile.
+     * @throws IOException If an I/O error occurs.
+     * @throws ParseException If the source is not a valid program.
+     * @throws CodegenException If the program uses a feature that has no C translation.
+     */
+    public static void compileToC(String sourceFile, String targetFile, Pipeline pipeline, CompilationCache cache)
+            throws IOException, ParseException, CodegenException {
+        if (cache == null) {
+            compileToC(sourceFile, targetFile, pipeline);
+            return;
+        }
+        byte[] c = compileToC(read(sourceFile), pipeline, cache, new SymbolTable());
+        PhaseTimer timer = CompilerMetrics.start(Phase.OUTPUT);
+        Files.write(Path.of(targetFile), c);
+        timer.stop(c.length);
+    }
+
+    /**
+     * Gets the options a cached compilation depends on besides the source bytes: the passes run, and the charset
+     * the bytes are decoded in, since the same bytes are a different program in another charset.
+     * @param pipeline The optimization passes.
+     * @return The options, for CompilationCache.key.
+     */
+    private static String cacheOptions(Pipeline pipeline) {
+        return pipeline + ":" + Charset.defaultCharset().name();
+    }
+
+    /**
+     * Translates source bytes to C in memory, or takes the C of an identical earlier compilation from a cache.
+     * @param source The content of the source, in the platform default charset.
+     * @param pipeline The optimization passes to run before translating.
+     * @param cache The compilation cache, or null to always compile.
+     * @param symbols The table identifiers are interned into. Callers compiling many sources may clear and reuse it.
+     * @return The C as UTF-8, which must not be modified.
+     * @throws IOException If the source cannot be decoded or the cache cannot be written.
+     * @throws ParseException If the source is not a valid program.
+     * @throws CodegenException If the program uses a feature that has no C translation.
+     */
+    public static byte[] compileToC(byte[] source, Pipeline pipeline, CompilationCache cache, SymbolTable symbols)
+            throws IOException, ParseException, CodegenException {
+        String key = null;
+        if (cache != null) {
+            key = CompilationCache.key(source, cacheOptions(pipeline));
+            CompiledUnit unit = cache.get(key);
+            if (unit != null) {
+                return unit.getC();
+            }
+        }
+        Ast ast = optimize(pipeline, parse(scan(decode(source), symbols)), Main::checkC);
+        byte[] c = generateC(ast);
+        if (cache != null) {
+            cache.put(key, CompiledUnit.of(ast, c));
+        }
+        return c;
+    }
+
+    /**
+     * Parses a source file, optimizes it, compiles it to bytecode and runs it on standard input and output.
+     * @param sourceFile The name of the file to run.
+     * @param pipeline The optimization passes to run first.
+     * @return The value main returned.
+     * @throws IOException If an I/O error occurs.
+     * @throws ParseException If the source is not a valid program.
+     * @throws CodegenException If the program uses a feature the interpreter does not support.
+     * @throws InterpreterException If the program's calls nest too deeply.
+     */
+    public static long run(String sourceFile, Pipeline pipeline)
+            throws IOException, ParseException, CodegenException, InterpreterException {
+        return run(sourceFile, pipeline, Interpreter.NO_COMPILATION);
+    }
+
+    /**
+     * Parses a source file, optimizes it, compiles it to bytecode and runs it on standard input and output,
+     * compiling it further to JVM classes as it gets hot.
+     * @param sourceFile The name of the file to run.
+     * @param pipeline The optimization passes to run first.
+     * @param compileThreshold The calls or loop back-edges after which a function is compiled to a JVM class,
+     * 0 to compile the whole program up front, or Interpreter.NO_COMPILATION to only interpret.
+     * @return The value main returned.
+     * @throws IOException If an I/O error occurs.
+     * @throws ParseException If the source is not a valid program.
+     * @throws CodegenException If the program uses a feature the interpreter does not support.
+     * @throws InterpreterException If the program's calls nest too deeply.
+     */
+    public static long run(String sourceFile, Pipeline pipeline, int compileThreshold)
+            throws IOException, ParseException, CodegenException, InterpreterException {
+        return run(sourceFile, pipeline, compileThreshold, null);
+    }
+
+    /**
+     * Runs a source file, taking its optimized tree from a cache if an identical source was compiled before.
+     * @param sourceFile The name of the file to run.
+     * @param pipeline The optimization passes to run first.
+     * @param compileThreshold The calls or loop back-edges after which a function is compiled to a JVM class,
+     * 0 to compile the whole program up front, or Interpreter.NO_COMPILATION to only interpret.
+     * @param cache The compilation cache, or null to always parse.
+     * @return The value main returned.
+     * @throws IOException If an I/O error occurs.
+     * @throws ParseException If the source is not a valid program.
+     * @throws CodegenException If the program uses a feature the interpreter does not support.
+     * @throws InterpreterException If the program's calls nest too deeply.
+     */
+    public static long run(String sourceFile, Pipeline pipeline, int compileThreshold, CompilationCache cache)
+            throws IOException, ParseException, CodegenException, InterpreterException {
+        Program program;
+        if (cache == null) {
+            program = compileBytecode(optimize(pipeline, parse(scan(load(sourceFile), new SymbolTable())),
+                    BytecodeCompiler::compile));
+        } else {
+            byte[] bytes = read(sourceFile);
+            String key = CompilationCache.key(bytes, cacheOptions(pipeline));
+            CompiledUnit unit = cache.get(key);
+            if (unit != null) {
+                program = compileBytecode(unit.ast(decode(bytes), new SymbolTable()));
+            } else {
+                Ast ast = optimize(pipeline, parse(scan(decode(bytes), new SymbolTable())), BytecodeCompiler::compile);
+                program = compileBytecode(ast);
+                byte[] c;
+                try {
+                    c = generateC(ast);
+                } catch (CodegenException e) {
+                    c = null; // The program runs but has no C translation, so it is not worth caching
+                }
+                if (c != null) {
+                    cache.put(key, CompiledUnit.of(ast, c));
+                }
+            }
+        }
+        PhaseTimer timer = CompilerMetrics.start(Phase.EXECUTE);
+        long status = new Interpreter(System.in, System.out, Interpreter.DEFAULT_MAX_DEPTH, compileThreshold).run(program);
+        timer.stop();
+        return status;
+    }
+
+    /**
+     * Reads a source file into a SourceBuffer, timed as the read phase.
+     * @param sourceFile The name of the file.
+     * @return The decoded source.
+     * @throws IOException If an I/O error occurs.
+     */
+    private static SourceBuffer load(String sourceFile) throws IOException {
+        PhaseTimer timer = CompilerMetrics.start(Phase.READ);
+        SourceBuffer source = SourceBuffer.load(sourceFile);
+        timer.stop(timer.isRecording() ? Files.size(Path.of(sourceFile)) : 0);
+        return source;
+    }
+
+    /**
+     * Reads the bytes of a source file, timed as the read phase.
+     * @param sourceFile The name of the file.
+     * @return The bytes.
+     * @throws IOException If an I/O error occurs.
+     */
+    private static byte[] read(String sourceFile) throws IOException {
+        PhaseTimer timer = CompilerMetrics.start(Phase.READ);
+        byte[] bytes = Files.readAllBytes(Path.of(sourceFile));
+        timer.stop(bytes.length);
+        return bytes;
+    }
+
+    /**
+     * Parses tokens, timed as the parse phase.
+     * @param tokens The tokens.
+     * @return The tree.
+     * @throws ParseException If the tokens are not a valid program.
+     */
+    private static Ast parse(TokenBuffer tokens) throws ParseException {
+        PhaseTimer timer = CompilerMetrics.start(Phase.PARSE);
+        Ast ast = new Parser(tokens).parse();
+        timer.stop();
+        return ast;
+    }
+
+    /**
+     * Runs the optimization passes over a tree, timed as the optimize phase. The passes drop dead code and move
+     * lets, so the backend's checks first run over the unoptimized tree: an optimized build rejects exactly the
+     * programs an unoptimized one does, such as one reading an undefined name in code that never runs.
+     * @param pipeline The passes.
+     * @param ast The tree.
+     * @param backend The checks of the backend the tree is for, run only when there are passes.
+     * @return The optimized tree.
+     * @throws IOException If an I/O error occurs.
+     * @throws CodegenException If the backend rejects the unoptimized tree.
+     */
+    private static Ast optimize(Pipeline pipeline, Ast ast, Check backend) throws IOException, CodegenException {
+        PhaseTimer timer = CompilerMetrics.start(Phase.OPTIMIZE);
+        if (!pipeline.getPasses().isEmpty()) {
+            backend.check(ast);
+        }
+        ast = pipeline.run(ast);
+        timer.stop();
+        return ast;
+    }
+
+    /**
+     * Checks that a tree has a C translation, discarding the translation.
+     * @param ast The tree.
+     * @throws IOException If an I/O error occurs.
+     * @throws CodegenException If the program uses a feature that has no C translation.
+     */
+    private static void checkC(Ast ast) throws IOException, CodegenException {
+        new CGenerator(ast).generate(Writer.nullWriter());
+    }
+
+    /**
+     * The checks a backend makes while translating a tree, such as resolving every name.
+     */
+    @FunctionalInterface
+    private interface Check {
+        /**
+         * Checks a tree.
+         * @param ast The tree.
+         * @throws IOException If an I/O error occurs.
+         * @throws CodegenException If the backend rejects the tree.
+         */
+        void check(Ast ast) throws IOException, CodegenException;
+    }
+
+    /**
+     * Compiles a tree to bytecode, timed as the codegen phase.
+     * @param ast The tree.
+     * @return The program.
+     * @throws CodegenException If the program uses a feature the interpreter does not support.
+     */
+    private static Program compileBytecode(Ast ast) throws CodegenException {
+        PhaseTimer timer = CompilerMetrics.start(Phase.CODEGEN);
+        Program program = BytecodeCompiler.compile(ast);
+        timer.stop();
+        return program;
+    }
+
+    /**
+     * Decodes source bytes with the platform default charset, as reading a source file does.
+     * @param bytes The bytes.
+     * @return The decoded source.
+     * @throws IOException If the bytes are not valid in the charset.
+     */
+    private static SourceBuffer decode(byte[] bytes) throws IOException {
+        return SourceBuffer.decode(ByteBuffer.wrap(bytes), Charset.defaultCharset());
+    }
+
+    /**
+     * Scans a source to be parsed, collecting every lexical error rather than stopping the parser at the first.
+     * @param source The source.
+     * @param symbols The table identifiers are interned into.
+     * @return Every token, including the final EOF token.
+     * @throws IOException If an I/O error occurs.
+     * @throws LexicalException If the source has lexical errors, listing them all.
+     */
+    private static TokenBuffer scan(SourceBuffer source, SymbolTable symbols) throws IOException, LexicalException {
+        Diagnostics diagnostics = new Diagnostics();
+        TokenBuffer tokens = tokenize(source, symbols, diagnostics);
+        if (!diagnostics.isEmpty()) {
+            throw new LexicalException(diagnostics, source.chars());
+        }
+        return tokens;
+    }
+
+    /**
+     * Scans a source, timed as the lex phase.
+     * @param source The source.
+     * @param symbols The table identifiers are interned into.
+     * @param diagnostics The collector lexical errors go to, or null to scan them as ILLEGAL tokens.
+     * @return Every token, including the final EOF token.
+     * @throws IOException If an I/O error occurs.
+     */
+    private static TokenBuffer tokenize(SourceBuffer source, SymbolTable symbols, Diagnostics diagnostics)
+            throws IOException {
+        PhaseTimer timer = CompilerMetrics.start(Phase.LEX);
+        Scanner scanner = new Scanner(source, symbols);
+        scanner.setDiagnostics(diagnostics);
+        TokenBuffer tokens = scanner.tokenize();
+        scanner.close();
+        timer.stop(tokens, symbols.size());
+        return tokens;
+    }
+
+    /**
+     * Translates a tree to C in memory.
+     * @param ast The tree.
+     * @return The C as UTF-8.
+     * @throws IOException If an I/O error occurs.
+     * @throws CodegenException If the program uses a feature that has no C translation.
+     */
+    private static byte[] generateC(Ast ast) throws IOException, CodegenException {
+        PhaseTimer timer = CompilerMetrics.start(Phase.CODEGEN);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer out = new OutputStreamWriter(bytes, StandardCharsets.UTF_8)) {
+            new CGenerator(ast).generate(out);
+        }
+        timer.stop(bytes.size());
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Scans a source file and writes its tokens to a target file, one per line.
+     * @param sourceFile The name of the file to compile.
+     * @param targetFile The name of the file to write.
+     * @return The number of tokens written.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static int compile(String sourceFile, String targetFile) throws IOException {
+        return compile(sourceFile, targetFile, null, TokenEncoding.TEXT);
+    }
+
+    /**
+     * Writes the tokens of a source file to a target file, taking them from a cache if it has them.
+     * @param sourceFile The name of the file to compile.
+     * @param targetFile The name of the file to write.
+     * @param cache The token cache, or null to always scan.
+     * @param encoding The format of the target file.
+     * @return The number of tokens written, not counting EOF.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static int compile(String sourceFile, String targetFile, TokenCache cache, TokenEncoding encoding)
+            throws IOException {
+        return compile(sourceFile, targetFile, cache, encoding, Charset.defaultCharset());
+    }
+
+    /**
+     * Writes the tokens of a source file in a given charset to a target file, taking them from a cache if it has
+     * them. Without a cache, a source in a charset ByteScanner supports is lexed from its bytes.
+     * @param sourceFile The name of the file to compile.
+     * @param targetFile The name of the file to write.
+     * @param cache The token cache, or null to always scan. It decodes with the charset it was constructed with.
+     * @param encoding The format of the target file.
+     * @param charset The charset of the source file.
+     * @return The number of tokens written, not counting EOF.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static int compile(String sourceFile, String targetFile, TokenCache cache, TokenEncoding encoding,
+            Charset charset) throws IOException {
+        TokenBuffer tokens;
+        SymbolTable symbols = new SymbolTable();
+        if (cache != null) {
+            PhaseTimer timer = CompilerMetrics.start(Phase.LEX);
+            tokens = cache.tokenize(Path.of(sourceFile), symbols);
+            timer.stop(tokens, symbols.size());
+        } else if (ByteScanner.supports(charset)) {
+            byte[] bytes = read(sourceFile);
+            PhaseTimer timer = CompilerMetrics.start(Phase.LEX);
+            tokens = new ByteScanner(bytes, charset, symbols).tokenize();
+            timer.stop(tokens, symbols.size());
+        } else {
+            byte[] bytes = read(sourceFile);
+            tokens = tokenize(SourceBuffer.decode(ByteBuffer.wrap(bytes), charset), symbols, null);
+        }
+        PhaseTimer timer = CompilerMetrics.start(Phase.OUTPUT);
+        int count = OUTPUT.get().write(tokens, Path.of(targetFile), encoding);
+        timer.stop(timer.isRecording() ? Files.size(Path.of(targetFile)) : 0);
+        return count;
+    }
 }
@@ -0,0 +1,100 @@
+package compiler.cache;
+
+import compiler.parser.Ast;
+import compiler.parser.NodeKind;
+import compiler.scanner.TokenBuffer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes an Ast as bytes and reads it back against the tokens it was parsed from.
+ *
+ * The format is the node count followed by each node in arena order: its kind ordinal, token index, first
+ * child and next sibling, and for a folded node its value. Since the arena keeps children before parents,
+ * reading the nodes back in order rebuilds the same tree.
+ * <pre>
+ * int node count
+ * per node: byte kind ordinal (high bit set if folded), int token, int first child, int next sibling,
+ *           long value (folded nodes only)
+ * </pre>
+ */
+final class AstFormat {
+    private static final int FOLDED = 0x80;
+    private static final NodeKind[] KINDS = NodeKind.values();
+
+    private AstFormat() {
+    }
+
+    /**
+     * Writes a tree.
+     * @param ast The tree.
+     * @return Its bytes.
+     */
+    static byte[] write(Ast ast) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(ast.size() * 13 + 4);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(ast.size());
+            for (int node = 0; node < ast.size(); node++) {
+                boolean folded = ast.isFolded(node);
+                out.writeByte(ast.kindOrdinal(node) | (folded ? FOLDED : 0));
+                out.writeInt(ast.token(node));
+                out.writeInt(ast.firstChild(node));
+                out.writeInt(ast.nextSibling(node));
+                if (folded) {
+                    out.writeLong(ast.value(node));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads a tree.
+     * @param bytes The bytes written by write.
+     * @param tokens The tokens the tree was parsed from.
+     * @return The tree.
+     * @throws IOException If the bytes are not a valid tree for the tokens.
+     */
+    static Ast read(byte[] bytes, TokenBuffer tokens) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        int size = in.readInt();
+        if (size <= 0 || size > bytes.length / 13) {
+            throw new IOException("Invalid node count " + size);
+        }
+        Ast ast = new Ast(tokens, size);
+        for (int node = 0; node < size; node++) {
+            int kind = in.readUnsignedByte();
+            int token = in.readInt();
+            int firstChild = in.readInt();
+            int nextSibling = in.readInt();
+            if ((kind & ~FOLDED) >= KINDS.length || token < Ast.NO_TOKEN || token >= tokens.size()
+                    || firstChild < Ast.NO_NODE || firstChild >= node || nextSibling < Ast.NO_NODE
+                    || nextSibling >= size) {
+                throw new IOException("Invalid node " + node);
+            }
+            if ((kind & FOLDED) != 0) {
+                if (KINDS[kind & ~FOLDED] != NodeKind.NUMBER && KINDS[kind & ~FOLDED] != NodeKind.BOOLEAN) {
+                    throw new IOException("Invalid folded node " + node);
+                }
+                ast.addFolded(KINDS[kind & ~FOLDED], token, in.readLong());
+            } else {
+                ast.add(KINDS[kind], token, firstChild);
+            }
+            if (nextSibling != Ast.NO_NODE) {
+                ast.link(node, nextSibling);
+            }
+        }
+        if (in.available() != 0) {
+            throw new IOException("Trailing bytes after the tree");
+        }
+        return ast;
+    }
+}
@@ -0,0 +1,429 @@
+package compiler.cache;
+
+import compiler.scanner.BinaryTokenFormat;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A two-tier cache of compiled units keyed by a hash of the source content, the compiler build and the
+ * compilation options, so that an unchanged source is neither scanned, parsed nor translated again.
+ *
+ * The memory tier is an LRU map bounded by the total size of its units. The disk tier keeps one file per
+ * unit and is bounded by the total size of its files: when a put takes it over the bound, the files used
+ * longest ago are deleted, a hit marking a file used by touching its modification time. Like TokenCache,
+ * files are written to a temporary file and moved into place, so concurrent builds sharing a directory never
+ * see a half-written unit, and a corrupt file is treated as a miss and deleted. A CompilationCache is safe to
+ * use from several threads.
+ */
+public final class CompilationCache {
+    public static final long DEFAULT_MEMORY_BYTES = 64L << 20;
+    public static final long DEFAULT_DISK_BYTES = 1L << 30;
+
+    private static final String SUFFIX = ".unit";
+    private static final int MAGIC = 0x4243554E; // "BCUN"
+    private static final int FORMAT_VERSION = 1;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // A fingerprint of the compiler's own class files; units from other builds are never looked up
+    private static final String COMPILER_VERSION = fingerprint();
+
+    private final Path directory; // Where the unit files live
+    private final long maxMemoryBytes; // The bound of the memory tier
+    private final long maxDiskBytes; // The bound of the disk tier
+
+    private final LinkedHashMap<String, CompiledUnit> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes; // The total size of the units in memory
+    private long diskBytes; // The total size of the unit files, as far as this cache knows
+
+    private long memoryHits;
+    private long diskHits;
+    private long misses;
+
+    /**
+     * Constructs a new CompilationCache bounded by DEFAULT_MEMORY_BYTES and DEFAULT_DISK_BYTES.
+     * @param directory The directory the unit files are kept in. It is created if needed.
+     * @throws IOException If the directory cannot be created or listed.
+     */
+    public CompilationCache(Path directory) throws IOException {
+        this(directory, DEFAULT_MEMORY_BYTES, DEFAULT_DISK_BYTES);
+    }
+
+    /**
+     * Constructs a new CompilationCache.
+     * @param directory The directory the unit files are kept in. It is created if needed.
+     * @param maxMemoryBytes The most bytes of units to keep in memory.
+     * @param maxDiskBytes The most bytes of unit files to keep on disk.
+     * @throws IOException If the directory cannot be created or listed.
+     */
+    public CompilationCache(Path directory, long maxMemoryBytes, long maxDiskBytes) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+        for (Path file : files()) {
+            diskBytes += sizeOf(file);
+        }
+    }
+
+    /**
+     * Computes the key of a source for this build of the compiler.
+     * @param source The content of the source.
+     * @param options Everything else that changes the output, such as the optimization passes.
+     * @return The key as lowercase hex.
+     */
+    public static String key(byte[] source, String options) {
+        return key(source, options, COMPILER_VERSION);
+    }
+
+    /**
+     * Computes the key of a source: a SHA-256 over the cache format, the compiler version, the token format,
+     * the options and the bytes.
+     * @param source The content of the source.
+     * @param options Everything else that changes the output, such as the optimization passes.
+     * @param compilerVersion The build of the compiler, as compilerVersion() gives it.
+     * @return The key as lowercase hex.
+     */
+    public static String key(byte[] source, String options, String compilerVersion) {
+        MessageDigest digest = sha256();
+        String prefix = FORMAT_VERSION + ":" + compilerVersion + ":" + BinaryTokenFormat.VERSION + ":" + options + ":";
+        digest.update(prefix.getBytes(StandardCharsets.UTF_8));
+        return hex(digest.digest(source));
+    }
+
+    /**
+     * Gets the build of the running compiler: a hash of its class files when it runs from a classes directory,
+     * or of its jar. Any change to the scanner, parser, optimizer or code generators changes it, so units compiled
+     * by an earlier build are never returned. If the classes cannot be read, the jar's Implementation-Version is
+     * used instead.
+     * @return The compiler version as lowercase hex, or the fallback version.
+     */
+    public static String compilerVersion() {
+        return COMPILER_VERSION;
+    }
+
+    /**
+     * Hashes the class files the compiler was loaded from.
+     * @return The hash as lowercase hex, or the jar version or "unversioned" if the classes cannot be read.
+     */
+    private static String fingerprint() {
+        try {
+            Path location = Path.of(CompilationCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            MessageDigest digest = sha256();
+            if (Files.isDirectory(location)) {
+                List<Path> classes;
+                try (Stream<Path> files = Files.walk(location)) {
+                    classes = files.filter(file -> file.toString().endsWith(".class")).sorted().collect(Collectors.toList());
+                }
+                for (Path file : classes) {
+                    digest.update(location.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                    digest.update(Files.readAllBytes(file));
+                }
+            } else {
+                digest.update(Files.readAllBytes(location));
+            }
+            return hex(digest.digest());
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            String version = CompilationCache.class.getPackage().getImplementationVersion();
+            return version == null ? "unversioned" : version;
+        }
+    }
+
+    /**
+     * Creates a SHA-256 digest.
+     * @return The digest.
+     */
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Formats bytes as lowercase hex.
+     * @param bytes The bytes.
+     * @return The hex digits.
+     */
+    private static String hex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Looks up a unit, in memory and then on disk. A unit found on disk is kept in memory too.
+     * @param key The key from key().
+     * @return The unit, or null if neither tier has it.
+     * @throws IOException If an I/O error other than a missing or corrupt file occurs.
+     */
+    public CompiledUnit get(String key) throws IOException {
+        synchronized (this) {
+            CompiledUnit unit = memory.get(key);
+            if (unit != null) {
+                memoryHits++;
+                return unit;
+            }
+        }
+        CompiledUnit unit = read(directory.resolve(key + SUFFIX));
+        synchronized (this) {
+            if (unit == null) {
+                misses++;
+                return null;
+            }
+            diskHits++;
+            remember(key, unit);
+        }
+        return unit;
+    }
+
+    /**
+     * Stores a unit in both tiers, evicting the least recently used units of each tier that no longer fit.
+     * @param key The key from key().
+     * @param unit The unit.
+     * @throws IOException If the unit file cannot be written.
+     */
+    public void put(String key, CompiledUnit unit) throws IOException {
+        synchronized (this) {
+            remember(key, unit);
+        }
+        Path entry = directory.resolve(key + SUFFIX);
+        long previous = sizeOf(entry);
+        write(entry, unit);
+        long size = sizeOf(entry);
+        boolean full;
+        synchronized (this) {
+            diskBytes += size - previous;
+            full = diskBytes > maxDiskBytes;
+        }
+        if (full) {
+            evictFiles();
+        }
+    }
+
+    /**
+     * Gets the number of lookups answered from memory.
+     * @return The count.
+     */
+    public synchronized long getMemoryHits() {
+        return memoryHits;
+    }
+
+    /**
+     * Gets the number of lookups answered from disk.
+     * @return The count.
+     */
+    public synchronized long getDiskHits() {
+        return diskHits;
+    }
+
+    /**
+     * Gets the number of lookups neither tier could answer.
+     * @return The count.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the total size of the units kept in memory.
+     * @return The bytes.
+     */
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * Gets the total size of the unit files, as far as this cache knows.
+     * @return The bytes.
+     */
+    public synchronized long getDiskBytes() {
+        return diskBytes;
+    }
+
+    /**
+     * Puts a unit in the memory tier and evicts the least recently used units beyond its bound.
+     * A unit larger than the whole bound is not kept.
+     * @param key The key.
+     * @param unit The unit.
+     */
+    private void remember(String key, CompiledUnit unit) {
+        CompiledUnit replaced = memory.put(key, unit);
+        if (replaced != null) {
+            memoryBytes -= replaced.size();
+        }
+        memoryBytes += unit.size();
+        Iterator<CompiledUnit> eldest = memory.values().iterator();
+        while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+            memoryBytes -= eldest.next().size();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Deletes the unit files used longest ago until the disk tier is within its bound again.
+     * The total is recounted from the directory, since other processes may share it.
+     * @throws IOException If the directory cannot be listed.
+     */
+    private void evictFiles() throws IOException {
+        List<Path> files = files();
+        long[] times = new long[files.size()];
+        long[] sizes = new long[files.size()];
+        Integer[] order = new Integer[files.size()];
+        long total = 0;
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            try {
+                times[i] = Files.getLastModifiedTime(files.get(i)).toMillis();
+                sizes[i] = Files.size(files.get(i));
+                total += sizes[i];
+            } catch (NoSuchFileException e) {
+                times[i] = Long.MAX_VALUE; // Deleted by another process meanwhile
+            }
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(times[a], times[b]));
+        for (int i = 0; i < order.length && total > maxDiskBytes; i++) {
+            if (Files.deleteIfExists(files.get(order[i]))) {
+                total -= sizes[order[i]];
+            }
+        }
+        synchronized (this) {
+            diskBytes = total;
+        }
+    }
+
+    /**
+     * Lists the unit files.
+     * @return Their paths.
+     * @throws IOException If the directory cannot be listed.
+     */
+    private List<Path> files() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Reads a unit file and marks it used.
+     * @param entry The path of the file.
+     * @return The unit, or null if the file is missing or corrupt.
+     * @throws IOException If an I/O error other than a missing or corrupt file occurs.
+     */
+    private CompiledUnit read(Path entry) throws IOException {
+        CompiledUnit unit;
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(entry))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new EOFException("Not a unit file");
+            }
+            unit = new CompiledUnit(readBytes(in), readBytes(in), readBytes(in));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (EOFException e) {
+            // a corrupt or truncated file counts as a miss, and is rewritten by the next put
+            Files.deleteIfExists(entry);
+            return null;
+        }
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            // evicted by another process meanwhile; the unit read is still good
+        }
+        return unit;
+    }
+
+    /**
+     * Reads a length-prefixed byte array.
+     * @param in The stream.
+     * @return The bytes.
+     * @throws IOException If the stream ends early or the length is invalid.
+     */
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new EOFException("Invalid length " + length);
+        }
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new EOFException("Truncated unit file");
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes a unit file atomically.
+     * @param entry The path of the file.
+     * @param unit The unit.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void write(Path entry, CompiledUnit unit) throws IOException {
+        Path temp = Files.createTempFile(directory, "unit", ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temp))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                writeBytes(out, unit.getTokenBytes());
+                writeBytes(out, unit.getAstBytes());
+                writeBytes(out, unit.getC());
+            }
+            try {
+                Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Writes a length-prefixed byte array.
+     * @param out The stream.
+     * @param bytes The bytes.
+     * @throws IOException If writing fails.
+     */
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Gets the size of a file.
+     * @param file The file.
+     * @return Its size, or 0 if it does not exist.
+     * @throws IOException If an I/O error other than a missing file occurs.
+     */
+    private static long sizeOf(Path file) throws IOException {
+        try {
+            return Files.size(file);
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package compiler.cache;
+
+import compiler.parser.Ast;
+import compiler.scanner.BinaryTokenReader;
+import compiler.scanner.BinaryTokenWriter;
+import compiler.scanner.SourceBuffer;
+import compiler.scanner.SymbolTable;
+import compiler.scanner.TokenBuffer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * What compiling one source produced, in serialized form: its token stream in the binary token format,
+ * its optimized tree and the C generated from it. A CompiledUnit is immutable.
+ */
+public final class CompiledUnit {
+    private final byte[] tokens; // The tokens in the binary token format
+    private final byte[] ast; // The optimized tree, as written by AstFormat
+    private final byte[] c; // The generated C as UTF-8
+
+    /**
+     * Constructs a new CompiledUnit from serialized parts.
+     * @param tokens The tokens in the binary token format.
+     * @param ast The tree as written by AstFormat.
+     * @param c The generated C as UTF-8.
+     */
+    CompiledUnit(byte[] tokens, byte[] ast, byte[] c) {
+        this.tokens = tokens;
+        this.ast = ast;
+        this.c = c;
+    }
+
+    /**
+     * Serializes what compiling a source produced.
+     * @param ast The optimized tree, whose tokens are the source's.
+     * @param c The generated C as UTF-8.
+     * @return The unit.
+     * @throws IOException If the tokens cannot be serialized.
+     */
+    public static CompiledUnit of(Ast ast, byte[] c) throws IOException {
+        ByteArrayOutputStream tokenBytes = new ByteArrayOutputStream();
+        new BinaryTokenWriter().write(ast.tokens(), tokenBytes);
+        return new CompiledUnit(tokenBytes.toByteArray(), AstFormat.write(ast), c.clone());
+    }
+
+    /**
+     * Reads back the tree, and the tokens it refers to.
+     * @param source The source the unit was compiled from.
+     * @param symbols The table identifiers are interned into.
+     * @return The optimized tree.
+     * @throws IOException If the serialized tokens or tree are corrupt or do not match the source.
+     */
+    public Ast ast(SourceBuffer source, SymbolTable symbols) throws IOException {
+        return AstFormat.read(ast, tokens(source, symbols));
+    }
+
+    /**
+     * Reads back the tokens.
+     * @param source The source the unit was compiled from.
+     * @param symbols The table identifiers are interned into.
+     * @return Every token of the source, including the final EOF token.
+     * @throws IOException If the serialized tokens are corrupt or do not match the source.
+     */
+    public TokenBuffer tokens(SourceBuffer source, SymbolTable symbols) throws IOException {
+        return new BinaryTokenReader(new ByteArrayInputStream(tokens)).readTokens(source, symbols);
+    }
+
+    /**
+     * Gets the generated C.
+     * @return The C as UTF-8, which must not be modified.
+     */
+    public byte[] getC() {
+        return c;
+    }
+
+    /**
+     * Gets the serialized size.
+     * @return The bytes the unit takes.
+     */
+    public long size() {
+        return (long) tokens.length + ast.length + c.length;
+    }
+
+    /**
+     * Gets the serialized tokens.
+     * @return The bytes in the binary token format.
+     */
+    byte[] getTokenBytes() {
+        return tokens;
+    }
+
+    /**
+     * Gets the serialized tree.
+     * @return The bytes as written by AstFormat.
+     */
+    byte[] getAstBytes() {
+        return ast;
+    }
+}
@@ -0,0 +1,132 @@
+package compiler.cache;
+
+import compiler.scanner.BinaryTokenFormat;
+import compiler.scanner.BinaryTokenReader;
+import compiler.scanner.BinaryTokenWriter;
+import compiler.scanner.Scanner;
+import compiler.scanner.SourceBuffer;
+import compiler.scanner.SymbolTable;
+import compiler.scanner.TokenBuffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * An on-disk cache of token streams keyed by a hash of the source content.
+ * A source whose bytes have not changed since it was last scanned is read back from its token file
+ * instead of being lexed again. Entries are written to a temporary file and moved into place, so
+ * concurrent builds sharing a directory never see a half-written entry.
+ */
+public final class TokenCache {
+    private static final String SUFFIX = ".tok";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Path directory; // Where the token files live
+    private final Charset charset; // The charset sources are decoded with
+
+    /**
+     * Constructs a new TokenCache that decodes sources with the platform default charset.
+     * @param directory The directory the token files are kept in. It is created if needed.
+     * @throws IOException If the directory cannot be created.
+     */
+    public TokenCache(Path directory) throws IOException {
+        this(directory, Charset.defaultCharset());
+    }
+
+    /**
+     * Constructs a new TokenCache.
+     * @param directory The directory the token files are kept in. It is created if needed.
+     * @param charset The charset sources are decoded with.
+     * @throws IOException If the directory cannot be created.
+     */
+    public TokenCache(Path directory, Charset charset) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.charset = charset;
+    }
+
+    /**
+     * Gets the tokens of a source file, from the cache if its content has been scanned before.
+     * @param source The file to scan.
+     * @param symbols The table identifiers are interned into.
+     * @return Every token of the file, including the final EOF token.
+     * @throws IOException If an I/O error occurs reading the source.
+     */
+    public TokenBuffer tokenize(Path source, SymbolTable symbols) throws IOException {
+        byte[] bytes = Files.readAllBytes(source);
+        SourceBuffer decoded = SourceBuffer.decode(ByteBuffer.wrap(bytes), charset);
+        Path entry = directory.resolve(key(bytes) + SUFFIX);
+
+        try (InputStream in = Files.newInputStream(entry)) {
+            return new BinaryTokenReader(in).readTokens(decoded, symbols);
+        } catch (NoSuchFileException e) {
+            // not cached yet
+        } catch (IOException e) {
+            // a corrupt or stale entry is rebuilt below
+            Files.deleteIfExists(entry);
+        }
+
+        Scanner scanner = new Scanner(decoded, symbols);
+        TokenBuffer tokens = scanner.tokenize();
+        scanner.close();
+        store(entry, tokens);
+        return tokens;
+    }
+
+    /**
+     * Writes a cache entry atomically.
+     * @param entry The path of the entry.
+     * @param tokens The tokens to store.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void store(Path entry, TokenBuffer tokens) throws IOException {
+        Path temp = Files.createTempFile(directory, "entry", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                new BinaryTokenWriter().write(tokens, out);
+            }
+            try {
+                Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Computes the cache key of a source: a SHA-256 over the format version, the compiler build, the
+     * charset and the bytes, so tokens lexed by an earlier build are never returned.
+     * @param bytes The content of the source.
+     * @return The key as lowercase hex.
+     */
+    private String key(byte[] bytes) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        String prefix = BinaryTokenFormat.VERSION + ":" + CompilationCache.compilerVersion() + ":" + charset.name() + ":";
+        digest.update(prefix.getBytes(StandardCharsets.UTF_8));
+        byte[] hash = digest.digest(bytes);
+
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,850 @@
+package compiler.codegen;
+
+import compiler.parser.Ast;
+import compiler.parser.NodeKind;
+import compiler.scanner.SymbolTable;
+import compiler.scanner.TokenBuffer;
+import compiler.scanner.TokenType;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Set;
+
+/**
+ * Translates an Ast into C, streaming the output to a Writer as the tree is walked.
+ *
+ * Every value is a C long. A function literal bound by a top-level let becomes a C function returning long,
+ * and the rest of the top level becomes main(). Variables bound by a top-level let or input become file-scope
+ * globals. A let assigns to the variable if one with that name is visible (a global, a parameter, or a
+ * local of an enclosing block) and otherwise declares a new local in the current block. print writes its
+ * arguments separated by spaces and ends the line, and input reads a number.
+ *
+ * Nothing is built up before it is written: the top level is walked once per section (globals, prototypes,
+ * functions, main), and literals and names are copied straight from the source characters. Apart from the
+ * tree itself, memory is one bit per distinct identifier plus stacks that grow with the nesting depth of
+ * statements and expressions. Expressions are walked with an explicit stack, so deep nesting does not
+ * use the Java stack.
+ */
+public final class CGenerator {
+    private static final int INDENT = 4;
+    private static final int NOT_STARTED = -2;
+
+    // Names that would clash with C keywords or with what the generated program declares or includes
+    private static final Set<String> RESERVED = Set.of(
+            "auto", "break", "case", "char", "const", "continue", "default", "do", "double", "else", "enum",
+            "extern", "float", "for", "goto", "if", "inline", "int", "long", "register", "restrict", "return",
+            "short", "signed", "sizeof", "static", "struct", "switch", "typedef", "union", "unsigned", "void",
+            "volatile", "while", "main", "printf", "scanf", "fputs", "putchar", "stdin", "stdout", "stderr");
+
+    private final Ast ast; // The tree being translated
+    private final TokenBuffer tokens; // The tokens the tree refers to
+    private final char[] source; // The characters the tokens point into
+
+    private Writer out;
+    private int indent; // The current indentation in spaces
+    private boolean inMain; // Whether the statements being written are in main()
+    private int loops; // The number of loops around the statement being written
+
+    private final BitSet globals = new BitSet(); // Symbols of the file-scope variables
+    private final BitSet functions = new BitSet(); // Symbols of the functions
+    private final BitSet locals = new BitSet(); // Symbols of the visible locals and parameters
+    private final BitSet checkedNames = new BitSet(); // Symbols whose C name has been worked out
+    private final BitSet mangledNames = new BitSet(); // Symbols that get a '_' appended in C
+    private int[] arities = new int[16]; // The parameter count of each function, by symbol
+
+    // The locals declared in the open scopes, and where each scope starts
+    private int[] declared = new int[16];
+    private int declaredSize;
+    private int[] scopeStarts = new int[16];
+    private int scopes;
+
+    // The expression walk: per pending node, its next child to write and how many have been written
+    private int[] stackNodes = new int[16];
+    private int[] stackNext = new int[16];
+    private int[] stackWritten = new int[16];
+    private int stackSize;
+
+    /**
+     * Constructs a new CGenerator.
+     * @param ast The tree to translate, whose identifier tokens carry symbol ids.
+     */
+    public CGenerator(Ast ast) {
+        this.ast = ast;
+        this.tokens = ast.tokens();
+        this.source = tokens.source();
+    }
+
+    /**
+     * Writes the C translation to a channel as UTF-8.
+     * @param channel The channel to write to.
+     * @throws IOException If an I/O error occurs.
+     * @throws CodegenException If the program uses a feature that has no C translation.
+     */
+    public void generate(WritableByteChannel channel) throws IOException, CodegenException {
+        Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8);
+        generate(writer);
+        writer.flush();
+    }
+
+    /**
+     * Writes the C translation to a Writer. The Writer is flushed but not closed.
+     * @param out The Writer to write to, ideally buffered.
+     * @throws IOException If an I/O error occurs.
+     * @throws CodegenException If the program uses a feature that has no C translation.
+     */
+    public void generate(Writer out) throws IOException, CodegenException {
+        this.out = out;
+        int root = ast.root();
+        out.write("#include <stdio.h>\n");
+
+        // Globals
+        boolean wrote = false;
+        for (int node = ast.firstChild(root); node != Ast.NO_NODE; node = ast.nextSibling(node)) {
+            int name = Ast.NO_TOKEN;
+            if (ast.kind(node) == NodeKind.LET && ast.kind(ast.firstChild(node)) != NodeKind.FUNCTION) {
+                name = ast.token(node);
+            } else if (ast.kind(node) == NodeKind.INPUT) {
+                name = ast.token(ast.firstChild(node));
+            }
+            if (name != Ast.NO_TOKEN && !globals.get(symbol(name))) {
+                globals.set(symbol(name));
+                out.write(wrote ? "static long " : "\nstatic long ");
+                writeName(name);
+                out.write(";\n");
+                wrote = true;
+            }
+        }
+
+        // Prototypes, so functions can call each other in any order
+        wrote = false;
+        for (int node = ast.firstChild(root); node != Ast.NO_NODE; node = ast.nextSibling(node)) {
+            if (isFunctionBinding(node)) {
+                int name = ast.token(node);
+                if (globals.get(symbol(name)) || functions.get(symbol(name))) {
+                    throw error(name, "'" + tokens.literal(name) + "' is defined more than once");
+                }
+                functions.set(symbol(name));
+                setArity(node);
+                out.write(wrote ? "" : "\n");
+                writeSignature(node);
+                out.write(";\n");
+                wrote = true;
+            }
+        }
+
+        // Functions
+        for (int node = ast.firstChild(root); node != Ast.NO_NODE; node = ast.nextSibling(node)) {
+            if (isFunctionBinding(node)) {
+                function(node);
+            }
+        }
+
+        // Everything else runs in main
+        inMain = true;
+        out.write("\nint main(void) {\n");
+        indent = INDENT;
+        pushScope();
+        for (int node = ast.firstChild(root); node != Ast.NO_NODE; node = ast.nextSibling(node)) {
+            if (!isFunctionBinding(node)) {
+                statement(node);
+            }
+        }
+        popScope();
+        line("return 0;");
+        out.write("}\n");
+        indent = 0;
+        inMain = false;
+        out.flush();
+    }
+
+    /**
+     * Checks if a top-level statement binds a function literal.
+     * @param node The statement.
+     * @return True if it is a let whose value is a function literal.
+     */
+    private boolean isFunctionBinding(int node) {
+        return ast.kind(node) == NodeKind.LET && ast.kind(ast.firstChild(node)) == NodeKind.FUNCTION;
+    }
+
+    /**
+     * Records how many parameters a function takes, so that calls can be checked against it.
+     * @param let The let that binds the function.
+     */
+    private void setArity(int let) {
+        int symbol = symbol(ast.token(let));
+        if (symbol >= arities.length) {
+            arities = Arrays.copyOf(arities, Math.max(symbol + 1, arities.length * 2));
+        }
+        int parameters = 0;
+        for (int child = ast.firstChild(ast.firstChild(let)); ast.kind(child) == NodeKind.PARAMETER;
+                child = ast.nextSibling(child)) {
+            parameters++;
+        }
+        arities[symbol] = parameters;
+    }
+
+    /**
+     * Writes a function's C signature, such as "long name(long a, long b)".
+     * @param let The let that binds the function.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void writeSignature(int let) throws IOException {
+        out.write("long ");
+        writeName(ast.token(let));
+        out.write('(');
+        int child = ast.firstChild(ast.firstChild(let));
+        if (ast.kind(child) != NodeKind.PARAMETER) {
+            out.write("void");
+        }
+        for (; ast.kind(child) == NodeKind.PARAMETER; child = ast.nextSibling(child)) {
+            out.write("long ");
+            writeName(ast.token(child));
+            if (ast.kind(ast.nextSibling(child)) == NodeKind.PARAMETER) {
+                out.write(", ");
+            }
+        }
+        out.write(')');
+    }
+
+    /**
+     * Writes a function definition.
+     * @param let The let that binds the function.
+     * @throws IOException If an I/O error occurs.
+     * @throws CodegenException If the body has no C translation.
+     */
+    private void function(int let) throws IOException, CodegenException {
+        out.write('\n');
+        writeSignature(let);
+        out.write(" {\n");
+        indent = INDENT;
+        pushScope();
+        int child = ast.firstChild(ast.firstChild(let));
+        for (; ast.kind(child) == NodeKind.PARAMETER; child = ast.nextSibling(child)) {
+            declare(ast.token(child));
+        }
+        for (int statement = ast.firstChild(child); statement != Ast.NO_NODE; statement = ast.nextSibling(statement)) {
+            statement(statement);
+        }
+        popScope();
+        line("return 0;");
+        out.write("}\n");
+        indent = 0;
+    }
+
+    /**
+     * Writes a statement on its own lines.
+     * @param node The statement.
+     * @throws IOException If an I/O error occurs.
+     * @throws CodegenException If the statement has no C translation.
+     */
+    private void statement(int node) throws IOException, CodegenException {
+        int token = ast.token(node);
+        switch (ast.kind(node)) {
+            case BLOCK:
+                startLine();
+                block(node);
+                out.write('\n');
+                break;
+            case LET:
+                startLine();
+                binding(node);
+                out.write(";\n");
+                break;
+            case WHILE:
+                startLine();
+                out.write("while (");
+                expression(ast.firstChild(node), false);
+                out.write(") ");
+                loops++;
+                block(ast.nextSibling(ast.firstChild(node)));
+                loops--;
+                out.write('\n');
+                break;
+            case FOR:
+                forLoop(node);
+                break;
+            case IF:
+                startLine();
+                ifStatement(node);
+                out.write('\n');
+                break;
+            case PRINT:
+                print(node);
+                break;
+            case INPUT:
+                int target = ast.token(ast.firstChild(node));
+                if (!isVisible(target)) {
+                    startLine();
+                    out.write("long ");
+                    writeName(target);
+                    out.write(" = 0;\n");
+                    declare(target);
+                }
+                startLine();
+                out.write("if (scanf(\"%ld\", &");
+                writeName(target);
+                out.write(") != 1) ");
+                writeName(target);
+                out.write(" = 0;\n");
+                break;
+            case RETURN:
+                startLine();
+                int value = ast.firstChild(node);
+                if (value == Ast.NO_NODE) {
+                    out.write("return 0;\n");
+                } else {
+                    out.write(inMain ? "return (int) " : "return ");
+                    expression(value, true);
+                    out.write(";\n");
+                }
+                break;
+            case BREAK:
+            case CONTINUE:
+                if (loops == 0) {
+                    throw error(token, "'" + tokens.literal(token) + "' outside a loop");
+                }
+                line(ast.kind(node) == NodeKind.BREAK ? "break;" : "continue;");
+                break;
+            case EXPRESSION:
+                startLine();
+                expression(ast.firstChild(node), false);
+                out.write(";\n");
+                break;
+            default:
+                throw error(token, "Unexpected " + ast.kind(node) + " statement");
+        }
+    }
+
+    /**
+     * Writes an if statement from the current position, keeping "else if" chains flat.
+     * @param node The IF node.
+     * @throws IOException If an I/O error occurs.
+     * @throws CodegenException If the statement has no C translation.
+     */
+    private void ifStatement(int node) throws IOException, CodegenException {
+        int condition = ast.firstChild(node);
+        out.write("if (");
+        expression(condition, false);
+        out.write(") ");
+        block(ast.nextSibling(condition));
+        int otherwise = ast.nextSibling(ast.nextSibling(condition));
+        if (otherwise != Ast.NO_NODE) {
+            out.write(" else ");
+            if (ast.kind(otherwise) == NodeKind.IF) {
+                ifStatement(otherwise);
+            } else {
+                block(otherwise);
+            }
+        }
+    }
+
+    /**
+     * Writes a statement as a braced block in its own scope, starting with "{" on the current line and
+     * ending after the closing brace without a newline.
+     * @param node The statement, usually a BLOCK.
+     * @throws IOException If an I/O error occurs.
+     * @throws CodegenException If the statement has no C translation.
+     */
+    private void block(int node) throws IOException, CodegenException {
+        out.write("{\n");
+        indent += INDENT;
+        pushScope();
+        if (ast.kind(node) == NodeKind.BLOCK) {
+            for (int child = ast.firstChild(node); child != Ast.NO_NODE; child = ast.nextSibling(child)) {
+                statement(child);
+            }
+        } else {
+            statement(node);
+        }
+        popScope();
+        indent -= INDENT;
+        startLine();
+        out.write('}');
+    }
+
+    /**
+     * Writes a let as an assignment if the variable is visible, or as a declaration otherwise.
+     * @param let The LET node.
+     * @throws IOException If an I/O error occurs.
+     * @throws CodegenException If the value has no C translation.
+     */
+    private void binding(int let) throws IOException, CodegenException {
+        int name = ast.token(let);
+        int value = ast.firstChild(let);
+        if (ast.kind(value) == NodeKind.FUNCTION) {
+            throw error(ast.token(value), "Functions can only be bound by a top-level let");
+        }
+        boolean declaration = !isVisible(name);
+        if (declaration) {
+            out.write("long ");
+        }
+        writeName(name);
+        out.write(" = ");
+        expression(value, false);
+        if (declaration) {
+            declare(name);
+        }
+    }
+
+    /**
+     * Writes a for loop. A variable its initializer declares is scoped to the loop.
+     * @param node The FOR node.
+     * @throws IOException If an I/O error occurs.
+     * @throws CodegenException If the loop has no C translation.
+     */
+    private void forLoop(int node) throws IOException, CodegenException {
+        int init = ast.firstChild(node);
+        int condition = ast.nextSibling(init);
+        int update = ast.nextSibling(condition);
+        int body = ast.nextSibling(update);
+
+        pushScope();
+        startLine();
+        out.write("for (");
+        if (ast.kind(init) == NodeKind.LET) {
+            binding(init);
+        } else if (ast.kind(init) != NodeKind.EMPTY) {
+            expression(init, false);
+        }
+        out.write(ast.kind(condition) == NodeKind.EMPTY ? ";" : "; ");
+        if (ast.kind(condition) != NodeKind.EMPTY) {
+            expression(condition, false);
+        }
+        out.write(ast.kind(update) == NodeKind.EMPTY ? ";" : "; ");
+        if (ast.kind(update) != NodeKind.EMPTY) {
+            expression(update, false);
+        }
+        out.write(") ");
+        loops++;
+        block(body);
+        loops--;
+        out.write('\n');
+        popScope();
+    }
+
+    /**
+     * Writes a print statement: each argument, separated by spaces, then a newline.
+     * @param node The PRINT node.
+     * @throws IOException If an I/O error occurs.
+     * @throws CodegenException If an argument has no C translation.
+     */
+    private void print(int node) throws IOException, CodegenException {
+        for (int argument = ast.firstChild(node); argument != Ast.NO_NODE; argument = ast.nextSibling(argument)) {
+            if (argument != ast.firstChild(node)) {
+                line("putchar(' ');");
+            }
+            startLine();
+            if (ast.kind(argument) == NodeKind.STRING) {
+                out.write("fputs(");
+                writeString(ast.token(argument));
+                out.write(", stdout);\n");
+            } else {
+                out.write("printf(\"%ld\", (long) ");
+                expression(argument, true);
+                out.write(");\n");
+            }
+        }
+        line("putchar('\\n');");
+    }
+
+    /**
+     * Writes an expression, walking it with an explicit stack.
+     * Every operator application is parenthesized, so C's own precedence never matters, except a call's
+     * arguments and an assignment's operands, which the commas, the call's parentheses or the '=' already delimit.
+     * @param root The expression node.
+     * @param parenthesize Whether the root itself needs parentheses, false where the context already delimits it.
+     * @throws IOException If an I/O error occurs.
+     * @throws CodegenException If the expression has no C translation.
+     */
+    private void expression(int root, boolean parenthesize) throws IOException, CodegenException {
+        int base = stackSize;
+        push(root);
+        while (stackSize > base) {
+            int top = stackSize - 1;
+            int node = stackNodes[top];
+            boolean parens = top > base ? !delimits(stackNodes[top - 1]) : parenthesize;
+            if (stackNext[top] == NOT_STARTED) {
+                stackNext[top] = open(node, parens);
+            }
+            int child = stackNext[top];
+            if (child == Ast.NO_NODE) {
+                close(node, parens);
+                stackSize--;
+                continue;
+            }
+            if (stackWritten[top]++ > 0) {
+                separate(node);
+            }
+            stackNext[top] = ast.nextSibling(child);
+            push(child);
+        }
+    }
+
+    /**
+     * Checks if an expression node already delimits its children, so they need no parentheses of their own.
+     * @param node The parent node.
+     * @return True for a call, whose arguments are between commas, and an assignment, which binds loosest.
+     */
+    private boolean delimits(int node) {
+        NodeKind kind = ast.kind(node);
+        return kind == NodeKind.CALL || kind == NodeKind.ASSIGN;
+    }
+
+    /**
+     * Pushes a node onto the expression walk.
+     * @param node The node.
+     */
+    private void push(int node) {
+        if (stackSize == stackNodes.length) {
+            int capacity = stackNodes.length * 2;
+            stackNodes = Arrays.copyOf(stackNodes, capacity);
+            stackNext = Arrays.copyOf(stackNext, capacity);
+            stackWritten = Arrays.copyOf(stackWritten, capacity);
+        }
+        stackNodes[stackSize] = node;
+        stackNext[stackSize] = NOT_STARTED;
+        stackWritten[stackSize] = 0;
+        stackSize++;
+    }
+
+    /**
+     * Writes what comes before an expression node's children.
+     * @param node The node.
+     * @param parens Whether an operator application is parenthesized.
+     * @return The first child to write, or NO_NODE.
+     * @throws IOException If an I/O error occurs.
+     * @throws CodegenException If the node has no C translation.
+     */
+    private int open(int node, boolean parens) throws IOException, CodegenException {
+        int token = ast.token(node);
+        switch (ast.kind(node)) {
+            case IDENTIFIER:
+                if (isFunction(token)) {
+                    throw error(token, "The function '" + tokens.literal(token) + "' can only be called");
+                }
+                if (!isVisible(token)) {
+                    throw error(token, "'" + tokens.literal(token) + "' is not defined");
+                }
+                writeName(token);
+                return Ast.NO_NODE;
+            case NUMBER:
+                if (ast.isFolded(node)) {
+                    writeValue(ast.value(node));
+                } else {
+                    writeNumber(token);
+                }
+                return Ast.NO_NODE;
+            case BOOLEAN:
+                out.write(ast.value(node) != 0 ? "1" : "0");
+                return Ast.NO_NODE;
+            case BINARY:
+            case ASSIGN:
+                openParen(parens);
+                return ast.firstChild(node);
+            case UNARY:
+                checkIncrement(node);
+                openParen(parens);
+                writeToken(token);
+                return ast.firstChild(node);
+            case POSTFIX:
+                checkIncrement(node);
+                openParen(parens);
+                return ast.firstChild(node);
+            case CALL:
+                int callee = ast.firstChild(node);
+                if (ast.kind(callee) != NodeKind.IDENTIFIER || !isFunction(ast.token(callee))) {
+                    throw error(token, "Only a function bound by a top-level let can be called");
+                }
+                int arguments = ast.childCount(node) - 1;
+                int expected = arities[symbol(ast.token(callee))];
+                if (arguments != expected) {
+                    throw error(token, "'" + tokens.literal(ast.token(callee)) + "' takes " + expected
+                            + " arguments but is given " + arguments);
+                }
+                writeName(ast.token(callee));
+                out.write('(');
+                return ast.nextSibling(callee);
+            case STRING:
+                throw error(token, "A string can only be printed");
+            case FUNCTION:
+                throw error(token, "Functions can only be bound by a top-level let");
+            default:
+                throw error(token, "Unexpected " + ast.kind(node) + " expression");
+        }
+    }
+
+    /**
+     * Writes an opening parenthesis if one is needed.
+     * @param parens Whether it is needed.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void openParen(boolean parens) throws IOException {
+        if (parens) {
+            out.write('(');
+        }
+    }
+
+    /**
+     * Writes a closing parenthesis if one is needed.
+     * @param parens Whether it is needed.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void closeParen(boolean parens) throws IOException {
+        if (parens) {
+            out.write(')');
+        }
+    }
+
+    /**
+     * Writes what comes between two children of an expression node.
+     * @param node The node.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void separate(int node) throws IOException {
+        if (ast.kind(node) == NodeKind.CALL) {
+            out.write(", ");
+        } else {
+            out.write(' ');
+            writeToken(ast.token(node));
+            out.write(' ');
+        }
+    }
+
+    /**
+     * Writes what comes after an expression node's children.
+     * @param node The node.
+     * @param parens Whether an operator application is parenthesized.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void close(int node, boolean parens) throws IOException {
+        switch (ast.kind(node)) {
+            case POSTFIX:
+                writeToken(ast.token(node));
+                closeParen(parens);
+                break;
+            case BINARY:
+            case ASSIGN:
+            case UNARY:
+                closeParen(parens);
+                break;
+            case CALL:
+                out.write(')');
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Checks that '++' and '--' are applied to a variable, since C requires it.
+     * @param node The UNARY or POSTFIX node.
+     * @throws CodegenException If the operand of '++' or '--' is not a variable.
+     */
+    private void checkIncrement(int node) throws CodegenException {
+        int token = ast.token(node);
+        TokenType type = tokens.type(token);
+        if ((type == TokenType.INCRE || type == TokenType.DECRE) && ast.kind(ast.firstChild(node)) != NodeKind.IDENTIFIER) {
+            throw error(token, "Only a variable can be incremented or decremented");
+        }
+    }
+
+    /**
+     * Writes a token's characters straight from the source.
+     * @param token The token.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void writeToken(int token) throws IOException {
+        out.write(source, tokens.start(token), tokens.length(token));
+    }
+
+    /**
+     * Writes an identifier as a C name, appending '_' to names C reserves and to names already ending in '_',
+     * which keeps distinct names distinct.
+     * @param token The identifier token.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void writeName(int token) throws IOException {
+        writeToken(token);
+        int symbol = symbol(token);
+        if (!checkedNames.get(symbol)) {
+            checkedNames.set(symbol);
+            String name = tokens.literal(token);
+            if (RESERVED.contains(name) || name.endsWith("_")) {
+                mangledNames.set(symbol);
+            }
+        }
+        if (mangledNames.get(symbol)) {
+            out.write('_');
+        }
+    }
+
+    /**
+     * Writes a number as a C decimal literal, without leading zeros that C would read as octal.
+     * @param token The number token, whose digits may come from any script.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void writeNumber(int token) throws IOException {
+        int start = tokens.start(token);
+        int end = start + tokens.length(token);
+        while (start < end - 1 && Character.digit(source[start], 10) == 0) {
+            start++;
+        }
+        for (int i = start; i < end; i++) {
+            out.write('0' + Character.digit(source[i], 10));
+        }
+    }
+
+    /**
+     * Writes a computed value as a C expression, parenthesized when negative.
+     * @param value The value.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void writeValue(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            out.write("(-9223372036854775807L - 1)"); // the literal 9223372036854775808 does not fit in a long
+        } else if (value < 0) {
+            out.write("(" + value + ")");
+        } else {
+            out.write(Long.toString(value));
+        }
+    }
+
+    /**
+     * Writes a string token as a C string literal.
+     * @param token The string token, whose range excludes the quotes.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void writeString(int token) throws IOException {
+        out.write('"');
+        int end = tokens.start(token) + tokens.length(token);
+        for (int i = tokens.start(token); i < end; i++) {
+            char c = source[i];
+            switch (c) {
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                case '?':
+                    out.write("\\?"); // avoids trigraphs
+                    break;
+                default:
+                    if (c < ' ' || c == 127) {
+                        out.write(String.format("\\%03o", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+
+    /**
+     * Gets the symbol id of an identifier token.
+     * @param token The token.
+     * @return The symbol id.
+     */
+    private int symbol(int token) {
+        int symbol = tokens.symbol(token);
+        if (symbol == SymbolTable.NO_SYMBOL) {
+            throw new IllegalArgumentException("Identifier token " + token + " has no symbol id");
+        }
+        return symbol;
+    }
+
+    /**
+     * Checks if a variable is visible where the current statement is.
+     * @param token The identifier token.
+     * @return True if it is a global or a visible local or parameter.
+     */
+    private boolean isVisible(int token) {
+        int symbol = symbol(token);
+        return globals.get(symbol) || locals.get(symbol);
+    }
+
+    /**
+     * Checks if a name refers to a function where the current statement is.
+     * @param token The identifier token.
+     * @return True if it names a function that no local or parameter hides.
+     */
+    private boolean isFunction(int token) {
+        int symbol = symbol(token);
+        return functions.get(symbol) && !locals.get(symbol);
+    }
+
+    /**
+     * Declares a local in the innermost scope.
+     * @param token The identifier token.
+     */
+    private void declare(int token) {
+        if (declaredSize == declared.length) {
+            declared = Arrays.copyOf(declared, declaredSize * 2);
+        }
+        int symbol = symbol(token);
+        declared[declaredSize++] = symbol;
+        locals.set(symbol);
+    }
+
+    /**
+     * Opens a scope.
+     */
+    private void pushScope() {
+        if (scopes == scopeStarts.length) {
+            scopeStarts = Arrays.copyOf(scopeStarts, scopes * 2);
+        }
+        scopeStarts[scopes++] = declaredSize;
+    }
+
+    /**
+     * Closes the innermost scope, hiding the locals declared in it.
+     */
+    private void popScope() {
+        int start = scopeStarts[--scopes];
+        while (declaredSize > start) {
+            locals.clear(declared[--declaredSize]);
+        }
+    }
+
+    /**
+     * Writes the indentation of a new line.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void startLine() throws IOException {
+        for (int i = 0; i < indent; i++) {
+            out.write(' ');
+        }
+    }
+
+    /**
+     * Writes an indented line.
+     * @param text The text of the line.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void line(String text) throws IOException {
+        startLine();
+        out.write(text);
+        out.write('\n');
+    }
+
+    /**
+     * Creates an error at a token.
+     * @param token The token.
+     * @param message The error message.
+     * @return The exception.
+     */
+    private CodegenException error(int token, String message) {
+        return new CodegenException(message, tokens.row(token), tokens.col(token));
+    }
+}
@@ -0,0 +1,39 @@
+package compiler.codegen;
+
+/**
+ * Thrown when a valid program uses a feature that the backend compiling it cannot translate.
+ */
+public class CodegenException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final int row; // The line of the offending node's token
+    private final int col; // The column of the offending node's token
+
+    /**
+     * Constructs a new CodegenException.
+     * @param message What cannot be translated.
+     * @param row The line of the offending node's token.
+     * @param col The column of the offending node's token.
+     */
+    public CodegenException(String message, int row, int col) {
+        super(message + " at " + row + ":" + col);
+        this.row = row;
+        this.col = col;
+    }
+
+    /**
+     * Gets the line of the offending node's token.
+     * @return The line, starting at 1.
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * Gets the column of the offending node's token.
+     * @return The column, starting at 1.
+     */
+    public int getCol() {
+        return col;
+    }
+}
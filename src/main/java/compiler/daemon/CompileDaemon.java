@@ -0,0 +1,311 @@
+package compiler.daemon;
+
+import compiler.Main;
+import compiler.cache.CompilationCache;
+import compiler.codegen.CodegenException;
+import compiler.metrics.CompilerMetrics;
+import compiler.metrics.Phase;
+import compiler.metrics.PhaseTimer;
+import compiler.optimizer.Pipeline;
+import compiler.output.TokenOutput;
+import compiler.parser.ParseException;
+import compiler.scanner.Scanner;
+import compiler.scanner.SourceBuffer;
+import compiler.scanner.SymbolTable;
+import compiler.scanner.TokenBuffer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.BindException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A resident compiler that answers CompileRequests, so that compiling a small file costs neither JVM startup nor
+ * JIT warm-up. Requests come in through compile() or over a Unix domain socket or loopback TCP socket, one
+ * connection per worker thread at a time.
+ *
+ * Each worker keeps its own warm state across requests: a SymbolTable that is cleared rather than reallocated,
+ * a TokenOutput with its encode buffer, and one Pipeline per optimization level. Every worker shares the
+ * CompilationCache, so a source compiled before is answered from memory. A CompileDaemon is safe to use from
+ * several threads.
+ */
+public final class CompileDaemon implements Closeable {
+    public static final int DEFAULT_WORKERS = Runtime.getRuntime().availableProcessors();
+
+    private final ServerSocketChannel server;
+    private final SocketAddress address; // Where the daemon listens, with the port it was given if it asked for 0
+    private final ExecutorService workers;
+    private final CompilationCache cache; // The shared compilation cache, or null to always compile
+
+    // What one worker thread reuses from request to request
+    private final ThreadLocal<Workspace> workspace = ThreadLocal.withInitial(Workspace::new);
+
+    private volatile boolean closed;
+
+    /**
+     * The warm compiler state of one thread.
+     */
+    private static final class Workspace {
+        private final SymbolTable symbols = new SymbolTable();
+        private final TokenOutput output = new TokenOutput();
+        private final Pipeline standard = Pipeline.standard();
+        private final Pipeline none = Pipeline.none();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    }
+
+    /**
+     * Constructs a new CompileDaemon listening on an address with DEFAULT_WORKERS workers and no cache.
+     * @param address A UnixDomainSocketAddress, or a loopback InetSocketAddress, whose port may be 0 to pick a free
+     *                one.
+     * @throws IOException If the address cannot be bound.
+     */
+    public CompileDaemon(SocketAddress address) throws IOException {
+        this(address, DEFAULT_WORKERS, null);
+    }
+
+    /**
+     * Constructs a new CompileDaemon. A stale socket file left at a Unix domain address by a daemon that is no
+     * longer running is replaced; any other file there is left alone and the address is reported in use.
+     * @param address A UnixDomainSocketAddress, or a loopback InetSocketAddress, whose port may be 0 to pick a free
+     *                one.
+     * @param workers The maximum number of connections served at once.
+     * @param cache The compilation cache, or null to always compile.
+     * @throws IOException If the address cannot be bound, or another file or a live daemon is at a Unix domain
+     *                     address.
+     * @throws IllegalArgumentException If the address is a TCP address that is not a loopback address.
+     */
+    public CompileDaemon(SocketAddress address, int workers, CompilationCache cache) throws IOException {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be at least 1, got " + workers);
+        }
+        if (address instanceof UnixDomainSocketAddress) {
+            removeStaleSocket((UnixDomainSocketAddress) address);
+        } else if (address instanceof InetSocketAddress) {
+            checkLoopback((InetSocketAddress) address);
+        }
+        this.server = ServerSocketChannel.open(DaemonProtocol.family(address));
+        try {
+            server.bind(address);
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+        this.address = server.getLocalAddress();
+        this.workers = Executors.newFixedThreadPool(workers, task -> {
+            Thread thread = new Thread(task, "compile-daemon-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.cache = cache;
+    }
+
+    /**
+     * Deletes the socket file a daemon that is no longer running left at a Unix domain address.
+     * @param address The address.
+     * @throws BindException If something other than a socket is there, or a daemon still accepts connections on it.
+     * @throws IOException If the file cannot be inspected or deleted.
+     */
+    private static void removeStaleSocket(UnixDomainSocketAddress address) throws IOException {
+        Path path = address.getPath();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        if (!attributes.isOther()) {
+            throw new BindException(path + ": address in use by a file that is not a socket");
+        }
+        try (SocketChannel probe = SocketChannel.open(address)) {
+            throw new BindException(path + ": address in use by a running daemon");
+        } catch (ConnectException e) {
+            Files.deleteIfExists(path); // Nothing listens on it any more
+        }
+    }
+
+    /**
+     * Parses a daemon address from the command line: a port or loopback host:port is a loopback TCP address, and
+     * anything else is the path of a Unix domain socket. The daemon has no authentication, so other hosts are
+     * rejected rather than exposing it to the network.
+     * @param text The address.
+     * @return The socket address.
+     * @throws IllegalArgumentException If a host is given that is not a loopback address.
+     */
+    public static SocketAddress parseAddress(String text) {
+        int colon = text.lastIndexOf(':');
+        String port = text.substring(colon + 1);
+        if (!port.isEmpty() && port.chars().allMatch(Character::isDigit)) {
+            if (colon < 0) {
+                return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(port));
+            }
+            InetSocketAddress address = new InetSocketAddress(text.substring(0, colon), Integer.parseInt(port));
+            checkLoopback(address);
+            return address;
+        }
+        return UnixDomainSocketAddress.of(text);
+    }
+
+    /**
+     * Checks that a TCP address only accepts connections from this machine.
+     * @param address The address.
+     * @throws IllegalArgumentException If it is unresolved or not a loopback address.
+     */
+    private static void checkLoopback(InetSocketAddress address) {
+        if (address.isUnresolved() || !address.getAddress().isLoopbackAddress()) {
+            throw new IllegalArgumentException(address.getHostString()
+                    + " is not a loopback address; the daemon only listens on this machine");
+        }
+    }
+
+    /**
+     * Gets where the daemon listens.
+     * @return The bound address.
+     */
+    public SocketAddress getAddress() {
+        return address;
+    }
+
+    /**
+     * Accepts connections and hands each to a worker until a SHUTDOWN request arrives or the daemon is closed.
+     * @throws IOException If accepting a connection fails other than by the daemon closing.
+     */
+    public void serve() throws IOException {
+        try {
+            while (!closed) {
+                SocketChannel connection = server.accept();
+                try {
+                    workers.execute(() -> serve(connection));
+                } catch (RejectedExecutionException e) {
+                    connection.close(); // Closed while accepting
+                }
+            }
+        } catch (AsynchronousCloseException e) {
+            // Closed by a SHUTDOWN request or by close()
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Answers the requests of one connection until the client closes it.
+     * @param connection The connection, which is closed afterwards.
+     */
+    private void serve(SocketChannel connection) {
+        try (connection) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(connection)));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(connection)));
+            CompileRequest request;
+            while ((request = DaemonProtocol.readRequest(in)) != null) {
+                DaemonProtocol.writeResult(out, compile(request));
+                if (request.getKind() == CompileRequest.Kind.SHUTDOWN) {
+                    close();
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // The client went away or sent garbage; only its connection is dropped
+        }
+    }
+
+    /**
+     * Answers a request in this process, without a socket.
+     * A SHUTDOWN request is answered with an empty success but does not close the daemon.
+     * @param request The request.
+     * @return The output, or the diagnostics if the source does not compile.
+     */
+    public CompileResult compile(CompileRequest request) {
+        Workspace work = workspace.get();
+        try {
+            switch (request.getKind()) {
+                case TOKENS:
+                    return CompileResult.success(dumpTokens(work, request));
+                case C:
+                    work.symbols.clear();
+                    Pipeline pipeline = request.isOptimize() ? work.standard : work.none;
+                    return CompileResult.success(Main.compileToC(request.getSource(), pipeline, cache, work.symbols));
+                default:
+                    return CompileResult.success(new byte[0]);
+            }
+        } catch (ParseException | CodegenException | IOException e) {
+            return CompileResult.failure(e.getMessage());
+        } catch (RuntimeException e) {
+            // A compiler bug fails this request only, keeping the connection and the worker's workspace
+            return CompileResult.failure("Internal compiler error: " + e);
+        }
+    }
+
+    /**
+     * Scans a source and encodes its tokens as Main.compile would write them.
+     * @param work The thread's workspace.
+     * @param request The request.
+     * @return The token dump.
+     * @throws IOException If the source cannot be decoded.
+     */
+    private static byte[] dumpTokens(Workspace work, CompileRequest request) throws IOException {
+        work.symbols.clear();
+        PhaseTimer timer = CompilerMetrics.start(Phase.LEX);
+        SourceBuffer source = SourceBuffer.decode(ByteBuffer.wrap(request.getSource()), Charset.defaultCharset());
+        Scanner scanner = new Scanner(source, work.symbols);
+        TokenBuffer tokens = scanner.tokenize();
+        scanner.close();
+        timer.stop(tokens, work.symbols.size());
+
+        timer = CompilerMetrics.start(Phase.OUTPUT);
+        work.bytes.reset();
+        work.output.write(tokens, Channels.newChannel(work.bytes), request.getEncoding());
+        timer.stop(work.bytes.size());
+        return work.bytes.toByteArray();
+    }
+
+    /**
+     * Stops accepting connections, lets the requests in progress finish and removes a Unix domain socket file.
+     * @throws IOException If the socket file cannot be removed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        server.close();
+        workers.shutdown();
+        if (address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+        }
+    }
+
+    /**
+     * Waits for the requests in progress to finish after the daemon was closed.
+     * @param timeout The longest time to wait.
+     * @param unit The unit of the timeout.
+     * @return true if every worker finished, false if the timeout passed first.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return workers.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,96 @@
+package compiler.daemon;
+
+import compiler.output.TokenEncoding;
+
+/**
+ * One source to compile, held in memory, and what to compile it to. A CompileRequest is immutable.
+ */
+public final class CompileRequest {
+    /**
+     * What a request asks the daemon to do.
+     */
+    public enum Kind {
+        TOKENS, // Dump the tokens of the source
+        C, // Translate the source to C
+        SHUTDOWN // Stop the daemon; carries no source
+    }
+
+    private final Kind kind;
+    private final byte[] source; // The content of the source, in the daemon's default charset
+    private final TokenEncoding encoding; // The format of a token dump
+    private final boolean optimize; // Whether to run the optimization passes before translating to C
+
+    /**
+     * Constructs a new CompileRequest.
+     * @param kind What to do.
+     * @param source The content of the source.
+     * @param encoding The format of a token dump.
+     * @param optimize Whether to run the optimization passes before translating to C.
+     */
+    CompileRequest(Kind kind, byte[] source, TokenEncoding encoding, boolean optimize) {
+        this.kind = kind;
+        this.source = source;
+        this.encoding = encoding;
+        this.optimize = optimize;
+    }
+
+    /**
+     * Creates a request for the token dump of a source.
+     * @param source The content of the source.
+     * @param encoding The format of the dump.
+     * @return The request.
+     */
+    public static CompileRequest tokens(byte[] source, TokenEncoding encoding) {
+        return new CompileRequest(Kind.TOKENS, source, encoding, false);
+    }
+
+    /**
+     * Creates a request for the C translation of a source.
+     * @param source The content of the source.
+     * @param optimize Whether to run the optimization passes first, as -O0 does not.
+     * @return The request.
+     */
+    public static CompileRequest c(byte[] source, boolean optimize) {
+        return new CompileRequest(Kind.C, source, TokenEncoding.TEXT, optimize);
+    }
+
+    /**
+     * Creates a request that stops the daemon once it has answered.
+     * @return The request.
+     */
+    public static CompileRequest shutdown() {
+        return new CompileRequest(Kind.SHUTDOWN, new byte[0], TokenEncoding.TEXT, false);
+    }
+
+    /**
+     * Gets what the request asks for.
+     * @return The kind.
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Gets the source.
+     * @return Its content, which must not be modified.
+     */
+    public byte[] getSource() {
+        return source;
+    }
+
+    /**
+     * Gets the format of a token dump.
+     * @return The encoding.
+     */
+    public TokenEncoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Gets whether the optimization passes run before translating to C.
+     * @return true if they do.
+     */
+    public boolean isOptimize() {
+        return optimize;
+    }
+}
@@ -0,0 +1,65 @@
+package compiler.daemon;
+
+/**
+ * What the daemon answered to a CompileRequest: the output on success, or the diagnostics on failure.
+ * A CompileResult is immutable.
+ */
+public final class CompileResult {
+    private final boolean success;
+    private final byte[] output; // The token dump or C, empty on failure
+    private final String diagnostics; // Why compiling failed, empty on success
+
+    /**
+     * Constructs a new CompileResult.
+     * @param success Whether compiling succeeded.
+     * @param output The output.
+     * @param diagnostics The diagnostics.
+     */
+    CompileResult(boolean success, byte[] output, String diagnostics) {
+        this.success = success;
+        this.output = output;
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * Creates a successful result.
+     * @param output The token dump or C.
+     * @return The result.
+     */
+    static CompileResult success(byte[] output) {
+        return new CompileResult(true, output, "");
+    }
+
+    /**
+     * Creates a failed result.
+     * @param diagnostics Why compiling failed.
+     * @return The result.
+     */
+    static CompileResult failure(String diagnostics) {
+        return new CompileResult(false, new byte[0], diagnostics);
+    }
+
+    /**
+     * Gets whether compiling succeeded.
+     * @return true if it did.
+     */
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * Gets the output.
+     * @return The token dump or C, which must not be modified, or nothing on failure.
+     */
+    public byte[] getOutput() {
+        return output;
+    }
+
+    /**
+     * Gets the diagnostics.
+     * @return Why compiling failed, such as a parse error with its position, or "" on success.
+     */
+    public String getDiagnostics() {
+        return diagnostics;
+    }
+}
@@ -0,0 +1,58 @@
+package compiler.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A connection to a CompileDaemon. Requests are sent one at a time over the same connection, so a client
+ * compiling many files pays for connecting once. A DaemonClient is not thread-safe.
+ */
+public final class DaemonClient implements Closeable {
+    private final SocketChannel channel;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    /**
+     * Constructs a new DaemonClient connected to a daemon.
+     * @param address The address the daemon listens on.
+     * @throws IOException If no daemon listens there.
+     */
+    public DaemonClient(SocketAddress address) throws IOException {
+        this.channel = SocketChannel.open(DaemonProtocol.family(address));
+        try {
+            channel.connect(address);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+
+    /**
+     * Sends a request and waits for its answer.
+     * @param request The request.
+     * @return What the daemon answered.
+     * @throws IOException If the connection fails.
+     */
+    public CompileResult send(CompileRequest request) throws IOException {
+        DaemonProtocol.writeRequest(out, request);
+        return DaemonProtocol.readResult(in);
+    }
+
+    /**
+     * Closes the connection. The daemon keeps running.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,142 @@
+package compiler.daemon;
+
+import compiler.output.TokenEncoding;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The wire format between a DaemonClient and a CompileDaemon. A connection carries any number of
+ * requests, each answered before the next is sent.
+ * <pre>
+ * request:  int magic, byte version, byte kind, byte flags, int length, length bytes of source
+ * response: byte success, int length, length bytes of UTF-8 diagnostics, int length, length bytes of output
+ * </pre>
+ * Flag bit 0 selects the binary token encoding and bit 1 optimization before translating to C.
+ */
+final class DaemonProtocol {
+    static final int MAGIC = 0x42434450; // "BCDP"
+    static final int VERSION = 1;
+
+    private static final int BINARY = 1;
+    private static final int OPTIMIZE = 2;
+    private static final CompileRequest.Kind[] KINDS = CompileRequest.Kind.values();
+
+    private DaemonProtocol() {
+    }
+
+    /**
+     * Gets the protocol family of an address.
+     * @param address The address.
+     * @return UNIX for a Unix domain socket address, otherwise INET.
+     */
+    static StandardProtocolFamily family(SocketAddress address) {
+        return address instanceof UnixDomainSocketAddress ? StandardProtocolFamily.UNIX : StandardProtocolFamily.INET;
+    }
+
+    /**
+     * Writes a request.
+     * @param out The stream. It is flushed.
+     * @param request The request.
+     * @throws IOException If writing fails.
+     */
+    static void writeRequest(DataOutputStream out, CompileRequest request) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(request.getKind().ordinal());
+        out.writeByte((request.getEncoding() == TokenEncoding.BINARY ? BINARY : 0)
+                | (request.isOptimize() ? OPTIMIZE : 0));
+        writeBytes(out, request.getSource());
+        out.flush();
+    }
+
+    /**
+     * Reads a request.
+     * @param in The stream.
+     * @return The request, or null if the connection was closed between requests.
+     * @throws IOException If the stream ends inside a request or does not hold one.
+     */
+    static CompileRequest readRequest(DataInputStream in) throws IOException {
+        int magic;
+        try {
+            magic = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (magic != MAGIC) {
+            throw new IOException("Not a compile request");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported protocol version " + version);
+        }
+        int kind = in.readUnsignedByte();
+        if (kind >= KINDS.length) {
+            throw new IOException("Invalid request kind " + kind);
+        }
+        int flags = in.readUnsignedByte();
+        byte[] source = readBytes(in);
+        return new CompileRequest(KINDS[kind], source,
+                (flags & BINARY) != 0 ? TokenEncoding.BINARY : TokenEncoding.TEXT, (flags & OPTIMIZE) != 0);
+    }
+
+    /**
+     * Writes a response.
+     * @param out The stream. It is flushed.
+     * @param result The result.
+     * @throws IOException If writing fails.
+     */
+    static void writeResult(DataOutputStream out, CompileResult result) throws IOException {
+        out.writeBoolean(result.isSuccess());
+        writeBytes(out, result.getDiagnostics().getBytes(StandardCharsets.UTF_8));
+        writeBytes(out, result.getOutput());
+        out.flush();
+    }
+
+    /**
+     * Reads a response.
+     * @param in The stream.
+     * @return The result.
+     * @throws IOException If the stream ends early or does not hold a response.
+     */
+    static CompileResult readResult(DataInputStream in) throws IOException {
+        boolean success = in.readBoolean();
+        String diagnostics = new String(readBytes(in), StandardCharsets.UTF_8);
+        return new CompileResult(success, readBytes(in), diagnostics);
+    }
+
+    /**
+     * Writes a length-prefixed byte array.
+     * @param out The stream.
+     * @param bytes The bytes.
+     * @throws IOException If writing fails.
+     */
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a length-prefixed byte array.
+     * @param in The stream.
+     * @return The bytes.
+     * @throws IOException If the stream ends early or the length is invalid.
+     */
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid length " + length);
+        }
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new EOFException("Connection closed inside a message");
+        }
+        return bytes;
+    }
+}
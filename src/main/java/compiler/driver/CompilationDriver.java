@@ -0,0 +1,192 @@
+package compiler.driver;
+
+import compiler.Main;
+import compiler.cache.TokenCache;
+import compiler.output.TokenEncoding;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles many source files concurrently on a bounded work-stealing pool.
+ * Reports always come back in input order, whatever order the files finish in.
+ */
+public class CompilationDriver {
+    private static final String TEXT_SUFFIX = ".tokens";
+    private static final String BINARY_SUFFIX = ".tok";
+
+    private final int parallelism; // The maximum number of files compiled at once
+    private final TokenCache cache; // The token cache, or null to always scan
+    private final TokenEncoding encoding; // The format targets are written in
+    private final Charset charset; // The charset sources are read in
+
+    /**
+     * A source file paired with the file it compiles to.
+     */
+    private static final class Job {
+        private final Path source;
+        private final Path target; // null if another source already claimed the same target
+
+        Job(Path source, Path target) {
+            this.source = source;
+            this.target = target;
+        }
+    }
+
+    /**
+     * Constructs a new CompilationDriver that uses every available core.
+     */
+    public CompilationDriver() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a new CompilationDriver with a fixed number of worker threads.
+     * @param parallelism The maximum number of files compiled at once.
+     */
+    public CompilationDriver(int parallelism) {
+        this(parallelism, null);
+    }
+
+    /**
+     * Constructs a new CompilationDriver that takes the tokens of unchanged sources from a cache.
+     * @param parallelism The maximum number of files compiled at once.
+     * @param cache The token cache, or null to always scan.
+     */
+    public CompilationDriver(int parallelism, TokenCache cache) {
+        this(parallelism, cache, TokenEncoding.TEXT);
+    }
+
+    /**
+     * Constructs a new CompilationDriver.
+     * @param parallelism The maximum number of files compiled at once.
+     * @param cache The token cache, or null to always scan.
+     * @param encoding The format targets are written in.
+     */
+    public CompilationDriver(int parallelism, TokenCache cache, TokenEncoding encoding) {
+        this(parallelism, cache, encoding, Charset.defaultCharset());
+    }
+
+    /**
+     * Constructs a new CompilationDriver for sources in a given charset.
+     * @param parallelism The maximum number of files compiled at once.
+     * @param cache The token cache, or null to always scan. It should decode with the same charset.
+     * @param encoding The format targets are written in.
+     * @param charset The charset of the sources.
+     */
+    public CompilationDriver(int parallelism, TokenCache cache, TokenEncoding encoding, Charset charset) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1, got " + parallelism);
+        }
+        this.parallelism = parallelism;
+        this.cache = cache;
+        this.encoding = encoding;
+        this.charset = charset;
+    }
+
+    /**
+     * Compiles every input file, and every regular file under every input directory.
+     * A source found under a directory keeps its relative path under outputDir; a source given directly
+     * is written straight into outputDir. Each target is named after its source with .tokens, or .tok for the
+     * binary encoding, appended.
+     * @param inputs The files and directories to compile.
+     * @param outputDir The directory the targets are written under.
+     * @return One report per source file, in input order and, within a directory, in path order.
+     * @throws IOException If a directory cannot be listed.
+     */
+    public List<FileReport> compile(List<Path> inputs, Path outputDir) throws IOException {
+        List<Job> jobs = collect(inputs, outputDir);
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<FileReport>> tasks = new ArrayList<>(jobs.size());
+            for (Job job : jobs) {
+                tasks.add(pool.submit(() -> compileFile(job.source, job.target)));
+            }
+
+            List<FileReport> reports = new ArrayList<>(jobs.size());
+            for (ForkJoinTask<FileReport> task : tasks) {
+                reports.add(task.join());
+            }
+            return reports;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Expands the inputs into (source, target) pairs in a deterministic order.
+     * @param inputs The files and directories to compile.
+     * @param outputDir The directory the targets are written under.
+     * @return The source and target of every file to compile.
+     * @throws IOException If a directory cannot be listed.
+     */
+    private List<Job> collect(List<Path> inputs, Path outputDir) throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        Set<Path> targets = new HashSet<>();
+        String suffix = encoding == TokenEncoding.BINARY ? BINARY_SUFFIX : TEXT_SUFFIX;
+
+        for (Path input : inputs) {
+            if (Files.isDirectory(input)) {
+                List<Path> sources;
+                try (Stream<Path> files = Files.walk(input)) {
+                    sources = files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                }
+                for (Path source : sources) {
+                    addJob(jobs, targets, source, outputDir.resolve(input.relativize(source).toString() + suffix));
+                }
+            } else {
+                addJob(jobs, targets, input, outputDir.resolve(input.getFileName().toString() + suffix));
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Adds a job unless another source already writes the same target.
+     * A clashing source gets a null target so that it is reported as a failure instead.
+     * @param jobs The jobs collected so far.
+     * @param targets The targets claimed so far.
+     * @param source The file to compile.
+     * @param target The file to write.
+     */
+    private void addJob(List<Job> jobs, Set<Path> targets, Path source, Path target) {
+        Path normalized = target.toAbsolutePath().normalize();
+        jobs.add(new Job(source, targets.add(normalized) ? target : null));
+    }
+
+    /**
+     * Compiles one file, turning any failure into a report.
+     * @param source The file to compile.
+     * @param target The file to write, or null if it clashes with an earlier source.
+     * @return The report for the file.
+     */
+    private FileReport compileFile(Path source, Path target) {
+        long start = System.nanoTime();
+        if (target == null) {
+            return new FileReport(source, null, 0, 0, "Target clashes with an earlier source of the same name");
+        }
+
+        try {
+            Path parent = target.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            int tokens = Main.compile(source.toString(), target.toString(), cache, encoding, charset);
+            return new FileReport(source, target, tokens, System.nanoTime() - start, null);
+        } catch (IOException | RuntimeException e) {
+            String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            return new FileReport(source, target, 0, System.nanoTime() - start, message);
+        }
+    }
+}
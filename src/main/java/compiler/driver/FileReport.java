@@ -0,0 +1,90 @@
+package compiler.driver;
+
+import java.nio.file.Path;
+
+/**
+ * The outcome of compiling one source file.
+ */
+public final class FileReport {
+    private final Path source; // The file that was compiled
+    private final Path target; // The file that was written
+    private final int tokens; // The number of tokens written, excluding EOF
+    private final long nanos; // Wall time spent on the file
+    private final String error; // Why the file failed, or null if it succeeded
+
+    /**
+     * Constructs a new FileReport.
+     * @param source The file that was compiled.
+     * @param target The file that was written.
+     * @param tokens The number of tokens written.
+     * @param nanos The wall time spent on the file.
+     * @param error Why the file failed, or null if it succeeded.
+     */
+    public FileReport(Path source, Path target, int tokens, long nanos, String error) {
+        this.source = source;
+        this.target = target;
+        this.tokens = tokens;
+        this.nanos = nanos;
+        this.error = error;
+    }
+
+    /**
+     * Gets the file that was compiled.
+     * @return The source path.
+     */
+    public Path getSource() {
+        return source;
+    }
+
+    /**
+     * Gets the file that was written.
+     * @return The target path.
+     */
+    public Path getTarget() {
+        return target;
+    }
+
+    /**
+     * Gets the number of tokens written.
+     * @return The token count.
+     */
+    public int getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Gets the wall time spent on the file.
+     * @return The time in nanoseconds.
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Gets why the file failed.
+     * @return The error message, or null if the file compiled.
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Checks whether the file compiled.
+     * @return True if there was no error.
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * Returns a one-line summary of the report.
+     * @return A string representation of the report.
+     */
+    @Override
+    public String toString() {
+        if (isSuccess()) {
+            return "OK " + source + " -> " + target + " | Tokens: " + tokens + " | Time: " + nanos / 1_000_000 + " ms";
+        }
+        return "FAILED " + source + " | Error: " + error;
+    }
+}
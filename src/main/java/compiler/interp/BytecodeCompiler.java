@@ -0,0 +1,874 @@
+package compiler.interp;
+
+import compiler.codegen.CodegenException;
+import compiler.parser.Ast;
+import compiler.parser.NodeKind;
+import compiler.scanner.TokenBuffer;
+import compiler.scanner.TokenType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Compiles an Ast into a Program for the Interpreter.
+ *
+ * The program means what the C backend's translation means: every value is a long, functions are bound by
+ * top-level lets, top-level lets and inputs are globals, and a let assigns to a visible variable or declares
+ * a new one in its block. Locals get frame slots, which are reused once their block ends. Comparisons that
+ * decide a branch compile to a single compare-and-jump, and statements that discard their value do not
+ * push it. Expressions are compiled with an explicit stack, so deep nesting does not use the Java stack.
+ */
+public final class BytecodeCompiler {
+    private static final int NOT_STARTED = -2;
+    private static final int NO_PATCH = -1;
+
+    private final Ast ast; // The tree being compiled
+    private final TokenBuffer tokens; // The tokens the tree refers to
+
+    private int[] code = new int[256];
+    private int pc;
+    private long[] constants = new long[16];
+    private int constantCount;
+    private final List<byte[]> strings = new ArrayList<>();
+
+    private final BitSet globals = new BitSet(); // Symbols of the global variables
+    private final BitSet functions = new BitSet(); // Symbols of the functions
+    private final BitSet locals = new BitSet(); // Symbols of the visible locals and parameters
+    private int[] globalIndices; // The global index of each global symbol
+    private int[] functionIndices; // The function index of each function symbol
+    private int[] slots; // The frame slot of each visible local symbol
+    private int globalCount;
+    private int[] arities = new int[16]; // The parameter count of each function
+    private int functionCount;
+
+    // The locals of the open scopes, and where each scope starts in declared and in the frame
+    private int[] declared = new int[16];
+    private int declaredSize;
+    private int[] scopeStarts = new int[16];
+    private int[] scopeSlots = new int[16];
+    private int scopes;
+    private int nextSlot; // The first free frame slot
+    private int maxSlots; // The frame size of the function being compiled
+
+    private int depth; // The operand stack depth at the current pc
+    private int maxDepth; // The deepest the operand stack gets in the function being compiled
+
+    // Per enclosing loop, the chains of jumps waiting for its break and continue targets
+    private int[] breakChains = new int[8];
+    private int[] continueChains = new int[8];
+    private int loops;
+
+    // The expression walk: per pending node, its next child to compile
+    private int[] stackNodes = new int[16];
+    private int[] stackNext = new int[16];
+    private int stackSize;
+
+    /**
+     * Constructs a new BytecodeCompiler.
+     * @param ast The tree to compile, whose identifier tokens carry symbol ids.
+     */
+    public BytecodeCompiler(Ast ast) {
+        this.ast = ast;
+        this.tokens = ast.tokens();
+        int symbols = 0;
+        for (int token = 0; token < tokens.size(); token++) {
+            symbols = Math.max(symbols, tokens.symbol(token) + 1);
+        }
+        globalIndices = new int[symbols];
+        functionIndices = new int[symbols];
+        slots = new int[symbols];
+    }
+
+    /**
+     * Compiles a tree into a Program.
+     * @param ast The tree to compile.
+     * @return The program.
+     * @throws CodegenException If the program uses a feature the interpreter does not support.
+     */
+    public static Program compile(Ast ast) throws CodegenException {
+        return new BytecodeCompiler(ast).compile();
+    }
+
+    /**
+     * Compiles the tree into a Program.
+     * @return The program.
+     * @throws CodegenException If the program uses a feature the interpreter does not support.
+     */
+    public Program compile() throws CodegenException {
+        int root = ast.root();
+        for (int node = ast.firstChild(root); node != Ast.NO_NODE; node = ast.nextSibling(node)) {
+            int name = Ast.NO_TOKEN;
+            if (ast.kind(node) == NodeKind.LET && ast.kind(ast.firstChild(node)) != NodeKind.FUNCTION) {
+                name = ast.token(node);
+            } else if (ast.kind(node) == NodeKind.INPUT) {
+                name = ast.token(ast.firstChild(node));
+            }
+            if (name != Ast.NO_TOKEN && !globals.get(tokens.symbol(name))) {
+                globals.set(tokens.symbol(name));
+                globalIndices[tokens.symbol(name)] = globalCount++;
+            }
+        }
+        for (int node = ast.firstChild(root); node != Ast.NO_NODE; node = ast.nextSibling(node)) {
+            if (isFunctionBinding(node)) {
+                int name = ast.token(node);
+                int symbol = tokens.symbol(name);
+                if (globals.get(symbol) || functions.get(symbol)) {
+                    throw error(name, "'" + tokens.literal(name) + "' is defined more than once");
+                }
+                if (functionCount == arities.length) {
+                    arities = Arrays.copyOf(arities, functionCount * 2);
+                }
+                functions.set(symbol);
+                functionIndices[symbol] = functionCount;
+                arities[functionCount++] = ast.childCount(ast.firstChild(node)) - 1;
+            }
+        }
+
+        // Main comes first, so it starts at pc 0
+        startFunction();
+        for (int node = ast.firstChild(root); node != Ast.NO_NODE; node = ast.nextSibling(node)) {
+            if (!isFunctionBinding(node)) {
+                statement(node);
+            }
+        }
+        popScope();
+        emit(Opcodes.HALT);
+        int mainFrameSize = maxSlots;
+        int mainMaxStack = maxDepth;
+
+        int[] entries = new int[functionCount];
+        int[] frameSizes = new int[functionCount];
+        int[] maxStacks = new int[functionCount];
+        for (int node = ast.firstChild(root); node != Ast.NO_NODE; node = ast.nextSibling(node)) {
+            if (isFunctionBinding(node)) {
+                int function = functionIndices[tokens.symbol(ast.token(node))];
+                entries[function] = pc;
+                startFunction();
+                int child = ast.firstChild(ast.firstChild(node));
+                for (; ast.kind(child) == NodeKind.PARAMETER; child = ast.nextSibling(child)) {
+                    declare(ast.token(child));
+                }
+                for (int statement = ast.firstChild(child); statement != Ast.NO_NODE; statement = ast.nextSibling(statement)) {
+                    statement(statement);
+                }
+                popScope();
+                emit(Opcodes.PUSH, 0);
+                emit(Opcodes.RETURN);
+                frameSizes[function] = maxSlots;
+                maxStacks[function] = maxDepth;
+            }
+        }
+
+        byte[][] stringTable = strings.toArray(new byte[0][]);
+        return new Program(Arrays.copyOf(code, pc), Arrays.copyOf(constants, constantCount), stringTable, entries,
+                Arrays.copyOf(arities, functionCount), frameSizes, maxStacks, mainFrameSize, mainMaxStack,
+                globalCount);
+    }
+
+    /**
+     * Checks if a top-level statement binds a function literal.
+     * @param node The statement.
+     * @return True if it is a let whose value is a function literal.
+     */
+    private boolean isFunctionBinding(int node) {
+        return ast.kind(node) == NodeKind.LET && ast.kind(ast.firstChild(node)) == NodeKind.FUNCTION;
+    }
+
+    /**
+     * Resets the frame and stack bookkeeping for the next function and opens its outermost scope.
+     */
+    private void startFunction() {
+        nextSlot = 0;
+        maxSlots = 0;
+        depth = 0;
+        maxDepth = 0;
+        pushScope();
+    }
+
+    /**
+     * Compiles a statement.
+     * @param node The statement.
+     * @throws CodegenException If the statement uses a feature the interpreter does not support.
+     */
+    private void statement(int node) throws CodegenException {
+        int token = ast.token(node);
+        switch (ast.kind(node)) {
+            case BLOCK:
+                pushScope();
+                for (int child = ast.firstChild(node); child != Ast.NO_NODE; child = ast.nextSibling(child)) {
+                    statement(child);
+                }
+                popScope();
+                break;
+            case LET:
+                binding(node);
+                break;
+            case WHILE: {
+                int condition = ast.firstChild(node);
+                loop(condition, ast.nextSibling(condition), Ast.NO_NODE);
+                break;
+            }
+            case FOR: {
+                int init = ast.firstChild(node);
+                int condition = ast.nextSibling(init);
+                int update = ast.nextSibling(condition);
+                pushScope();
+                if (ast.kind(init) == NodeKind.LET) {
+                    binding(init);
+                } else if (ast.kind(init) != NodeKind.EMPTY) {
+                    effect(init);
+                }
+                loop(condition, ast.nextSibling(update), update);
+                popScope();
+                break;
+            }
+            case IF: {
+                int condition = ast.firstChild(node);
+                int then = ast.nextSibling(condition);
+                int otherwise = ast.nextSibling(then);
+                int skip = branchIfFalse(condition);
+                scoped(then);
+                if (otherwise != Ast.NO_NODE) {
+                    emit(Opcodes.JUMP, NO_PATCH);
+                    int end = pc - 1;
+                    patch(skip, pc);
+                    scoped(otherwise);
+                    patch(end, pc);
+                } else {
+                    patch(skip, pc);
+                }
+                break;
+            }
+            case PRINT:
+                for (int argument = ast.firstChild(node); argument != Ast.NO_NODE; argument = ast.nextSibling(argument)) {
+                    if (argument != ast.firstChild(node)) {
+                        emit(Opcodes.PRINT_SPACE);
+                    }
+                    if (ast.kind(argument) == NodeKind.STRING) {
+                        int start = tokens.start(ast.token(argument));
+                        String text = new String(tokens.source(), start, tokens.length(ast.token(argument)));
+                        strings.add(text.getBytes(StandardCharsets.UTF_8));
+                        emit(Opcodes.PRINT_STRING, strings.size() - 1);
+                    } else {
+                        expression(argument);
+                        emit(Opcodes.PRINT);
+                    }
+                }
+                emit(Opcodes.PRINT_NEWLINE);
+                break;
+            case INPUT: {
+                int target = ast.token(ast.firstChild(node));
+                if (!isVisible(target)) {
+                    declare(target);
+                }
+                int symbol = tokens.symbol(target);
+                if (locals.get(symbol)) {
+                    emit(Opcodes.INPUT, slots[symbol]);
+                } else {
+                    emit(Opcodes.INPUT_GLOBAL, globalIndices[symbol]);
+                }
+                break;
+            }
+            case RETURN:
+                if (ast.firstChild(node) == Ast.NO_NODE) {
+                    emit(Opcodes.PUSH, 0);
+                } else {
+                    expression(ast.firstChild(node));
+                }
+                emit(Opcodes.RETURN);
+                break;
+            case BREAK:
+            case CONTINUE:
+                if (loops == 0) {
+                    throw error(token, "'" + tokens.literal(token) + "' outside a loop");
+                }
+                int[] chains = ast.kind(node) == NodeKind.BREAK ? breakChains : continueChains;
+                emit(Opcodes.JUMP, chains[loops - 1]);
+                chains[loops - 1] = pc - 1;
+                break;
+            case EXPRESSION:
+                effect(ast.firstChild(node));
+                break;
+            default:
+                throw error(token, "Unexpected " + ast.kind(node) + " statement");
+        }
+    }
+
+    /**
+     * Compiles a statement in a scope of its own, as a loop body or if branch has.
+     * @param node The statement.
+     * @throws CodegenException If the statement uses a feature the interpreter does not support.
+     */
+    private void scoped(int node) throws CodegenException {
+        pushScope();
+        statement(node);
+        popScope();
+    }
+
+    /**
+     * Compiles a let as a store to the visible variable, or to a new local.
+     * @param let The LET node.
+     * @throws CodegenException If the value uses a feature the interpreter does not support.
+     */
+    private void binding(int let) throws CodegenException {
+        int name = ast.token(let);
+        int value = ast.firstChild(let);
+        if (ast.kind(value) == NodeKind.FUNCTION) {
+            throw error(ast.token(value), "Functions can only be bound by a top-level let");
+        }
+        expression(value);
+        if (!isVisible(name)) {
+            declare(name);
+        }
+        store(name);
+    }
+
+    /**
+     * Compiles an expression whose value is not used.
+     * Assignments store without keeping a copy, and '++' and '--' on a variable become an INC.
+     * @param node The expression.
+     * @throws CodegenException If the expression uses a feature the interpreter does not support.
+     */
+    private void effect(int node) throws CodegenException {
+        NodeKind kind = ast.kind(node);
+        if (kind == NodeKind.ASSIGN) {
+            int target = ast.firstChild(node);
+            expression(ast.nextSibling(target));
+            store(ast.token(target));
+            return;
+        }
+        if ((kind == NodeKind.UNARY || kind == NodeKind.POSTFIX) && ast.kind(ast.firstChild(node)) == NodeKind.IDENTIFIER) {
+            TokenType operator = tokens.type(ast.token(node));
+            if (operator == TokenType.INCRE || operator == TokenType.DECRE) {
+                int variable = ast.token(ast.firstChild(node));
+                int symbol = symbol(variable);
+                int delta = operator == TokenType.INCRE ? 1 : -1;
+                if (locals.get(symbol)) {
+                    emit(Opcodes.INC, slots[symbol], delta);
+                    return;
+                } else if (globals.get(symbol)) {
+                    emit(Opcodes.INC_GLOBAL, globalIndices[symbol], delta);
+                    return;
+                }
+                load(variable); // not a variable, so this throws
+            }
+        }
+        expression(node);
+        emit(Opcodes.POP);
+    }
+
+    /**
+     * Compiles a loop with its condition at the bottom, so each iteration takes a single conditional jump.
+     * The loop is entered by a jump to the condition, and continue jumps to the update. The body starts with
+     * a LOOP, which the back-edge jumps to.
+     * @param condition The condition, EMPTY for none.
+     * @param body The body.
+     * @param update The FOR update, EMPTY or NO_NODE for none.
+     * @throws CodegenException If the loop uses a feature the interpreter does not support.
+     */
+    private void loop(int condition, int body, int update) throws CodegenException {
+        emit(Opcodes.JUMP, NO_PATCH);
+        int entry = pc - 1;
+        int top = pc;
+        emit(Opcodes.LOOP);
+        pushLoop();
+        scoped(body);
+        patchChain(continueChains[loops - 1], pc);
+        if (update != Ast.NO_NODE && ast.kind(update) != NodeKind.EMPTY) {
+            effect(update);
+        }
+        patch(entry, pc);
+        branchIfTrue(condition, top);
+        patchChain(breakChains[loops - 1], pc);
+        loops--;
+    }
+
+    /**
+     * Compiles a condition followed by a jump taken when it is true.
+     * A comparison jumps with the compare-and-jump of the opposite comparison.
+     * @param condition The condition, EMPTY for one that is always true.
+     * @param target The pc to jump to.
+     * @throws CodegenException If the condition uses a feature the interpreter does not support.
+     */
+    private void branchIfTrue(int condition, int target) throws CodegenException {
+        NodeKind kind = ast.kind(condition);
+        if (kind == NodeKind.EMPTY || (kind == NodeKind.NUMBER || kind == NodeKind.BOOLEAN) && value(condition) != 0) {
+            emit(Opcodes.JUMP, target);
+            return;
+        }
+        int jump = Opcodes.JUMP_IF_TRUE;
+        if (kind == NodeKind.BINARY) {
+            jump = conditionalJump(opposite(tokens.type(ast.token(condition))));
+            jump = jump == Opcodes.JUMP_IF_FALSE ? Opcodes.JUMP_IF_TRUE : jump;
+        }
+        if (jump == Opcodes.JUMP_IF_TRUE) {
+            expression(condition);
+        } else {
+            expression(ast.firstChild(condition));
+            expression(ast.nextSibling(ast.firstChild(condition)));
+        }
+        emit(jump, target);
+    }
+
+    /**
+     * Gets the comparison that is true exactly when another is false.
+     * @param operator The operator of a binary expression.
+     * @return The opposite comparison, or the operator itself if it is not a comparison.
+     */
+    private static TokenType opposite(TokenType operator) {
+        switch (operator) {
+            case EQ:
+                return TokenType.NOTEQ;
+            case NOTEQ:
+                return TokenType.EQ;
+            case LT:
+                return TokenType.GTEQ;
+            case GT:
+                return TokenType.LTEQ;
+            case LTEQ:
+                return TokenType.GT;
+            case GTEQ:
+                return TokenType.LT;
+            default:
+                return operator;
+        }
+    }
+
+    /**
+     * Compiles a condition followed by a jump taken when it is false.
+     * @param condition The condition.
+     * @return The position of the jump's target operand, or NO_PATCH if the condition is constantly true.
+     * @throws CodegenException If the condition uses a feature the interpreter does not support.
+     */
+    private int branchIfFalse(int condition) throws CodegenException {
+        NodeKind kind = ast.kind(condition);
+        if ((kind == NodeKind.NUMBER || kind == NodeKind.BOOLEAN) && value(condition) != 0) {
+            return NO_PATCH;
+        }
+        int jump = Opcodes.JUMP_IF_FALSE;
+        if (kind == NodeKind.BINARY) {
+            jump = conditionalJump(tokens.type(ast.token(condition)));
+        }
+        if (jump == Opcodes.JUMP_IF_FALSE) {
+            expression(condition);
+        } else {
+            expression(ast.firstChild(condition));
+            expression(ast.nextSibling(ast.firstChild(condition)));
+        }
+        emit(jump, NO_PATCH);
+        return pc - 1;
+    }
+
+    /**
+     * Gets the compare-and-jump that jumps when a comparison is false.
+     * @param operator The operator of a binary expression.
+     * @return The jump opcode, or JUMP_IF_FALSE if the operator is not a comparison.
+     */
+    private static int conditionalJump(TokenType operator) {
+        switch (operator) {
+            case EQ:
+                return Opcodes.JUMP_IF_NOT_EQ;
+            case NOTEQ:
+                return Opcodes.JUMP_IF_NOT_NE;
+            case LT:
+                return Opcodes.JUMP_IF_NOT_LT;
+            case GT:
+                return Opcodes.JUMP_IF_NOT_GT;
+            case LTEQ:
+                return Opcodes.JUMP_IF_NOT_LE;
+            case GTEQ:
+                return Opcodes.JUMP_IF_NOT_GE;
+            default:
+                return Opcodes.JUMP_IF_FALSE;
+        }
+    }
+
+    /**
+     * Compiles an expression that leaves its value on the stack, walking it with an explicit stack.
+     * @param root The expression.
+     * @throws CodegenException If the expression uses a feature the interpreter does not support.
+     */
+    private void expression(int root) throws CodegenException {
+        int base = stackSize;
+        push(root);
+        while (stackSize > base) {
+            int top = stackSize - 1;
+            int node = stackNodes[top];
+            if (stackNext[top] == NOT_STARTED) {
+                stackNext[top] = open(node);
+            }
+            int child = stackNext[top];
+            if (child == Ast.NO_NODE) {
+                close(node);
+                stackSize--;
+                continue;
+            }
+            stackNext[top] = ast.nextSibling(child);
+            push(child);
+        }
+    }
+
+    /**
+     * Pushes a node onto the expression walk.
+     * @param node The node.
+     */
+    private void push(int node) {
+        if (stackSize == stackNodes.length) {
+            stackNodes = Arrays.copyOf(stackNodes, stackSize * 2);
+            stackNext = Arrays.copyOf(stackNext, stackSize * 2);
+        }
+        stackNodes[stackSize] = node;
+        stackNext[stackSize] = NOT_STARTED;
+        stackSize++;
+    }
+
+    /**
+     * Compiles what comes before an expression node's operands.
+     * @param node The node.
+     * @return The first operand to compile, or NO_NODE.
+     * @throws CodegenException If the node uses a feature the interpreter does not support.
+     */
+    private int open(int node) throws CodegenException {
+        int token = ast.token(node);
+        switch (ast.kind(node)) {
+            case IDENTIFIER:
+                load(token);
+                return Ast.NO_NODE;
+            case NUMBER:
+            case BOOLEAN:
+                long value = value(node);
+                if (value == (int) value) {
+                    emit(Opcodes.PUSH, (int) value);
+                } else {
+                    if (constantCount == constants.length) {
+                        constants = Arrays.copyOf(constants, constantCount * 2);
+                    }
+                    constants[constantCount] = value;
+                    emit(Opcodes.CONST, constantCount++);
+                }
+                return Ast.NO_NODE;
+            case BINARY:
+                return ast.firstChild(node);
+            case UNARY:
+            case POSTFIX:
+                TokenType operator = tokens.type(token);
+                if (operator == TokenType.MINUS) {
+                    return ast.firstChild(node);
+                }
+                int operand = ast.firstChild(node);
+                if (ast.kind(operand) != NodeKind.IDENTIFIER) {
+                    throw error(token, "Only a variable can be incremented or decremented");
+                }
+                load(ast.token(operand));
+                if (ast.kind(node) == NodeKind.POSTFIX) {
+                    emit(Opcodes.DUP);
+                }
+                emit(Opcodes.PUSH, 1);
+                emit(operator == TokenType.INCRE ? Opcodes.ADD : Opcodes.SUB);
+                if (ast.kind(node) == NodeKind.UNARY) {
+                    emit(Opcodes.DUP);
+                }
+                store(ast.token(operand));
+                return Ast.NO_NODE;
+            case ASSIGN:
+                return ast.nextSibling(ast.firstChild(node));
+            case CALL:
+                int callee = ast.firstChild(node);
+                if (ast.kind(callee) != NodeKind.IDENTIFIER || !isFunction(ast.token(callee))) {
+                    throw error(token, "Only a function bound by a top-level let can be called");
+                }
+                int arguments = ast.childCount(node) - 1;
+                int expected = arities[functionIndices[symbol(ast.token(callee))]];
+                if (arguments != expected) {
+                    throw error(token, "'" + tokens.literal(ast.token(callee)) + "' takes " + expected
+                            + " arguments but is given " + arguments);
+                }
+                return ast.nextSibling(callee);
+            case STRING:
+                throw error(token, "A string can only be printed");
+            case FUNCTION:
+                throw error(token, "Functions can only be bound by a top-level let");
+            default:
+                throw error(token, "Unexpected " + ast.kind(node) + " expression");
+        }
+    }
+
+    /**
+     * Compiles what comes after an expression node's operands.
+     * @param node The node.
+     * @throws CodegenException If an assignment's target is not a visible variable.
+     */
+    private void close(int node) throws CodegenException {
+        switch (ast.kind(node)) {
+            case BINARY:
+                emit(binaryOpcode(tokens.type(ast.token(node))));
+                break;
+            case UNARY:
+                if (tokens.type(ast.token(node)) == TokenType.MINUS) {
+                    emit(Opcodes.NEG);
+                }
+                break;
+            case ASSIGN:
+                emit(Opcodes.DUP);
+                store(ast.token(ast.firstChild(node)));
+                break;
+            case CALL:
+                int callee = ast.firstChild(node);
+                int arguments = ast.childCount(node) - 1;
+                emit(Opcodes.CALL, functionIndices[symbol(ast.token(callee))], arguments);
+                depth += 1 - arguments;
+                maxDepth = Math.max(maxDepth, depth);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Gets the opcode of a binary operator.
+     * @param operator The operator.
+     * @return The opcode.
+     */
+    private static int binaryOpcode(TokenType operator) {
+        switch (operator) {
+            case PLUS:
+                return Opcodes.ADD;
+            case MINUS:
+                return Opcodes.SUB;
+            case EQ:
+                return Opcodes.EQ;
+            case NOTEQ:
+                return Opcodes.NE;
+            case LT:
+                return Opcodes.LT;
+            case GT:
+                return Opcodes.GT;
+            case LTEQ:
+                return Opcodes.LE;
+            case GTEQ:
+                return Opcodes.GE;
+            default:
+                throw new IllegalArgumentException("Not a binary operator: " + operator);
+        }
+    }
+
+    /**
+     * Gets the value of a NUMBER or BOOLEAN node.
+     * @param node The node.
+     * @return The value.
+     * @throws CodegenException If the number does not fit in a long.
+     */
+    private long value(int node) throws CodegenException {
+        try {
+            return ast.value(node);
+        } catch (ArithmeticException e) {
+            throw error(ast.token(node), "The number " + ast.literal(node) + " does not fit in 64 bits");
+        }
+    }
+
+    /**
+     * Emits a load of a variable.
+     * @param token The identifier token.
+     * @throws CodegenException If the name is not a visible variable.
+     */
+    private void load(int token) throws CodegenException {
+        int symbol = symbol(token);
+        if (locals.get(symbol)) {
+            emit(Opcodes.LOAD, slots[symbol]);
+        } else if (globals.get(symbol)) {
+            emit(Opcodes.LOAD_GLOBAL, globalIndices[symbol]);
+        } else if (functions.get(symbol)) {
+            throw error(token, "The function '" + tokens.literal(token) + "' can only be called");
+        } else {
+            throw error(token, "'" + tokens.literal(token) + "' is not defined");
+        }
+    }
+
+    /**
+     * Emits a store to a variable.
+     * @param token The identifier token.
+     * @throws CodegenException If the name is not a visible variable.
+     */
+    private void store(int token) throws CodegenException {
+        int symbol = symbol(token);
+        if (locals.get(symbol)) {
+            emit(Opcodes.STORE, slots[symbol]);
+        } else if (globals.get(symbol)) {
+            emit(Opcodes.STORE_GLOBAL, globalIndices[symbol]);
+        } else {
+            throw error(token, "'" + tokens.literal(token) + "' is not defined");
+        }
+    }
+
+    /**
+     * Emits an instruction without operands.
+     * @param opcode The opcode.
+     */
+    private void emit(int opcode) {
+        ensureCode(1);
+        code[pc++] = opcode;
+        adjustDepth(opcode);
+    }
+
+    /**
+     * Emits an instruction with one operand.
+     * @param opcode The opcode.
+     * @param operand The operand.
+     */
+    private void emit(int opcode, int operand) {
+        ensureCode(2);
+        code[pc++] = opcode;
+        code[pc++] = operand;
+        adjustDepth(opcode);
+    }
+
+    /**
+     * Emits an instruction with two operands.
+     * @param opcode The opcode.
+     * @param first The first operand.
+     * @param second The second operand.
+     */
+    private void emit(int opcode, int first, int second) {
+        ensureCode(3);
+        code[pc++] = opcode;
+        code[pc++] = first;
+        code[pc++] = second;
+        adjustDepth(opcode);
+    }
+
+    /**
+     * Tracks the operand stack depth after an instruction.
+     * @param opcode The opcode just emitted.
+     */
+    private void adjustDepth(int opcode) {
+        depth += Opcodes.STACK_EFFECTS[opcode];
+        maxDepth = Math.max(maxDepth, depth);
+    }
+
+    /**
+     * Makes room for more code.
+     * @param count The number of ints about to be emitted.
+     */
+    private void ensureCode(int count) {
+        if (pc + count > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, pc + count));
+        }
+    }
+
+    /**
+     * Points a jump's target operand at a pc.
+     * @param operand The position of the operand, or NO_PATCH.
+     * @param target The pc to jump to.
+     */
+    private void patch(int operand, int target) {
+        if (operand != NO_PATCH) {
+            code[operand] = target;
+        }
+    }
+
+    /**
+     * Points a chain of jumps at a pc. Each jump's operand holds the position of the previous one's.
+     * @param operand The position of the last jump's operand, or NO_PATCH.
+     * @param target The pc to jump to.
+     */
+    private void patchChain(int operand, int target) {
+        while (operand != NO_PATCH) {
+            int previous = code[operand];
+            code[operand] = target;
+            operand = previous;
+        }
+    }
+
+    /**
+     * Enters a loop, with empty break and continue chains.
+     */
+    private void pushLoop() {
+        if (loops == breakChains.length) {
+            breakChains = Arrays.copyOf(breakChains, loops * 2);
+            continueChains = Arrays.copyOf(continueChains, loops * 2);
+        }
+        breakChains[loops] = NO_PATCH;
+        continueChains[loops] = NO_PATCH;
+        loops++;
+    }
+
+    /**
+     * Gets the symbol id of an identifier token.
+     * @param token The token.
+     * @return The symbol id.
+     */
+    private int symbol(int token) {
+        return tokens.symbol(token);
+    }
+
+    /**
+     * Checks if a variable is visible where the current statement is.
+     * @param token The identifier token.
+     * @return True if it is a global or a visible local or parameter.
+     */
+    private boolean isVisible(int token) {
+        int symbol = symbol(token);
+        return globals.get(symbol) || locals.get(symbol);
+    }
+
+    /**
+     * Checks if a name refers to a function where the current statement is.
+     * @param token The identifier token.
+     * @return True if it names a function that no local or parameter hides.
+     */
+    private boolean isFunction(int token) {
+        int symbol = symbol(token);
+        return functions.get(symbol) && !locals.get(symbol);
+    }
+
+    /**
+     * Declares a local in the innermost scope, giving it the next free frame slot.
+     * @param token The identifier token.
+     */
+    private void declare(int token) {
+        if (declaredSize == declared.length) {
+            declared = Arrays.copyOf(declared, declaredSize * 2);
+        }
+        int symbol = symbol(token);
+        declared[declaredSize++] = symbol;
+        locals.set(symbol);
+        slots[symbol] = nextSlot++;
+        maxSlots = Math.max(maxSlots, nextSlot);
+    }
+
+    /**
+     * Opens a scope.
+     */
+    private void pushScope() {
+        if (scopes == scopeStarts.length) {
+            scopeStarts = Arrays.copyOf(scopeStarts, scopes * 2);
+            scopeSlots = Arrays.copyOf(scopeSlots, scopes * 2);
+        }
+        scopeStarts[scopes] = declaredSize;
+        scopeSlots[scopes++] = nextSlot;
+    }
+
+    /**
+     * Closes the innermost scope, hiding its locals and freeing their slots.
+     */
+    private void popScope() {
+        scopes--;
+        while (declaredSize > scopeStarts[scopes]) {
+            locals.clear(declared[--declaredSize]);
+        }
+        nextSlot = scopeSlots[scopes];
+    }
+
+    /**
+     * Creates an error at a token.
+     * @param token The token.
+     * @param message The error message.
+     * @return The exception.
+     */
+    private CodegenException error(int token, String message) {
+        return new CodegenException(message, tokens.row(token), tokens.col(token));
+    }
+}
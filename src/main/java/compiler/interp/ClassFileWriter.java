@@ -0,0 +1,271 @@
+package compiler.interp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes a class file with just what JvmCompiler needs: a constant pool, methods with a Code attribute and
+ * an optional StackMapTable, and no fields or other attributes. The class is final, extends Object and
+ * implements one interface.
+ */
+final class ClassFileWriter {
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int VERSION = 52; // Java 8, the first version whose verifier only checks stack maps
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> poolIndices = new HashMap<>(); // Each constant's index, by a key
+    private int poolSize = 1; // The next constant's index; index 0 is unused
+
+    private final ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+    private final DataOutputStream methods = new DataOutputStream(methodBytes);
+    private int methodCount;
+
+    private final int thisClass;
+    private final int superClass;
+    private final int interfaceClass;
+
+    /**
+     * Constructs a new ClassFileWriter.
+     * @param name The internal name of the class, such as "compiler/interp/Compiled".
+     * @param interfaceName The internal name of the interface it implements.
+     */
+    ClassFileWriter(String name, String interfaceName) {
+        thisClass = classRef(name);
+        superClass = classRef("java/lang/Object");
+        interfaceClass = classRef(interfaceName);
+    }
+
+    /**
+     * Gets the index of the class being written.
+     * @return Its CONSTANT_Class index.
+     */
+    int thisClass() {
+        return thisClass;
+    }
+
+    /**
+     * Gets the number of constant pool entries so far.
+     * @return The count, which must stay below 65536 for the class to be valid.
+     */
+    int constantCount() {
+        return poolSize;
+    }
+
+    /**
+     * Gets the index of a CONSTANT_Utf8, adding it if needed.
+     * @param value The string, which is written as modified UTF-8.
+     * @return Its index.
+     */
+    int utf8(String value) {
+        Integer index = poolIndices.get("U" + value);
+        if (index != null) {
+            return index;
+        }
+        try {
+            pool.writeByte(CONSTANT_UTF8);
+            pool.writeUTF(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return add("U" + value, 1);
+    }
+
+    /**
+     * Gets the index of a CONSTANT_Class, adding it if needed.
+     * @param name The internal name of the class, or the descriptor of an array class.
+     * @return Its index.
+     */
+    int classRef(String name) {
+        Integer index = poolIndices.get("C" + name);
+        if (index != null) {
+            return index;
+        }
+        int nameIndex = utf8(name);
+        write(CONSTANT_CLASS, nameIndex);
+        return add("C" + name, 1);
+    }
+
+    /**
+     * Gets the index of a CONSTANT_Methodref, adding it if needed.
+     * @param owner The CONSTANT_Class index of the class declaring the method.
+     * @param name The method's name.
+     * @param descriptor The method's descriptor.
+     * @return Its index.
+     */
+    int methodRef(int owner, String name, String descriptor) {
+        String key = "M" + owner + " " + name + " " + descriptor;
+        Integer index = poolIndices.get(key);
+        if (index != null) {
+            return index;
+        }
+        String nameAndTypeKey = "N" + name + " " + descriptor;
+        Integer nameAndType = poolIndices.get(nameAndTypeKey);
+        if (nameAndType == null) {
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            write(CONSTANT_NAME_AND_TYPE, nameIndex, descriptorIndex);
+            nameAndType = add(nameAndTypeKey, 1);
+        }
+        write(CONSTANT_METHODREF, owner, nameAndType);
+        return add(key, 1);
+    }
+
+    /**
+     * Gets the index of a CONSTANT_Integer, adding it if needed.
+     * @param value The value.
+     * @return Its index.
+     */
+    int intConstant(int value) {
+        Integer index = poolIndices.get("I" + value);
+        if (index != null) {
+            return index;
+        }
+        try {
+            pool.writeByte(CONSTANT_INTEGER);
+            pool.writeInt(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return add("I" + value, 1);
+    }
+
+    /**
+     * Gets the index of a CONSTANT_Long, adding it if needed.
+     * @param value The value.
+     * @return Its index.
+     */
+    int longConstant(long value) {
+        Integer index = poolIndices.get("J" + value);
+        if (index != null) {
+            return index;
+        }
+        try {
+            pool.writeByte(CONSTANT_LONG);
+            pool.writeLong(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return add("J" + value, 2); // A long takes two constant pool entries
+    }
+
+    /**
+     * Adds a method.
+     * @param access The access flags.
+     * @param name The method's name.
+     * @param descriptor The method's descriptor.
+     * @param code The bytecode.
+     * @param codeLength The number of bytes of code to use.
+     * @param maxStack The deepest the operand stack gets, in slots.
+     * @param maxLocals The number of local variable slots, parameters included.
+     * @param stackMap The entries of the StackMapTable attribute, or null to leave it out.
+     * @param stackMapLength The number of bytes of entries to use.
+     * @param frameCount The number of entries.
+     */
+    void method(int access, String name, String descriptor, byte[] code, int codeLength, int maxStack, int maxLocals,
+            byte[] stackMap, int stackMapLength, int frameCount) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int codeIndex = utf8("Code");
+        int stackMapIndex = stackMap == null ? 0 : utf8("StackMapTable");
+        try {
+            methods.writeShort(access);
+            methods.writeShort(nameIndex);
+            methods.writeShort(descriptorIndex);
+            methods.writeShort(1);
+            methods.writeShort(codeIndex);
+            int stackMapSize = stackMap == null ? 0 : 8 + stackMapLength;
+            methods.writeInt(12 + codeLength + stackMapSize);
+            methods.writeShort(maxStack);
+            methods.writeShort(maxLocals);
+            methods.writeInt(codeLength);
+            methods.write(code, 0, codeLength);
+            methods.writeShort(0); // No exception handlers
+            if (stackMap == null) {
+                methods.writeShort(0);
+            } else {
+                methods.writeShort(1);
+                methods.writeShort(stackMapIndex);
+                methods.writeInt(2 + stackMapLength);
+                methods.writeShort(frameCount);
+                methods.write(stackMap, 0, stackMapLength);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        methodCount++;
+    }
+
+    /**
+     * Writes out the class file.
+     * @return Its bytes.
+     */
+    byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(poolBytes.size() + methodBytes.size() + 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolSize);
+            poolBytes.writeTo(out);
+            out.writeShort(ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(interfaceClass);
+            out.writeShort(0); // No fields
+            out.writeShort(methodCount);
+            methodBytes.writeTo(out);
+            out.writeShort(0); // No class attributes
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a constant made of a tag and u2 indices.
+     * @param tag The constant's tag.
+     * @param indices The indices it refers to.
+     */
+    private void write(int tag, int... indices) {
+        try {
+            pool.writeByte(tag);
+            for (int index : indices) {
+                pool.writeShort(index);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Records the constant just written.
+     * @param key The key it is found by.
+     * @param entries The number of constant pool entries it takes.
+     * @return Its index.
+     */
+    private int add(String key, int entries) {
+        int index = poolSize;
+        poolIndices.put(key, index);
+        poolSize += entries;
+        return index;
+    }
+}
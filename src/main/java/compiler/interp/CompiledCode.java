@@ -0,0 +1,20 @@
+package compiler.interp;
+
+import java.io.IOException;
+
+/**
+ * Code that JvmCompiler compiled to a JVM class, entered from the Interpreter with the frame it would
+ * otherwise have run.
+ */
+interface CompiledCode {
+    /**
+     * Runs the code until its function returns.
+     * @param interpreter The interpreter whose input and output print and input use.
+     * @param globals The global variables.
+     * @param stack The interpreter's stack.
+     * @param fp Where the frame starts in stack: the arguments of a call, or every local of a loop entry.
+     * @return The value the function returned.
+     * @throws IOException If reading input or writing output fails.
+     */
+    long run(Interpreter interpreter, long[] globals, long[] stack, int fp) throws IOException;
+}
@@ -0,0 +1,497 @@
+package compiler.interp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Runs a Program in a single dispatch loop over its int[] bytecode, with every value an unboxed long.
+ *
+ * print writes to a byte buffer that is flushed when full, before each input and when the program ends.
+ * input reads a decimal number the way C's scanf("%ld") does: it skips whitespace, and reads 0 and consumes
+ * nothing more when no number follows. An Interpreter can run any number of programs, one at a time.
+ *
+ * With a compile threshold, the Interpreter is the first tier of a tiered mode: it counts each function's
+ * calls and loop back-edges, and once a function reaches the threshold JvmCompiler compiles it to a JVM
+ * class. Later calls of the function run the compiled code, and a loop that reaches the threshold is
+ * entered in compiled code from the frame that is running it. A threshold of 0 compiles the whole program
+ * before running it. Compiled calls nest on the Java stack instead of the Interpreter's, so they are
+ * limited by its size rather than by the maximum depth.
+ */
+public final class Interpreter {
+    public static final int DEFAULT_MAX_DEPTH = 100_000;
+    public static final int NO_COMPILATION = -1;
+    public static final int DEFAULT_COMPILE_THRESHOLD = 1000;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final InputStream in; // Where input reads from
+    private final OutputStream out; // Where print writes to
+    private final int maxDepth; // The deepest calls may nest
+    private final int compileThreshold; // The calls and back-edges that make a function hot, or NO_COMPILATION
+
+    private final byte[] output = new byte[BUFFER_SIZE];
+    private int outputSize;
+    private final byte[] input = new byte[BUFFER_SIZE];
+    private int inputPos;
+    private int inputLimit;
+    private final byte[] digits = new byte[20]; // Scratch space for printing a number
+    private byte[][] strings; // The strings of the running program
+
+    /**
+     * Constructs a new Interpreter that allows DEFAULT_MAX_DEPTH nested calls.
+     * @param in Where input reads from.
+     * @param out Where print writes to.
+     */
+    public Interpreter(InputStream in, OutputStream out) {
+        this(in, out, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * Constructs a new Interpreter that never compiles.
+     * @param in Where input reads from.
+     * @param out Where print writes to.
+     * @param maxDepth The deepest calls may nest.
+     */
+    public Interpreter(InputStream in, OutputStream out, int maxDepth) {
+        this(in, out, maxDepth, NO_COMPILATION);
+    }
+
+    /**
+     * Constructs a new Interpreter.
+     * @param in Where input reads from.
+     * @param out Where print writes to.
+     * @param maxDepth The deepest calls may nest.
+     * @param compileThreshold The calls or loop back-edges after which a function is compiled to a JVM class,
+     * 0 to compile the whole program up front, or NO_COMPILATION to only interpret.
+     */
+    public Interpreter(InputStream in, OutputStream out, int maxDepth, int compileThreshold) {
+        this.in = in;
+        this.out = out;
+        this.maxDepth = maxDepth;
+        this.compileThreshold = compileThreshold;
+    }
+
+    /**
+     * Runs a program to the end of main.
+     * @param program The program.
+     * @return The value main returned, 0 if it ran off its end.
+     * @throws IOException If reading input or writing output fails.
+     * @throws InterpreterException If calls nest deeper than allowed.
+     */
+    public long run(Program program) throws IOException, InterpreterException {
+        strings = program.strings;
+        try {
+            if (compileThreshold == 0) {
+                CompiledCode compiled = new JvmCompiler(program).compileEntry(program.functionCount(), 0);
+                if (compiled != null) {
+                    return enter(compiled, new long[program.globals], new long[program.mainFrameSize], 0);
+                }
+            }
+            return execute(program);
+        } finally {
+            strings = null;
+            flush();
+        }
+    }
+
+    /**
+     * The dispatch loop.
+     * @param program The program.
+     * @return The value main returned.
+     * @throws IOException If reading input fails.
+     * @throws InterpreterException If calls nest deeper than allowed.
+     */
+    private long execute(Program program) throws IOException, InterpreterException {
+        final int[] code = program.code;
+        final long[] constants = program.constants;
+        final long[] globals = new long[program.globals];
+        long[] stack = new long[Math.max(256, program.mainFrameSize + program.mainMaxStack)];
+        int[] returnPcs = new int[64];
+        int[] returnFps = new int[64];
+        int depth = 0;
+        int fp = 0;
+        int sp = program.mainFrameSize;
+        int pc = 0;
+        long left;
+        long right;
+
+        // Tiering: the running function, each function's count of calls and back-edges (main's last),
+        // the compiled code of each function, and the compiled entry of each loop
+        final JvmCompiler compiler = compileThreshold == NO_COMPILATION ? null : new JvmCompiler(program);
+        int function = program.functionCount();
+        int[] returnFunctions = new int[returnPcs.length];
+        final int[] counters = new int[function + 1];
+        final CompiledCode[] compiledCalls = new CompiledCode[function];
+        final CompiledCode[] compiledLoops = compiler == null ? null : new CompiledCode[code.length];
+
+        while (true) {
+            switch (code[pc]) {
+                case Opcodes.PUSH:
+                    stack[sp++] = code[pc + 1];
+                    pc += 2;
+                    break;
+                case Opcodes.CONST:
+                    stack[sp++] = constants[code[pc + 1]];
+                    pc += 2;
+                    break;
+                case Opcodes.LOAD:
+                    stack[sp++] = stack[fp + code[pc + 1]];
+                    pc += 2;
+                    break;
+                case Opcodes.STORE:
+                    stack[fp + code[pc + 1]] = stack[--sp];
+                    pc += 2;
+                    break;
+                case Opcodes.LOAD_GLOBAL:
+                    stack[sp++] = globals[code[pc + 1]];
+                    pc += 2;
+                    break;
+                case Opcodes.STORE_GLOBAL:
+                    globals[code[pc + 1]] = stack[--sp];
+                    pc += 2;
+                    break;
+                case Opcodes.INC:
+                    stack[fp + code[pc + 1]] += code[pc + 2];
+                    pc += 3;
+                    break;
+                case Opcodes.INC_GLOBAL:
+                    globals[code[pc + 1]] += code[pc + 2];
+                    pc += 3;
+                    break;
+                case Opcodes.DUP:
+                    stack[sp] = stack[sp - 1];
+                    sp++;
+                    pc++;
+                    break;
+                case Opcodes.POP:
+                    sp--;
+                    pc++;
+                    break;
+                case Opcodes.ADD:
+                    right = stack[--sp];
+                    stack[sp - 1] += right;
+                    pc++;
+                    break;
+                case Opcodes.SUB:
+                    right = stack[--sp];
+                    stack[sp - 1] -= right;
+                    pc++;
+                    break;
+                case Opcodes.NEG:
+                    stack[sp - 1] = -stack[sp - 1];
+                    pc++;
+                    break;
+                case Opcodes.EQ:
+                    right = stack[--sp];
+                    stack[sp - 1] = stack[sp - 1] == right ? 1 : 0;
+                    pc++;
+                    break;
+                case Opcodes.NE:
+                    right = stack[--sp];
+                    stack[sp - 1] = stack[sp - 1] != right ? 1 : 0;
+                    pc++;
+                    break;
+                case Opcodes.LT:
+                    right = stack[--sp];
+                    stack[sp - 1] = stack[sp - 1] < right ? 1 : 0;
+                    pc++;
+                    break;
+                case Opcodes.GT:
+                    right = stack[--sp];
+                    stack[sp - 1] = stack[sp - 1] > right ? 1 : 0;
+                    pc++;
+                    break;
+                case Opcodes.LE:
+                    right = stack[--sp];
+                    stack[sp - 1] = stack[sp - 1] <= right ? 1 : 0;
+                    pc++;
+                    break;
+                case Opcodes.GE:
+                    right = stack[--sp];
+                    stack[sp - 1] = stack[sp - 1] >= right ? 1 : 0;
+                    pc++;
+                    break;
+                case Opcodes.JUMP:
+                    pc = code[pc + 1];
+                    break;
+                case Opcodes.JUMP_IF_FALSE:
+                    pc = stack[--sp] == 0 ? code[pc + 1] : pc + 2;
+                    break;
+                case Opcodes.JUMP_IF_TRUE:
+                    pc = stack[--sp] != 0 ? code[pc + 1] : pc + 2;
+                    break;
+                case Opcodes.JUMP_IF_NOT_EQ:
+                    right = stack[--sp];
+                    left = stack[--sp];
+                    pc = left == right ? pc + 2 : code[pc + 1];
+                    break;
+                case Opcodes.JUMP_IF_NOT_NE:
+                    right = stack[--sp];
+                    left = stack[--sp];
+                    pc = left != right ? pc + 2 : code[pc + 1];
+                    break;
+                case Opcodes.JUMP_IF_NOT_LT:
+                    right = stack[--sp];
+                    left = stack[--sp];
+                    pc = left < right ? pc + 2 : code[pc + 1];
+                    break;
+                case Opcodes.JUMP_IF_NOT_GT:
+                    right = stack[--sp];
+                    left = stack[--sp];
+                    pc = left > right ? pc + 2 : code[pc + 1];
+                    break;
+                case Opcodes.JUMP_IF_NOT_LE:
+                    right = stack[--sp];
+                    left = stack[--sp];
+                    pc = left <= right ? pc + 2 : code[pc + 1];
+                    break;
+                case Opcodes.JUMP_IF_NOT_GE:
+                    right = stack[--sp];
+                    left = stack[--sp];
+                    pc = left >= right ? pc + 2 : code[pc + 1];
+                    break;
+                case Opcodes.CALL: {
+                    int callee = code[pc + 1];
+                    int newFp = sp - code[pc + 2];
+                    if (compiler != null) {
+                        CompiledCode compiled = compiledCalls[callee];
+                        if (compiled == null && ++counters[callee] >= compileThreshold) {
+                            compiled = compiler.compileCall(callee);
+                            compiledCalls[callee] = compiled;
+                            counters[callee] = compiled == null ? Integer.MIN_VALUE : 0; // Too large: never again
+                        }
+                        if (compiled != null) {
+                            stack[newFp] = enter(compiled, globals, stack, newFp);
+                            sp = newFp + 1;
+                            pc += 3;
+                            break;
+                        }
+                    }
+                    int frameEnd = newFp + program.frameSizes[callee];
+                    if (depth == returnPcs.length) {
+                        if (depth >= maxDepth) {
+                            throw new InterpreterException("Calls nested deeper than " + maxDepth);
+                        }
+                        returnPcs = Arrays.copyOf(returnPcs, Math.min(depth * 2, maxDepth));
+                        returnFps = Arrays.copyOf(returnFps, returnPcs.length);
+                        returnFunctions = Arrays.copyOf(returnFunctions, returnPcs.length);
+                    }
+                    if (frameEnd + program.maxStacks[callee] > stack.length) {
+                        stack = Arrays.copyOf(stack, Math.max(stack.length * 2, frameEnd + program.maxStacks[callee]));
+                    }
+                    Arrays.fill(stack, sp, frameEnd, 0);
+                    returnPcs[depth] = pc + 3;
+                    returnFunctions[depth] = function;
+                    returnFps[depth++] = fp;
+                    function = callee;
+                    fp = newFp;
+                    sp = frameEnd;
+                    pc = program.entries[callee];
+                    break;
+                }
+                case Opcodes.RETURN: {
+                    long value = stack[--sp];
+                    if (depth == 0) {
+                        return value;
+                    }
+                    sp = fp;
+                    stack[sp++] = value;
+                    pc = returnPcs[--depth];
+                    fp = returnFps[depth];
+                    function = returnFunctions[depth];
+                    break;
+                }
+                case Opcodes.LOOP: {
+                    if (compiler != null) {
+                        CompiledCode compiled = compiledLoops[pc];
+                        if (compiled == null && ++counters[function] >= compileThreshold) {
+                            compiled = compiler.compileEntry(function, pc);
+                            compiledLoops[pc] = compiled;
+                            counters[function] = compiled == null ? Integer.MIN_VALUE : 0;
+                        }
+                        if (compiled != null) {
+                            // The compiled code runs the rest of the function, so return what it returns
+                            long value = enter(compiled, globals, stack, fp);
+                            if (depth == 0) {
+                                return value;
+                            }
+                            sp = fp;
+                            stack[sp++] = value;
+                            pc = returnPcs[--depth];
+                            fp = returnFps[depth];
+                            function = returnFunctions[depth];
+                            break;
+                        }
+                    }
+                    pc++;
+                    break;
+                }
+                case Opcodes.PRINT:
+                    print(stack[--sp]);
+                    pc++;
+                    break;
+                case Opcodes.PRINT_STRING:
+                    write(program.strings[code[pc + 1]]);
+                    pc += 2;
+                    break;
+                case Opcodes.PRINT_SPACE:
+                    write((byte) ' ');
+                    pc++;
+                    break;
+                case Opcodes.PRINT_NEWLINE:
+                    write((byte) '\n');
+                    pc++;
+                    break;
+                case Opcodes.INPUT:
+                    stack[fp + code[pc + 1]] = readNumber();
+                    pc += 2;
+                    break;
+                case Opcodes.INPUT_GLOBAL:
+                    globals[code[pc + 1]] = readNumber();
+                    pc += 2;
+                    break;
+                case Opcodes.HALT:
+                    return 0;
+                default:
+                    throw new IllegalStateException("Bad opcode " + code[pc] + " at " + pc);
+            }
+        }
+    }
+
+    /**
+     * Runs compiled code.
+     * @param compiled The code.
+     * @param globals The global variables.
+     * @param stack The stack holding the frame it starts from.
+     * @param fp Where the frame starts.
+     * @return The value the code's function returned.
+     * @throws IOException If reading input or writing output fails.
+     * @throws InterpreterException If the compiled calls nest deeper than the Java stack allows.
+     */
+    private long enter(CompiledCode compiled, long[] globals, long[] stack, int fp)
+            throws IOException, InterpreterException {
+        try {
+            return compiled.run(this, globals, stack, fp);
+        } catch (StackOverflowError e) {
+            throw new InterpreterException("Compiled calls nested deeper than the Java stack allows");
+        }
+    }
+
+    /**
+     * Writes a number in decimal.
+     * @param value The number.
+     * @throws IOException If writing fails.
+     */
+    void print(long value) throws IOException {
+        if (outputSize + 20 > output.length) {
+            flush();
+        }
+        if (value < 0) {
+            output[outputSize++] = '-';
+        }
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + Math.abs(value % 10)); // abs of the remainder handles Long.MIN_VALUE
+            value /= 10;
+        } while (value != 0);
+        while (count > 0) {
+            output[outputSize++] = digits[--count];
+        }
+    }
+
+    /**
+     * Writes one of the running program's strings.
+     * @param index The string's index.
+     * @throws IOException If writing fails.
+     */
+    void printString(int index) throws IOException {
+        write(strings[index]);
+    }
+
+    /**
+     * Writes bytes.
+     * @param bytes The bytes.
+     * @throws IOException If writing fails.
+     */
+    private void write(byte[] bytes) throws IOException {
+        if (bytes.length > output.length - outputSize) {
+            flush();
+            if (bytes.length > output.length) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, output, outputSize, bytes.length);
+        outputSize += bytes.length;
+    }
+
+    /**
+     * Writes a byte.
+     * @param b The byte.
+     * @throws IOException If writing fails.
+     */
+    void write(byte b) throws IOException {
+        if (outputSize == output.length) {
+            flush();
+        }
+        output[outputSize++] = b;
+    }
+
+    /**
+     * Writes out the buffered output.
+     * @throws IOException If writing fails.
+     */
+    private void flush() throws IOException {
+        if (outputSize > 0) {
+            out.write(output, 0, outputSize);
+            outputSize = 0;
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a decimal number like scanf("%ld"), flushing output first so prompts appear.
+     * @return The number, or 0 if the input holds none.
+     * @throws IOException If reading fails.
+     */
+    long readNumber() throws IOException {
+        flush();
+        int c = peek();
+        while (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0b) {
+            inputPos++;
+            c = peek();
+        }
+        boolean negative = false;
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            inputPos++;
+            c = peek();
+        }
+        long value = 0;
+        while (c >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            inputPos++;
+            c = peek();
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Looks at the next input byte without consuming it.
+     * @return The byte, or -1 at the end of the input.
+     * @throws IOException If reading fails.
+     */
+    private int peek() throws IOException {
+        if (inputPos == inputLimit) {
+            inputLimit = in.read(input, 0, input.length);
+            inputPos = 0;
+            if (inputLimit <= 0) {
+                inputLimit = 0;
+                return -1;
+            }
+        }
+        return input[inputPos] & 0xff;
+    }
+}
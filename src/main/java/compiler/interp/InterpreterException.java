@@ -0,0 +1,16 @@
+package compiler.interp;
+
+/**
+ * Thrown when a running program cannot continue, such as when its calls nest too deeply.
+ */
+public class InterpreterException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new InterpreterException.
+     * @param message What went wrong.
+     */
+    public InterpreterException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,814 @@
+package compiler.interp;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Compiles the bytecode of a Program into JVM classes at run time, so that HotSpot compiles the program's
+ * loops to native code like any other Java method.
+ *
+ * Each class is loaded as a hidden class next to the Interpreter and holds one static method per function
+ * it may call, taking the function's arguments followed by the Interpreter and the globals. A function's
+ * locals become JVM long locals, its operand stack the JVM operand stack and its calls invokestatic, which
+ * C2 can inline. The class's run method is its entry from the Interpreter: either a call of a function,
+ * or a jump into a function's loop from a frame the Interpreter is already running (on-stack replacement).
+ * Every instruction maps to a short fixed JVM sequence, and a stack map frame is written at each branch
+ * target; since every value is a long, a frame is just the operand stack depth.
+ */
+final class JvmCompiler {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final String CLASS_NAME = "compiler/interp/Compiled";
+    private static final String INTERPRETER = "compiler/interp/Interpreter";
+    private static final String RUN_DESCRIPTOR = "(Lcompiler/interp/Interpreter;[J[JI)J";
+    private static final int MAX_CODE = 32767; // Beyond this, a branch offset may not fit in 16 bits
+    private static final int MAX_ARGUMENTS = 126; // Two parameter slots each, and 255 in all
+    private static final int NO_ENTRY = -1;
+
+    // The run method's parameter slots; its locals start after them
+    private static final int RUN_INTERPRETER = 1;
+    private static final int RUN_GLOBALS = 2;
+    private static final int RUN_STACK = 3;
+    private static final int RUN_FP = 4;
+
+    // JVM opcodes
+    private static final int ICONST_0 = 0x03;
+    private static final int LCONST_0 = 0x09;
+    private static final int LCONST_1 = 0x0a;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int ILOAD = 0x15;
+    private static final int LLOAD = 0x16;
+    private static final int ALOAD = 0x19;
+    private static final int LLOAD_0 = 0x1e;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int LALOAD = 0x2f;
+    private static final int LSTORE = 0x37;
+    private static final int LSTORE_0 = 0x3f;
+    private static final int LASTORE = 0x50;
+    private static final int POP = 0x57;
+    private static final int POP2 = 0x58;
+    private static final int DUP_X2 = 0x5b;
+    private static final int DUP2 = 0x5c;
+    private static final int IADD = 0x60;
+    private static final int LADD = 0x61;
+    private static final int LSUB = 0x65;
+    private static final int LNEG = 0x75;
+    private static final int I2L = 0x85;
+    private static final int LCMP = 0x94;
+    private static final int IFEQ = 0x99;
+    private static final int IFNE = 0x9a;
+    private static final int IFLT = 0x9b;
+    private static final int IFGE = 0x9c;
+    private static final int IFGT = 0x9d;
+    private static final int IFLE = 0x9e;
+    private static final int GOTO = 0xa7;
+    private static final int LRETURN = 0xad;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int WIDE = 0xc4;
+
+    // Stack map verification types
+    private static final int ITEM_INTEGER = 1;
+    private static final int ITEM_LONG = 4;
+    private static final int ITEM_OBJECT = 7;
+    private static final int FULL_FRAME = 255;
+
+    private final Program program; // The program being compiled
+    private final int main; // The function index of main
+    private final int[] depths; // The operand stack depth at each reachable pc of the method being compiled
+    private final int[] offsets; // The JVM code offset of each pc of the method being compiled
+    private final int[] worklist; // The pcs whose successors are still to be visited
+
+    private ClassFileWriter writer; // The class being written
+
+    // The method being written
+    private byte[] code = new byte[1024];
+    private int size;
+    private int[] branches = new int[64]; // The code offset of each branch to a pc
+    private int[] branchTargets = new int[64]; // The pc each branch jumps to
+    private int branchCount;
+    private long[] frames = new long[64]; // The code offset and operand stack depth of each frame, packed
+    private int frameCount;
+    private int stackMapSize; // The bytes of the stack map just written
+
+    // Where the method being written keeps its values
+    private int firstSlot; // The slot of the first local
+    private int arguments; // The number of locals that are arguments
+    private int argumentGap; // The slots between the arguments and the other locals
+    private int interpreterSlot;
+    private int globalsSlot;
+    private int scratchSlot; // A long to hold a value while a global's array and index are pushed
+
+    /**
+     * Constructs a new JvmCompiler.
+     * @param program The program to compile functions of.
+     */
+    JvmCompiler(Program program) {
+        this.program = program;
+        this.main = program.functionCount();
+        this.depths = new int[program.code.length];
+        this.offsets = new int[program.code.length];
+        this.worklist = new int[program.code.length];
+    }
+
+    /**
+     * Compiles a function to be called from the Interpreter. The run method takes the call's arguments
+     * from the frame.
+     * @param function The function.
+     * @return The compiled code, or null if the function or one it calls is too large to compile.
+     */
+    CompiledCode compileCall(int function) {
+        writer = new ClassFileWriter(CLASS_NAME, "compiler/interp/CompiledCode");
+        if (!callees(function, true)) {
+            return null;
+        }
+        size = 0;
+        int arity = program.arities[function];
+        for (int argument = 0; argument < arity; argument++) {
+            loadFromFrame(argument);
+        }
+        load(ALOAD, RUN_INTERPRETER);
+        load(ALOAD, RUN_GLOBALS);
+        u1(INVOKESTATIC);
+        u2(writer.methodRef(writer.thisClass(), methodName(function), descriptor(function)));
+        u1(LRETURN);
+        writer.method(ClassFileWriter.ACC_PUBLIC, "run", RUN_DESCRIPTOR, code, size, 2 * arity + 4, RUN_FP + 1,
+                null, 0, 0);
+        return define();
+    }
+
+    /**
+     * Compiles a function to be entered at one of its loops, or main to be run from the start. The run
+     * method takes every local from the frame and jumps to the loop.
+     * @param function The function, or functionCount() for main.
+     * @param entry The pc of the loop's LOOP, or of the function's first instruction.
+     * @return The compiled code, or null if the function or one it calls is too large to compile.
+     */
+    CompiledCode compileEntry(int function, int entry) {
+        writer = new ClassFileWriter(CLASS_NAME, "compiler/interp/CompiledCode");
+        if (!callees(function, false) || !method(function, entry)) {
+            return null;
+        }
+        return define();
+    }
+
+    /**
+     * Writes a static method for every function a function may call, directly or not.
+     * @param function The function.
+     * @param self Whether to write the function's own method even if it is not recursive.
+     * @return False if a method is too large to compile.
+     */
+    private boolean callees(int function, boolean self) {
+        BitSet pending = new BitSet();
+        BitSet written = new BitSet();
+        if (self) {
+            pending.set(function);
+        } else {
+            calls(function, pending);
+        }
+        for (int next = pending.nextSetBit(0); next >= 0; next = pending.nextSetBit(0)) {
+            pending.clear(next);
+            written.set(next);
+            if (!method(next, NO_ENTRY)) {
+                return false;
+            }
+            BitSet called = new BitSet();
+            calls(next, called);
+            called.andNot(written);
+            pending.or(called);
+        }
+        return true;
+    }
+
+    /**
+     * Finds the functions a function calls.
+     * @param function The function, or functionCount() for main.
+     * @param called Where to set the called functions.
+     */
+    private void calls(int function, BitSet called) {
+        int[] instructions = program.code;
+        int end = program.end(function);
+        for (int pc = program.start(function); pc < end; pc += 1 + Opcodes.OPERANDS[instructions[pc]]) {
+            if (instructions[pc] == Opcodes.CALL) {
+                called.set(instructions[pc + 1]);
+            }
+        }
+    }
+
+    /**
+     * Writes a function as a method: a static method taking its arguments, or with an entry, the run method.
+     * @param function The function, or functionCount() for main.
+     * @param entry The pc the run method jumps to, or NO_ENTRY for a static method.
+     * @return False if the method is too large to compile.
+     */
+    private boolean method(int function, int entry) {
+        int frameSize = function == main ? program.mainFrameSize : program.frameSizes[function];
+        int maxStack = function == main ? program.mainMaxStack : program.maxStacks[function];
+        if (entry == NO_ENTRY) {
+            firstSlot = 0;
+            arguments = program.arities[function];
+            argumentGap = 2;
+            interpreterSlot = 2 * arguments;
+            globalsSlot = interpreterSlot + 1;
+            if (arguments > MAX_ARGUMENTS) {
+                return false;
+            }
+        } else {
+            firstSlot = RUN_FP + 1;
+            arguments = 0;
+            argumentGap = 0;
+            interpreterSlot = RUN_INTERPRETER;
+            globalsSlot = RUN_GLOBALS;
+        }
+        scratchSlot = slot(frameSize);
+        if (scratchSlot + 2 > 0xffff) {
+            return false;
+        }
+
+        int start = program.start(function);
+        int end = program.end(function);
+        analyze(start, end, entry == NO_ENTRY ? start : entry);
+        size = 0;
+        branchCount = 0;
+        frameCount = 0;
+        for (int local = 0; local < frameSize; local++) {
+            if (entry != NO_ENTRY) {
+                loadFromFrame(local);
+                store(slot(local));
+            } else if (local >= arguments) {
+                u1(LCONST_0);
+                store(slot(local));
+            }
+        }
+        u1(LCONST_0);
+        store(scratchSlot);
+        if (entry != NO_ENTRY) {
+            branch(GOTO, entry);
+        }
+        for (int pc = start; pc < end; pc += 1 + Opcodes.OPERANDS[program.code[pc]]) {
+            if (depths[pc] >= 0) {
+                offsets[pc] = size;
+                instruction(pc);
+            }
+            if (size > MAX_CODE) {
+                return false;
+            }
+        }
+        for (int i = 0; i < branchCount; i++) {
+            int target = branchTargets[i];
+            patch(branches[i], offsets[target]);
+            frame(offsets[target], depths[target]);
+        }
+        if (writer.constantCount() > 0xffff) {
+            return false;
+        }
+
+        byte[] stackMap = stackMap(function, frameSize, entry != NO_ENTRY);
+        int stackMapLength = stackMap == null ? 0 : stackMapSize;
+        if (entry == NO_ENTRY) {
+            writer.method(ClassFileWriter.ACC_STATIC, methodName(function), descriptor(function), code, size,
+                    2 * maxStack + 6, scratchSlot + 2, stackMap, stackMapLength, frameCount);
+        } else {
+            writer.method(ClassFileWriter.ACC_PUBLIC, "run", RUN_DESCRIPTOR, code, size, 2 * maxStack + 6,
+                    scratchSlot + 2, stackMap, stackMapLength, frameCount);
+        }
+        return true;
+    }
+
+    /**
+     * Finds the operand stack depth at every pc of a function reachable from an entry. Unreachable code is
+     * left out of the method, since the verifier could not type it.
+     * @param start The function's first pc.
+     * @param end The pc after the function.
+     * @param entry The pc the method starts running at.
+     */
+    private void analyze(int start, int end, int entry) {
+        int[] instructions = program.code;
+        Arrays.fill(depths, start, end, -1);
+        depths[entry] = 0;
+        int pending = 0;
+        worklist[pending++] = entry;
+        while (pending > 0) {
+            int pc = worklist[--pending];
+            int opcode = instructions[pc];
+            int depth = depths[pc] + (opcode == Opcodes.CALL ? 1 - instructions[pc + 2] : Opcodes.STACK_EFFECTS[opcode]);
+            int next = pc + 1 + Opcodes.OPERANDS[opcode];
+            switch (opcode) {
+                case Opcodes.JUMP:
+                    pending = visit(instructions[pc + 1], depth, pending);
+                    break;
+                case Opcodes.RETURN:
+                case Opcodes.HALT:
+                    break;
+                case Opcodes.JUMP_IF_FALSE:
+                case Opcodes.JUMP_IF_TRUE:
+                case Opcodes.JUMP_IF_NOT_EQ:
+                case Opcodes.JUMP_IF_NOT_NE:
+                case Opcodes.JUMP_IF_NOT_LT:
+                case Opcodes.JUMP_IF_NOT_GT:
+                case Opcodes.JUMP_IF_NOT_LE:
+                case Opcodes.JUMP_IF_NOT_GE:
+                    pending = visit(instructions[pc + 1], depth, pending);
+                    pending = visit(next, depth, pending);
+                    break;
+                default:
+                    pending = visit(next, depth, pending);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Marks a pc reachable, if it is not already.
+     * @param pc The pc.
+     * @param depth The operand stack depth there.
+     * @param pending The size of the worklist.
+     * @return The new size of the worklist.
+     */
+    private int visit(int pc, int depth, int pending) {
+        if (depths[pc] < 0) {
+            depths[pc] = depth;
+            worklist[pending++] = pc;
+        }
+        return pending;
+    }
+
+    /**
+     * Writes the JVM code of one instruction.
+     * @param pc The instruction's pc.
+     */
+    private void instruction(int pc) {
+        int[] instructions = program.code;
+        int operand = Opcodes.OPERANDS[instructions[pc]] > 0 ? instructions[pc + 1] : 0;
+        switch (instructions[pc]) {
+            case Opcodes.PUSH:
+                pushLong(operand);
+                break;
+            case Opcodes.CONST:
+                u1(LDC2_W);
+                u2(writer.longConstant(program.constants[operand]));
+                break;
+            case Opcodes.LOAD:
+                load(LLOAD, slot(operand));
+                break;
+            case Opcodes.STORE:
+                store(slot(operand));
+                break;
+            case Opcodes.LOAD_GLOBAL:
+                load(ALOAD, globalsSlot);
+                pushInt(operand);
+                u1(LALOAD);
+                break;
+            case Opcodes.STORE_GLOBAL:
+                store(scratchSlot);
+                load(ALOAD, globalsSlot);
+                pushInt(operand);
+                load(LLOAD, scratchSlot);
+                u1(LASTORE);
+                break;
+            case Opcodes.INC:
+                load(LLOAD, slot(operand));
+                pushLong(instructions[pc + 2]);
+                u1(LADD);
+                store(slot(operand));
+                break;
+            case Opcodes.INC_GLOBAL:
+                load(ALOAD, globalsSlot);
+                pushInt(operand);
+                u1(DUP2);
+                u1(LALOAD);
+                pushLong(instructions[pc + 2]);
+                u1(LADD);
+                u1(LASTORE);
+                break;
+            case Opcodes.DUP:
+                u1(DUP2);
+                break;
+            case Opcodes.POP:
+                u1(POP2);
+                break;
+            case Opcodes.ADD:
+                u1(LADD);
+                break;
+            case Opcodes.SUB:
+                u1(LSUB);
+                break;
+            case Opcodes.NEG:
+                u1(LNEG);
+                break;
+            case Opcodes.EQ:
+            case Opcodes.NE:
+            case Opcodes.LT:
+            case Opcodes.GT:
+            case Opcodes.LE:
+            case Opcodes.GE: {
+                // lcmp, then branch to push 0 or fall through to push 1
+                u1(LCMP);
+                int toFalse = size;
+                u1(failedComparison(instructions[pc] - Opcodes.EQ));
+                u2(0);
+                u1(LCONST_1);
+                int toEnd = size;
+                u1(GOTO);
+                u2(0);
+                patch(toFalse, size);
+                frame(size, depths[pc] - 2);
+                u1(LCONST_0);
+                patch(toEnd, size);
+                frame(size, depths[pc] - 1);
+                break;
+            }
+            case Opcodes.JUMP:
+                branch(GOTO, operand);
+                break;
+            case Opcodes.JUMP_IF_FALSE:
+                u1(LCONST_0);
+                u1(LCMP);
+                branch(IFEQ, operand);
+                break;
+            case Opcodes.JUMP_IF_TRUE:
+                u1(LCONST_0);
+                u1(LCMP);
+                branch(IFNE, operand);
+                break;
+            case Opcodes.JUMP_IF_NOT_EQ:
+            case Opcodes.JUMP_IF_NOT_NE:
+            case Opcodes.JUMP_IF_NOT_LT:
+            case Opcodes.JUMP_IF_NOT_GT:
+            case Opcodes.JUMP_IF_NOT_LE:
+            case Opcodes.JUMP_IF_NOT_GE:
+                u1(LCMP);
+                branch(failedComparison(instructions[pc] - Opcodes.JUMP_IF_NOT_EQ), operand);
+                break;
+            case Opcodes.CALL:
+                load(ALOAD, interpreterSlot);
+                load(ALOAD, globalsSlot);
+                u1(INVOKESTATIC);
+                u2(writer.methodRef(writer.thisClass(), methodName(operand), descriptor(operand)));
+                break;
+            case Opcodes.RETURN:
+                u1(LRETURN);
+                break;
+            case Opcodes.PRINT:
+                // Move the Interpreter under the value
+                load(ALOAD, interpreterSlot);
+                u1(DUP_X2);
+                u1(POP);
+                invokeInterpreter("print", "(J)V");
+                break;
+            case Opcodes.PRINT_STRING:
+                load(ALOAD, interpreterSlot);
+                pushInt(operand);
+                invokeInterpreter("printString", "(I)V");
+                break;
+            case Opcodes.PRINT_SPACE:
+            case Opcodes.PRINT_NEWLINE:
+                load(ALOAD, interpreterSlot);
+                pushInt(instructions[pc] == Opcodes.PRINT_SPACE ? ' ' : '\n');
+                invokeInterpreter("write", "(B)V");
+                break;
+            case Opcodes.INPUT:
+                load(ALOAD, interpreterSlot);
+                invokeInterpreter("readNumber", "()J");
+                store(slot(operand));
+                break;
+            case Opcodes.INPUT_GLOBAL:
+                load(ALOAD, globalsSlot);
+                pushInt(operand);
+                load(ALOAD, interpreterSlot);
+                invokeInterpreter("readNumber", "()J");
+                u1(LASTORE);
+                break;
+            case Opcodes.HALT:
+                u1(LCONST_0);
+                u1(LRETURN);
+                break;
+            case Opcodes.LOOP:
+                break;
+            default:
+                throw new IllegalStateException("Bad opcode " + instructions[pc] + " at " + pc);
+        }
+    }
+
+    /**
+     * Gets the JVM branch taken after an lcmp when a comparison is false.
+     * @param comparison The comparison's offset from EQ: EQ, NE, LT, GT, LE or GE.
+     * @return The if opcode.
+     */
+    private static int failedComparison(int comparison) {
+        switch (comparison) {
+            case 0:
+                return IFNE;
+            case 1:
+                return IFEQ;
+            case 2:
+                return IFGE;
+            case 3:
+                return IFLE;
+            case 4:
+                return IFGT;
+            default:
+                return IFLT;
+        }
+    }
+
+    /**
+     * Writes the stack map of the method just written: a full frame at each branch target.
+     * @param function The function, or functionCount() for main.
+     * @param frameSize The number of locals of the function.
+     * @param entry Whether the method is the run method.
+     * @return The frames, or null if the method has no branches.
+     */
+    private byte[] stackMap(int function, int frameSize, boolean entry) {
+        if (frameCount == 0) {
+            return null;
+        }
+        Arrays.sort(frames, 0, frameCount);
+        int unique = 0;
+        for (int i = 0; i < frameCount; i++) {
+            if (unique == 0 || (int) (frames[i] >>> 32) != (int) (frames[unique - 1] >>> 32)) {
+                frames[unique++] = frames[i];
+            }
+        }
+        frameCount = unique;
+
+        // Every frame has the same locals, since every local is a long set before the first branch
+        byte[] locals = new byte[16 + 3 * frameSize];
+        int localsSize = 0;
+        int localCount = 0;
+        if (entry) {
+            localsSize = object(locals, localsSize, writer.thisClass());
+            localsSize = object(locals, localsSize, writer.classRef(INTERPRETER));
+            localsSize = object(locals, localsSize, writer.classRef("[J"));
+            localsSize = object(locals, localsSize, writer.classRef("[J"));
+            locals[localsSize++] = ITEM_INTEGER;
+            localCount = 5;
+        }
+        for (int local = 0; local <= frameSize; local++) { // The last long is the scratch slot
+            if (!entry && local == arguments) {
+                localsSize = object(locals, localsSize, writer.classRef(INTERPRETER));
+                localsSize = object(locals, localsSize, writer.classRef("[J"));
+                localCount += 2;
+            }
+            locals[localsSize++] = ITEM_LONG;
+            localCount++;
+        }
+
+        int maxDepth = 0;
+        for (int i = 0; i < frameCount; i++) {
+            maxDepth = Math.max(maxDepth, (int) frames[i]);
+        }
+        byte[] map = new byte[frameCount * (7 + localsSize + maxDepth)];
+        int mapSize = 0;
+        int previous = -1;
+        for (int i = 0; i < frameCount; i++) {
+            int offset = (int) (frames[i] >>> 32);
+            int depth = (int) frames[i];
+            int delta = offset - previous - 1;
+            previous = offset;
+            map[mapSize++] = (byte) FULL_FRAME;
+            map[mapSize++] = (byte) (delta >> 8);
+            map[mapSize++] = (byte) delta;
+            map[mapSize++] = (byte) (localCount >> 8);
+            map[mapSize++] = (byte) localCount;
+            System.arraycopy(locals, 0, map, mapSize, localsSize);
+            mapSize += localsSize;
+            map[mapSize++] = (byte) (depth >> 8);
+            map[mapSize++] = (byte) depth;
+            for (int item = 0; item < depth; item++) {
+                map[mapSize++] = ITEM_LONG;
+            }
+        }
+        stackMapSize = mapSize;
+        return map;
+    }
+
+    /**
+     * Writes an Object verification type.
+     * @param bytes Where to write it.
+     * @param at The index to write it at.
+     * @param classIndex The CONSTANT_Class index of its type.
+     * @return The index after it.
+     */
+    private static int object(byte[] bytes, int at, int classIndex) {
+        bytes[at] = ITEM_OBJECT;
+        bytes[at + 1] = (byte) (classIndex >> 8);
+        bytes[at + 2] = (byte) classIndex;
+        return at + 3;
+    }
+
+    /**
+     * Loads the written class and creates its instance.
+     * @return The compiled code.
+     */
+    private CompiledCode define() {
+        size = 0;
+        u1(ALOAD_0);
+        u1(INVOKESPECIAL);
+        u2(writer.methodRef(writer.classRef("java/lang/Object"), "<init>", "()V"));
+        u1(RETURN);
+        writer.method(ClassFileWriter.ACC_PUBLIC, "<init>", "()V", code, size, 1, 1, null, 0, 0);
+        byte[] bytes = writer.toByteArray();
+        writer = null;
+        try {
+            MethodHandles.Lookup hidden = LOOKUP.defineHiddenClass(bytes, true);
+            return (CompiledCode) hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class))
+                    .invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("The compiled class could not be loaded", e);
+        }
+    }
+
+    /**
+     * Gets the name of a function's static method.
+     * @param function The function.
+     * @return The name.
+     */
+    private static String methodName(int function) {
+        return "f" + function;
+    }
+
+    /**
+     * Gets the descriptor of a function's static method: its arguments, the Interpreter and the globals.
+     * @param function The function.
+     * @return The descriptor.
+     */
+    private String descriptor(int function) {
+        return "(" + "J".repeat(program.arities[function]) + "L" + INTERPRETER + ";[J)J";
+    }
+
+    /**
+     * Gets the slot of a local.
+     * @param local The local's frame slot in the Interpreter.
+     * @return Its first JVM local variable slot.
+     */
+    private int slot(int local) {
+        return firstSlot + 2 * local + (local >= arguments ? argumentGap : 0);
+    }
+
+    /**
+     * Writes code that pushes stack[fp + local] in the run method.
+     * @param local The frame slot.
+     */
+    private void loadFromFrame(int local) {
+        load(ALOAD, RUN_STACK);
+        load(ILOAD, RUN_FP);
+        pushInt(local);
+        u1(IADD);
+        u1(LALOAD);
+    }
+
+    /**
+     * Writes a call of an Interpreter method whose receiver is on the stack under its arguments.
+     * @param name The method's name.
+     * @param descriptor The method's descriptor.
+     */
+    private void invokeInterpreter(String name, String descriptor) {
+        u1(INVOKEVIRTUAL);
+        u2(writer.methodRef(writer.classRef(INTERPRETER), name, descriptor));
+    }
+
+    /**
+     * Writes code that pushes a long.
+     * @param value The value.
+     */
+    private void pushLong(int value) {
+        if (value == 0 || value == 1) {
+            u1(LCONST_0 + value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            pushInt(value);
+            u1(I2L);
+        } else {
+            u1(LDC2_W);
+            u2(writer.longConstant(value));
+        }
+    }
+
+    /**
+     * Writes code that pushes an int.
+     * @param value The value.
+     */
+    private void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            u1(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            u1(BIPUSH);
+            u1(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            u1(SIPUSH);
+            u2(value);
+        } else {
+            u1(LDC_W);
+            u2(writer.intConstant(value));
+        }
+    }
+
+    /**
+     * Writes a load from a local variable, in its shortest form.
+     * @param opcode ILOAD, LLOAD or ALOAD.
+     * @param slot The local variable slot.
+     */
+    private void load(int opcode, int slot) {
+        if (opcode == LLOAD && slot <= 3) {
+            u1(LLOAD_0 + slot);
+        } else if (opcode == ALOAD && slot <= 3) {
+            u1(ALOAD_0 + slot);
+        } else {
+            local(opcode, slot);
+        }
+    }
+
+    /**
+     * Writes a store of a long to a local variable, in its shortest form.
+     * @param slot The local variable slot.
+     */
+    private void store(int slot) {
+        if (slot <= 3) {
+            u1(LSTORE_0 + slot);
+        } else {
+            local(LSTORE, slot);
+        }
+    }
+
+    /**
+     * Writes a local variable instruction with an index operand, made wide if the index needs it.
+     * @param opcode The opcode.
+     * @param slot The local variable slot.
+     */
+    private void local(int opcode, int slot) {
+        if (slot > 0xff) {
+            u1(WIDE);
+            u1(opcode);
+            u2(slot);
+        } else {
+            u1(opcode);
+            u1(slot);
+        }
+    }
+
+    /**
+     * Writes a branch to a pc, whose offset is patched once every pc has its code offset.
+     * @param opcode The branch opcode.
+     * @param target The pc.
+     */
+    private void branch(int opcode, int target) {
+        if (branchCount == branches.length) {
+            branches = Arrays.copyOf(branches, branchCount * 2);
+            branchTargets = Arrays.copyOf(branchTargets, branchCount * 2);
+        }
+        branches[branchCount] = size;
+        branchTargets[branchCount++] = target;
+        u1(opcode);
+        u2(0);
+    }
+
+    /**
+     * Sets the offset of a branch.
+     * @param branch The code offset of the branch.
+     * @param target The code offset it jumps to.
+     */
+    private void patch(int branch, int target) {
+        int offset = target - branch;
+        code[branch + 1] = (byte) (offset >> 8);
+        code[branch + 2] = (byte) offset;
+    }
+
+    /**
+     * Records a stack map frame.
+     * @param offset The code offset it describes.
+     * @param depth The operand stack depth there, in longs.
+     */
+    private void frame(int offset, int depth) {
+        if (frameCount == frames.length) {
+            frames = Arrays.copyOf(frames, frameCount * 2);
+        }
+        frames[frameCount++] = (long) offset << 32 | depth;
+    }
+
+    /**
+     * Writes a byte of code.
+     * @param value The byte.
+     */
+    private void u1(int value) {
+        if (size == code.length) {
+            code = Arrays.copyOf(code, size * 2);
+        }
+        code[size++] = (byte) value;
+    }
+
+    /**
+     * Writes two bytes of code, big-endian.
+     * @param value The value.
+     */
+    private void u2(int value) {
+        u1(value >> 8);
+        u1(value);
+    }
+}
@@ -0,0 +1,103 @@
+package compiler.interp;
+
+/**
+ * The instructions of the bytecode, one int each, followed by their int operands.
+ *
+ * The machine has an operand stack of longs. Each call's frame holds its locals, arguments first, and the
+ * operand stack continues above it. Globals live in their own array.
+ * <pre>
+ * opcode          operands             stack
+ * PUSH            value                -> value                 (value fits in an int)
+ * CONST           index                -> constants[index]
+ * LOAD            slot                 -> local
+ * STORE           slot                 value ->
+ * LOAD_GLOBAL     index                -> global
+ * STORE_GLOBAL    index                value ->
+ * INC             slot, delta          ->                       (local += delta)
+ * INC_GLOBAL      index, delta         ->                       (global += delta)
+ * DUP                                  value -> value, value
+ * POP                                  value ->
+ * ADD SUB                              left, right -> result
+ * NEG                                  value -> -value
+ * EQ NE LT GT LE GE                    left, right -> 1 or 0
+ * JUMP            target               ->
+ * JUMP_IF_FALSE   target               value ->                 (jumps if value == 0)
+ * JUMP_IF_TRUE    target               value ->                 (jumps if value != 0)
+ * JUMP_IF_NOT_EQ  target               left, right ->           (and likewise for NE, LT, GT, LE, GE:
+ * ...                                                            jumps if the comparison is false)
+ * CALL            function, argc       arguments -> result
+ * RETURN                               value ->                 (in main, ends the program)
+ * PRINT                                value ->
+ * PRINT_STRING    index                ->
+ * PRINT_SPACE                          ->
+ * PRINT_NEWLINE                        ->
+ * INPUT           slot                 ->                       (reads a number into a local, 0 if none)
+ * INPUT_GLOBAL    index                ->
+ * HALT                                 ->                       (main returns 0)
+ * LOOP                                 ->                       (starts a loop body; counts a back-edge)
+ * </pre>
+ */
+final class Opcodes {
+    static final int PUSH = 0;
+    static final int CONST = 1;
+    static final int LOAD = 2;
+    static final int STORE = 3;
+    static final int LOAD_GLOBAL = 4;
+    static final int STORE_GLOBAL = 5;
+    static final int INC = 6;
+    static final int INC_GLOBAL = 7;
+    static final int DUP = 8;
+    static final int POP = 9;
+    static final int ADD = 10;
+    static final int SUB = 11;
+    static final int NEG = 12;
+    static final int EQ = 13;
+    static final int NE = 14;
+    static final int LT = 15;
+    static final int GT = 16;
+    static final int LE = 17;
+    static final int GE = 18;
+    static final int JUMP = 19;
+    static final int JUMP_IF_FALSE = 20;
+    static final int JUMP_IF_NOT_EQ = 21;
+    static final int JUMP_IF_NOT_NE = 22;
+    static final int JUMP_IF_NOT_LT = 23;
+    static final int JUMP_IF_NOT_GT = 24;
+    static final int JUMP_IF_NOT_LE = 25;
+    static final int JUMP_IF_NOT_GE = 26;
+    static final int CALL = 27;
+    static final int RETURN = 28;
+    static final int PRINT = 29;
+    static final int PRINT_STRING = 30;
+    static final int PRINT_SPACE = 31;
+    static final int PRINT_NEWLINE = 32;
+    static final int INPUT = 33;
+    static final int INPUT_GLOBAL = 34;
+    static final int HALT = 35;
+    static final int JUMP_IF_TRUE = 36;
+    static final int LOOP = 37;
+
+    // The number of operands of each opcode
+    static final int[] OPERANDS = {
+            1, 1, 1, 1, 1, 1, 2, 2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 1, 1, 1, 1, 2, 0, 0, 1, 0, 0, 1, 1, 0,
+            1, 0
+    };
+
+    // How each opcode changes the depth of the operand stack; a CALL changes it by 1 - argc
+    static final int[] STACK_EFFECTS = {
+            1, 1, 1, -1, 1, -1, 0, 0, 1, -1, -1, -1, 0, -1, -1, -1, -1, -1, -1, 0, -1, -2, -2, -2, -2, -2, -2, 0, -1,
+            -1, 0, 0, 0, 0, 0, 0, -1, 0
+    };
+
+    // The name of each opcode, for listings
+    static final String[] NAMES = {
+            "PUSH", "CONST", "LOAD", "STORE", "LOAD_GLOBAL", "STORE_GLOBAL", "INC", "INC_GLOBAL", "DUP", "POP",
+            "ADD", "SUB", "NEG", "EQ", "NE", "LT", "GT", "LE", "GE", "JUMP", "JUMP_IF_FALSE", "JUMP_IF_NOT_EQ",
+            "JUMP_IF_NOT_NE", "JUMP_IF_NOT_LT", "JUMP_IF_NOT_GT", "JUMP_IF_NOT_LE", "JUMP_IF_NOT_GE", "CALL",
+            "RETURN", "PRINT", "PRINT_STRING", "PRINT_SPACE", "PRINT_NEWLINE", "INPUT", "INPUT_GLOBAL", "HALT",
+            "JUMP_IF_TRUE", "LOOP"
+    };
+
+    private Opcodes() {
+    }
+}
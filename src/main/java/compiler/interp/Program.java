@@ -0,0 +1,112 @@
+package compiler.interp;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A compiled program: the bytecode of main and of every function, and the tables it refers to.
+ * Main starts at pc 0. A Program is immutable once compiled and can be run any number of times.
+ */
+public final class Program {
+    final int[] code; // The instructions of main, then of each function
+    final long[] constants; // Values that do not fit in a PUSH operand
+    final byte[][] strings; // The UTF-8 bytes of each printed string
+    final int[] entries; // The pc each function starts at, in increasing order
+    final int[] arities; // The parameter count of each function
+    final int[] frameSizes; // The locals of each function, arguments included
+    final int[] maxStacks; // The operand stack each function needs above its locals
+    final int mainFrameSize; // The locals of main
+    final int mainMaxStack; // The operand stack main needs above its locals
+    final int globals; // The number of global variables
+
+    /**
+     * Constructs a new Program.
+     * @param code The instructions.
+     * @param constants The constant pool.
+     * @param strings The printed strings as UTF-8.
+     * @param entries The pc each function starts at.
+     * @param arities The parameter count of each function.
+     * @param frameSizes The number of locals of each function.
+     * @param maxStacks The operand stack depth each function needs.
+     * @param mainFrameSize The number of locals of main.
+     * @param mainMaxStack The operand stack depth main needs.
+     * @param globals The number of global variables.
+     */
+    Program(int[] code, long[] constants, byte[][] strings, int[] entries, int[] arities, int[] frameSizes,
+            int[] maxStacks, int mainFrameSize, int mainMaxStack, int globals) {
+        this.code = code;
+        this.constants = constants;
+        this.strings = strings;
+        this.entries = entries;
+        this.arities = arities;
+        this.frameSizes = frameSizes;
+        this.maxStacks = maxStacks;
+        this.mainFrameSize = mainFrameSize;
+        this.mainMaxStack = mainMaxStack;
+        this.globals = globals;
+    }
+
+    /**
+     * Gets the length of the bytecode.
+     * @return The number of ints of code.
+     */
+    public int codeSize() {
+        return code.length;
+    }
+
+    /**
+     * Gets the number of functions.
+     * @return The function count, not counting main.
+     */
+    public int functionCount() {
+        return entries.length;
+    }
+
+    /**
+     * Gets where a function's code starts.
+     * @param function The function index, or functionCount() for main.
+     * @return The pc of its first instruction.
+     */
+    int start(int function) {
+        return function == entries.length ? 0 : entries[function];
+    }
+
+    /**
+     * Gets where a function's code ends.
+     * @param function The function index, or functionCount() for main.
+     * @return The pc after its last instruction.
+     */
+    int end(int function) {
+        if (function == entries.length) {
+            return entries.length == 0 ? code.length : entries[0];
+        }
+        return function + 1 == entries.length ? code.length : entries[function + 1];
+    }
+
+    /**
+     * Lists the bytecode, one instruction per line, marking where each function starts.
+     * @return The listing.
+     */
+    public String disassemble() {
+        StringBuilder out = new StringBuilder();
+        for (int pc = 0; pc < code.length; ) {
+            for (int function = 0; function < entries.length; function++) {
+                if (entries[function] == pc) {
+                    out.append("function ").append(function).append(":\n");
+                }
+            }
+            int opcode = code[pc];
+            out.append(pc).append(": ").append(Opcodes.NAMES[opcode]);
+            for (int i = 1; i <= Opcodes.OPERANDS[opcode]; i++) {
+                out.append(' ').append(code[pc + i]);
+            }
+            if (opcode == Opcodes.CONST) {
+                out.append(" (").append(constants[code[pc + 1]]).append(')');
+            } else if (opcode == Opcodes.PRINT_STRING) {
+                out.append(" \"").append(new String(strings[code[pc + 1]], StandardCharsets.UTF_8)).append('"');
+            }
+            out.append('\n');
+            pc += 1 + Opcodes.OPERANDS[opcode];
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,376 @@
+package compiler.metrics;
+
+import compiler.scanner.TokenBuffer;
+import compiler.scanner.TokenType;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide totals of what each compiler phase cost: runs, wall time, thread CPU time, allocated bytes and
+ * bytes handled, plus tokens scanned per TokenType and identifiers interned. Instrumented code brackets a phase
+ * with start() and PhaseTimer.stop(); while metrics are disabled, which is the default unless the system property
+ * compiler.metrics is true, that is a volatile read and a check of the Flight Recorder event, and nothing is
+ * counted. Totals are LongAdders, so CompilationDriver workers and daemon threads record without contending.
+ *
+ * The totals are exposed through JMX by register() and written as JSON by toJson(). Each timed phase is also a
+ * Flight Recorder event, compiler.Phase, emitted whenever a recording enables it, whether or not metrics are.
+ */
+public final class CompilerMetrics {
+    public static final String OBJECT_NAME = "compiler:type=CompilerMetrics";
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private static final LongAdder[] runs = adders(PHASES.length);
+    private static final LongAdder[] wallNanos = adders(PHASES.length);
+    private static final LongAdder[] cpuNanos = adders(PHASES.length);
+    private static final LongAdder[] allocatedBytes = adders(PHASES.length);
+    private static final LongAdder[] bytes = adders(PHASES.length);
+    private static final LongAdder[] tokens = adders(TYPES.length);
+    private static final LongAdder identifiers = new LongAdder();
+
+    private static volatile boolean enabled = Boolean.getBoolean("compiler.metrics");
+
+    private CompilerMetrics() {
+    }
+
+    /**
+     * Creates an array of zeroed counters.
+     * @param length The number of counters.
+     * @return The counters.
+     */
+    private static LongAdder[] adders(int length) {
+        LongAdder[] adders = new LongAdder[length];
+        for (int i = 0; i < length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Gets whether phases are being recorded.
+     * @return true if they are.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts or stops recording phases. Timers already started keep recording.
+     * @param enabled Whether to record.
+     */
+    public static void setEnabled(boolean enabled) {
+        CompilerMetrics.enabled = enabled;
+    }
+
+    /**
+     * Starts timing a phase on the current thread.
+     * @param phase The phase.
+     * @return A timer to stop when the phase ends. While metrics are disabled it adds nothing to the totals, and
+     *         only emits the Flight Recorder event if a recording has it enabled.
+     */
+    public static PhaseTimer start(Phase phase) {
+        if (enabled) {
+            return new PhaseTimer(phase, true);
+        }
+        return PhaseTimer.eventEnabled() ? new PhaseTimer(phase, false) : PhaseTimer.DISABLED;
+    }
+
+    /**
+     * Adds one run of a phase to the totals.
+     * @param phase The phase.
+     * @param nanos The wall time of the run.
+     * @param cpu The CPU time of the run.
+     * @param allocated The bytes allocated during the run.
+     * @param handled The bytes the run read or wrote.
+     */
+    static void add(Phase phase, long nanos, long cpu, long allocated, long handled) {
+        int i = phase.ordinal();
+        runs[i].increment();
+        wallNanos[i].add(nanos);
+        cpuNanos[i].add(cpu);
+        allocatedBytes[i].add(allocated);
+        bytes[i].add(handled);
+    }
+
+    /**
+     * Adds the tokens of a scan to the per-type counts.
+     * @param buffer The tokens.
+     * @param interned The number of distinct identifiers interned for them.
+     */
+    static void countTokens(TokenBuffer buffer, int interned) {
+        int[] counts = new int[TYPES.length];
+        int size = buffer.size();
+        for (int i = 0; i < size; i++) {
+            counts[buffer.typeOrdinal(i)]++;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                tokens[i].add(counts[i]);
+            }
+        }
+        identifiers.add(interned);
+    }
+
+    /**
+     * Gets the CPU time of the current thread. The first call turns on the JVM's thread CPU time measurement.
+     * @return The time in nanoseconds, or 0 if the JVM cannot measure it.
+     */
+    static long threadCpuNanos() {
+        ThreadMXBean threads = ThreadClock.THREADS;
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * Gets the bytes the current thread has allocated. The first call turns on the JVM's allocation measurement.
+     * @return The byte count, or 0 if the JVM cannot measure it.
+     */
+    static long threadAllocatedBytes() {
+        com.sun.management.ThreadMXBean allocation = ThreadClock.ALLOCATION;
+        return allocation != null ? allocation.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    /**
+     * Holds the thread MXBean, so that looking it up and turning on the JVM-wide thread measurements waits for the
+     * first recording PhaseTimer instead of the first start(), and never happens while metrics stay disabled.
+     */
+    private static final class ThreadClock {
+        static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+        static final com.sun.management.ThreadMXBean ALLOCATION; // null if the JVM cannot count allocation
+
+        // Static block to turn on the thread measurements the JVM supports
+        static {
+            com.sun.management.ThreadMXBean allocation = null;
+            if (THREADS instanceof com.sun.management.ThreadMXBean) {
+                allocation = (com.sun.management.ThreadMXBean) THREADS;
+                if (allocation.isThreadAllocatedMemorySupported()) {
+                    allocation.setThreadAllocatedMemoryEnabled(true);
+                } else {
+                    allocation = null;
+                }
+            }
+            ALLOCATION = allocation;
+            if (THREADS.isCurrentThreadCpuTimeSupported()) {
+                THREADS.setThreadCpuTimeEnabled(true);
+            }
+        }
+    }
+
+    /**
+     * Gets how many times a phase ran.
+     * @param phase The phase.
+     * @return The run count.
+     */
+    public static long getRuns(Phase phase) {
+        return runs[phase.ordinal()].sum();
+    }
+
+    /**
+     * Gets the wall time spent in a phase.
+     * @param phase The phase.
+     * @return The time in nanoseconds.
+     */
+    public static long getWallNanos(Phase phase) {
+        return wallNanos[phase.ordinal()].sum();
+    }
+
+    /**
+     * Gets the CPU time spent in a phase.
+     * @param phase The phase.
+     * @return The time in nanoseconds.
+     */
+    public static long getCpuNanos(Phase phase) {
+        return cpuNanos[phase.ordinal()].sum();
+    }
+
+    /**
+     * Gets the bytes allocated in a phase.
+     * @param phase The phase.
+     * @return The byte count.
+     */
+    public static long getAllocatedBytes(Phase phase) {
+        return allocatedBytes[phase.ordinal()].sum();
+    }
+
+    /**
+     * Gets the bytes a phase read or wrote.
+     * @param phase The phase.
+     * @return The byte count.
+     */
+    public static long getBytes(Phase phase) {
+        return bytes[phase.ordinal()].sum();
+    }
+
+    /**
+     * Gets the number of tokens scanned of a type.
+     * @param type The type.
+     * @return The token count.
+     */
+    public static long getTokens(TokenType type) {
+        return tokens[type.ordinal()].sum();
+    }
+
+    /**
+     * Gets the number of distinct identifiers interned, summed over every scan.
+     * @return The identifier count.
+     */
+    public static long getIdentifiersInterned() {
+        return identifiers.sum();
+    }
+
+    /**
+     * Sets every total back to 0.
+     */
+    public static void reset() {
+        for (int i = 0; i < PHASES.length; i++) {
+            runs[i].reset();
+            wallNanos[i].reset();
+            cpuNanos[i].reset();
+            allocatedBytes[i].reset();
+            bytes[i].reset();
+        }
+        for (LongAdder count : tokens) {
+            count.reset();
+        }
+        identifiers.reset();
+    }
+
+    /**
+     * Writes every total as JSON: bytesRead, identifiersInterned, a tokens object keyed by type name, and a phases
+     * object keyed by Phase.label() holding runs, wallNanos, cpuNanos, allocatedBytes and bytes. Types that were
+     * never scanned and phases that never ran are left out.
+     * @return The JSON.
+     */
+    public static String toJson() {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"bytesRead\": ").append(getBytes(Phase.READ)).append(",\n");
+        json.append("  \"identifiersInterned\": ").append(getIdentifiersInterned()).append(",\n");
+        json.append("  \"tokens\": {");
+        String separator = "\n";
+        for (TokenType type : TYPES) {
+            long count = getTokens(type);
+            if (count != 0) {
+                json.append(separator).append("    \"").append(type).append("\": ").append(count);
+                separator = ",\n";
+            }
+        }
+        json.append(separator.equals("\n") ? "},\n" : "\n  },\n");
+        json.append("  \"phases\": {");
+        separator = "\n";
+        for (Phase phase : PHASES) {
+            if (getRuns(phase) == 0) {
+                continue;
+            }
+            json.append(separator).append("    \"").append(phase.label()).append("\": {")
+                    .append("\"runs\": ").append(getRuns(phase))
+                    .append(", \"wallNanos\": ").append(getWallNanos(phase))
+                    .append(", \"cpuNanos\": ").append(getCpuNanos(phase))
+                    .append(", \"allocatedBytes\": ").append(getAllocatedBytes(phase))
+                    .append(", \"bytes\": ").append(getBytes(phase)).append('}');
+            separator = ",\n";
+        }
+        json.append(separator.equals("\n") ? "}\n" : "\n  }\n");
+        return json.append("}\n").toString();
+    }
+
+    /**
+     * Registers the totals with the platform MBean server as OBJECT_NAME. Registering twice does nothing.
+     * @throws JMException If the MBean cannot be registered.
+     */
+    public static void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(new View(), new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // Already registered
+        }
+    }
+
+    /**
+     * The MXBean over the static totals.
+     */
+    private static final class View implements CompilerMetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return CompilerMetrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            CompilerMetrics.setEnabled(enabled);
+        }
+
+        @Override
+        public long getBytesRead() {
+            return getBytes(Phase.READ);
+        }
+
+        @Override
+        public long getIdentifiersInterned() {
+            return CompilerMetrics.getIdentifiersInterned();
+        }
+
+        @Override
+        public Map<String, Long> getTokenCounts() {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            for (TokenType type : TYPES) {
+                long count = getTokens(type);
+                if (count != 0) {
+                    counts.put(type.name(), count);
+                }
+            }
+            return counts;
+        }
+
+        @Override
+        public Map<String, Long> getPhaseRuns() {
+            return perPhase(runs);
+        }
+
+        @Override
+        public Map<String, Long> getPhaseWallNanos() {
+            return perPhase(wallNanos);
+        }
+
+        @Override
+        public Map<String, Long> getPhaseCpuNanos() {
+            return perPhase(cpuNanos);
+        }
+
+        @Override
+        public Map<String, Long> getPhaseAllocatedBytes() {
+            return perPhase(allocatedBytes);
+        }
+
+        @Override
+        public String getJson() {
+            return toJson();
+        }
+
+        @Override
+        public void reset() {
+            CompilerMetrics.reset();
+        }
+
+        /**
+         * Sums one counter per phase.
+         * @param counters The counters, indexed by Phase ordinal.
+         * @return The sums keyed by Phase.label(), in phase order.
+         */
+        private static Map<String, Long> perPhase(LongAdder[] counters) {
+            Map<String, Long> sums = new LinkedHashMap<>();
+            for (Phase phase : PHASES) {
+                sums.put(phase.label(), counters[phase.ordinal()].sum());
+            }
+            return sums;
+        }
+    }
+}
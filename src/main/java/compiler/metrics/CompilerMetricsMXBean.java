@@ -0,0 +1,74 @@
+package compiler.metrics;
+
+import java.util.Map;
+
+/**
+ * The JMX view of CompilerMetrics, registered as compiler:type=CompilerMetrics.
+ * Per-phase maps are keyed by Phase.label() and per-type maps by TokenType name.
+ */
+public interface CompilerMetricsMXBean {
+    /**
+     * Gets whether phases are being recorded.
+     * @return true if they are.
+     */
+    boolean isEnabled();
+
+    /**
+     * Starts or stops recording phases. The totals so far are kept.
+     * @param enabled Whether to record.
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * Gets the number of source bytes read.
+     * @return The byte count.
+     */
+    long getBytesRead();
+
+    /**
+     * Gets the number of distinct identifiers interned, summed over every scan.
+     * @return The identifier count.
+     */
+    long getIdentifiersInterned();
+
+    /**
+     * Gets the number of tokens scanned of each type.
+     * @return The counts of the types seen at least once.
+     */
+    Map<String, Long> getTokenCounts();
+
+    /**
+     * Gets how many times each phase ran.
+     * @return The run counts.
+     */
+    Map<String, Long> getPhaseRuns();
+
+    /**
+     * Gets the wall time spent in each phase.
+     * @return The times in nanoseconds.
+     */
+    Map<String, Long> getPhaseWallNanos();
+
+    /**
+     * Gets the CPU time the running threads spent in each phase.
+     * @return The times in nanoseconds, or 0 where the JVM cannot measure thread CPU time.
+     */
+    Map<String, Long> getPhaseCpuNanos();
+
+    /**
+     * Gets the bytes the running threads allocated in each phase.
+     * @return The byte counts, or 0 where the JVM cannot measure thread allocation.
+     */
+    Map<String, Long> getPhaseAllocatedBytes();
+
+    /**
+     * Gets every total as the JSON document --stats writes.
+     * @return The JSON.
+     */
+    String getJson();
+
+    /**
+     * Sets every total back to 0.
+     */
+    void reset();
+}
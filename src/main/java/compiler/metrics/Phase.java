@@ -0,0 +1,24 @@
+package compiler.metrics;
+
+import java.util.Locale;
+
+/**
+ * The phases of compiling a source that CompilerMetrics times separately.
+ */
+public enum Phase {
+    READ, // Reading and decoding the source
+    LEX, // Scanning the source into tokens, or taking them from a cache
+    PARSE, // Building the tree from the tokens
+    OPTIMIZE, // Running the optimization passes
+    CODEGEN, // Translating the tree to C, or compiling it to bytecode
+    OUTPUT, // Writing tokens or C to the target
+    EXECUTE; // Running a program in the interpreter
+
+    /**
+     * Gets the name of the phase as it appears in metrics dumps.
+     * @return The name in lower case, the same in every locale.
+     */
+    public String label() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
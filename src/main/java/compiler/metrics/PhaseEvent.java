@@ -0,0 +1,30 @@
+package compiler.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event spanning one phase of one compilation, so that a recording lines compiler time up
+ * with GC pauses and safepoints. Events are emitted whenever a recording enables them, even while
+ * CompilerMetrics is disabled.
+ */
+@Name("compiler.Phase")
+@Label("Compiler Phase")
+@Category("Compiler")
+@Description("One phase of compiling a source")
+final class PhaseEvent extends jdk.jfr.Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Bytes")
+    @Description("Bytes the phase read or wrote, or 0 if it does not handle bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Tokens")
+    @Description("Tokens the phase produced or consumed, or 0 if it does not handle tokens")
+    long tokens;
+}
@@ -0,0 +1,119 @@
+package compiler.metrics;
+
+import compiler.scanner.TokenBuffer;
+
+/**
+ * Measures one run of a phase, from CompilerMetrics.start() to stop(). While metrics are disabled, start()
+ * hands out one shared timer that records nothing, so instrumented code costs a flag check and a call, unless
+ * a Flight Recorder recording enables PhaseEvent, in which case the timer only spans the event.
+ * A PhaseTimer belongs to the thread that started it.
+ */
+public final class PhaseTimer {
+    static final PhaseTimer DISABLED = new PhaseTimer();
+
+    private static final PhaseEvent PROBE = new PhaseEvent(); // Never committed, only asked whether it is enabled
+
+    private final Phase phase; // The phase, or null for the disabled timer
+    private final boolean recording; // Whether the run is added to the CompilerMetrics totals
+    private final long startNanos; // Wall clock at start
+    private final long startCpuNanos; // The thread's CPU time at start
+    private final long startAllocatedBytes; // The thread's allocated bytes at start
+    private final PhaseEvent event; // The Flight Recorder event spanning the phase, or null for the disabled timer
+
+    /**
+     * Constructs the disabled PhaseTimer.
+     */
+    private PhaseTimer() {
+        this.phase = null;
+        this.recording = false;
+        this.startNanos = 0;
+        this.startCpuNanos = 0;
+        this.startAllocatedBytes = 0;
+        this.event = null;
+    }
+
+    /**
+     * Constructs a new PhaseTimer and starts it.
+     * @param phase The phase.
+     * @param recording Whether to add the run to the totals. Only then are the thread's CPU time and allocation
+     *                  read, which turns their measurement on for the whole JVM.
+     */
+    PhaseTimer(Phase phase, boolean recording) {
+        this.phase = phase;
+        this.recording = recording;
+        this.event = new PhaseEvent();
+        event.phase = phase.label();
+        event.begin();
+        this.startAllocatedBytes = recording ? CompilerMetrics.threadAllocatedBytes() : 0;
+        this.startCpuNanos = recording ? CompilerMetrics.threadCpuNanos() : 0;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Gets whether a Flight Recorder recording has PhaseEvent enabled.
+     * @return true if it has.
+     */
+    static boolean eventEnabled() {
+        return PROBE.isEnabled();
+    }
+
+    /**
+     * Gets whether the timer adds to the totals, so callers can skip gathering what only stop() would use.
+     * @return true if metrics were enabled when the timer started.
+     */
+    public boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * Ends the phase.
+     */
+    public void stop() {
+        stop(0, 0);
+    }
+
+    /**
+     * Ends a phase that read or wrote bytes.
+     * @param bytes The number of bytes.
+     */
+    public void stop(long bytes) {
+        stop(bytes, 0);
+    }
+
+    /**
+     * Ends a phase that produced tokens, counting them by type along with the identifiers interned for them.
+     * @param tokens The tokens, including the final EOF token.
+     * @param identifiers The number of distinct identifiers interned.
+     */
+    public void stop(TokenBuffer tokens, int identifiers) {
+        if (recording) {
+            CompilerMetrics.countTokens(tokens, identifiers);
+        }
+        if (phase != null) {
+            stop(0, tokens.size());
+        }
+    }
+
+    /**
+     * Ends the phase, commits its event, and adds what it cost to the totals if the timer is recording.
+     * @param bytes The number of bytes the phase read or wrote.
+     * @param tokens The number of tokens the phase produced.
+     */
+    private void stop(long bytes, long tokens) {
+        if (phase == null) {
+            return;
+        }
+        long nanos = System.nanoTime() - startNanos;
+        long cpuNanos = recording ? CompilerMetrics.threadCpuNanos() - startCpuNanos : 0;
+        long allocatedBytes = recording ? CompilerMetrics.threadAllocatedBytes() - startAllocatedBytes : 0;
+        event.end();
+        if (event.shouldCommit()) {
+            event.bytes = bytes;
+            event.tokens = tokens;
+            event.commit();
+        }
+        if (recording) {
+            CompilerMetrics.add(phase, nanos, cpuNanos, allocatedBytes, bytes);
+        }
+    }
+}
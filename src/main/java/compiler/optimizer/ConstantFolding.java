@@ -0,0 +1,140 @@
+package compiler.optimizer;
+
+import compiler.parser.Ast;
+import compiler.parser.NodeKind;
+import compiler.scanner.TokenType;
+
+/**
+ * Replaces arithmetic and comparisons over NUMBER and BOOLEAN operands with their value.
+ *
+ * Values are 64-bit and wrap on overflow, and booleans count as 1 and 0, as the C backend treats them.
+ * A '+' or '-' folds to a NUMBER and a comparison to a BOOLEAN. Number literals too large for a long are
+ * left alone, and so is everything above them.
+ */
+public final class ConstantFolding extends TreeRewriter {
+    private boolean[] constant; // Whether each node has a value known before running
+    private long[] values; // The value of each constant node
+    private boolean[] folds; // Whether each node is the outermost of an expression to replace
+
+    @Override
+    public String name() {
+        return "constant-folding";
+    }
+
+    @Override
+    protected boolean analyze() {
+        int size = source.size();
+        constant = new boolean[size];
+        values = new long[size];
+        folds = new boolean[size];
+        boolean any = false;
+        for (int node = 0; node < size; node++) {
+            switch (source.kind(node)) {
+                case NUMBER:
+                case BOOLEAN:
+                    try {
+                        values[node] = source.value(node);
+                        constant[node] = true;
+                    } catch (ArithmeticException e) {
+                        constant[node] = false; // too large for a long
+                    }
+                    break;
+                case BINARY:
+                    int left = source.firstChild(node);
+                    int right = source.nextSibling(left);
+                    if (constant[left] && constant[right]) {
+                        constant[node] = true;
+                        values[node] = apply(operator(node), values[left], values[right]);
+                    }
+                    break;
+                case UNARY:
+                    int operand = source.firstChild(node);
+                    if (constant[operand] && operator(node) == TokenType.MINUS) {
+                        constant[node] = true;
+                        values[node] = -values[operand];
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        // Only the outermost constant operator of each expression is replaced, the nodes below it are dropped
+        boolean[] dropped = new boolean[size];
+        for (int node = size - 1; node >= 0; node--) {
+            NodeKind kind = source.kind(node);
+            if (!dropped[node] && constant[node] && (kind == NodeKind.BINARY || kind == NodeKind.UNARY)) {
+                folds[node] = true;
+                any = true;
+                changed();
+            }
+            if (dropped[node] || folds[node]) {
+                for (int child = source.firstChild(node); child != Ast.NO_NODE; child = source.nextSibling(child)) {
+                    dropped[child] = true;
+                }
+            }
+        }
+        return any;
+    }
+
+    @Override
+    protected boolean keep(int parent, int child) {
+        return !folds[parent];
+    }
+
+    @Override
+    protected int rewrite(int node) {
+        if (!folds[node]) {
+            return copy(node);
+        }
+        NodeKind kind = isComparison(operator(node)) ? NodeKind.BOOLEAN : NodeKind.NUMBER;
+        return target.addFolded(kind, source.token(node), values[node]);
+    }
+
+    /**
+     * Gets the operator of a BINARY or UNARY node.
+     * @param node The node.
+     * @return The operator's token type.
+     */
+    private TokenType operator(int node) {
+        return source.tokens().type(source.token(node));
+    }
+
+    /**
+     * Checks if an operator compares its operands.
+     * @param operator The operator.
+     * @return True for '==', '!=', '<', '>', '<=' and '>='.
+     */
+    private static boolean isComparison(TokenType operator) {
+        return operator != TokenType.PLUS && operator != TokenType.MINUS;
+    }
+
+    /**
+     * Applies a binary operator.
+     * @param operator The operator.
+     * @param left The left operand.
+     * @param right The right operand.
+     * @return The result, 1 or 0 for a comparison.
+     */
+    private static long apply(TokenType operator, long left, long right) {
+        switch (operator) {
+            case PLUS:
+                return left + right;
+            case MINUS:
+                return left - right;
+            case EQ:
+                return left == right ? 1 : 0;
+            case NOTEQ:
+                return left != right ? 1 : 0;
+            case LT:
+                return left < right ? 1 : 0;
+            case GT:
+                return left > right ? 1 : 0;
+            case LTEQ:
+                return left <= right ? 1 : 0;
+            case GTEQ:
+                return left >= right ? 1 : 0;
+            default:
+                throw new IllegalArgumentException("Not a binary operator: " + operator);
+        }
+    }
+}
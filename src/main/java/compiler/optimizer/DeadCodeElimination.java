@@ -0,0 +1,133 @@
+package compiler.optimizer;
+
+import compiler.parser.Ast;
+import compiler.parser.NodeKind;
+
+/**
+ * Removes statements that can never run.
+ *
+ * In a block, everything after a statement that always jumps away (a return, break or continue, a block
+ * ending in one, or an if whose branches all do) is dropped. An if with a NUMBER or BOOLEAN condition
+ * becomes the branch it takes, wrapped in a BLOCK so its lets stay scoped the same, and a while whose
+ * condition is constantly false becomes an empty BLOCK. Statements left empty are dropped from their block.
+ * Dead statements at the top level are kept, since they may bind functions called from above them.
+ * Running ConstantFolding first turns constant conditions into literals.
+ */
+public final class DeadCodeElimination extends TreeRewriter {
+    private boolean[] dead; // Statements after a jump in the same block
+    private boolean[] empty; // Statements that do nothing once rewritten
+    private boolean[] jumps; // Statements that never complete normally
+    private boolean[] resolved; // Ifs and whiles whose condition is known
+    private int[] taken; // The branch a resolved if takes, or NO_NODE
+
+    @Override
+    public String name() {
+        return "dead-code";
+    }
+
+    @Override
+    protected boolean analyze() {
+        int size = source.size();
+        dead = new boolean[size];
+        empty = new boolean[size];
+        jumps = new boolean[size];
+        resolved = new boolean[size];
+        taken = new int[size];
+        for (int node = 0; node < size; node++) {
+            switch (source.kind(node)) {
+                case RETURN:
+                case BREAK:
+                case CONTINUE:
+                    jumps[node] = true;
+                    break;
+                case IF:
+                    int condition = source.firstChild(node);
+                    int then = source.nextSibling(condition);
+                    int otherwise = source.nextSibling(then);
+                    if (isConstant(condition)) {
+                        resolved[node] = true;
+                        taken[node] = source.value(condition) != 0 ? then : otherwise;
+                        empty[node] = taken[node] == Ast.NO_NODE || empty[taken[node]];
+                        jumps[node] = taken[node] != Ast.NO_NODE && jumps[taken[node]];
+                        changed();
+                    } else {
+                        jumps[node] = otherwise != Ast.NO_NODE && jumps[then] && jumps[otherwise];
+                    }
+                    break;
+                case WHILE:
+                    if (isConstant(source.firstChild(node)) && source.value(source.firstChild(node)) == 0) {
+                        resolved[node] = true;
+                        taken[node] = Ast.NO_NODE;
+                        empty[node] = true;
+                        changed();
+                    }
+                    break;
+                case BLOCK:
+                    boolean allEmpty = true;
+                    boolean jumped = false;
+                    for (int child = source.firstChild(node); child != Ast.NO_NODE; child = source.nextSibling(child)) {
+                        if (jumped) {
+                            dead[child] = true;
+                            changed();
+                        } else {
+                            jumped = jumps[child];
+                            allEmpty &= empty[child];
+                        }
+                    }
+                    jumps[node] = jumped;
+                    empty[node] = allEmpty;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return changes() > 0;
+    }
+
+    @Override
+    protected boolean keep(int parent, int child) {
+        switch (source.kind(parent)) {
+            case BLOCK:
+            case PROGRAM:
+                return !dead[child] && !empty[child];
+            case IF:
+            case WHILE:
+                return !resolved[parent] || child == taken[parent];
+            default:
+                return true;
+        }
+    }
+
+    @Override
+    protected int rewrite(int node) {
+        if (!resolved[node]) {
+            return copy(node);
+        }
+        int branch = source.kind(node) == NodeKind.IF ? taken[node] : Ast.NO_NODE;
+        if (branch == Ast.NO_NODE) {
+            return block(source.token(node), null, 0);
+        }
+        if (source.kind(branch) == NodeKind.BLOCK) {
+            return copyOf(branch);
+        }
+        return block(source.token(node), new int[] {copyOf(branch)}, 1);
+    }
+
+    /**
+     * Checks if an expression is a literal or folded value.
+     * @param node The expression.
+     * @return True for a NUMBER or BOOLEAN that fits in a long.
+     */
+    private boolean isConstant(int node) {
+        NodeKind kind = source.kind(node);
+        if (kind != NodeKind.NUMBER && kind != NodeKind.BOOLEAN) {
+            return false;
+        }
+        try {
+            source.value(node);
+            return true;
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package compiler.optimizer;
+
+import compiler.parser.Ast;
+import compiler.parser.NodeKind;
+import compiler.scanner.TokenBuffer;
+import compiler.scanner.TokenType;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Moves lets whose value is the same on every iteration out of while and for loops.
+ *
+ * A let directly in a loop's body block is hoisted when it declares a new variable (no variable of that
+ * name is visible at the loop), nothing else in the loop assigns that variable or reads it before the let
+ * declares it, and its value is
+ * arithmetic over literals and variables the loop never assigns. If the loop calls a function, globals
+ * may change behind its back, so a value that reads them stays in the loop. Values have no side effects,
+ * so computing one before a loop that runs zero times is harmless.
+ *
+ * The hoisted lets and the loop are wrapped in a new BLOCK, which keeps the variables scoped to the loop:
+ * <pre>
+ * while (c) { let k = n + 1; print(k); }   becomes   { let k = n + 1; while (c) { print(k); } }
+ * </pre>
+ * Visibility follows the C backend: top-level lets and inputs are globals visible everywhere, and a let
+ * declares a variable in its block unless one of that name is already visible.
+ */
+public final class LoopInvariantHoisting extends TreeRewriter {
+    private TokenBuffer tokens;
+    private int[] hoistedInto; // The loop each hoisted let moves in front of, or NO_NODE
+    private final BitSet globals = new BitSet(); // Symbols of the top-level variables
+    private final BitSet locals = new BitSet(); // Symbols of the visible locals and parameters
+    private int[] declared = new int[16]; // The locals of the open scopes
+    private int declaredSize;
+    private int[] scopeStarts = new int[16]; // Where each open scope starts in declared
+    private int scopes;
+
+    // Per loop: how often each symbol is assigned inside it, and which symbols were counted
+    private int[] modifications = new int[0];
+    private int[] modified = new int[16];
+    private int modifiedSize;
+    private final BitSet hoistedNames = new BitSet(); // Symbols hoisted out of the current loop
+    private int[] stack = new int[16]; // The explicit stack of subtree walks
+
+    @Override
+    public String name() {
+        return "loop-invariant-hoisting";
+    }
+
+    @Override
+    protected boolean analyze() {
+        tokens = source.tokens();
+        hoistedInto = new int[source.size()];
+        Arrays.fill(hoistedInto, Ast.NO_NODE);
+        int symbols = 0;
+        for (int token = 0; token < tokens.size(); token++) {
+            symbols = Math.max(symbols, tokens.symbol(token) + 1);
+        }
+        if (modifications.length < symbols) {
+            modifications = new int[symbols];
+        }
+        globals.clear();
+        locals.clear();
+        declaredSize = 0;
+        scopes = 0;
+
+        int root = source.root();
+        for (int node = source.firstChild(root); node != Ast.NO_NODE; node = source.nextSibling(node)) {
+            if (source.kind(node) == NodeKind.LET) {
+                globals.set(symbol(source.token(node)));
+            } else if (source.kind(node) == NodeKind.INPUT) {
+                globals.set(symbol(source.token(source.firstChild(node))));
+            }
+        }
+        for (int node = source.firstChild(root); node != Ast.NO_NODE; node = source.nextSibling(node)) {
+            statement(node);
+        }
+        return changes() > 0;
+    }
+
+    @Override
+    protected boolean attach(int parent, int child) {
+        return hoistedInto[child] == Ast.NO_NODE;
+    }
+
+    @Override
+    protected int rewrite(int node) {
+        NodeKind kind = source.kind(node);
+        if (kind != NodeKind.WHILE && kind != NodeKind.FOR) {
+            return copy(node);
+        }
+        int body = source.firstChild(node);
+        while (source.nextSibling(body) != Ast.NO_NODE) {
+            body = source.nextSibling(body);
+        }
+        int count = 0;
+        int[] statements = null;
+        for (int child = source.firstChild(body); child != Ast.NO_NODE; child = source.nextSibling(child)) {
+            if (hoistedInto[child] == node) {
+                if (statements == null) {
+                    statements = new int[source.childCount(body) + 1];
+                }
+                statements[count++] = copyOf(child);
+            }
+        }
+        if (count == 0) {
+            return copy(node);
+        }
+        statements[count++] = copy(node);
+        return block(source.token(node), statements, count);
+    }
+
+    /**
+     * Walks a statement, tracking which variables are visible and hoisting out of the loops in it.
+     * @param node The statement.
+     */
+    private void statement(int node) {
+        switch (source.kind(node)) {
+            case BLOCK:
+                pushScope();
+                for (int child = source.firstChild(node); child != Ast.NO_NODE; child = source.nextSibling(child)) {
+                    statement(child);
+                }
+                popScope();
+                break;
+            case LET:
+                int value = source.firstChild(node);
+                if (source.kind(value) == NodeKind.FUNCTION) {
+                    pushScope();
+                    int child = source.firstChild(value);
+                    for (; source.kind(child) == NodeKind.PARAMETER; child = source.nextSibling(child)) {
+                        declare(source.token(child));
+                    }
+                    statement(child);
+                    popScope();
+                } else if (!isVisible(source.token(node))) {
+                    declare(source.token(node));
+                }
+                break;
+            case INPUT:
+                int target = source.token(source.firstChild(node));
+                if (!isVisible(target)) {
+                    declare(target);
+                }
+                break;
+            case IF:
+                int then = source.nextSibling(source.firstChild(node));
+                scoped(then);
+                if (source.nextSibling(then) != Ast.NO_NODE) {
+                    scoped(source.nextSibling(then));
+                }
+                break;
+            case WHILE:
+                pushScope(); // the block the hoisted lets move into
+                hoist(node, source.nextSibling(source.firstChild(node)));
+                scoped(source.nextSibling(source.firstChild(node)));
+                popScope();
+                break;
+            case FOR:
+                int init = source.firstChild(node);
+                int body = source.nextSibling(source.nextSibling(source.nextSibling(init)));
+                pushScope();
+                hoist(node, body);
+                pushScope(); // the loop's own scope, for a let initializer
+                if (source.kind(init) == NodeKind.LET && !isVisible(source.token(init))) {
+                    declare(source.token(init));
+                }
+                scoped(body);
+                popScope();
+                popScope();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Walks a statement in a scope of its own, as a loop body or if branch has.
+     * @param node The statement.
+     */
+    private void scoped(int node) {
+        pushScope();
+        statement(node);
+        popScope();
+    }
+
+    /**
+     * Picks the lets to hoist out of a loop, declaring them in the current scope, which stands for the block
+     * that will wrap the loop.
+     * @param loop The WHILE or FOR node.
+     * @param body The loop's body.
+     */
+    private void hoist(int loop, int body) {
+        if (source.kind(body) != NodeKind.BLOCK) {
+            return;
+        }
+        boolean calls = countModifications(loop);
+        hoistedNames.clear();
+        for (int child = source.firstChild(body); child != Ast.NO_NODE; child = source.nextSibling(child)) {
+            if (source.kind(child) != NodeKind.LET) {
+                continue;
+            }
+            int name = source.token(child);
+            int value = source.firstChild(child);
+            if (!isVisible(name) && modifications[symbol(name)] == 1 && isInvariant(value, calls)
+                    && !isReadOutside(loop, child)) {
+                hoistedInto[child] = loop;
+                hoistedNames.set(symbol(name));
+                declare(name);
+                changed();
+            }
+        }
+        for (int i = 0; i < modifiedSize; i++) {
+            modifications[modified[i]] = 0;
+        }
+        modifiedSize = 0;
+    }
+
+    /**
+     * Counts how often each variable is assigned in a loop, by let, '=', '++', '--' or input.
+     * @param loop The loop.
+     * @return True if the loop calls a function.
+     */
+    private boolean countModifications(int loop) {
+        boolean calls = false;
+        int size = 0;
+        stack[size++] = loop;
+        while (size > 0) {
+            int node = stack[--size];
+            int target = Ast.NO_TOKEN;
+            switch (source.kind(node)) {
+                case LET:
+                    target = source.token(node);
+                    break;
+                case INPUT:
+                case ASSIGN:
+                    target = source.token(source.firstChild(node));
+                    break;
+                case UNARY:
+                case POSTFIX:
+                    TokenType operator = tokens.type(source.token(node));
+                    int operand = source.firstChild(node);
+                    if (operator != TokenType.MINUS && source.kind(operand) == NodeKind.IDENTIFIER) {
+                        target = source.token(operand);
+                    }
+                    break;
+                case CALL:
+                    calls = true;
+                    break;
+                default:
+                    break;
+            }
+            if (target != Ast.NO_TOKEN) {
+                int symbol = symbol(target);
+                if (modifications[symbol]++ == 0) {
+                    if (modifiedSize == modified.length) {
+                        modified = Arrays.copyOf(modified, modifiedSize * 2);
+                    }
+                    modified[modifiedSize++] = symbol;
+                }
+            }
+            for (int child = source.firstChild(node); child != Ast.NO_NODE; child = source.nextSibling(child)) {
+                if (size == stack.length) {
+                    stack = Arrays.copyOf(stack, size * 2);
+                }
+                stack[size++] = child;
+            }
+        }
+        return calls;
+    }
+
+    /**
+     * Checks if a let's name is read in its loop outside the let's scope: in the loop's header, in the statements
+     * of the body before the let, or in the let's own value. Such a read names no variable, which is an error,
+     * and hoisting the let would make it name the hoisted one.
+     * @param loop The loop.
+     * @param let The LET in the loop's body block.
+     * @return True if the name is read there.
+     */
+    private boolean isReadOutside(int loop, int let) {
+        int symbol = symbol(source.token(let));
+        int size = 0;
+        stack[size++] = loop;
+        while (size > 0) {
+            int node = stack[--size];
+            if (source.kind(node) == NodeKind.IDENTIFIER && symbol(source.token(node)) == symbol) {
+                return true;
+            }
+            for (int child = source.firstChild(node); child != Ast.NO_NODE; child = source.nextSibling(child)) {
+                if (size == stack.length) {
+                    stack = Arrays.copyOf(stack, size * 2);
+                }
+                stack[size++] = child;
+                if (child == let) {
+                    break; // The statements after the let are in its scope
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if an expression has the same value on every iteration of the loop being hoisted from, and is
+     * worth computing once.
+     * @param root The expression.
+     * @param calls Whether the loop calls a function, which may assign globals.
+     * @return True if the expression is arithmetic over literals and variables the loop leaves alone.
+     */
+    private boolean isInvariant(int root, boolean calls) {
+        boolean operators = false;
+        int size = 0;
+        stack[size++] = root;
+        while (size > 0) {
+            int node = stack[--size];
+            switch (source.kind(node)) {
+                case NUMBER:
+                case BOOLEAN:
+                    break;
+                case IDENTIFIER:
+                    int token = source.token(node);
+                    int symbol = symbol(token);
+                    if (!isVisible(token) || calls && !locals.get(symbol)) {
+                        return false;
+                    }
+                    if (modifications[symbol] != 0 && !hoistedNames.get(symbol)) {
+                        return false;
+                    }
+                    break;
+                case UNARY:
+                    if (tokens.type(source.token(node)) != TokenType.MINUS) {
+                        return false;
+                    }
+                    operators = true;
+                    break;
+                case BINARY:
+                    operators = true;
+                    break;
+                default:
+                    return false;
+            }
+            for (int child = source.firstChild(node); child != Ast.NO_NODE; child = source.nextSibling(child)) {
+                if (size == stack.length) {
+                    stack = Arrays.copyOf(stack, size * 2);
+                }
+                stack[size++] = child;
+            }
+        }
+        return operators;
+    }
+
+    /**
+     * Gets the symbol id of an identifier token.
+     * @param token The token.
+     * @return The symbol id.
+     */
+    private int symbol(int token) {
+        return tokens.symbol(token);
+    }
+
+    /**
+     * Checks if a variable is visible at the statement being walked.
+     * @param token The identifier token.
+     * @return True if it is a global or a visible local.
+     */
+    private boolean isVisible(int token) {
+        int symbol = symbol(token);
+        return globals.get(symbol) || locals.get(symbol);
+    }
+
+    /**
+     * Declares a local in the innermost scope.
+     * @param token The identifier token.
+     */
+    private void declare(int token) {
+        if (declaredSize == declared.length) {
+            declared = Arrays.copyOf(declared, declaredSize * 2);
+        }
+        int symbol = symbol(token);
+        declared[declaredSize++] = symbol;
+        locals.set(symbol);
+    }
+
+    /**
+     * Opens a scope.
+     */
+    private void pushScope() {
+        if (scopes == scopeStarts.length) {
+            scopeStarts = Arrays.copyOf(scopeStarts, scopes * 2);
+        }
+        scopeStarts[scopes++] = declaredSize;
+    }
+
+    /**
+     * Closes the innermost scope, hiding the locals declared in it.
+     */
+    private void popScope() {
+        int start = scopeStarts[--scopes];
+        while (declaredSize > start) {
+            locals.clear(declared[--declaredSize]);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package compiler.optimizer;
+
+import compiler.parser.Ast;
+
+/**
+ * An optimization that rewrites an Ast into an equivalent one.
+ */
+public interface Pass {
+    /**
+     * Gets the name the pass is reported under.
+     * @return The name.
+     */
+    String name();
+
+    /**
+     * Rewrites a tree. The input is left untouched.
+     * @param ast The tree to rewrite.
+     * @return The rewritten tree, or the input itself if there was nothing to change.
+     */
+    Ast run(Ast ast);
+
+    /**
+     * Gets how many rewrites the last run made, such as folded expressions or removed statements.
+     * @return The number of rewrites.
+     */
+    int changes();
+}
@@ -0,0 +1,78 @@
+package compiler.optimizer;
+
+/**
+ * What one pass of a Pipeline run cost and what it changed.
+ */
+public final class PassTiming {
+    private final String pass; // The name of the pass
+    private final long nanos; // Wall time spent in the pass
+    private final int nodesBefore; // Nodes in the tree the pass was given
+    private final int nodesAfter; // Nodes in the tree the pass returned
+    private final int changes; // Rewrites the pass made
+
+    /**
+     * Constructs a new PassTiming.
+     * @param pass The name of the pass.
+     * @param nanos The wall time spent in the pass.
+     * @param nodesBefore The number of nodes in the tree the pass was given.
+     * @param nodesAfter The number of nodes in the tree the pass returned.
+     * @param changes The number of rewrites the pass made.
+     */
+    public PassTiming(String pass, long nanos, int nodesBefore, int nodesAfter, int changes) {
+        this.pass = pass;
+        this.nanos = nanos;
+        this.nodesBefore = nodesBefore;
+        this.nodesAfter = nodesAfter;
+        this.changes = changes;
+    }
+
+    /**
+     * Gets the name of the pass.
+     * @return The pass name.
+     */
+    public String getPass() {
+        return pass;
+    }
+
+    /**
+     * Gets the wall time spent in the pass.
+     * @return The time in nanoseconds.
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Gets the number of nodes in the tree the pass was given.
+     * @return The node count.
+     */
+    public int getNodesBefore() {
+        return nodesBefore;
+    }
+
+    /**
+     * Gets the number of nodes in the tree the pass returned.
+     * @return The node count.
+     */
+    public int getNodesAfter() {
+        return nodesAfter;
+    }
+
+    /**
+     * Gets the number of rewrites the pass made.
+     * @return The rewrite count.
+     */
+    public int getChanges() {
+        return changes;
+    }
+
+    /**
+     * Returns a one-line summary of the timing.
+     * @return A string representation of the timing.
+     */
+    @Override
+    public String toString() {
+        return pass + " | Time: " + nanos / 1_000 + " us | Nodes: " + nodesBefore + " -> " + nodesAfter
+                + " | Changes: " + changes;
+    }
+}
@@ -0,0 +1,90 @@
+package compiler.optimizer;
+
+import compiler.parser.Ast;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs optimization passes one after another between parsing and code generation, timing each.
+ * A Pipeline is not thread-safe, since its passes and timings belong to the run in progress.
+ */
+public final class Pipeline {
+    private final List<Pass> passes; // The passes, in the order they run
+    private final List<PassTiming> timings = new ArrayList<>(); // The timings of the last run
+
+    /**
+     * Constructs a new Pipeline.
+     * @param passes The passes, in the order they run.
+     */
+    public Pipeline(List<Pass> passes) {
+        this.passes = List.copyOf(passes);
+    }
+
+    /**
+     * Creates the default pipeline: constant folding, then dead-code elimination, which relies on folded
+     * conditions, then loop-invariant hoisting.
+     * @return A new pipeline.
+     */
+    public static Pipeline standard() {
+        return new Pipeline(List.of(new ConstantFolding(), new DeadCodeElimination(), new LoopInvariantHoisting()));
+    }
+
+    /**
+     * Creates a pipeline that leaves trees as they are.
+     * @return A new pipeline with no passes.
+     */
+    public static Pipeline none() {
+        return new Pipeline(List.of());
+    }
+
+    /**
+     * Runs every pass over a tree.
+     * @param ast The tree, which is left untouched.
+     * @return The optimized tree.
+     */
+    public Ast run(Ast ast) {
+        timings.clear();
+        for (Pass pass : passes) {
+            int before = ast.size();
+            long start = System.nanoTime();
+            ast = pass.run(ast);
+            long nanos = System.nanoTime() - start;
+            timings.add(new PassTiming(pass.name(), nanos, before, ast.size(), pass.changes()));
+        }
+        return ast;
+    }
+
+    /**
+     * Gets the passes.
+     * @return The passes, in the order they run.
+     */
+    public List<Pass> getPasses() {
+        return passes;
+    }
+
+    /**
+     * Describes the pipeline by the names of its passes, which is how a compilation cache tells pipelines apart.
+     * @return The names in order, separated by commas, or "none" if there are no passes.
+     */
+    @Override
+    public String toString() {
+        if (passes.isEmpty()) {
+            return "none";
+        }
+        StringBuilder names = new StringBuilder();
+        for (Pass pass : passes) {
+            names.append(names.length() == 0 ? "" : ",").append(pass.name());
+        }
+        return names.toString();
+    }
+
+    /**
+     * Gets what each pass of the last run cost and changed.
+     * @return The timings, in the order the passes ran.
+     */
+    public List<PassTiming> getTimings() {
+        return Collections.unmodifiableList(timings);
+    }
+}
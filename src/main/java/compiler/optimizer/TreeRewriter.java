@@ -0,0 +1,155 @@
+package compiler.optimizer;
+
+import compiler.parser.Ast;
+import compiler.parser.NodeKind;
+
+import java.util.Arrays;
+
+/**
+ * The skeleton of a pass that copies a tree into a new arena, changing some nodes on the way.
+ *
+ * A run first analyzes the input and stops there if nothing would change. Otherwise it marks the nodes to
+ * keep, walking down from the root over decreasing indices (parents come after their children), and
+ * then rewrites the kept nodes in increasing order, so every child is in the new arena before its parent
+ * and the new root is again the last node. Neither walk recurses, however deep the tree.
+ */
+abstract class TreeRewriter implements Pass {
+    protected Ast source; // The tree being rewritten
+    protected Ast target; // The tree being built
+    private boolean[] kept; // The source nodes that survive
+    private int[] copies; // The target node of each kept source node
+    private int changes; // Rewrites made by the current or last run
+
+    @Override
+    public final Ast run(Ast ast) {
+        source = ast;
+        changes = 0;
+        try {
+            if (!analyze()) {
+                return ast;
+            }
+            int size = ast.size();
+            kept = new boolean[size];
+            kept[ast.root()] = true;
+            for (int node = ast.root(); node >= 0; node--) {
+                if (!kept[node]) {
+                    continue;
+                }
+                for (int child = ast.firstChild(node); child != Ast.NO_NODE; child = ast.nextSibling(child)) {
+                    kept[child] = keep(node, child);
+                }
+            }
+
+            target = new Ast(ast.tokens(), size);
+            copies = new int[size];
+            Arrays.fill(copies, Ast.NO_NODE);
+            for (int node = 0; node < size; node++) {
+                if (kept[node]) {
+                    copies[node] = rewrite(node);
+                }
+            }
+            return target;
+        } finally {
+            source = null;
+            target = null;
+            kept = null;
+            copies = null;
+        }
+    }
+
+    @Override
+    public final int changes() {
+        return changes;
+    }
+
+    /**
+     * Looks at the source tree before anything is copied.
+     * @return True if the tree changes, false to return it as it is.
+     */
+    protected abstract boolean analyze();
+
+    /**
+     * Decides if a child of a kept node survives. Dropping a child drops its whole subtree.
+     * @param parent The kept source node.
+     * @param child One of its children.
+     * @return True to keep the child.
+     */
+    protected boolean keep(int parent, int child) {
+        return true;
+    }
+
+    /**
+     * Decides if the copy of a kept child is linked under the copy of its parent. A pass that moves a node
+     * elsewhere keeps it but detaches it, and links its copy itself.
+     * @param parent The kept source node.
+     * @param child One of its kept children.
+     * @return True to link the child under the parent.
+     */
+    protected boolean attach(int parent, int child) {
+        return true;
+    }
+
+    /**
+     * Writes the replacement of a kept node into the target. Its kept children are already there.
+     * @param node The source node.
+     * @return The target node that replaces it.
+     */
+    protected int rewrite(int node) {
+        return copy(node);
+    }
+
+    /**
+     * Copies a node with its kept, attached children.
+     * @param node The source node.
+     * @return The target node.
+     */
+    protected final int copy(int node) {
+        if (source.isFolded(node)) {
+            return target.addFolded(source.kind(node), source.token(node), source.value(node));
+        }
+        int first = Ast.NO_NODE;
+        int last = Ast.NO_NODE;
+        for (int child = source.firstChild(node); child != Ast.NO_NODE; child = source.nextSibling(child)) {
+            if (kept[child] && attach(node, child)) {
+                int copy = copies[child];
+                if (last == Ast.NO_NODE) {
+                    first = copy;
+                } else {
+                    target.link(last, copy);
+                }
+                last = copy;
+            }
+        }
+        return target.add(source.kind(node), source.token(node), first);
+    }
+
+    /**
+     * Appends a BLOCK holding the given target nodes, which must not be linked yet.
+     * @param token The token the block takes, that of the statement it replaces or wraps.
+     * @param statements The target nodes, in order.
+     * @param count How many of them to use.
+     * @return The new block.
+     */
+    protected final int block(int token, int[] statements, int count) {
+        for (int i = 1; i < count; i++) {
+            target.link(statements[i - 1], statements[i]);
+        }
+        return target.add(NodeKind.BLOCK, token, count == 0 ? Ast.NO_NODE : statements[0]);
+    }
+
+    /**
+     * Gets the copy of a kept source node.
+     * @param node The source node, which must already be rewritten.
+     * @return The target node.
+     */
+    protected final int copyOf(int node) {
+        return copies[node];
+    }
+
+    /**
+     * Records one rewrite for changes().
+     */
+    protected final void changed() {
+        changes++;
+    }
+}
@@ -0,0 +1,11 @@
+package compiler.output;
+
+/**
+ * The formats a token dump can be written in.
+ */
+public enum TokenEncoding {
+    // One "Type: X | Literal: y" line per token, as Token.toString() prints it
+    TEXT,
+    // The compact varint format described in BinaryTokenFormat
+    BINARY
+}
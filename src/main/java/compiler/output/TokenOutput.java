@@ -0,0 +1,253 @@
+package compiler.output;
+
+import compiler.scanner.BinaryTokenWriter;
+import compiler.scanner.TokenBuffer;
+import compiler.scanner.TokenType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes token dumps through one reusable ByteBuffer that is flushed to a channel in large batches.
+ * The text encoding writes the same lines as Token.toString() and BufferedWriter.newLine() would, but
+ * encodes them straight from the token columns: the "Type: X | Literal: " prefix of every type is encoded
+ * once up front, and ASCII literals are copied byte by byte without building any String. Those shortcuts are
+ * only taken for charsets that encode ASCII as itself; in others, such as UTF-16, each file is encoded as one
+ * run of the charset encoder.
+ * An instance is not thread-safe; keep one per thread and reuse it across files.
+ */
+public final class TokenOutput {
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final ByteBuffer buffer; // The batch being encoded
+    private final CharsetEncoder encoder; // Encodes non-ASCII literals, or everything if asciiCompatible is false
+    private final boolean asciiCompatible; // Whether the charset encodes every ASCII character as that one byte
+    private final byte[][] prefixes; // The encoded "Type: X | Literal: " per type ordinal, if asciiCompatible
+    private final byte[] newline; // The encoded line separator, if asciiCompatible
+    private final BinaryTokenWriter binaryWriter = new BinaryTokenWriter();
+
+    /**
+     * Constructs a new TokenOutput that writes text in the platform default charset.
+     */
+    public TokenOutput() {
+        this(Charset.defaultCharset());
+    }
+
+    /**
+     * Constructs a new TokenOutput.
+     * @param charset The charset text dumps are written in.
+     */
+    public TokenOutput(Charset charset) {
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.asciiCompatible = isAsciiCompatible(charset);
+        this.prefixes = new byte[TYPES.length][];
+        for (TokenType type : TYPES) {
+            prefixes[type.ordinal()] = asciiCompatible ? prefix(type).getBytes(charset) : null;
+        }
+        this.newline = asciiCompatible ? System.lineSeparator().getBytes(charset) : null;
+    }
+
+    /**
+     * Checks whether a charset encodes every ASCII character as the single byte of its code, as UTF-8 and
+     * ISO-8859-1 do, so that ASCII can be copied into the buffer without the encoder.
+     * @param charset The charset.
+     * @return true if ASCII text is the same bytes in the charset.
+     */
+    private static boolean isAsciiCompatible(Charset charset) {
+        if (!charset.canEncode()) {
+            return false;
+        }
+        char[] ascii = new char[0x80];
+        for (int c = 0; c < ascii.length; c++) {
+            ascii[c] = (char) c;
+        }
+        byte[] bytes = new String(ascii).getBytes(charset);
+        if (bytes.length != ascii.length) {
+            return false;
+        }
+        for (int c = 0; c < bytes.length; c++) {
+            if (bytes[c] != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the text in front of every literal of a type.
+     * @param type The token type.
+     * @return The "Type: X | Literal: " prefix.
+     */
+    private static String prefix(TokenType type) {
+        return "Type: " + type + " | Literal: ";
+    }
+
+    /**
+     * Writes every token except the final EOF token to a file, replacing its contents.
+     * @param tokens The tokens to write.
+     * @param target The file to write.
+     * @param encoding The format to write.
+     * @return The number of tokens written, not counting EOF.
+     * @throws IOException If an I/O error occurs.
+     */
+    public int write(TokenBuffer tokens, Path target, TokenEncoding encoding) throws IOException {
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            return write(tokens, channel, encoding);
+        }
+    }
+
+    /**
+     * Writes every token except the final EOF token to a channel.
+     * The binary encoding writes the EOF token too, since a token file always ends with it.
+     * @param tokens The tokens to write.
+     * @param channel The channel to write to. It is not closed.
+     * @param encoding The format to write.
+     * @return The number of tokens written, not counting EOF.
+     * @throws IOException If an I/O error occurs.
+     */
+    public int write(TokenBuffer tokens, WritableByteChannel channel, TokenEncoding encoding) throws IOException {
+        int count = tokens.size();
+        if (count > 0 && tokens.type(count - 1) == TokenType.EOF) {
+            count--;
+        }
+
+        if (encoding == TokenEncoding.BINARY) {
+            binaryWriter.write(tokens, channel);
+        } else {
+            buffer.clear();
+            if (asciiCompatible) {
+                for (int i = 0; i < count; i++) {
+                    writeLine(tokens, i, channel);
+                }
+            } else {
+                writeEncoded(tokens, count, channel);
+            }
+            flush(channel);
+        }
+        return count;
+    }
+
+    /**
+     * Encodes one "Type: X | Literal: y" line into the buffer.
+     * @param tokens The tokens.
+     * @param index The index of the token to encode.
+     * @param channel The channel to flush to when the buffer fills up.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void writeLine(TokenBuffer tokens, int index, WritableByteChannel channel) throws IOException {
+        put(prefixes[tokens.typeOrdinal(index)], channel);
+
+        char[] source = tokens.source();
+        int start = tokens.start(index);
+        int end = start + tokens.length(index);
+        for (int i = start; i < end; i++) {
+            char c = source[i];
+            if (c >= 0x80) {
+                putEncoded(source, i, end, channel);
+                break;
+            }
+            if (!buffer.hasRemaining()) {
+                flush(channel);
+            }
+            buffer.put((byte) c);
+        }
+
+        put(newline, channel);
+    }
+
+    /**
+     * Encodes every line with the charset encoder in one run, so a charset that starts with a byte order mark
+     * writes it once at the start of the file.
+     * @param tokens The tokens.
+     * @param count The number of tokens to encode.
+     * @param channel The channel to flush to when the buffer fills up.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void writeEncoded(TokenBuffer tokens, int count, WritableByteChannel channel) throws IOException {
+        char[] source = tokens.source();
+        CharBuffer newlineChars = CharBuffer.wrap(System.lineSeparator());
+        encoder.reset();
+        for (int i = 0; i < count; i++) {
+            encode(CharBuffer.wrap(prefix(tokens.type(i))), false, channel);
+            encode(CharBuffer.wrap(source, tokens.start(i), tokens.length(i)), false, channel);
+            encode(newlineChars.rewind(), false, channel);
+        }
+        encode(CharBuffer.allocate(0), true, channel);
+        while (encoder.flush(buffer).isOverflow()) {
+            flush(channel);
+        }
+    }
+
+    /**
+     * Encodes characters into the buffer, flushing as often as needed.
+     * @param chars The characters.
+     * @param endOfInput Whether no characters follow them.
+     * @param channel The channel to flush to.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void encode(CharBuffer chars, boolean endOfInput, WritableByteChannel channel) throws IOException {
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, buffer, endOfInput);
+            if (result.isOverflow()) {
+                flush(channel);
+            }
+        } while (result.isOverflow());
+    }
+
+    /**
+     * Encodes the rest of a literal with the charset encoder.
+     * @param source The characters.
+     * @param from The offset of the first character to encode.
+     * @param to The offset after the last character.
+     * @param channel The channel to flush to when the buffer fills up.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void putEncoded(char[] source, int from, int to, WritableByteChannel channel) throws IOException {
+        encoder.reset();
+        encode(CharBuffer.wrap(source, from, to - from), true, channel);
+        while (encoder.flush(buffer).isOverflow()) {
+            flush(channel);
+        }
+    }
+
+    /**
+     * Copies bytes into the buffer, flushing as often as needed.
+     * @param bytes The bytes.
+     * @param channel The channel to flush to.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void put(byte[] bytes, WritableByteChannel channel) throws IOException {
+        if (buffer.remaining() < bytes.length) {
+            flush(channel);
+        }
+        buffer.put(bytes);
+    }
+
+    /**
+     * Writes out everything in the buffer and clears it.
+     * @param channel The channel to write to.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void flush(WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,298 @@
+package compiler.parser;
+
+import compiler.scanner.TokenBuffer;
+import compiler.scanner.TokenType;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * An abstract syntax tree stored in a flat arena of int arrays instead of one object per node.
+ *
+ * A node is an index into the arrays. Each node has a kind, the index of the token it came from in the
+ * TokenBuffer the tree was parsed from, its first child and its next sibling (NO_NODE when there is none).
+ * Children are stored before their parent, so the root is the last node and a walk over increasing
+ * indices sees every child before its parent. A walk from the root follows firstChild and nextSibling.
+ * Neither walk allocates.
+ *
+ * The token and children of each kind, in order:
+ * <pre>
+ * PROGRAM     token: none (NO_TOKEN)       children: the statements
+ * BLOCK       token: '{'                   children: the statements
+ * LET         token: the variable name     children: the value
+ * WHILE       token: 'while'               children: the condition, the body
+ * FOR         token: 'for'                 children: the initializer, condition and update (each may be
+ *                                                    EMPTY), the body
+ * IF          token: 'if'                  children: the condition, the then branch, optionally the else
+ *                                                    branch
+ * PRINT       token: 'print'               children: the arguments
+ * INPUT       token: 'input'               children: the IDENTIFIER read into
+ * RETURN      token: 'return'              children: optionally the value
+ * BREAK       token: 'break'               children: none
+ * CONTINUE    token: 'continue'            children: none
+ * EXPRESSION  token: the first token       children: the expression
+ * EMPTY       token: ';' or ')'            children: none
+ * ASSIGN      token: '='                   children: the IDENTIFIER assigned to, the value
+ * BINARY      token: the operator          children: the left operand, the right operand
+ * UNARY       token: the operator          children: the operand ('-', '++' or '--' before it)
+ * POSTFIX     token: the operator          children: the operand ('++' or '--' after it)
+ * CALL        token: '('                   children: the callee, the arguments
+ * FUNCTION    token: 'function'            children: the PARAMETERs, the body BLOCK
+ * PARAMETER   token: the parameter name    children: none
+ * IDENTIFIER  token: the identifier        children: none
+ * NUMBER      token: the number            children: none
+ * STRING      token: the string            children: none
+ * BOOLEAN     token: 'true' or 'false'     children: none
+ * </pre>
+ *
+ * Optimization passes build new trees with the same layout. A NUMBER or BOOLEAN they compute is "folded": it
+ * carries its value instead of a literal token, and its token is that of the expression it replaced. A BLOCK
+ * they introduce takes the token of the statement it replaced or wraps.
+ */
+public final class Ast {
+    public static final int NO_NODE = -1;
+    public static final int NO_TOKEN = -1;
+
+    private static final NodeKind[] KINDS = NodeKind.values();
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private final TokenBuffer tokens; // The tokens the node token indices refer to
+    private byte[] kinds; // NodeKind ordinals
+    private int[] nodeTokens; // Token indices, or NO_TOKEN
+    private int[] firstChildren; // The first child of each node, or NO_NODE
+    private int[] nextSiblings; // The next sibling of each node, or NO_NODE
+    private long[] values; // The values of folded nodes, allocated on the first one
+    private final BitSet folded = new BitSet(); // The nodes that carry a value instead of a literal token
+    private int size;
+
+    /**
+     * Constructs a new empty Ast.
+     * @param tokens The tokens the nodes will refer to.
+     * @param capacity The initial number of nodes.
+     */
+    public Ast(TokenBuffer tokens, int capacity) {
+        this.tokens = tokens;
+        capacity = Math.max(capacity, DEFAULT_CAPACITY);
+        kinds = new byte[capacity];
+        nodeTokens = new int[capacity];
+        firstChildren = new int[capacity];
+        nextSiblings = new int[capacity];
+    }
+
+    /**
+     * Appends a node whose children, if any, are already in the arena and linked as siblings.
+     * @param kind The kind of the node.
+     * @param token The index of the node's token, or NO_TOKEN.
+     * @param firstChild The first child, or NO_NODE.
+     * @return The new node.
+     */
+    public int add(NodeKind kind, int token, int firstChild) {
+        if (size == kinds.length) {
+            grow();
+        }
+        kinds[size] = (byte) kind.ordinal();
+        nodeTokens[size] = token;
+        firstChildren[size] = firstChild;
+        nextSiblings[size] = NO_NODE;
+        return size++;
+    }
+
+    /**
+     * Makes one node the next sibling of another.
+     * @param node The earlier sibling.
+     * @param next The later sibling.
+     */
+    public void link(int node, int next) {
+        nextSiblings[node] = next;
+    }
+
+    /**
+     * Appends a folded NUMBER or BOOLEAN node.
+     * @param kind NUMBER or BOOLEAN.
+     * @param token The token of the expression the value was computed from.
+     * @param value The value, 1 or 0 for a BOOLEAN.
+     * @return The new node.
+     */
+    public int addFolded(NodeKind kind, int token, long value) {
+        if (kind != NodeKind.NUMBER && kind != NodeKind.BOOLEAN) {
+            throw new IllegalArgumentException("Only NUMBER and BOOLEAN nodes can be folded, not " + kind);
+        }
+        int node = add(kind, token, NO_NODE);
+        if (values == null || values.length < kinds.length) {
+            values = values == null ? new long[kinds.length] : Arrays.copyOf(values, kinds.length);
+        }
+        values[node] = value;
+        folded.set(node);
+        return node;
+    }
+
+    /**
+     * Doubles the capacity of every column.
+     */
+    private void grow() {
+        int capacity = kinds.length * 2;
+        kinds = Arrays.copyOf(kinds, capacity);
+        nodeTokens = Arrays.copyOf(nodeTokens, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+    }
+
+    /**
+     * Gets the tokens the node token indices refer to.
+     * @return The tokens.
+     */
+    public TokenBuffer tokens() {
+        return tokens;
+    }
+
+    /**
+     * Gets the number of nodes.
+     * @return The number of nodes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the root PROGRAM node.
+     * @return The root, which is the last node.
+     */
+    public int root() {
+        return size - 1;
+    }
+
+    /**
+     * Gets the kind of a node.
+     * @param node The node.
+     * @return The kind.
+     */
+    public NodeKind kind(int node) {
+        return KINDS[kindOrdinal(node)];
+    }
+
+    /**
+     * Gets the NodeKind ordinal of a node without touching the enum.
+     * @param node The node.
+     * @return The ordinal of the kind.
+     */
+    public int kindOrdinal(int node) {
+        checkNode(node);
+        return kinds[node];
+    }
+
+    /**
+     * Gets the token of a node.
+     * @param node The node.
+     * @return The token index, or NO_TOKEN.
+     */
+    public int token(int node) {
+        checkNode(node);
+        return nodeTokens[node];
+    }
+
+    /**
+     * Gets the first child of a node.
+     * @param node The node.
+     * @return The first child, or NO_NODE.
+     */
+    public int firstChild(int node) {
+        checkNode(node);
+        return firstChildren[node];
+    }
+
+    /**
+     * Gets the next sibling of a node.
+     * @param node The node.
+     * @return The next sibling, or NO_NODE.
+     */
+    public int nextSibling(int node) {
+        checkNode(node);
+        return nextSiblings[node];
+    }
+
+    /**
+     * Counts the children of a node.
+     * @param node The node.
+     * @return The number of children.
+     */
+    public int childCount(int node) {
+        int count = 0;
+        for (int child = firstChild(node); child != NO_NODE; child = nextSiblings[child]) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Gets a child of a node by position.
+     * @param node The node.
+     * @param index The position of the child, starting at 0.
+     * @return The child.
+     */
+    public int child(int node, int index) {
+        int child = firstChild(node);
+        for (int i = 0; i < index && child != NO_NODE; i++) {
+            child = nextSiblings[child];
+        }
+        if (child == NO_NODE) {
+            throw new IndexOutOfBoundsException("Child " + index + " out of range for " + childCount(node) + " children");
+        }
+        return child;
+    }
+
+    /**
+     * Checks if a node carries a computed value instead of a literal token.
+     * @param node The node.
+     * @return True if the node is a folded NUMBER or BOOLEAN.
+     */
+    public boolean isFolded(int node) {
+        checkNode(node);
+        return folded.get(node);
+    }
+
+    /**
+     * Gets the value of a NUMBER or BOOLEAN node, folded or not.
+     * @param node The node.
+     * @return The value, 1 or 0 for a BOOLEAN.
+     * @throws ArithmeticException If the literal does not fit in a long.
+     */
+    public long value(int node) {
+        if (isFolded(node)) {
+            return values[node];
+        }
+        int token = nodeTokens[node];
+        switch (kind(node)) {
+            case BOOLEAN:
+                return tokens.type(token) == TokenType.TRUE ? 1 : 0;
+            case NUMBER:
+                char[] source = tokens.source();
+                long value = 0;
+                for (int i = tokens.start(token), end = i + tokens.length(token); i < end; i++) {
+                    value = Math.addExact(Math.multiplyExact(value, 10), Character.digit(source[i], 10));
+                }
+                return value;
+            default:
+                throw new IllegalArgumentException("Node " + node + " is a " + kind(node) + ", not a NUMBER or BOOLEAN");
+        }
+    }
+
+    /**
+     * Gets the literal of a node's token.
+     * @param node The node.
+     * @return The literal, or null if the node has no token.
+     */
+    public String literal(int node) {
+        int token = token(node);
+        return token == NO_TOKEN ? null : tokens.literal(token);
+    }
+
+    /**
+     * Checks that an index refers to a stored node.
+     * @param node The index to check.
+     */
+    private void checkNode(int node) {
+        if (node < 0 || node >= size) {
+            throw new IndexOutOfBoundsException("Node " + node + " out of range for size " + size);
+        }
+    }
+}
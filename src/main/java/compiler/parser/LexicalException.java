@@ -0,0 +1,36 @@
+package compiler.parser;
+
+import compiler.scanner.Diagnostics;
+
+/**
+ * Thrown when a source has lexical errors, carrying every error the scan found rather than only the first.
+ * Its position is that of the first error, and its message lists them all, one per line.
+ */
+public class LexicalException extends ParseException {
+    private static final long serialVersionUID = 1L;
+
+    private final String messages; // Every error, one per line
+
+    /**
+     * Constructs a new LexicalException.
+     * @param diagnostics The errors of the scan, at least one.
+     * @param source The characters that were scanned.
+     */
+    public LexicalException(Diagnostics diagnostics, char[] source) {
+        super(diagnostics.kind(0).getDescription(), -1, diagnostics.row(0), diagnostics.col(0));
+        StringBuilder messages = new StringBuilder();
+        for (int i = 0; i < diagnostics.size(); i++) {
+            messages.append(i == 0 ? "" : "\n").append(diagnostics.message(i, source));
+        }
+        this.messages = messages.toString();
+    }
+
+    /**
+     * Gets every error.
+     * @return The messages, one per line.
+     */
+    @Override
+    public String getMessage() {
+        return messages;
+    }
+}
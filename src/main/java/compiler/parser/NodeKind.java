@@ -0,0 +1,35 @@
+package compiler.parser;
+
+/**
+ * The kinds of AST nodes. The Ast class documents the token and children of each kind.
+ */
+public enum NodeKind {
+    PROGRAM,
+
+    // Statements
+    BLOCK,
+    LET,
+    WHILE,
+    FOR,
+    IF,
+    PRINT,
+    INPUT,
+    RETURN,
+    BREAK,
+    CONTINUE,
+    EXPRESSION,
+    EMPTY,
+
+    // Expressions
+    ASSIGN,
+    BINARY,
+    UNARY,
+    POSTFIX,
+    CALL,
+    FUNCTION,
+    PARAMETER,
+    IDENTIFIER,
+    NUMBER,
+    STRING,
+    BOOLEAN
+}
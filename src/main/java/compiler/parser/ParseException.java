@@ -0,0 +1,50 @@
+package compiler.parser;
+
+/**
+ * Thrown when the tokens do not form a valid program.
+ */
+public class ParseException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final int token; // The index of the token the parser stopped at
+    private final int row; // The line of that token
+    private final int col; // The column of that token
+
+    /**
+     * Constructs a new ParseException.
+     * @param message What the parser expected.
+     * @param token The index of the offending token.
+     * @param row The line of the offending token.
+     * @param col The column of the offending token.
+     */
+    public ParseException(String message, int token, int row, int col) {
+        super(message + " at " + row + ":" + col);
+        this.token = token;
+        this.row = row;
+        this.col = col;
+    }
+
+    /**
+     * Gets the index of the offending token.
+     * @return The token index.
+     */
+    public int getToken() {
+        return token;
+    }
+
+    /**
+     * Gets the line of the offending token.
+     * @return The line, starting at 1.
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * Gets the column of the offending token.
+     * @return The column, starting at 1.
+     */
+    public int getCol() {
+        return col;
+    }
+}
@@ -0,0 +1,658 @@
+package compiler.parser;
+
+import compiler.scanner.Scanner;
+import compiler.scanner.TokenBuffer;
+import compiler.scanner.TokenType;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A recursive-descent parser from the scanner's tokens to an arena-allocated Ast.
+ *
+ * The grammar, with one method per rule:
+ * <pre>
+ * program    := statement* EOF
+ * statement  := block | let | while | for | if | print | input | return | break | continue
+ *             | expression ';'
+ * block      := '{' statement* '}'
+ * let        := 'let' IDENTIFIER '=' expression ';'      (the ';' is optional after a function literal)
+ * while      := 'while' '(' expression ')' statement
+ * for        := 'for' '(' (let-binding | expression)? ';' expression? ';' expression? ')' statement
+ * if         := 'if' '(' expression ')' statement ('else' statement)?
+ * print      := 'print' '(' (expression (',' expression)*)? ')' ';'
+ * input      := 'input' '(' IDENTIFIER ')' ';'
+ * return     := 'return' expression? ';'
+ * expression := prefix* operand (postfix | infix expression)*
+ * operand    := atom | '(' expression ')'
+ * atom       := IDENTIFIER | NUMBER | STRING | 'true' | 'false'
+ *             | 'function' '(' (IDENTIFIER (',' IDENTIFIER)*)? ')' block
+ * </pre>
+ * Expressions are parsed by precedence climbing, with the operators' binding powers looked up in the
+ * Precedence tables by token type ordinal. Only an identifier can be assigned to.
+ *
+ * Each nested operand costs one level of recursion, up to MAX_RECURSION_DEPTH levels; deeper expressions,
+ * such as machine-generated ones, continue on an explicit stack. Constructing the parser in iterative
+ * mode uses the explicit stack for every expression.
+ */
+public final class Parser {
+    private static final int MAX_RECURSION_DEPTH = 256;
+    private static final int LPAREN = TokenType.LPAREN.ordinal();
+    private static final int ASSIGN = TokenType.ASSIGN.ordinal();
+
+    // Kinds of pending operator on the iterative parser's stack
+    private static final int PREFIX_FRAME = 0;
+    private static final int GROUP_FRAME = 1;
+    private static final int INFIX_FRAME = 2;
+    private static final int CALL_FRAME = 3;
+
+    private final TokenBuffer tokens; // The tokens being parsed, ending with EOF
+    private final Ast ast; // The tree being built
+    private final boolean iterative; // Whether every expression is parsed without recursion
+    private int pos; // The index of the current token
+    private int depth; // The current recursion depth of expression(int)
+
+    // The iterative parser's stack, one entry per pending operator
+    private int[] frameKinds = new int[16];
+    private int[] framePowers = new int[16]; // The binding power to continue with when the frame completes
+    private int[] frameTokens = new int[16]; // The operator token
+    private int[] frameNodes = new int[16]; // The left operand, or the callee of a call
+    private int[] frameLasts = new int[16]; // The last linked child of a call
+    private int frames;
+
+    /**
+     * Constructs a new Parser.
+     * @param tokens The tokens to parse, as produced by Scanner.tokenize().
+     */
+    public Parser(TokenBuffer tokens) {
+        this(tokens, false);
+    }
+
+    /**
+     * Constructs a new Parser, optionally in iterative mode.
+     * @param tokens The tokens to parse, as produced by Scanner.tokenize().
+     * @param iterative True to parse every expression with an explicit stack instead of recursion.
+     */
+    public Parser(TokenBuffer tokens, boolean iterative) {
+        this.tokens = tokens;
+        this.ast = new Ast(tokens, tokens.size()); // about one node per token
+        this.iterative = iterative;
+    }
+
+    /**
+     * Scans and parses a source file.
+     * @param fileName The name of the file to parse.
+     * @return The tree.
+     * @throws IOException If an I/O error occurs.
+     * @throws ParseException If the file is not a valid program.
+     */
+    public static Ast parse(String fileName) throws IOException, ParseException {
+        Scanner scanner = new Scanner(fileName);
+        TokenBuffer tokens = scanner.tokenize();
+        scanner.close();
+        return new Parser(tokens).parse();
+    }
+
+    /**
+     * Parses the whole token stream.
+     * @return The tree, whose root is a PROGRAM node.
+     * @throws ParseException If the tokens are not a valid program.
+     */
+    public Ast parse() throws ParseException {
+        int first = Ast.NO_NODE;
+        int last = Ast.NO_NODE;
+        while (!check(TokenType.EOF)) {
+            int statement = statement();
+            if (first == Ast.NO_NODE) {
+                first = statement;
+            } else {
+                ast.link(last, statement);
+            }
+            last = statement;
+        }
+        ast.add(NodeKind.PROGRAM, Ast.NO_TOKEN, first);
+        return ast;
+    }
+
+    /**
+     * Parses a statement.
+     * @return The statement node.
+     * @throws ParseException If the tokens are not a statement.
+     */
+    private int statement() throws ParseException {
+        switch (type()) {
+            case LBRACE:
+                return block();
+            case LET:
+                return let(true);
+            case WHILE:
+                return whileStatement();
+            case FOR:
+                return forStatement();
+            case IF:
+                return ifStatement();
+            case PRINT:
+                return print();
+            case INPUT:
+                return input();
+            case RETURN:
+                return returnStatement();
+            case BREAK:
+                return ast.add(NodeKind.BREAK, advanceThen(TokenType.SEMICOLON), Ast.NO_NODE);
+            case CONTINUE:
+                return ast.add(NodeKind.CONTINUE, advanceThen(TokenType.SEMICOLON), Ast.NO_NODE);
+            default:
+                int token = pos;
+                int expression = expression();
+                expect(TokenType.SEMICOLON, "';' after expression");
+                return ast.add(NodeKind.EXPRESSION, token, expression);
+        }
+    }
+
+    /**
+     * Parses a block of statements between braces.
+     * @return The BLOCK node.
+     * @throws ParseException If the block is malformed.
+     */
+    private int block() throws ParseException {
+        int brace = expect(TokenType.LBRACE, "'{'");
+        int first = Ast.NO_NODE;
+        int last = Ast.NO_NODE;
+        while (!check(TokenType.RBRACE)) {
+            if (check(TokenType.EOF)) {
+                throw error("Expected '}' to close the block");
+            }
+            int statement = statement();
+            if (first == Ast.NO_NODE) {
+                first = statement;
+            } else {
+                ast.link(last, statement);
+            }
+            last = statement;
+        }
+        pos++;
+        return ast.add(NodeKind.BLOCK, brace, first);
+    }
+
+    /**
+     * Parses a let binding.
+     * @param statement True for a statement, which ends with ';', false for a for-loop initializer.
+     * @return The LET node.
+     * @throws ParseException If the binding is malformed.
+     */
+    private int let(boolean statement) throws ParseException {
+        pos++; // 'let'
+        int name = expect(TokenType.IDENTIFIER, "a variable name after 'let'");
+        expect(TokenType.ASSIGN, "'=' after the variable name");
+        int value = expression();
+        if (statement && (ast.kind(value) != NodeKind.FUNCTION || check(TokenType.SEMICOLON))) {
+            expect(TokenType.SEMICOLON, "';' after the let binding");
+        }
+        return ast.add(NodeKind.LET, name, value);
+    }
+
+    /**
+     * Parses a while loop.
+     * @return The WHILE node.
+     * @throws ParseException If the loop is malformed.
+     */
+    private int whileStatement() throws ParseException {
+        int keyword = pos++;
+        int condition = condition();
+        ast.link(condition, statement());
+        return ast.add(NodeKind.WHILE, keyword, condition);
+    }
+
+    /**
+     * Parses a for loop.
+     * @return The FOR node.
+     * @throws ParseException If the loop is malformed.
+     */
+    private int forStatement() throws ParseException {
+        int keyword = pos++;
+        expect(TokenType.LPAREN, "'(' after 'for'");
+
+        int init;
+        if (check(TokenType.LET)) {
+            init = let(false);
+        } else {
+            init = optionalExpression(TokenType.SEMICOLON);
+        }
+        expect(TokenType.SEMICOLON, "';' after the loop initializer");
+        int condition = optionalExpression(TokenType.SEMICOLON);
+        expect(TokenType.SEMICOLON, "';' after the loop condition");
+        int update = optionalExpression(TokenType.RPAREN);
+        expect(TokenType.RPAREN, "')' after the loop update");
+
+        ast.link(init, condition);
+        ast.link(condition, update);
+        ast.link(update, statement());
+        return ast.add(NodeKind.FOR, keyword, init);
+    }
+
+    /**
+     * Parses an expression, or an EMPTY node if the next token ends it.
+     * @param end The token that follows the expression.
+     * @return The expression or EMPTY node.
+     * @throws ParseException If the expression is malformed.
+     */
+    private int optionalExpression(TokenType end) throws ParseException {
+        if (check(end)) {
+            return ast.add(NodeKind.EMPTY, pos, Ast.NO_NODE);
+        }
+        return expression();
+    }
+
+    /**
+     * Parses an if statement and its else branch.
+     * @return The IF node.
+     * @throws ParseException If the statement is malformed.
+     */
+    private int ifStatement() throws ParseException {
+        int keyword = pos++;
+        int condition = condition();
+        int then = statement();
+        ast.link(condition, then);
+        if (check(TokenType.ELSE)) {
+            pos++;
+            ast.link(then, statement());
+        }
+        return ast.add(NodeKind.IF, keyword, condition);
+    }
+
+    /**
+     * Parses a parenthesized condition.
+     * @return The condition's expression node.
+     * @throws ParseException If the condition is malformed.
+     */
+    private int condition() throws ParseException {
+        expect(TokenType.LPAREN, "'(' before the condition");
+        int condition = expression();
+        expect(TokenType.RPAREN, "')' after the condition");
+        return condition;
+    }
+
+    /**
+     * Parses a print statement.
+     * @return The PRINT node.
+     * @throws ParseException If the statement is malformed.
+     */
+    private int print() throws ParseException {
+        int keyword = pos++;
+        expect(TokenType.LPAREN, "'(' after 'print'");
+        int arguments = arguments();
+        expect(TokenType.SEMICOLON, "';' after print");
+        return ast.add(NodeKind.PRINT, keyword, arguments);
+    }
+
+    /**
+     * Parses an input statement.
+     * @return The INPUT node.
+     * @throws ParseException If the statement is malformed.
+     */
+    private int input() throws ParseException {
+        int keyword = pos++;
+        expect(TokenType.LPAREN, "'(' after 'input'");
+        int target = ast.add(NodeKind.IDENTIFIER, expect(TokenType.IDENTIFIER, "a variable name"), Ast.NO_NODE);
+        expect(TokenType.RPAREN, "')' after the variable name");
+        expect(TokenType.SEMICOLON, "';' after input");
+        return ast.add(NodeKind.INPUT, keyword, target);
+    }
+
+    /**
+     * Parses a return statement.
+     * @return The RETURN node.
+     * @throws ParseException If the statement is malformed.
+     */
+    private int returnStatement() throws ParseException {
+        int keyword = pos++;
+        int value = Ast.NO_NODE;
+        if (!check(TokenType.SEMICOLON)) {
+            value = expression();
+        }
+        expect(TokenType.SEMICOLON, "';' after return");
+        return ast.add(NodeKind.RETURN, keyword, value);
+    }
+
+    /**
+     * Parses a whole expression, including assignment.
+     * @return The expression node.
+     * @throws ParseException If the expression is malformed.
+     */
+    private int expression() throws ParseException {
+        return expression(Precedence.LOWEST);
+    }
+
+    /**
+     * Parses an expression by precedence climbing: an operand, then every operator that binds tighter than
+     * minPower together with its right operand. Nested operands are parsed recursively until the nesting
+     * reaches MAX_RECURSION_DEPTH, after which the iterative version takes over.
+     * @param minPower The binding power the expression is parsed with.
+     * @return The expression node.
+     * @throws ParseException If the expression is malformed.
+     */
+    private int expression(int minPower) throws ParseException {
+        if (iterative || depth >= MAX_RECURSION_DEPTH) {
+            return iterativeExpression(minPower);
+        }
+        depth++;
+        try {
+            int left;
+            int type = tokens.typeOrdinal(pos);
+            if (Precedence.PREFIX[type] > 0) {
+                int operator = pos++;
+                left = ast.add(NodeKind.UNARY, operator, expression(Precedence.PREFIX[type]));
+            } else if (type == LPAREN) {
+                pos++;
+                left = expression(Precedence.LOWEST);
+                expect(TokenType.RPAREN, "')' after the expression");
+            } else {
+                left = atom();
+            }
+
+            while (true) {
+                type = tokens.typeOrdinal(pos);
+                if (Precedence.POSTFIX[type] > minPower) {
+                    int operator = pos++;
+                    if (type == LPAREN) {
+                        ast.link(left, arguments());
+                        left = ast.add(NodeKind.CALL, operator, left);
+                    } else {
+                        left = ast.add(NodeKind.POSTFIX, operator, left);
+                    }
+                } else if (Precedence.INFIX_LEFT[type] > minPower) {
+                    int operator = infixOperator(left);
+                    left = infix(operator, left, expression(Precedence.INFIX_RIGHT[type]));
+                } else {
+                    return left;
+                }
+            }
+        } finally {
+            depth--;
+        }
+    }
+
+    /**
+     * Parses an expression like expression(int) does, but with an explicit stack of pending operators in
+     * place of recursion, so nesting depth only costs heap. It builds exactly the same nodes in the same
+     * order. Function literals still parse their bodies recursively.
+     * @param minPower The binding power the expression is parsed with.
+     * @return The expression node.
+     * @throws ParseException If the expression is malformed.
+     */
+    private int iterativeExpression(int minPower) throws ParseException {
+        int base = frames; // Frames below this belong to an enclosing call
+        int power = minPower;
+
+        operand:
+        while (true) {
+            // Prefix operators and open parentheses, then the operand they apply to
+            int left;
+            while (true) {
+                int type = tokens.typeOrdinal(pos);
+                if (Precedence.PREFIX[type] > 0) {
+                    push(PREFIX_FRAME, power, pos++, Ast.NO_NODE);
+                    power = Precedence.PREFIX[type];
+                } else if (type == LPAREN) {
+                    push(GROUP_FRAME, power, pos++, Ast.NO_NODE);
+                    power = Precedence.LOWEST;
+                } else {
+                    left = atom();
+                    break;
+                }
+            }
+
+            // Operators after the operand, and the pending operators they complete
+            while (true) {
+                int type = tokens.typeOrdinal(pos);
+                if (Precedence.POSTFIX[type] > power) {
+                    int operator = pos++;
+                    if (type != LPAREN) {
+                        left = ast.add(NodeKind.POSTFIX, operator, left);
+                    } else if (match(TokenType.RPAREN)) {
+                        left = ast.add(NodeKind.CALL, operator, left);
+                    } else {
+                        push(CALL_FRAME, power, operator, left);
+                        power = Precedence.LOWEST;
+                        continue operand;
+                    }
+                } else if (Precedence.INFIX_LEFT[type] > power) {
+                    push(INFIX_FRAME, power, infixOperator(left), left);
+                    power = Precedence.INFIX_RIGHT[type];
+                    continue operand;
+                } else if (frames == base) {
+                    return left;
+                } else {
+                    int frame = --frames;
+                    int operator = frameTokens[frame];
+                    power = framePowers[frame];
+                    switch (frameKinds[frame]) {
+                        case PREFIX_FRAME:
+                            left = ast.add(NodeKind.UNARY, operator, left);
+                            break;
+                        case GROUP_FRAME:
+                            expect(TokenType.RPAREN, "')' after the expression");
+                            break;
+                        case INFIX_FRAME:
+                            left = infix(operator, frameNodes[frame], left);
+                            break;
+                        default: // CALL_FRAME, with left as the latest argument
+                            ast.link(frameLasts[frame], left);
+                            if (match(TokenType.COMMA)) {
+                                frameLasts[frame] = left;
+                                frames++;
+                                power = Precedence.LOWEST;
+                                continue operand;
+                            }
+                            expect(TokenType.RPAREN, "')' after the arguments");
+                            left = ast.add(NodeKind.CALL, operator, frameNodes[frame]);
+                            break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Pushes a pending operator onto the iterative parser's stack.
+     * @param kind The kind of frame.
+     * @param power The binding power to continue with once the frame is complete.
+     * @param token The operator token.
+     * @param node The left operand or callee, or NO_NODE.
+     */
+    private void push(int kind, int power, int token, int node) {
+        if (frames == frameKinds.length) {
+            int capacity = frameKinds.length * 2;
+            frameKinds = Arrays.copyOf(frameKinds, capacity);
+            framePowers = Arrays.copyOf(framePowers, capacity);
+            frameTokens = Arrays.copyOf(frameTokens, capacity);
+            frameNodes = Arrays.copyOf(frameNodes, capacity);
+            frameLasts = Arrays.copyOf(frameLasts, capacity);
+        }
+        frameKinds[frames] = kind;
+        framePowers[frames] = power;
+        frameTokens[frames] = token;
+        frameNodes[frames] = node;
+        frameLasts[frames] = node;
+        frames++;
+    }
+
+    /**
+     * Consumes an infix operator, checking that the target of an assignment is a variable.
+     * @param left The left operand.
+     * @return The index of the operator token.
+     * @throws ParseException If an assignment's target is not a variable.
+     */
+    private int infixOperator(int left) throws ParseException {
+        if (check(TokenType.ASSIGN) && ast.kind(left) != NodeKind.IDENTIFIER) {
+            throw error("Only a variable can be assigned to");
+        }
+        return pos++;
+    }
+
+    /**
+     * Adds a BINARY or ASSIGN node.
+     * @param operator The operator token.
+     * @param left The left operand.
+     * @param right The right operand.
+     * @return The new node.
+     */
+    private int infix(int operator, int left, int right) {
+        ast.link(left, right);
+        NodeKind kind = tokens.typeOrdinal(operator) == ASSIGN ? NodeKind.ASSIGN : NodeKind.BINARY;
+        return ast.add(kind, operator, left);
+    }
+
+    /**
+     * Parses a comma-separated argument list after its '(' up to and including the ')'.
+     * @return The first argument, linked to the others, or NO_NODE if there are none.
+     * @throws ParseException If the list is malformed.
+     */
+    private int arguments() throws ParseException {
+        if (match(TokenType.RPAREN)) {
+            return Ast.NO_NODE;
+        }
+        int first = expression();
+        int last = first;
+        while (match(TokenType.COMMA)) {
+            int argument = expression();
+            ast.link(last, argument);
+            last = argument;
+        }
+        expect(TokenType.RPAREN, "')' after the arguments");
+        return first;
+    }
+
+    /**
+     * Parses an operand that is not built from other expressions: a literal, a variable or a function literal.
+     * @return The expression node.
+     * @throws ParseException If the tokens are not an expression.
+     */
+    private int atom() throws ParseException {
+        switch (type()) {
+            case IDENTIFIER:
+                return ast.add(NodeKind.IDENTIFIER, pos++, Ast.NO_NODE);
+            case NUMBER:
+                return ast.add(NodeKind.NUMBER, pos++, Ast.NO_NODE);
+            case STRING:
+                return ast.add(NodeKind.STRING, pos++, Ast.NO_NODE);
+            case TRUE:
+            case FALSE:
+                return ast.add(NodeKind.BOOLEAN, pos++, Ast.NO_NODE);
+            case FUNCTION:
+                return function();
+            case ILLEGAL:
+                throw error("Unexpected character '" + tokens.literal(pos) + "'");
+            default:
+                throw error("Expected an expression but found " + describe(pos));
+        }
+    }
+
+    /**
+     * Parses a function literal.
+     * @return The FUNCTION node.
+     * @throws ParseException If the function is malformed.
+     */
+    private int function() throws ParseException {
+        int keyword = pos++;
+        expect(TokenType.LPAREN, "'(' after 'function'");
+        int first = Ast.NO_NODE;
+        int last = Ast.NO_NODE;
+        if (!check(TokenType.RPAREN)) {
+            do {
+                int parameter = ast.add(NodeKind.PARAMETER, expect(TokenType.IDENTIFIER, "a parameter name"), Ast.NO_NODE);
+                if (first == Ast.NO_NODE) {
+                    first = parameter;
+                } else {
+                    ast.link(last, parameter);
+                }
+                last = parameter;
+            } while (match(TokenType.COMMA));
+        }
+        expect(TokenType.RPAREN, "')' after the parameters");
+        int body = block();
+        if (first == Ast.NO_NODE) {
+            first = body;
+        } else {
+            ast.link(last, body);
+        }
+        return ast.add(NodeKind.FUNCTION, keyword, first);
+    }
+
+    /**
+     * Gets the type of the current token.
+     * @return The token type.
+     */
+    private TokenType type() {
+        return tokens.type(pos);
+    }
+
+    /**
+     * Checks the type of the current token.
+     * @param type The expected type.
+     * @return True if the current token has that type.
+     */
+    private boolean check(TokenType type) {
+        return tokens.typeOrdinal(pos) == type.ordinal();
+    }
+
+    /**
+     * Consumes the current token if it has a type.
+     * @param type The expected type.
+     * @return True if the token was consumed.
+     */
+    private boolean match(TokenType type) {
+        if (check(type)) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Consumes the current token, which must have a type.
+     * @param type The expected type.
+     * @param what A description of the expected token for the error message.
+     * @return The index of the consumed token.
+     * @throws ParseException If the token has another type.
+     */
+    private int expect(TokenType type, String what) throws ParseException {
+        if (!check(type)) {
+            throw error("Expected " + what + " but found " + describe(pos));
+        }
+        return pos++;
+    }
+
+    /**
+     * Consumes a keyword and the token that must follow it.
+     * @param next The type of the following token.
+     * @return The index of the keyword.
+     * @throws ParseException If the following token has another type.
+     */
+    private int advanceThen(TokenType next) throws ParseException {
+        int keyword = pos++;
+        expect(next, "';' after '" + tokens.literal(keyword) + "'");
+        return keyword;
+    }
+
+    /**
+     * Describes a token for an error message.
+     * @param token The index of the token.
+     * @return The description.
+     */
+    private String describe(int token) {
+        if (tokens.type(token) == TokenType.EOF) {
+            return "the end of the file";
+        }
+        return "'" + tokens.literal(token) + "'";
+    }
+
+    /**
+     * Creates an error at the current token.
+     * @param message The error message.
+     * @return The exception.
+     */
+    private ParseException error(String message) {
+        return new ParseException(message, pos, tokens.row(pos), tokens.col(pos));
+    }
+}
@@ -0,0 +1,63 @@
+package compiler.parser;
+
+import compiler.scanner.TokenType;
+
+/**
+ * The binding powers of the expression operators, indexed by TokenType ordinal.
+ * An operator applies to the operand before it while its power is greater than the power that operand is
+ * being parsed with, so a higher power binds tighter and 0 means the token is not an operator in that
+ * position. An infix operator's right operand is parsed with its right power: left-associative operators
+ * have a right power one above their left power, and the right-associative '=' has one below it.
+ * <pre>
+ * operator                  prefix   infix (left, right)   postfix
+ * =                                  2, 1
+ * == !=                              3, 4
+ * &lt; &gt; &lt;= &gt;=                          5, 6
+ * + -                                7, 8
+ * - ++ -- (prefix)          9
+ * ++ -- ( (call)                                           11
+ * </pre>
+ */
+final class Precedence {
+    static final int LOWEST = 0; // The power a whole expression is parsed with
+
+    static final int[] PREFIX = new int[TokenType.values().length];
+    static final int[] INFIX_LEFT = new int[TokenType.values().length];
+    static final int[] INFIX_RIGHT = new int[TokenType.values().length];
+    static final int[] POSTFIX = new int[TokenType.values().length];
+
+    // Static block to fill in the tables
+    static {
+        infix(TokenType.ASSIGN, 2, 1);
+        infix(TokenType.EQ, 3, 4);
+        infix(TokenType.NOTEQ, 3, 4);
+        infix(TokenType.LT, 5, 6);
+        infix(TokenType.GT, 5, 6);
+        infix(TokenType.LTEQ, 5, 6);
+        infix(TokenType.GTEQ, 5, 6);
+        infix(TokenType.PLUS, 7, 8);
+        infix(TokenType.MINUS, 7, 8);
+
+        PREFIX[TokenType.MINUS.ordinal()] = 9;
+        PREFIX[TokenType.INCRE.ordinal()] = 9;
+        PREFIX[TokenType.DECRE.ordinal()] = 9;
+
+        POSTFIX[TokenType.INCRE.ordinal()] = 11;
+        POSTFIX[TokenType.DECRE.ordinal()] = 11;
+        POSTFIX[TokenType.LPAREN.ordinal()] = 11;
+    }
+
+    private Precedence() {
+    }
+
+    /**
+     * Sets the powers of an infix operator.
+     * @param type The operator.
+     * @param left The power it binds to its left operand with.
+     * @param right The power its right operand is parsed with.
+     */
+    private static void infix(TokenType type, int left, int right) {
+        INFIX_LEFT[type.ordinal()] = left;
+        INFIX_RIGHT[type.ordinal()] = right;
+    }
+}
@@ -0,0 +1,79 @@
+package compiler.scanner;
+
+import java.util.Map;
+
+/**
+ * Constants and helpers shared by BinaryTokenWriter and BinaryTokenReader.
+ *
+ * A token file is laid out as:
+ *   magic "BCTK", format version (varint), source length (varint),
+ *   string count (varint), then each string as a UTF-8 byte length (varint) and its bytes,
+ *   token count (varint), then per token:
+ *     type ordinal (varint),
+ *     start minus the previous token's end (zigzag varint),
+ *     row minus the previous token's row (varint),
+ *     column (varint),
+ *     and, only for types without fixed text, the index of the literal in the string table (varint).
+ * The literal of a fixed-text type, such as LET or PLUS, is implied by its type.
+ */
+public final class BinaryTokenFormat {
+    public static final int MAGIC = 0x4243544B; // "BCTK"
+    public static final int VERSION = 1;
+
+    private static final String[] FIXED_TEXT = new String[TokenType.values().length];
+
+    // Static block to fill in the text of every token type that always has the same literal
+    static {
+        for (Map.Entry<String, TokenType> keyword : Token.keywords.entrySet()) {
+            FIXED_TEXT[keyword.getValue().ordinal()] = keyword.getKey();
+        }
+        FIXED_TEXT[TokenType.PLUS.ordinal()] = "+";
+        FIXED_TEXT[TokenType.MINUS.ordinal()] = "-";
+        FIXED_TEXT[TokenType.ASSIGN.ordinal()] = "=";
+        FIXED_TEXT[TokenType.INCRE.ordinal()] = "++";
+        FIXED_TEXT[TokenType.DECRE.ordinal()] = "--";
+        FIXED_TEXT[TokenType.EQ.ordinal()] = "==";
+        FIXED_TEXT[TokenType.NOTEQ.ordinal()] = "!=";
+        FIXED_TEXT[TokenType.GT.ordinal()] = ">";
+        FIXED_TEXT[TokenType.LT.ordinal()] = "<";
+        FIXED_TEXT[TokenType.GTEQ.ordinal()] = ">=";
+        FIXED_TEXT[TokenType.LTEQ.ordinal()] = "<=";
+        FIXED_TEXT[TokenType.LPAREN.ordinal()] = "(";
+        FIXED_TEXT[TokenType.RPAREN.ordinal()] = ")";
+        FIXED_TEXT[TokenType.LBRACE.ordinal()] = "{";
+        FIXED_TEXT[TokenType.RBRACE.ordinal()] = "}";
+        FIXED_TEXT[TokenType.COMMA.ordinal()] = ",";
+        FIXED_TEXT[TokenType.SEMICOLON.ordinal()] = ";";
+        FIXED_TEXT[TokenType.EOF.ordinal()] = "";
+    }
+
+    private BinaryTokenFormat() {
+    }
+
+    /**
+     * Gets the literal every token of a type has.
+     * @param typeOrdinal The TokenType ordinal.
+     * @return The fixed literal, or null if the type's literal varies and lives in the string table.
+     */
+    public static String fixedText(int typeOrdinal) {
+        return FIXED_TEXT[typeOrdinal];
+    }
+
+    /**
+     * Maps a signed value to an unsigned one so that small negative values stay small.
+     * @param value The signed value.
+     * @return The zigzag encoding.
+     */
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    /**
+     * Reverses zigzag(int).
+     * @param value The zigzag encoding.
+     * @return The signed value.
+     */
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
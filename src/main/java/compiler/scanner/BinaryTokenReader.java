@@ -0,0 +1,197 @@
+package compiler.scanner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads tokens written by BinaryTokenWriter.
+ * With the original source at hand the tokens are rebuilt as a TokenBuffer pointing into it; without it
+ * they are rebuilt as Token objects from the string table.
+ */
+public final class BinaryTokenReader {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final byte[] data; // The whole encoded file
+    private int pos; // The read cursor in data
+    private final int sourceLength; // The length of the source the tokens were scanned from
+    private final String[] strings; // The string table
+
+    /**
+     * Constructs a new BinaryTokenReader and reads the header and string table.
+     * @param in The stream to read. It is read to the end but not closed.
+     * @throws IOException If an I/O error occurs or the data is not a valid token file.
+     */
+    public BinaryTokenReader(InputStream in) throws IOException {
+        this.data = in.readAllBytes();
+
+        if (data.length < 4 || readInt() != BinaryTokenFormat.MAGIC) {
+            throw new IOException("Not a token file");
+        }
+        int version = readVarint();
+        if (version != BinaryTokenFormat.VERSION) {
+            throw new IOException("Unsupported token file version " + version);
+        }
+        sourceLength = readVarint();
+
+        int count = readVarint();
+        strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            int length = readVarint();
+            check(length);
+            strings[i] = new String(data, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+        }
+    }
+
+    /**
+     * Gets the length of the source the tokens were scanned from.
+     * @return The source length.
+     */
+    public int getSourceLength() {
+        return sourceLength;
+    }
+
+    /**
+     * Rebuilds the tokens as a TokenBuffer over the source they were scanned from.
+     * @param source The source characters, which must be the ones the tokens were written from.
+     * @param symbols The table identifiers are interned into.
+     * @return The tokens.
+     * @throws IOException If the data is corrupt or does not fit the source.
+     */
+    public TokenBuffer readTokens(SourceBuffer source, SymbolTable symbols) throws IOException {
+        if (source.length() != sourceLength) {
+            throw new IOException("Token file was written for a source of length " + sourceLength
+                    + ", not " + source.length());
+        }
+        char[] chars = source.chars();
+        int[] symbolIds = new int[strings.length];
+        Arrays.fill(symbolIds, SymbolTable.NO_SYMBOL);
+
+        int count = readVarint();
+        TokenBuffer tokens = new TokenBuffer(chars, sourceLength, count);
+        int prevEnd = 0;
+        int prevRow = 1;
+        for (int i = 0; i < count; i++) {
+            TokenType type = readType();
+            int start = prevEnd + BinaryTokenFormat.unzigzag(readVarint());
+            int row = prevRow + readVarint();
+            int col = readVarint();
+
+            int length;
+            int symbol = SymbolTable.NO_SYMBOL;
+            String fixed = BinaryTokenFormat.fixedText(type.ordinal());
+            if (fixed != null) {
+                length = fixed.length();
+            } else {
+                int index = readIndex();
+                length = strings[index].length();
+                if (type == TokenType.IDENTIFIER) {
+                    if (symbolIds[index] == SymbolTable.NO_SYMBOL) {
+                        symbolIds[index] = symbols.intern(strings[index]);
+                    }
+                    symbol = symbolIds[index];
+                }
+            }
+            if (start < 0 || start + length > sourceLength) {
+                throw new IOException("Token " + i + " lies outside the source");
+            }
+
+            tokens.add(type, start, length, row, col, symbol);
+            prevEnd = start + length;
+            prevRow = row;
+        }
+        return tokens;
+    }
+
+    /**
+     * Rebuilds the tokens as Token objects, without needing the source.
+     * @return The tokens.
+     * @throws IOException If the data is corrupt.
+     */
+    public List<Token> readTokens() throws IOException {
+        int count = readVarint();
+        List<Token> tokens = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            TokenType type = readType();
+            readVarint(); // start
+            readVarint(); // row
+            readVarint(); // col
+
+            String fixed = BinaryTokenFormat.fixedText(type.ordinal());
+            tokens.add(new Token(type, fixed != null ? fixed : strings[readIndex()]));
+        }
+        return tokens;
+    }
+
+    /**
+     * Reads a token type ordinal.
+     * @return The token type.
+     * @throws IOException If the ordinal is out of range.
+     */
+    private TokenType readType() throws IOException {
+        int ordinal = readVarint();
+        if (ordinal < 0 || ordinal >= TYPES.length) {
+            throw new IOException("Unknown token type " + ordinal);
+        }
+        return TYPES[ordinal];
+    }
+
+    /**
+     * Reads a string table index.
+     * @return The index.
+     * @throws IOException If the index is out of range.
+     */
+    private int readIndex() throws IOException {
+        int index = readVarint();
+        if (index < 0 || index >= strings.length) {
+            throw new IOException("String index " + index + " out of range");
+        }
+        return index;
+    }
+
+    /**
+     * Reads a big-endian int.
+     * @return The value.
+     * @throws IOException If the data ends first.
+     */
+    private int readInt() throws IOException {
+        check(4);
+        int value = ((data[pos] & 0xFF) << 24) | ((data[pos + 1] & 0xFF) << 16)
+                | ((data[pos + 2] & 0xFF) << 8) | (data[pos + 3] & 0xFF);
+        pos += 4;
+        return value;
+    }
+
+    /**
+     * Reads an unsigned LEB128 varint.
+     * @return The value.
+     * @throws IOException If the data ends first or the varint is too long.
+     */
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            check(1);
+            byte b = data[pos++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint at offset " + pos);
+    }
+
+    /**
+     * Checks that n more bytes can be read.
+     * @param n The number of bytes needed.
+     * @throws IOException If the data ends first.
+     */
+    private void check(int n) throws IOException {
+        if (n < 0 || pos + n > data.length) {
+            throw new IOException("Token file is truncated");
+        }
+    }
+}
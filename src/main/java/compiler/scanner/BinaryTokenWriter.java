@@ -0,0 +1,182 @@
+package compiler.scanner;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes tokens in the compact binary format described in BinaryTokenFormat.
+ * Literals are deduplicated into a string table; identifiers are deduplicated by symbol id, so an identifier
+ * that appears a thousand times costs one table entry and a thousand small indices.
+ * A writer keeps its buffers between calls, so one writer should be reused for many files on one thread.
+ */
+public final class BinaryTokenWriter {
+    private final byte[] header = new byte[24]; // Magic, version, source length and string count
+    private int headerSize;
+    private byte[] table = new byte[1024]; // The encoded string table
+    private int tableSize;
+    private int tableCount; // The number of strings in the table
+    private byte[] body = new byte[4096]; // The encoded tokens
+    private int bodySize;
+    private int[] symbolIndices = new int[64]; // Table index + 1 per symbol id, 0 if not yet added
+
+    /**
+     * Encodes tokens and writes them to a stream.
+     * @param tokens The tokens to write.
+     * @param out The stream to write to. It is not closed.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void write(TokenBuffer tokens, OutputStream out) throws IOException {
+        encode(tokens);
+        out.write(header, 0, headerSize);
+        out.write(table, 0, tableSize);
+        out.write(body, 0, bodySize);
+    }
+
+    /**
+     * Encodes tokens and writes them to a channel straight from the writer's buffers.
+     * @param tokens The tokens to write.
+     * @param channel The channel to write to. It is not closed.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void write(TokenBuffer tokens, WritableByteChannel channel) throws IOException {
+        encode(tokens);
+        ByteBuffer[] parts = {
+                ByteBuffer.wrap(header, 0, headerSize),
+                ByteBuffer.wrap(table, 0, tableSize),
+                ByteBuffer.wrap(body, 0, bodySize)
+        };
+        for (ByteBuffer part : parts) {
+            while (part.hasRemaining()) {
+                channel.write(part);
+            }
+        }
+    }
+
+    /**
+     * Encodes the header, the string table and the token records into the writer's buffers.
+     * @param tokens The tokens to encode.
+     */
+    private void encode(TokenBuffer tokens) {
+        tableSize = 0;
+        tableCount = 0;
+        bodySize = 0;
+        Arrays.fill(symbolIndices, 0);
+        Map<String, Integer> literalIndices = new HashMap<>();
+
+        char[] source = tokens.source();
+        int size = tokens.size();
+        ensureBody(5);
+        bodySize = putVarint(body, bodySize, size);
+
+        int prevEnd = 0;
+        int prevRow = 1;
+        for (int i = 0; i < size; i++) {
+            int type = tokens.typeOrdinal(i);
+            int start = tokens.start(i);
+            int length = tokens.length(i);
+            int row = tokens.row(i);
+
+            ensureBody(25);
+            bodySize = putVarint(body, bodySize, type);
+            bodySize = putVarint(body, bodySize, BinaryTokenFormat.zigzag(start - prevEnd));
+            bodySize = putVarint(body, bodySize, row - prevRow);
+            bodySize = putVarint(body, bodySize, tokens.col(i));
+
+            if (BinaryTokenFormat.fixedText(type) == null) {
+                int index;
+                int symbol = tokens.symbol(i);
+                if (symbol != SymbolTable.NO_SYMBOL) {
+                    if (symbol >= symbolIndices.length) {
+                        symbolIndices = Arrays.copyOf(symbolIndices, Math.max(symbol + 1, symbolIndices.length * 2));
+                    }
+                    if (symbolIndices[symbol] == 0) {
+                        symbolIndices[symbol] = addString(source, start, length) + 1;
+                    }
+                    index = symbolIndices[symbol] - 1;
+                } else {
+                    String literal = new String(source, start, length);
+                    Integer known = literalIndices.get(literal);
+                    if (known == null) {
+                        known = addString(source, start, length);
+                        literalIndices.put(literal, known);
+                    }
+                    index = known;
+                }
+                bodySize = putVarint(body, bodySize, index);
+            }
+
+            prevEnd = start + length;
+            prevRow = row;
+        }
+
+        headerSize = putInt(header, 0, BinaryTokenFormat.MAGIC);
+        headerSize = putVarint(header, headerSize, BinaryTokenFormat.VERSION);
+        headerSize = putVarint(header, headerSize, tokens.sourceLength());
+        headerSize = putVarint(header, headerSize, tableCount);
+    }
+
+    /**
+     * Appends a string to the table.
+     * @param source The characters.
+     * @param start The offset of the string.
+     * @param length The length of the string.
+     * @return The index of the new table entry.
+     */
+    private int addString(char[] source, int start, int length) {
+        byte[] bytes = new String(source, start, length).getBytes(StandardCharsets.UTF_8);
+        if (tableSize + bytes.length + 5 > table.length) {
+            table = Arrays.copyOf(table, Math.max(table.length * 2, tableSize + bytes.length + 5));
+        }
+        tableSize = putVarint(table, tableSize, bytes.length);
+        System.arraycopy(bytes, 0, table, tableSize, bytes.length);
+        tableSize += bytes.length;
+        return tableCount++;
+    }
+
+    /**
+     * Makes room for at least n more bytes in the token body.
+     * @param n The number of bytes needed.
+     */
+    private void ensureBody(int n) {
+        if (bodySize + n > body.length) {
+            body = Arrays.copyOf(body, Math.max(body.length * 2, bodySize + n));
+        }
+    }
+
+    /**
+     * Writes a big-endian int.
+     * @param buf The buffer.
+     * @param pos The offset to write at.
+     * @param value The value.
+     * @return The offset after the value.
+     */
+    private static int putInt(byte[] buf, int pos, int value) {
+        buf[pos] = (byte) (value >>> 24);
+        buf[pos + 1] = (byte) (value >>> 16);
+        buf[pos + 2] = (byte) (value >>> 8);
+        buf[pos + 3] = (byte) value;
+        return pos + 4;
+    }
+
+    /**
+     * Writes an unsigned LEB128 varint, 7 bits per byte with the high bit marking continuation.
+     * @param buf The buffer, with at least 5 bytes free at pos.
+     * @param pos The offset to write at.
+     * @param value The value, treated as unsigned.
+     * @return The offset after the value.
+     */
+    static int putVarint(byte[] buf, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte) value;
+        return pos;
+    }
+}
@@ -0,0 +1,567 @@
+package compiler.scanner;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A scanner that lexes the raw bytes of a source instead of its decoded characters.
+ * Every token of the language is ASCII, and in an ASCII-compatible charset the bytes of other characters never
+ * look like ASCII, so whitespace, comments and the insides of strings are skipped byte by byte without decoding.
+ * Only the literals of the tokens produced are decoded, with the given charset rather than the platform default:
+ * ASCII literals are widened byte by byte and only a literal with other bytes, usually a string, goes through a
+ * CharsetDecoder. The source is never held as UTF-16, which halves the memory a large input takes.
+ *
+ * Tokens, rows, columns and symbol ids are the same as Scanner produces for the decoded source, quirks included,
+ * except that a supplementary character outside strings and comments is scanned as one character rather than
+ * as two surrogates. Malformed UTF-8 is split the way the JDK's decoder splits it: a lead byte and the longest run
+ * of continuation bytes it allows without completing a character is one U+FFFD, and so is an encoded surrogate.
+ * The literals live in a character arena rather than in a copy of the source, so the starts of a TokenBuffer from
+ * tokenize() are arena offsets, while Token positions from nextToken() hold byte offsets.
+ */
+public final class ByteScanner {
+    private static final int REPLACEMENT = 0xFFFD; // What a malformed byte decodes to
+
+    private final byte[] buffer; // The source bytes
+    private final int limit; // The number of valid bytes in buffer
+    private final boolean utf8; // Whether non-ASCII characters take several bytes
+    private final boolean latin1; // Whether every byte is its own character
+    private final CharsetDecoder decoder; // Decodes non-ASCII literals
+    private final SymbolTable symbols; // Interned identifier names
+
+    private int pos; // The offset of the current byte, or limit at EOF
+    private int row = 1;
+    private int col = 1;
+    private int tabWidth = Scanner.DEFAULT_TAB_WIDTH; // The number of columns a tab takes
+
+    private char[] chars; // The arena the literals of produced tokens are decoded into
+    private int charCount; // The number of characters in use in chars
+
+    // The most recently scanned token, as a range of the bytes and of the arena
+    private TokenType tokenType;
+    private int tokenStart;
+    private int tokenLength;
+    private int tokenRow;
+    private int tokenCol;
+    private int tokenSymbol;
+    private int literalStart;
+    private int literalLength;
+
+    /**
+     * Constructs a new ByteScanner over a whole array.
+     * @param source The bytes of the source.
+     * @param charset The charset of the source, one that supports() accepts.
+     * @param symbols The table identifiers are interned into.
+     */
+    public ByteScanner(byte[] source, Charset charset, SymbolTable symbols) {
+        this(source, source.length, charset, symbols);
+    }
+
+    /**
+     * Constructs a new ByteScanner over the first limit bytes of an array.
+     * @param source The bytes of the source.
+     * @param limit The number of valid bytes.
+     * @param charset The charset of the source, one that supports() accepts.
+     * @param symbols The table identifiers are interned into.
+     */
+    public ByteScanner(byte[] source, int limit, Charset charset, SymbolTable symbols) {
+        if (!supports(charset)) {
+            throw new IllegalArgumentException(charset + " is not an ASCII-compatible charset ByteScanner can lex");
+        }
+        if (limit < 0 || limit > source.length) {
+            throw new IllegalArgumentException("limit " + limit + " out of range for " + source.length + " bytes");
+        }
+        this.buffer = source;
+        this.limit = limit;
+        this.utf8 = charset.equals(StandardCharsets.UTF_8);
+        this.latin1 = charset.equals(StandardCharsets.ISO_8859_1);
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.symbols = symbols;
+        this.chars = new char[64];
+    }
+
+    /**
+     * Gets whether sources in a charset can be lexed as bytes: UTF-8, US-ASCII and ISO-8859-1 can.
+     * Sources in other charsets are decoded into a SourceBuffer and given to Scanner instead.
+     * @param charset The charset.
+     * @return true if ByteScanner accepts it.
+     */
+    public static boolean supports(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII)
+                || charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Sets how many columns a tab takes in the columns of later tokens, as Scanner.setTabWidth() does.
+     * @param tabWidth The width, Scanner.DEFAULT_TAB_WIDTH unless set.
+     */
+    public void setTabWidth(int tabWidth) {
+        if (tabWidth < 1) {
+            throw new IllegalArgumentException("tabWidth must be at least 1, got " + tabWidth);
+        }
+        this.tabWidth = tabWidth;
+    }
+
+    /**
+     * Gets the table identifiers are interned into.
+     * @return The symbol table.
+     */
+    public SymbolTable getSymbolTable() {
+        return symbols;
+    }
+
+    /**
+     * Returns the next token, whose position holds the byte offset of its literal.
+     * @return The next token.
+     */
+    public Token nextToken() {
+        charCount = 0; // Nothing keeps the previous literal
+        scan();
+        long position = Position.pack(tokenStart, tokenRow, tokenCol);
+        if (tokenSymbol != SymbolTable.NO_SYMBOL) {
+            return new Token(tokenType, symbols.name(tokenSymbol), position);
+        }
+        return new Token(tokenType, new String(chars, literalStart, literalLength), position);
+    }
+
+    /**
+     * Scans every remaining token, including the final EOF token, into a new TokenBuffer over the literal arena.
+     * @return The scanned tokens.
+     */
+    public TokenBuffer tokenize() {
+        charCount = 0;
+        TokenBuffer tokens = new TokenBuffer(chars, 0, limit / 6 + 16); // roughly one token per six bytes
+        do {
+            scan();
+            tokens.add(tokenType, literalStart, literalLength, tokenRow, tokenCol, tokenSymbol);
+        } while (tokenType != TokenType.EOF);
+        tokens.retarget(chars, charCount);
+        return tokens;
+    }
+
+    /**
+     * Scans the next token and decodes its literal into the arena.
+     */
+    private void scan() {
+        skipWhiteSpace();
+        skipComments();
+
+        tokenStart = pos;
+        tokenRow = row;
+        tokenCol = col;
+        tokenSymbol = SymbolTable.NO_SYMBOL;
+
+        int b = pos < limit ? buffer[pos] : 0;
+        switch (b) {
+            case '+':
+                tokenType = peek() == '+' ? TokenType.INCRE : TokenType.PLUS;
+                break;
+            case '-':
+                tokenType = peek() == '-' ? TokenType.DECRE : TokenType.MINUS;
+                break;
+            case '=':
+                tokenType = peek() == '=' ? TokenType.EQ : TokenType.ASSIGN;
+                break;
+            case '<':
+                tokenType = peek() == '=' ? TokenType.LTEQ : TokenType.LT;
+                break;
+            case '>':
+                tokenType = peek() == '=' ? TokenType.GTEQ : TokenType.GT;
+                break;
+            case '!':
+                tokenType = peek() == '=' ? TokenType.NOTEQ : TokenType.ILLEGAL;
+                break;
+            case '\"':
+                if (readString()) {
+                    tokenType = TokenType.STRING;
+                } else {
+                    // An unterminated string is reported as just its opening quote
+                    tokenType = TokenType.ILLEGAL;
+                    tokenLength = 1;
+                    readChar();
+                }
+                materialize();
+                return;
+            case '{':
+                tokenType = TokenType.LBRACE;
+                break;
+            case '}':
+                tokenType = TokenType.RBRACE;
+                break;
+            case '(':
+                tokenType = TokenType.LPAREN;
+                break;
+            case ')':
+                tokenType = TokenType.RPAREN;
+                break;
+            case ';':
+                tokenType = TokenType.SEMICOLON;
+                break;
+            case ',':
+                tokenType = TokenType.COMMA;
+                break;
+            case 0:
+                tokenType = TokenType.EOF;
+                tokenLength = 0;
+                readChar();
+                materialize();
+                return;
+            default:
+                int c = codePointAt(pos);
+                if (isLetterOrUnderscore(c)) {
+                    readWhile(true);
+                    materialize();
+                    tokenType = Keywords.lookup(chars, literalStart, literalLength);
+                    if (tokenType == TokenType.IDENTIFIER) {
+                        tokenSymbol = symbols.intern(chars, literalStart, literalLength);
+                    }
+                    return;
+                } else if (Character.isDigit(c)) {
+                    readWhile(false);
+                    tokenType = TokenType.NUMBER;
+                    materialize();
+                    return;
+                }
+                tokenType = TokenType.ILLEGAL;
+                readChar();
+                tokenLength = pos - tokenStart;
+                materialize();
+                return;
+        }
+
+        // A two-character operator has its second character still to read
+        if (tokenType == TokenType.INCRE || tokenType == TokenType.DECRE || tokenType == TokenType.EQ
+                || tokenType == TokenType.LTEQ || tokenType == TokenType.GTEQ || tokenType == TokenType.NOTEQ) {
+            readChar();
+        }
+        readChar();
+        tokenLength = pos - tokenStart;
+        materialize();
+    }
+
+    /**
+     * Reads the rest of an identifier, or of a number, and records its length.
+     * @param identifier true to read letters, underscores and digits, false to read digits only.
+     */
+    private void readWhile(boolean identifier) {
+        readChar();
+        while (true) {
+            int c = codePointAt(pos);
+            if (identifier ? !isLetterOrUnderscore(c) && !Character.isDigit(c) : !Character.isDigit(c)) {
+                break;
+            }
+            readChar();
+        }
+        tokenLength = pos - tokenStart;
+    }
+
+    /**
+     * Checks if a character is a letter or underscore, as Scanner does.
+     * @param c The character.
+     * @return True if it is.
+     */
+    private static boolean isLetterOrUnderscore(int c) {
+        return c < 0x80 ? (c | 0x20) >= 'a' && (c | 0x20) <= 'z' || c == '_' : Character.isLetter(c);
+    }
+
+    /**
+     * Reads a string and records the range of its contents, without the quotes.
+     * No byte of a non-ASCII character is a quote or NUL, so the contents are searched without decoding.
+     * @return True if the string was terminated, false if the source ended first.
+     */
+    private boolean readString() {
+        readChar();
+        int contentStart = pos;
+        int end = indexOfEither(pos, '\"', (byte) 0);
+        moveTo(end);
+
+        if (pos < limit && buffer[pos] == '\"') {
+            tokenStart = contentStart;
+            tokenLength = pos - contentStart;
+            readChar();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Decodes the literal of the token into the arena.
+     */
+    private void materialize() {
+        int length = tokenLength;
+        if (charCount + length > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + length));
+        }
+        literalStart = charCount;
+        int from = tokenStart;
+        int i = 0;
+        while (i < length && buffer[from + i] >= 0) {
+            chars[charCount + i] = (char) buffer[from + i];
+            i++;
+        }
+        if (i == length) {
+            literalLength = length;
+        } else if (latin1) {
+            for (; i < length; i++) {
+                chars[charCount + i] = (char) (buffer[from + i] & 0xFF);
+            }
+            literalLength = length;
+        } else {
+            CharBuffer out = CharBuffer.wrap(chars, charCount + i, chars.length - charCount - i);
+            decoder.reset();
+            decoder.decode(ByteBuffer.wrap(buffer, from + i, length - i), out, true);
+            decoder.flush(out);
+            literalLength = out.position() - charCount;
+        }
+        charCount += literalLength;
+    }
+
+    /**
+     * Peeks at the byte after the current one.
+     * @return The byte, or 0 at the end of the source.
+     */
+    private int peek() {
+        return pos + 1 < limit ? buffer[pos + 1] : 0;
+    }
+
+    /**
+     * Decodes the character starting at an offset.
+     * @param at The offset.
+     * @return The code point, 0 at the end of the source, or U+FFFD for a malformed sequence.
+     */
+    private int codePointAt(int at) {
+        if (at >= limit) {
+            return 0;
+        }
+        int b = buffer[at];
+        if (b >= 0) {
+            return b;
+        }
+        if (latin1) {
+            return b & 0xFF;
+        }
+        if (!utf8) {
+            return REPLACEMENT;
+        }
+        int width = width(at);
+        if (width == 1 || width != sequenceLength(b & 0xFF)) {
+            return REPLACEMENT;
+        }
+        int c = b & (0x7F >> width);
+        for (int i = 1; i < width; i++) {
+            c = c << 6 | buffer[at + i] & 0x3F;
+        }
+        return width == 3 && Character.isSurrogate((char) c) ? REPLACEMENT : c;
+    }
+
+    /**
+     * Gets the number of bytes of the character starting at an offset, or of the malformed sequence that decodes
+     * to one U+FFFD there.
+     * @param at The offset, less than limit.
+     * @return The width, 1 for ASCII, and less than sequenceLength() of the first byte if it is malformed.
+     */
+    private int width(int at) {
+        if (!utf8) {
+            return 1;
+        }
+        int lead = buffer[at] & 0xFF;
+        int length = sequenceLength(lead);
+        int width = 1;
+        while (width < length && at + width < limit && isContinuation(lead, width, buffer[at + width] & 0xFF)) {
+            width++;
+        }
+        return width;
+    }
+
+    /**
+     * Gets the number of bytes of a UTF-8 sequence from its lead byte.
+     * @param lead The lead byte, from 0 to 0xFF.
+     * @return 2 to 4, or 1 for ASCII and for the bytes that never lead a sequence: continuation bytes, the
+     *         leads of overlong two-byte forms C0 and C1, and F5 to FF, which would be past U+10FFFF.
+     */
+    private static int sequenceLength(int lead) {
+        return lead < 0xC2 ? 1 : lead < 0xE0 ? 2 : lead < 0xF0 ? 3 : lead < 0xF5 ? 4 : 1;
+    }
+
+    /**
+     * Checks if a byte continues a UTF-8 sequence. The second byte after E0, F0 and F4 has a narrower range, which
+     * rules out overlong forms and code points past U+10FFFF. After ED it does not: like the JDK's decoder, an
+     * encoded surrogate is taken whole and decodes to one U+FFFD.
+     * @param lead The lead byte of the sequence.
+     * @param index The index of the byte in the sequence, at least 1.
+     * @param b The byte, from 0 to 0xFF.
+     * @return True if it continues the sequence.
+     */
+    private static boolean isContinuation(int lead, int index, int b) {
+        if (index == 1) {
+            switch (lead) {
+                case 0xE0:
+                    return b >= 0xA0 && b <= 0xBF;
+                case 0xF0:
+                    return b >= 0x90 && b <= 0xBF;
+                case 0xF4:
+                    return b >= 0x80 && b <= 0x8F;
+                default:
+                    break;
+            }
+        }
+        return (b & 0xC0) == 0x80;
+    }
+
+    /**
+     * Moves past the current character, keeping row and col as Scanner keeps them.
+     */
+    private void readChar() {
+        if (pos >= limit) {
+            return;
+        }
+        int b = buffer[pos];
+        if (b >= 0) {
+            advance(b);
+            pos++;
+        } else {
+            int width = width(pos);
+            col += width == 4 ? 2 : 1; // A supplementary character is two UTF-16 columns
+            pos += width;
+        }
+    }
+
+    /**
+     * Updates row and col for one ASCII character.
+     * @param b The character.
+     */
+    private void advance(int b) {
+        if (b == '\n') {
+            col = 1;
+            row += 1;
+        } else if (b == '\r') {
+            col = 1;
+        } else if (b == '\t') {
+            col += tabWidth;
+        } else {
+            col++;
+        }
+    }
+
+    /**
+     * Moves the cursor forward over a run of bytes, updating row and col as readChar() would.
+     * A 4-byte character takes two columns, and any other character or malformed sequence one.
+     * @param to The offset to move to, at most limit, and never inside a character.
+     */
+    private void moveTo(int to) {
+        int i = pos;
+        while (i < to) {
+            int b = buffer[i];
+            if (b >= 0) {
+                advance(b);
+                i++;
+            } else {
+                int width = width(i);
+                col += width == 4 ? 2 : 1;
+                i += width;
+            }
+        }
+        if (to > pos) {
+            pos = to;
+        }
+    }
+
+    /**
+     * Finds where the last character before an offset starts.
+     * @param from An offset where a character starts.
+     * @param to The offset, at least from.
+     * @return The offset of the last character before to, or from if there is none.
+     */
+    private int lastCharStart(int from, int to) {
+        int last = from;
+        for (int i = from; i < to; i += buffer[i] >= 0 ? 1 : width(i)) {
+            last = i;
+        }
+        return last;
+    }
+
+    /**
+     * Finds the first occurrence of either of two ASCII bytes.
+     * @param from The offset to start at.
+     * @param a The first byte to look for.
+     * @param b The second byte to look for.
+     * @return The offset of the first match, or limit if there is none.
+     */
+    private int indexOfEither(int from, char a, byte b) {
+        for (int i = from; i < limit; i++) {
+            byte x = buffer[i];
+            if (x == a || x == b) {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Skips whitespace characters.
+     */
+    private void skipWhiteSpace() {
+        while (pos < limit) {
+            int b = buffer[pos];
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                return;
+            }
+            advance(b);
+            pos++;
+        }
+    }
+
+    /**
+     * Skips a multi-line comment and then a single-line comment, in the order Scanner does.
+     */
+    private void skipComments() {
+        skipMultiLineComment();
+        skipSingleLineComment();
+    }
+
+    /**
+     * Skips single-line comments.
+     */
+    private void skipSingleLineComment() {
+        if (pos < limit && buffer[pos] == '/' && peek() == '/') {
+            int end = indexOfEither(pos + 2, '\n', (byte) 0);
+            if (end < limit && buffer[end] == '\n') {
+                moveTo(end + 1);
+                skipWhiteSpace();
+            } else {
+                moveTo(end);
+            }
+        }
+    }
+
+    /**
+     * Skips multi-line comments. Like Scanner, an unterminated comment stops on its last character, or the one
+     * before a NUL character.
+     */
+    private void skipMultiLineComment() {
+        if (pos < limit && buffer[pos] == '/' && peek() == '*') {
+            int at = pos + 2; // The character after the opening "/*"
+            while (true) {
+                // Look for the '/' of a closing "*/" or for a NUL, one past the current character
+                int next = at + 1 < limit ? indexOfEither(at + 1, '/', (byte) 0) : limit;
+                if (next < limit && buffer[next] == '/') {
+                    if (buffer[next - 1] == '*') {
+                        moveTo(next + 1);
+                        skipWhiteSpace();
+                        return;
+                    }
+                    at = next;
+                } else {
+                    moveTo(lastCharStart(at, next));
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package compiler.scanner;
+
+import java.io.IOException;
+
+/**
+ * A scanner backend driven by the DFA tables generated from TokenSpec.
+ * Operators, keywords, identifiers, numbers and illegal characters are recognised by walking the transition
+ * table one character class at a time and keeping the longest accepted match, so the hot loop is a table
+ * lookup per character instead of a switch, peekChar() calls and Character.isLetter/isDigit tests.
+ * Whitespace, comments, strings and EOF are scanned exactly as Scanner does, quirks included, so both
+ * produce the same tokens with the same ranges, rows, columns and symbol ids.
+ */
+public final class DfaScanner {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private char[] buffer; // The source characters
+    private int limit; // The number of valid characters in buffer
+    private int pos; // The cursor, or limit at EOF
+    private int row = 1; // The line of the character at pos
+    private int col = 1; // The column of the character at pos
+    private int tabWidth = Scanner.DEFAULT_TAB_WIDTH; // The number of columns a tab takes
+
+    // The most recently scanned token, as a range of the buffer
+    private TokenType tokenType;
+    private int tokenStart;
+    private int tokenLength;
+    private int tokenRow;
+    private int tokenCol;
+    private int tokenSymbol;
+
+    private final SymbolTable symbols; // Interned identifier names
+
+    /**
+     * Constructor for creating a new DfaScanner object.
+     * @param fileName The name of the file to be scanned.
+     * @throws IOException If an I/O error occurs.
+     */
+    public DfaScanner(String fileName) throws IOException {
+        this(fileName, new SymbolTable());
+    }
+
+    /**
+     * Constructor for creating a new DfaScanner object that interns identifiers into a shared table.
+     * @param fileName The name of the file to be scanned.
+     * @param symbols The table identifiers are interned into.
+     * @throws IOException If an I/O error occurs.
+     */
+    public DfaScanner(String fileName, SymbolTable symbols) throws IOException {
+        this(SourceBuffer.load(fileName), symbols);
+    }
+
+    /**
+     * Constructor for creating a new DfaScanner object over an already loaded source.
+     * @param source The source to be scanned.
+     * @param symbols The table identifiers are interned into.
+     */
+    public DfaScanner(SourceBuffer source, SymbolTable symbols) {
+        this.symbols = symbols;
+        this.buffer = source.chars();
+        this.limit = source.length();
+    }
+
+    /**
+     * Returns the next token from the buffer.
+     * @return The next token.
+     */
+    public Token nextToken() {
+        scan();
+        if (tokenSymbol != SymbolTable.NO_SYMBOL) {
+            return new Token(tokenType, symbols.name(tokenSymbol), Position.pack(tokenStart, tokenRow, tokenCol));
+        }
+        return new Token(tokenType, new String(buffer, tokenStart, tokenLength),
+                Position.pack(tokenStart, tokenRow, tokenCol));
+    }
+
+    /**
+     * Sets how many columns a tab takes in the columns of later tokens, as Scanner.setTabWidth() does.
+     * @param tabWidth The width, Scanner.DEFAULT_TAB_WIDTH unless set.
+     */
+    public void setTabWidth(int tabWidth) {
+        if (tabWidth < 1) {
+            throw new IllegalArgumentException("tabWidth must be at least 1, got " + tabWidth);
+        }
+        this.tabWidth = tabWidth;
+    }
+
+    /**
+     * Gets the table identifiers are interned into.
+     * @return The symbol table.
+     */
+    public SymbolTable getSymbolTable() {
+        return symbols;
+    }
+
+    /**
+     * Scans every remaining token, including the final EOF token, into a new TokenBuffer.
+     * @return The scanned tokens.
+     */
+    public TokenBuffer tokenize() {
+        TokenBuffer tokens = new TokenBuffer(buffer, limit, limit / 6 + 16); // roughly one token per six characters
+        tokenize(tokens);
+        return tokens;
+    }
+
+    /**
+     * Scans every remaining token, including the final EOF token, into an existing TokenBuffer.
+     * The buffer is cleared first, so its arrays can be reused across files.
+     * @param tokens The buffer to fill.
+     */
+    public void tokenize(TokenBuffer tokens) {
+        tokens.reset(buffer, limit);
+        do {
+            scan();
+            tokens.add(tokenType, tokenStart, tokenLength, tokenRow, tokenCol, tokenSymbol);
+        } while (tokenType != TokenType.EOF);
+    }
+
+    /**
+     * Releases the source buffer.
+     */
+    public void close() {
+        buffer = null;
+        limit = 0;
+    }
+
+    /**
+     * Scans the next token and records it as a range of the buffer.
+     */
+    private void scan() {
+        skipWhiteSpace();
+        skipMultiLineComment();
+        skipSingleLineComment();
+
+        tokenStart = pos;
+        tokenRow = row;
+        tokenCol = col;
+        tokenSymbol = SymbolTable.NO_SYMBOL;
+
+        char c = charAt(pos);
+        if (c == '\0') {
+            tokenType = TokenType.EOF;
+            tokenLength = 0;
+            step();
+            return;
+        }
+        if (c == '\"') {
+            scanString();
+            return;
+        }
+
+        // Longest match through the transition table
+        char[] buf = buffer;
+        int end = limit;
+        byte[] classes = DfaTables.ASCII_CLASSES;
+        int[] transitions = DfaTables.TRANSITIONS;
+        int[] accepts = DfaTables.ACCEPTS;
+        int shift = DfaTables.CLASS_SHIFT;
+
+        int state = DfaTables.START;
+        int accepted = -1;
+        int acceptedEnd = pos;
+        for (int i = pos; ; ) {
+            int k;
+            if (i < end) {
+                char x = buf[i];
+                k = x < 128 ? classes[x] : DfaTables.slowClass(x);
+            } else {
+                k = DfaTables.END_CLASS;
+            }
+            state = transitions[state << shift | k];
+            if (state == DfaTables.DEAD) {
+                break;
+            }
+            i++;
+            if (accepts[state] >= 0) {
+                accepted = accepts[state];
+                acceptedEnd = i;
+            }
+        }
+
+        tokenType = TYPES[accepted];
+        tokenLength = acceptedEnd - pos;
+        if (tokenLength == 1) {
+            step(); // the character may be whitespace left over by an unterminated comment
+        } else {
+            col += tokenLength; // longer tokens never contain whitespace
+            pos = acceptedEnd;
+        }
+        if (tokenType == TokenType.IDENTIFIER) {
+            tokenSymbol = symbols.intern(buf, tokenStart, tokenLength);
+        }
+    }
+
+    /**
+     * Scans a string starting at its opening quote, recording the range of its contents.
+     * An unterminated string runs to the end of the source or a NUL character and is reported as an
+     * ILLEGAL token of just its opening quote.
+     */
+    private void scanString() {
+        step();
+        int contentStart = pos;
+        while (true) {
+            char c = charAt(pos);
+            if (c == '\"') {
+                tokenType = TokenType.STRING;
+                tokenStart = contentStart;
+                tokenLength = pos - contentStart;
+                step();
+                return;
+            }
+            if (c == '\0') {
+                tokenType = TokenType.ILLEGAL;
+                tokenLength = 1;
+                step();
+                return;
+            }
+            step();
+        }
+    }
+
+    /**
+     * Gets a character of the buffer, with '\0' past the end.
+     * @param index The offset of the character.
+     * @return The character.
+     */
+    private char charAt(int index) {
+        return index < limit ? buffer[index] : '\0';
+    }
+
+    /**
+     * Moves the cursor past one character, keeping row and col up to date the same way Scanner does.
+     */
+    private void step() {
+        if (pos >= limit) {
+            return;
+        }
+        char c = buffer[pos];
+        if (c == '\n') {
+            col = 1;
+            row += 1;
+        } else if (c == '\r') {
+            col = 1;
+        } else if (c == '\t') {
+            col += tabWidth;
+        } else {
+            col++;
+        }
+        pos++;
+    }
+
+    /**
+     * Skips whitespace characters in the buffer.
+     */
+    private void skipWhiteSpace() {
+        char[] buf = buffer;
+        int end = limit;
+        int i = pos;
+        int r = row;
+        int c = col;
+        while (i < end) {
+            char x = buf[i];
+            if (x == ' ') {
+                c++;
+            } else if (x == '\n') {
+                r++;
+                c = 1;
+            } else if (x == '\t') {
+                c += tabWidth;
+            } else if (x == '\r') {
+                c = 1;
+            } else {
+                break;
+            }
+            i++;
+        }
+        pos = i;
+        row = r;
+        col = c;
+    }
+
+    /**
+     * Skips one multi-line comment. Like Scanner, an unterminated comment stops on its last character.
+     */
+    private void skipMultiLineComment() {
+        if (charAt(pos) == '/' && charAt(pos + 1) == '*') {
+            step();
+            step();
+
+            while (charAt(pos + 1) != '\0') {
+                if (charAt(pos) == '*' && charAt(pos + 1) == '/') {
+                    step();
+                    step();
+                    skipWhiteSpace();
+                    return;
+                }
+                step();
+            }
+        }
+    }
+
+    /**
+     * Skips one single-line comment.
+     */
+    private void skipSingleLineComment() {
+        if (charAt(pos) == '/' && charAt(pos + 1) == '/') {
+            step();
+            step();
+
+            while (charAt(pos) != '\0') {
+                if (charAt(pos) == '\n') {
+                    step();
+                    skipWhiteSpace();
+                    return;
+                }
+                step();
+            }
+        }
+    }
+}
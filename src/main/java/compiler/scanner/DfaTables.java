@@ -0,0 +1,242 @@
+package compiler.scanner;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The transition tables of the DFA lexer, generated from TokenSpec when the class is loaded.
+ *
+ * Characters are first mapped to classes of characters that no rule tells apart. ASCII characters are
+ * looked up in a 128-entry table; anything else takes a slow path through Character.isLetter and
+ * Character.isDigit, which can only put it in the letter, digit or other class since every fixed text is
+ * ASCII. The rules are turned into an NFA and then into a DFA by subset construction. State 0 is the dead
+ * state, and class 0 stands for the end of the source, which every state moves to the dead state on.
+ */
+final class DfaTables {
+    static final int DEAD = 0; // The state with no way out
+    static final int START = 1; // The state a token starts in
+    static final int END_CLASS = 0; // The class of the end of the source
+
+    private static final int WORD_START = 1;
+    private static final int WORD_PART = 2;
+    private static final int DIGIT = 4;
+    private static final int END = 8;
+
+    static final byte[] ASCII_CLASSES = new byte[128]; // The class of each ASCII character
+    static final int CLASS_SHIFT; // log2 of the row length of TRANSITIONS
+    static final int[] TRANSITIONS; // TRANSITIONS[state << CLASS_SHIFT | class] is the next state
+    static final int[] ACCEPTS; // The ordinal of the token type a state accepts, or -1
+
+    private static final int LETTER_CLASS; // The class of non-ASCII letters
+    private static final int DIGIT_CLASS; // The class of non-ASCII digits
+    private static final int OTHER_CLASS; // The class of every other non-ASCII character
+
+    // The signature of each class: the fixed-text character it stands for, or -1, and its set flags
+    private static final List<Integer> classChars = new ArrayList<>();
+    private static final List<Integer> classFlags = new ArrayList<>();
+
+    // The NFA: per node, the rule it accepts (or -1) and its edges as {character or -1, set ordinal, target}
+    private static final List<Integer> nodeAccepts = new ArrayList<>();
+    private static final List<List<int[]>> nodeEdges = new ArrayList<>();
+
+    // Static block to generate the tables from the spec
+    static {
+        List<TokenSpec.Rule> rules = TokenSpec.RULES;
+
+        BitSet textChars = new BitSet(128);
+        for (TokenSpec.Rule rule : rules) {
+            if (rule.text != null) {
+                for (int i = 0; i < rule.text.length(); i++) {
+                    char c = rule.text.charAt(i);
+                    if (c >= 128) {
+                        throw new IllegalStateException("Fixed token text must be ASCII: " + rule.text);
+                    }
+                    textChars.set(c);
+                }
+            }
+        }
+
+        Map<Long, Integer> classBySignature = new HashMap<>();
+        classOf(classBySignature, -1, END);
+        for (char c = 0; c < 128; c++) {
+            ASCII_CLASSES[c] = (byte) classOf(classBySignature, textChars.get(c) ? c : -1, flagsOf(c));
+        }
+        LETTER_CLASS = classOf(classBySignature, -1, WORD_START | WORD_PART);
+        DIGIT_CLASS = classOf(classBySignature, -1, WORD_PART | DIGIT);
+        OTHER_CLASS = classOf(classBySignature, -1, 0);
+
+        BitSet start = new BitSet();
+        for (int r = 0; r < rules.size(); r++) {
+            start.set(addRule(rules.get(r), r));
+        }
+
+        int classes = classChars.size();
+        int shift = 32 - Integer.numberOfLeadingZeros(classes - 1);
+        CLASS_SHIFT = shift;
+
+        List<BitSet> states = new ArrayList<>();
+        Map<BitSet, Integer> stateIds = new HashMap<>();
+        states.add(new BitSet());
+        stateIds.put(states.get(DEAD), DEAD);
+        states.add(start);
+        stateIds.put(start, START);
+
+        List<int[]> rows = new ArrayList<>();
+        for (int s = 0; s < states.size(); s++) {
+            BitSet nodes = states.get(s);
+            int[] row = new int[1 << shift];
+            for (int k = 0; k < classes; k++) {
+                BitSet next = new BitSet();
+                for (int n = nodes.nextSetBit(0); n >= 0; n = nodes.nextSetBit(n + 1)) {
+                    for (int[] edge : nodeEdges.get(n)) {
+                        if (matches(edge, k)) {
+                            next.set(edge[2]);
+                        }
+                    }
+                }
+                Integer id = stateIds.get(next);
+                if (id == null) {
+                    id = states.size();
+                    states.add(next);
+                    stateIds.put(next, id);
+                }
+                row[k] = id;
+            }
+            rows.add(row);
+        }
+
+        TRANSITIONS = new int[states.size() << shift];
+        ACCEPTS = new int[states.size()];
+        for (int s = 0; s < states.size(); s++) {
+            System.arraycopy(rows.get(s), 0, TRANSITIONS, s << shift, 1 << shift);
+
+            int best = -1;
+            BitSet nodes = states.get(s);
+            for (int n = nodes.nextSetBit(0); n >= 0; n = nodes.nextSetBit(n + 1)) {
+                int rule = nodeAccepts.get(n);
+                if (rule >= 0 && (best < 0 || rule < best)) {
+                    best = rule;
+                }
+            }
+            ACCEPTS[s] = best < 0 ? -1 : rules.get(best).type.ordinal();
+        }
+    }
+
+    private DfaTables() {
+    }
+
+    /**
+     * Gets the class of a character that is not ASCII.
+     * @param c The character, at least 128.
+     * @return The class of the character.
+     */
+    static int slowClass(char c) {
+        if (Character.isLetter(c)) {
+            return LETTER_CLASS;
+        }
+        return Character.isDigit(c) ? DIGIT_CLASS : OTHER_CLASS;
+    }
+
+    /**
+     * Computes the set flags of a character.
+     * @param c The character.
+     * @return The flags.
+     */
+    private static int flagsOf(char c) {
+        int flags = 0;
+        if (TokenSpec.CharSet.WORD_START.contains(c)) {
+            flags |= WORD_START;
+        }
+        if (TokenSpec.CharSet.WORD_PART.contains(c)) {
+            flags |= WORD_PART;
+        }
+        if (TokenSpec.CharSet.DIGIT.contains(c)) {
+            flags |= DIGIT;
+        }
+        return flags;
+    }
+
+    /**
+     * Finds or adds the class with a signature.
+     * @param classBySignature The classes found so far.
+     * @param c The fixed-text character, or -1.
+     * @param flags The set flags.
+     * @return The class.
+     */
+    private static int classOf(Map<Long, Integer> classBySignature, int c, int flags) {
+        long signature = ((long) c << 32) | flags;
+        Integer k = classBySignature.get(signature);
+        if (k == null) {
+            k = classChars.size();
+            classChars.add(c);
+            classFlags.add(flags);
+            classBySignature.put(signature, k);
+        }
+        return k;
+    }
+
+    /**
+     * Adds the NFA nodes of a rule.
+     * @param rule The rule.
+     * @param index The priority of the rule, lower wins.
+     * @return The node the rule starts at.
+     */
+    private static int addRule(TokenSpec.Rule rule, int index) {
+        int start = addNode(-1);
+        if (rule.text != null) {
+            int node = start;
+            for (int i = 0; i < rule.text.length(); i++) {
+                int next = addNode(i == rule.text.length() - 1 ? index : -1);
+                nodeEdges.get(node).add(new int[] {rule.text.charAt(i), -1, next});
+                node = next;
+            }
+        } else {
+            int accept = addNode(index);
+            nodeEdges.get(start).add(new int[] {-1, rule.first.ordinal(), accept});
+            if (rule.rest != null) {
+                nodeEdges.get(accept).add(new int[] {-1, rule.rest.ordinal(), accept});
+            }
+        }
+        return start;
+    }
+
+    /**
+     * Adds an NFA node.
+     * @param accept The rule the node accepts, or -1.
+     * @return The node.
+     */
+    private static int addNode(int accept) {
+        nodeAccepts.add(accept);
+        nodeEdges.add(new ArrayList<>());
+        return nodeAccepts.size() - 1;
+    }
+
+    /**
+     * Checks if an NFA edge can be taken on a class.
+     * @param edge The edge.
+     * @param k The class.
+     * @return True if every character of the class matches the edge.
+     */
+    private static boolean matches(int[] edge, int k) {
+        int flags = classFlags.get(k);
+        if ((flags & END) != 0) {
+            return false;
+        }
+        if (edge[0] >= 0) {
+            return classChars.get(k) == edge[0];
+        }
+        switch (TokenSpec.CharSet.values()[edge[1]]) {
+            case WORD_START:
+                return (flags & WORD_START) != 0;
+            case WORD_PART:
+                return (flags & WORD_PART) != 0;
+            case DIGIT:
+                return (flags & DIGIT) != 0;
+            default:
+                return true;
+        }
+    }
+}
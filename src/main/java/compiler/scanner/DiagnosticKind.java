@@ -0,0 +1,28 @@
+package compiler.scanner;
+
+/**
+ * The lexical errors a Scanner reports to a Diagnostics collector.
+ */
+public enum DiagnosticKind {
+    UNEXPECTED_CHARACTER("Unexpected character"), // A character no token starts with, such as a lone '!'
+    UNTERMINATED_STRING("Unterminated string"), // A string whose line ends before its closing quote
+    UNTERMINATED_COMMENT("Unterminated comment"); // A "/*" comment the source ends inside
+
+    private final String description;
+
+    /**
+     * Constructs a new DiagnosticKind.
+     * @param description How the error reads in a message.
+     */
+    DiagnosticKind(String description) {
+        this.description = description;
+    }
+
+    /**
+     * Gets how the error reads in a message.
+     * @return The description.
+     */
+    public String getDescription() {
+        return description;
+    }
+}
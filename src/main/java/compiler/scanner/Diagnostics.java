@@ -0,0 +1,149 @@
+package compiler.scanner;
+
+import java.util.Arrays;
+
+/**
+ * Collects the lexical errors of a scan, in source order, so that one pass reports every error in a file.
+ * Like TokenBuffer it stores one primitive column per field; the columns are only allocated once the first error
+ * is added, so scanning an error-free source through a collector allocates nothing. Clearing keeps the columns for
+ * the next file.
+ */
+public final class Diagnostics {
+    private static final DiagnosticKind[] KINDS = DiagnosticKind.values();
+    private static final int INITIAL_CAPACITY = 8;
+
+    private byte[] kinds; // DiagnosticKind ordinals, or null until the first error
+    private int[] offsets; // Offsets of the offending text in the source
+    private int[] lengths; // Lengths of the offending text
+    private int[] rows;
+    private int[] cols;
+    private int size;
+
+    /**
+     * Records an error.
+     * @param kind What went wrong.
+     * @param offset The offset of the offending text.
+     * @param length The length of the offending text.
+     * @param row The line of the offending text.
+     * @param col The column of the offending text.
+     */
+    public void add(DiagnosticKind kind, int offset, int length, int row, int col) {
+        if (kinds == null) {
+            kinds = new byte[INITIAL_CAPACITY];
+            offsets = new int[INITIAL_CAPACITY];
+            lengths = new int[INITIAL_CAPACITY];
+            rows = new int[INITIAL_CAPACITY];
+            cols = new int[INITIAL_CAPACITY];
+        } else if (size == kinds.length) {
+            int capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            rows = Arrays.copyOf(rows, capacity);
+            cols = Arrays.copyOf(cols, capacity);
+        }
+        kinds[size] = (byte) kind.ordinal();
+        offsets[size] = offset;
+        lengths[size] = length;
+        rows[size] = row;
+        cols[size] = col;
+        size++;
+    }
+
+    /**
+     * Gets the number of errors.
+     * @return The error count.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets whether no error was recorded.
+     * @return true if the scan was clean.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every error, keeping the allocated capacity.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Gets what went wrong.
+     * @param index The index of the error.
+     * @return The kind.
+     */
+    public DiagnosticKind kind(int index) {
+        checkIndex(index);
+        return KINDS[kinds[index]];
+    }
+
+    /**
+     * Gets the offset of the offending text.
+     * @param index The index of the error.
+     * @return The offset in the source.
+     */
+    public int offset(int index) {
+        checkIndex(index);
+        return offsets[index];
+    }
+
+    /**
+     * Gets the length of the offending text.
+     * @param index The index of the error.
+     * @return The length in characters.
+     */
+    public int length(int index) {
+        checkIndex(index);
+        return lengths[index];
+    }
+
+    /**
+     * Gets the line of the offending text.
+     * @param index The index of the error.
+     * @return The line, starting at 1.
+     */
+    public int row(int index) {
+        checkIndex(index);
+        return rows[index];
+    }
+
+    /**
+     * Gets the column of the offending text.
+     * @param index The index of the error.
+     * @return The column, starting at 1.
+     */
+    public int col(int index) {
+        checkIndex(index);
+        return cols[index];
+    }
+
+    /**
+     * Describes an error the way a ParseException would, such as "Unexpected character '!' at 3:7".
+     * @param index The index of the error.
+     * @param source The characters that were scanned.
+     * @return The message.
+     */
+    public String message(int index, char[] source) {
+        String message = kind(index).getDescription();
+        if (kind(index) == DiagnosticKind.UNEXPECTED_CHARACTER) {
+            message += " '" + new String(source, offsets[index], lengths[index]) + "'";
+        }
+        return message + " at " + rows[index] + ":" + cols[index];
+    }
+
+    /**
+     * Checks that an index refers to a recorded error.
+     * @param index The index.
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Diagnostic " + index + " out of range for " + size + " errors");
+        }
+    }
+}
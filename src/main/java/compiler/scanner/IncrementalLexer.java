@@ -0,0 +1,271 @@
+package compiler.scanner;
+
+/**
+ * Updates a token stream after a text edit by re-lexing only the damaged region.
+ *
+ * Scanning restarts after the last token that ended before the edit, since nothing a scan of the earlier
+ * tokens looked at has changed. It stops as soon as a new token ends where an old token after the edit also
+ * ended: from there on the scanner is in the same state on the same characters, so the remaining old tokens
+ * are reused with their offsets and rows shifted. The old token must also start on a later line than the end
+ * of the edit, so that its column, which depends on everything since the last newline, is unchanged too.
+ */
+public final class IncrementalLexer {
+    private final SymbolTable symbols; // The table the old tokens were interned into
+    private final int tabWidth; // The number of columns a tab takes
+
+    /**
+     * Constructs a new IncrementalLexer for tokens scanned with Scanner.DEFAULT_TAB_WIDTH.
+     * @param symbols The table the existing tokens were interned into, and new identifiers will be.
+     */
+    public IncrementalLexer(SymbolTable symbols) {
+        this(symbols, Scanner.DEFAULT_TAB_WIDTH);
+    }
+
+    /**
+     * Constructs a new IncrementalLexer.
+     * @param symbols The table the existing tokens were interned into, and new identifiers will be.
+     * @param tabWidth The tab width the existing tokens were scanned with, as given to Scanner.setTabWidth().
+     */
+    public IncrementalLexer(SymbolTable symbols, int tabWidth) {
+        if (tabWidth < 1) {
+            throw new IllegalArgumentException("tabWidth must be at least 1, got " + tabWidth);
+        }
+        this.symbols = symbols;
+        this.tabWidth = tabWidth;
+    }
+
+    /**
+     * The tokens after an edit, and which of them changed.
+     * Old tokens [firstChanged, oldEnd) were replaced by new tokens [firstChanged, newEnd).
+     * Every other token kept its type, length, column and symbol.
+     */
+    public static final class Result {
+        private final TokenBuffer tokens;
+        private final int firstChanged;
+        private final int oldEnd;
+        private final int newEnd;
+
+        Result(TokenBuffer tokens, int firstChanged, int oldEnd, int newEnd) {
+            this.tokens = tokens;
+            this.firstChanged = firstChanged;
+            this.oldEnd = oldEnd;
+            this.newEnd = newEnd;
+        }
+
+        /**
+         * Gets the tokens of the edited source.
+         * @return The updated tokens.
+         */
+        public TokenBuffer getTokens() {
+            return tokens;
+        }
+
+        /**
+         * Gets the index of the first token that was re-lexed.
+         * @return The first changed index, the same in the old and new tokens.
+         */
+        public int getFirstChanged() {
+            return firstChanged;
+        }
+
+        /**
+         * Gets the index after the last replaced old token.
+         * @return The end of the changed range in the old tokens.
+         */
+        public int getOldEnd() {
+            return oldEnd;
+        }
+
+        /**
+         * Gets the index after the last re-lexed new token.
+         * @return The end of the changed range in the new tokens.
+         */
+        public int getNewEnd() {
+            return newEnd;
+        }
+    }
+
+    /**
+     * Applies an edit to the source of a token stream and re-lexes what it damaged.
+     * @param tokens The tokens of the current source, as produced by Scanner.tokenize().
+     * @param offset The offset of the edit in the current source.
+     * @param removed The number of characters the edit removes.
+     * @param inserted The text the edit inserts.
+     * @return The tokens of the edited source.
+     */
+    public Result relex(TokenBuffer tokens, int offset, int removed, CharSequence inserted) {
+        char[] oldSource = tokens.source();
+        int oldLimit = tokens.sourceLength();
+        if (offset < 0 || removed < 0 || offset + removed > oldLimit) {
+            throw new IndexOutOfBoundsException("Edit [" + offset + ", " + (offset + removed)
+                    + ") out of range for length " + oldLimit);
+        }
+
+        int delta = inserted.length() - removed;
+        int newLimit = oldLimit + delta;
+        char[] newSource = new char[newLimit];
+        System.arraycopy(oldSource, 0, newSource, 0, offset);
+        for (int i = 0; i < inserted.length(); i++) {
+            newSource[offset + i] = inserted.charAt(i);
+        }
+        System.arraycopy(oldSource, offset + removed, newSource, offset + inserted.length(), oldLimit - offset - removed);
+
+        int editEnd = offset + removed;
+        int rowDelta = countNewlines(inserted) - countNewlines(oldSource, offset, editEnd);
+
+        // Resume after the last token whose scan only looked at characters before the edit
+        int keep = lastTokenEndingBefore(tokens, offset);
+        Scanner scanner;
+        int editEndRow;
+        if (keep < 0) {
+            scanner = new Scanner(newSource, newLimit, 0, 1, 1, symbols);
+            scanner.setTabWidth(tabWidth);
+            editEndRow = 1 + countNewlines(oldSource, 0, editEnd);
+        } else {
+            int first = firstChar(tokens, keep);
+            scanner = new Scanner(newSource, newLimit, first, tokens.row(keep), tokens.col(keep), symbols);
+            scanner.setTabWidth(tabWidth);
+            scanner.advanceTo(endOf(tokens, keep));
+            editEndRow = tokens.row(keep) + countNewlines(oldSource, first, editEnd);
+        }
+
+        TokenBuffer out = new TokenBuffer(newSource, newLimit, tokens.size() + 16);
+        out.appendRange(tokens, 0, keep + 1, 0, 0);
+        int firstChanged = keep + 1;
+
+        while (scanner.scanNext(out) != TokenType.EOF) {
+            int oldCursor = scanner.position() - delta;
+            if (oldCursor < editEnd) {
+                continue;
+            }
+
+            int resume = indexOfTokenEnding(tokens, oldCursor, keep + 1) + 1;
+            if (resume > 0 && resume < tokens.size() && tokens.row(resume) > editEndRow) {
+                int newEnd = out.size();
+                out.appendRange(tokens, resume, tokens.size(), delta, rowDelta);
+                return new Result(out, firstChanged, resume, newEnd);
+            }
+        }
+        return new Result(out, firstChanged, tokens.size(), out.size());
+    }
+
+    /**
+     * Finds the last token that ends strictly before an offset, so that the character its scan stopped on
+     * is also before the offset.
+     * @param tokens The tokens.
+     * @param offset The offset.
+     * @return The index of the token, or -1 if there is none.
+     */
+    private static int lastTokenEndingBefore(TokenBuffer tokens, int offset) {
+        int low = 0;
+        int high = tokens.size() - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (tokens.type(mid) != TokenType.EOF && endOf(tokens, mid) < offset) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds the token whose scan ended exactly at a cursor.
+     * @param tokens The tokens.
+     * @param cursor The cursor.
+     * @param from The index to start searching at.
+     * @return The index of the token, or -1 if no token ends there.
+     */
+    private static int indexOfTokenEnding(TokenBuffer tokens, int cursor, int from) {
+        int low = from;
+        int high = tokens.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int end = endOf(tokens, mid);
+            if (end < cursor) {
+                low = mid + 1;
+            } else if (end > cursor) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the offset of the first character of a token, which for a string is its opening quote.
+     * @param tokens The tokens.
+     * @param index The index of the token.
+     * @return The offset the scan of the token's text started at.
+     */
+    private static int firstChar(TokenBuffer tokens, int index) {
+        return tokens.type(index) == TokenType.STRING ? tokens.start(index) - 1 : tokens.start(index);
+    }
+
+    /**
+     * Gets the scanner's cursor after a token, which is where the scan of the next token starts.
+     * @param tokens The tokens.
+     * @param index The index of the token.
+     * @return The offset after the token.
+     */
+    private static int endOf(TokenBuffer tokens, int index) {
+        int start = tokens.start(index);
+        int limit = tokens.sourceLength();
+        switch (tokens.type(index)) {
+            case STRING:
+                return start + tokens.length(index) + 1; // skip the closing quote
+            case EOF:
+                return Math.min(start + 1, limit);
+            case ILLEGAL:
+                char[] source = tokens.source();
+                if (source[start] == '\"') {
+                    // An unterminated string runs to the end of the source or a NUL character
+                    for (int i = start + 1; i < limit; i++) {
+                        if (source[i] == '\0') {
+                            return Math.min(i + 1, limit);
+                        }
+                    }
+                    return limit;
+                }
+                return start + tokens.length(index);
+            default:
+                return start + tokens.length(index);
+        }
+    }
+
+    /**
+     * Counts the '\n' characters in a range.
+     * @param chars The characters.
+     * @param from The first offset.
+     * @param to The offset after the last character.
+     * @return The number of newlines.
+     */
+    private static int countNewlines(char[] chars, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (chars[i] == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the '\n' characters in a text.
+     * @param text The text.
+     * @return The number of newlines.
+     */
+    private static int countNewlines(CharSequence text) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+}
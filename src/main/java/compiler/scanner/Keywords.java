@@ -0,0 +1,71 @@
+package compiler.scanner;
+
+import java.util.Map;
+
+/**
+ * Keyword lookup over a range of characters using a perfect hash.
+ * The hash only looks at the first character, the last character and the length, and its
+ * constants were chosen so that the 14 keywords land in distinct slots of a 32-entry table.
+ * A lookup is therefore one hash, one slot read and at most one range comparison.
+ */
+final class Keywords {
+    private static final int TABLE_SIZE = 32;
+    private static final int MIN_LENGTH = 2;
+    private static final int MAX_LENGTH = 8;
+
+    private static final char[][] NAMES = new char[TABLE_SIZE][];
+    private static final TokenType[] TYPES = new TokenType[TABLE_SIZE];
+
+    // Static block to build the table from the keyword map
+    static {
+        for (Map.Entry<String, TokenType> keyword : Token.keywords.entrySet()) {
+            char[] name = keyword.getKey().toCharArray();
+            int slot = hash(name, 0, name.length);
+            if (NAMES[slot] != null) {
+                throw new IllegalStateException("Keyword hash collision between " + keyword.getKey()
+                        + " and " + new String(NAMES[slot]));
+            }
+            NAMES[slot] = name;
+            TYPES[slot] = keyword.getValue();
+        }
+    }
+
+    private Keywords() {
+    }
+
+    /**
+     * Computes the table slot for a range of characters.
+     * @param buf The characters.
+     * @param start The offset of the first character.
+     * @param length The number of characters, at least 1.
+     * @return The slot index.
+     */
+    private static int hash(char[] buf, int start, int length) {
+        return (buf[start] * 3 + (buf[start + length - 1] << 3) + length) & (TABLE_SIZE - 1);
+    }
+
+    /**
+     * Looks up the token type of a word.
+     * @param buf The characters.
+     * @param start The offset of the word.
+     * @param length The length of the word.
+     * @return The keyword's token type, or IDENTIFIER if the word is not a keyword.
+     */
+    static TokenType lookup(char[] buf, int start, int length) {
+        if (length < MIN_LENGTH || length > MAX_LENGTH) {
+            return TokenType.IDENTIFIER;
+        }
+
+        int slot = hash(buf, start, length);
+        char[] name = NAMES[slot];
+        if (name == null || name.length != length) {
+            return TokenType.IDENTIFIER;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name[i] != buf[start + i]) {
+                return TokenType.IDENTIFIER;
+            }
+        }
+        return TYPES[slot];
+    }
+}
@@ -0,0 +1,198 @@
+package compiler.scanner;
+
+import java.util.Arrays;
+
+/**
+ * The offset at which every line of a source starts, built in one pass, so that the line of an offset is a
+ * binary search over the line starts and its column a scan of its own line up to the offset, instead of a
+ * rescan of the source from its start. Lines, columns and tabs are
+ * counted the way Scanner counts them: a '\n' starts a line, a '\r' restarts the column, and a tab takes
+ * tabWidth columns. Diagnostics and later phases use it to turn an offset into a location or a source snippet
+ * without rescanning the source.
+ */
+public final class LineIndex {
+    private static final TextSearch SEARCH = TextSearch.INSTANCE;
+
+    private final char[] source; // The characters of the source
+    private final int limit; // The number of valid characters in source
+    private final int tabWidth; // The number of columns a tab takes
+    private final int[] lineStarts; // The offset of the first character of each line, in order
+    private final int lines; // The number of lines
+
+    /**
+     * Constructs a new LineIndex with Scanner.DEFAULT_TAB_WIDTH.
+     * @param source The characters of the source.
+     * @param limit The number of valid characters.
+     */
+    public LineIndex(char[] source, int limit) {
+        this(source, limit, Scanner.DEFAULT_TAB_WIDTH);
+    }
+
+    /**
+     * Constructs a new LineIndex.
+     * @param source The characters of the source.
+     * @param limit The number of valid characters.
+     * @param tabWidth The number of columns a tab takes, as given to Scanner.setTabWidth().
+     */
+    public LineIndex(char[] source, int limit, int tabWidth) {
+        if (tabWidth < 1) {
+            throw new IllegalArgumentException("tabWidth must be at least 1, got " + tabWidth);
+        }
+        this.source = source;
+        this.limit = limit;
+        this.tabWidth = tabWidth;
+
+        int[] starts = new int[16];
+        int count = 1; // starts[0] is 0
+        int newline = SEARCH.indexOfEither(source, 0, limit, '\n', '\n');
+        while (newline < limit) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+            }
+            starts[count++] = newline + 1;
+            newline = SEARCH.indexOfEither(source, newline + 1, limit, '\n', '\n');
+        }
+        this.lineStarts = starts;
+        this.lines = count;
+    }
+
+    /**
+     * Constructs a new LineIndex over the source of a token buffer with Scanner.DEFAULT_TAB_WIDTH.
+     * @param tokens The tokens.
+     * @return The index.
+     */
+    public static LineIndex of(TokenBuffer tokens) {
+        return new LineIndex(tokens.source(), tokens.sourceLength());
+    }
+
+    /**
+     * Gets the number of lines. A source ending with '\n' has an empty last line.
+     * @return The line count, at least 1.
+     */
+    public int lineCount() {
+        return lines;
+    }
+
+    /**
+     * Gets the line an offset is on.
+     * @param offset The offset, from 0 to the length of the source.
+     * @return The line, starting at 1.
+     */
+    public int line(int offset) {
+        checkOffset(offset);
+        int index = Arrays.binarySearch(lineStarts, 0, lines, offset);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /**
+     * Gets the column of an offset, as Scanner would report it for a token starting there. This walks the line
+     * from its start, so it takes time in proportion to how far into its line the offset is.
+     * @param offset The offset, from 0 to the length of the source.
+     * @return The column, starting at 1.
+     */
+    public int column(int offset) {
+        int col = 1;
+        for (int i = lineStart(line(offset)); i < offset; i++) {
+            char c = source[i];
+            if (c == '\r') {
+                col = 1;
+            } else if (c == '\t') {
+                col += tabWidth;
+            } else {
+                col++;
+            }
+        }
+        return col;
+    }
+
+    /**
+     * Packs the location of an offset. For a STRING token, pass the offset of its opening quote, one before its
+     * literal, to get the position Scanner gave it.
+     * @param offset The offset, from 0 to the length of the source.
+     * @return The position, with the exact line and column before saturation.
+     */
+    public long position(int offset) {
+        return Position.pack(offset, line(offset), column(offset));
+    }
+
+    /**
+     * Gets the offset a line starts at.
+     * @param line The line, starting at 1.
+     * @return The offset of its first character.
+     */
+    public int lineStart(int line) {
+        checkLine(line);
+        return lineStarts[line - 1];
+    }
+
+    /**
+     * Gets the offset a line ends at, before its '\n' and any '\r' in front of it.
+     * @param line The line, starting at 1.
+     * @return The offset after its last character.
+     */
+    public int lineEnd(int line) {
+        checkLine(line);
+        int end = line < lines ? lineStarts[line] - 1 : limit;
+        if (end > lineStarts[line - 1] && source[end - 1] == '\r') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Gets the text of a line.
+     * @param line The line, starting at 1.
+     * @return The line without its line break.
+     */
+    public String lineText(int line) {
+        int start = lineStart(line);
+        return new String(source, start, lineEnd(line) - start);
+    }
+
+    /**
+     * Renders the line of an offset with carets under a range, for showing a diagnostic:
+     * <pre>
+     * let a = !1;
+     *         ^
+     * </pre>
+     * Tabs before the range are kept in the caret line so that the carets line up in a terminal.
+     * @param offset The offset of the range.
+     * @param length The length of the range, at least one caret is drawn. It is cut off at the end of the line.
+     * @return The line and the caret line, separated by '\n'.
+     */
+    public String snippet(int offset, int length) {
+        int line = line(offset);
+        int start = lineStart(line);
+        int end = lineEnd(line);
+        StringBuilder snippet = new StringBuilder(2 * (end - start) + 2);
+        snippet.append(source, start, end - start).append('\n');
+        for (int i = start; i < offset && i < end; i++) {
+            snippet.append(source[i] == '\t' ? '\t' : ' ');
+        }
+        int carets = Math.max(1, Math.min(length, end - offset));
+        for (int i = 0; i < carets; i++) {
+            snippet.append('^');
+        }
+        return snippet.toString();
+    }
+
+    /**
+     * Checks that an offset is inside the source or at its end.
+     * @param offset The offset.
+     */
+    private void checkOffset(int offset) {
+        if (offset < 0 || offset > limit) {
+            throw new IndexOutOfBoundsException("Offset " + offset + " out of range for " + limit + " characters");
+        }
+    }
+
+    /**
+     * Checks that a line exists.
+     * @param line The line.
+     */
+    private void checkLine(int line) {
+        if (line < 1 || line > lines) {
+            throw new IndexOutOfBoundsException("Line " + line + " out of range for " + lines + " lines");
+        }
+    }
+}
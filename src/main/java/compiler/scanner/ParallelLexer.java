@@ -0,0 +1,292 @@
+package compiler.scanner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Lexes one large source on a fork-join pool by splitting it into chunks.
+ *
+ * Chunks always start right after a newline, so they never start inside a // comment and their first
+ * character is at column 1. A chunk may still start inside a string or a multi-line comment, so every chunk
+ * is lexed speculatively as if it started between tokens, recording the cursor before and after each token.
+ * The chunks are then stitched together in order: because the scanner's state between tokens is only its
+ * cursor, a speculative token whose start cursor equals where the previous accepted token ended is exactly
+ * the token a serial scan would produce next, and so is everything after it in the chunk. When no such token
+ * exists the chunk started in the wrong state, and a serial fix-up scan runs from the last accepted token
+ * until it lands on a speculative cursor again. The result is identical to Scanner.tokenize(), including
+ * rows, columns and the order symbol ids are assigned in.
+ */
+public final class ParallelLexer {
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private final ForkJoinPool pool; // The pool the chunks are lexed on
+    private final int chunkSize; // The approximate number of characters per chunk
+    private final int tabWidth; // The number of columns a tab takes
+
+    /**
+     * Constructs a new ParallelLexer on the common pool with 1M-character chunks.
+     */
+    public ParallelLexer() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs a new ParallelLexer with Scanner.DEFAULT_TAB_WIDTH.
+     * @param pool The pool the chunks are lexed on.
+     * @param chunkSize The approximate number of characters per chunk.
+     */
+    public ParallelLexer(ForkJoinPool pool, int chunkSize) {
+        this(pool, chunkSize, Scanner.DEFAULT_TAB_WIDTH);
+    }
+
+    /**
+     * Constructs a new ParallelLexer.
+     * @param pool The pool the chunks are lexed on.
+     * @param chunkSize The approximate number of characters per chunk.
+     * @param tabWidth The number of columns a tab takes, as given to Scanner.setTabWidth().
+     */
+    public ParallelLexer(ForkJoinPool pool, int chunkSize, int tabWidth) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be at least 1, got " + chunkSize);
+        }
+        if (tabWidth < 1) {
+            throw new IllegalArgumentException("tabWidth must be at least 1, got " + tabWidth);
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.tabWidth = tabWidth;
+    }
+
+    /**
+     * Reads a file and lexes it in parallel.
+     * @param fileName The name of the file to be scanned.
+     * @param symbols The table identifiers are interned into.
+     * @return Every token up to and including the first EOF token.
+     * @throws IOException If an I/O error occurs.
+     */
+    public TokenBuffer tokenize(String fileName, SymbolTable symbols) throws IOException {
+        return tokenize(SourceBuffer.load(fileName), symbols);
+    }
+
+    /**
+     * Lexes an already loaded source in parallel.
+     * @param source The source to be scanned.
+     * @param symbols The table identifiers are interned into.
+     * @return Every token up to and including the first EOF token.
+     */
+    public TokenBuffer tokenize(SourceBuffer source, SymbolTable symbols) {
+        char[] buffer = source.chars();
+        int limit = source.length();
+
+        List<Chunk> chunks = split(buffer, limit);
+        if (chunks.size() == 1) {
+            TokenBuffer tokens = new TokenBuffer(buffer, limit, limit / 6 + 16);
+            Scanner scanner = new Scanner(buffer, limit, 0, 1, 1, symbols);
+            scanner.setTabWidth(tabWidth);
+            while (scanner.scanNext(tokens) != TokenType.EOF) {
+                // scan until the first EOF token
+            }
+            return tokens;
+        }
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(chunks.size());
+        for (Chunk chunk : chunks) {
+            tasks.add(pool.submit(chunk::lex));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+
+        return stitch(chunks, buffer, limit, symbols);
+    }
+
+    /**
+     * Splits a source into chunks that each start right after a newline.
+     * @param buffer The source characters.
+     * @param limit The number of valid characters.
+     * @return The chunks, covering the whole source in order.
+     */
+    private List<Chunk> split(char[] buffer, int limit) {
+        List<Chunk> chunks = new ArrayList<>();
+        int start = 0;
+        while (start < limit) {
+            int end = start + chunkSize;
+            while (end < limit && buffer[end - 1] != '\n') {
+                end++;
+            }
+            end = Math.min(end, limit);
+            chunks.add(new Chunk(buffer, limit, start, end, tabWidth));
+            start = end;
+        }
+        if (chunks.isEmpty()) {
+            chunks.add(new Chunk(buffer, limit, 0, 0, tabWidth));
+        }
+        chunks.get(chunks.size() - 1).last = true;
+        return chunks;
+    }
+
+    /**
+     * Joins the speculative chunk tokens into one stream, re-lexing wherever a chunk started mid-token.
+     * @param chunks The lexed chunks, in source order.
+     * @param buffer The source characters.
+     * @param limit The number of valid characters.
+     * @param symbols The table identifiers are interned into.
+     * @return Every token up to and including the first EOF token.
+     */
+    private TokenBuffer stitch(List<Chunk> chunks, char[] buffer, int limit, SymbolTable symbols) {
+        int estimate = 16;
+        for (Chunk chunk : chunks) {
+            estimate += chunk.tokens.size();
+        }
+        TokenBuffer out = new TokenBuffer(buffer, limit, estimate);
+
+        // The scanner state after the last accepted token
+        int pos = 0;
+        int row = 1;
+        int col = 1;
+        int rowBase = 0; // The number of newlines before the current chunk
+
+        for (Chunk chunk : chunks) {
+            int from = chunk.indexOfBegin(pos);
+            if (from < 0) {
+                Scanner fixUp = new Scanner(buffer, limit, pos, row, col, symbols);
+                fixUp.setTabWidth(tabWidth);
+                while (from < 0 && (fixUp.position() < chunk.end || chunk.last)) {
+                    if (fixUp.scanNext(out) == TokenType.EOF) {
+                        return out;
+                    }
+                    pos = fixUp.position();
+                    row = fixUp.row();
+                    col = fixUp.col();
+                    from = chunk.indexOfBegin(pos);
+                }
+            }
+
+            if (from >= 0) {
+                if (chunk.appendTo(out, from, rowBase, symbols)) {
+                    return out;
+                }
+                int lastToken = chunk.tokens.size() - 1;
+                pos = chunk.ends[lastToken];
+                row = chunk.endRows[lastToken] + rowBase;
+                col = chunk.endCols[lastToken];
+            }
+            rowBase += chunk.newlines;
+        }
+        return out;
+    }
+
+    /**
+     * A range of the source and the tokens a speculative scan of it produced.
+     */
+    private static final class Chunk {
+        private final char[] buffer;
+        private final int limit;
+        private final int start; // The offset of the first character, always a line start
+        private final int end; // The offset after the last character
+        private final int tabWidth; // The number of columns a tab takes
+        private boolean last; // Whether this chunk ends the source
+
+        private int newlines; // The number of '\n' in [start, end)
+        private TokenBuffer tokens; // Rows are relative, the chunk's first line is row 1
+        private SymbolTable symbols; // Identifiers seen by the speculative scan
+        private int[] begins; // The cursor before each token
+        private int[] ends; // The cursor after each token
+        private int[] endRows; // The relative row after each token
+        private int[] endCols; // The column after each token
+
+        Chunk(char[] buffer, int limit, int start, int end, int tabWidth) {
+            this.buffer = buffer;
+            this.limit = limit;
+            this.start = start;
+            this.end = end;
+            this.tabWidth = tabWidth;
+        }
+
+        /**
+         * Lexes every token that starts scanning before the end of the chunk.
+         */
+        void lex() {
+            for (int i = start; i < end; i++) {
+                if (buffer[i] == '\n') {
+                    newlines++;
+                }
+            }
+
+            int capacity = (end - start) / 6 + 16;
+            tokens = new TokenBuffer(buffer, limit, capacity);
+            symbols = new SymbolTable();
+            begins = new int[capacity];
+            ends = new int[capacity];
+            endRows = new int[capacity];
+            endCols = new int[capacity];
+
+            Scanner scanner = new Scanner(buffer, limit, start, 1, 1, symbols);
+            scanner.setTabWidth(tabWidth);
+            while (scanner.position() < end || last) {
+                int begin = scanner.position();
+                TokenType type = scanner.scanNext(tokens);
+
+                int index = tokens.size() - 1;
+                if (index == begins.length) {
+                    int newCapacity = begins.length * 2;
+                    begins = Arrays.copyOf(begins, newCapacity);
+                    ends = Arrays.copyOf(ends, newCapacity);
+                    endRows = Arrays.copyOf(endRows, newCapacity);
+                    endCols = Arrays.copyOf(endCols, newCapacity);
+                }
+                begins[index] = begin;
+                ends[index] = scanner.position();
+                endRows[index] = scanner.row();
+                endCols[index] = scanner.col();
+
+                if (type == TokenType.EOF) {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Finds the speculative token that starts scanning at a cursor.
+         * @param pos The cursor.
+         * @return The index of the token, or -1 if no token starts there.
+         */
+        int indexOfBegin(int pos) {
+            int index = Arrays.binarySearch(begins, 0, tokens.size(), pos);
+            return index >= 0 ? index : -1;
+        }
+
+        /**
+         * Appends the tokens from an index on, fixing up rows and symbol ids.
+         * @param out The buffer to append to.
+         * @param from The index of the first token to append.
+         * @param rowBase The number of newlines before the chunk.
+         * @param global The table symbol ids are translated into.
+         * @return True if an EOF token was appended.
+         */
+        boolean appendTo(TokenBuffer out, int from, int rowBase, SymbolTable global) {
+            int[] remap = new int[symbols.size()];
+            Arrays.fill(remap, SymbolTable.NO_SYMBOL);
+
+            for (int i = from; i < tokens.size(); i++) {
+                TokenType type = tokens.type(i);
+                int symbol = tokens.symbol(i);
+                if (symbol != SymbolTable.NO_SYMBOL) {
+                    if (remap[symbol] == SymbolTable.NO_SYMBOL) {
+                        remap[symbol] = global.intern(buffer, tokens.start(i), tokens.length(i));
+                    }
+                    symbol = remap[symbol];
+                }
+                out.add(type, tokens.start(i), tokens.length(i), tokens.row(i) + rowBase, tokens.col(i), symbol);
+                if (type == TokenType.EOF) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package compiler.scanner;
+
+/**
+ * Packs the offset, line and column of a token into one long, so that a Token carries its location without
+ * three more fields. The offset takes the high 31 bits, the line the next 20 and the column the low 13.
+ * A line or column too large for its bits is saturated at LINE_MAX or COL_MAX; the offset is always exact,
+ * so a LineIndex can recover the true line and column from it. The one exception is a STRING token: its offset
+ * is that of its literal, one past the opening quote, while its line and column are those of the quote, so the
+ * quote's location is recovered from offset - 1.
+ */
+public final class Position {
+    public static final long NONE = -1; // The position of a token whose location is unknown
+    public static final int LINE_MAX = (1 << 20) - 1;
+    public static final int COL_MAX = (1 << 13) - 1;
+
+    private static final int OFFSET_SHIFT = 33;
+    private static final int LINE_SHIFT = 13;
+
+    private Position() {
+    }
+
+    /**
+     * Packs a location.
+     * @param offset The offset in the source, at least 0.
+     * @param line The line, starting at 1.
+     * @param col The column, starting at 1.
+     * @return The packed position.
+     */
+    public static long pack(int offset, int line, int col) {
+        return (long) offset << OFFSET_SHIFT
+                | (long) Math.min(line, LINE_MAX) << LINE_SHIFT
+                | Math.min(col, COL_MAX);
+    }
+
+    /**
+     * Gets the offset of a packed position.
+     * @param position The position, not NONE.
+     * @return The offset in the source.
+     */
+    public static int offset(long position) {
+        return (int) (position >>> OFFSET_SHIFT);
+    }
+
+    /**
+     * Gets the line of a packed position.
+     * @param position The position, not NONE.
+     * @return The line, or LINE_MAX if it was larger.
+     */
+    public static int line(long position) {
+        return (int) (position >>> LINE_SHIFT) & LINE_MAX;
+    }
+
+    /**
+     * Gets the column of a packed position.
+     * @param position The position, not NONE.
+     * @return The column, or COL_MAX if it was larger.
+     */
+    public static int col(long position) {
+        return (int) position & COL_MAX;
+    }
+
+    /**
+     * Describes a packed position as "line:col", the way ParseException reports one.
+     * @param position The position.
+     * @return The description, or "?" for NONE.
+     */
+    public static String toString(long position) {
+        return position == NONE ? "?" : line(position) + ":" + col(position);
+    }
+}
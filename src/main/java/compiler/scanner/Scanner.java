@@ -1,19 +1,47 @@
 package compiler.scanner;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.file.Path;
 
 /**
  * A scanner class for lexical analysis of source code.
+ * The whole source is loaded into one buffer up front and scanned with an integer cursor,
+ * so reading and peeking a character are plain array accesses.
+ * A scanner can be reset() to another source, keeping its buffers and symbol table, so that scanning many small
+ * inputs does not pay for a new scanner each time. ScannerPool keeps one per thread.
  */
 public class Scanner {
-    private BufferedReader reader;
+    public static final int DEFAULT_TAB_WIDTH = 4;
+
+    private static final TextSearch SEARCH = TextSearch.INSTANCE; // Bulk skipping, vectorized when available
+
     private String fileName;
+    private char[] buffer; // The source characters
+    private int limit; // The number of valid characters in buffer
+    private int pos; // The index of ch in buffer, or limit at EOF
     private int row = 1;
     private int col = 1;
     private char ch;
+    private int tabWidth = DEFAULT_TAB_WIDTH; // The number of columns a tab takes
+
+    // The most recently scanned token, as a range of the buffer
+    private TokenType tokenType;
+    private int tokenStart;
+    private int tokenLength;
+    private int tokenRow;
+    private int tokenCol;
+    private int tokenSymbol;
+
+    private final SymbolTable symbols; // Interned identifier names
+    private Diagnostics diagnostics; // Where lexical errors go, or null to scan them as ILLEGAL tokens
+
+    // Kept across reset() calls
+    private boolean ownsBuffer; // Whether buffer was allocated by this scanner, so reset() may overwrite it
+    private ByteBuffer bytes; // The heap buffer files are read into
+    private CharsetDecoder decoder; // The decoder of the last charset decoded
 
     /**
      * Constructor for creating a new Scanner object.
@@ -21,142 +49,356 @@ public class Scanner {
      * @throws IOException If an I/O error occurs.
      */
     public Scanner(String fileName) throws IOException {
-        this.fileName = fileName;
-        this.reader = new BufferedReader(new FileReader(fileName));
-        readChar();
+        this(fileName, new SymbolTable());
     }
 
     /**
-     * Reads the next character from the input stream.
+     * Constructor for creating a new Scanner object that interns identifiers into a shared table.
+     * @param fileName The name of the file to be scanned.
+     * @param symbols The table identifiers are interned into.
      * @throws IOException If an I/O error occurs.
      */
-    private void readChar() throws IOException{
-        int readChar = reader.read();
-        if (readChar == -1) {
-            ch = '\0'; // Indicates EOF
-        } else {
-            ch = (char) readChar;
-        }
+    public Scanner(String fileName, SymbolTable symbols) throws IOException {
+        this(SourceBuffer.load(fileName), symbols);
+        this.fileName = fileName;
+    }
 
-        if (ch == ' ') {
-            col++;
-        } else if (ch == '\t') {
-            // Assuming a tab is 4 spaces
-            col += 4;
-        } else if (ch == '\n') {
+    /**
+     * Constructor for creating a new Scanner object over an already loaded source.
+     * @param source The source to be scanned.
+     * @param symbols The table identifiers are interned into.
+     */
+    public Scanner(SourceBuffer source, SymbolTable symbols) {
+        this(source.chars(), source.length(), 0, 1, 1, symbols);
+    }
+
+    /**
+     * Constructor for creating a new Scanner object over characters already in memory.
+     * @param source The characters to be scanned. The scanner reads them in place.
+     * @param symbols The table identifiers are interned into.
+     */
+    public Scanner(char[] source, SymbolTable symbols) {
+        this(source, source.length, 0, 1, 1, symbols);
+    }
+
+    /**
+     * Constructor for creating a new Scanner object over encoded bytes already in memory.
+     * @param bytes The encoded source.
+     * @param charset The charset of the source.
+     * @param symbols The table identifiers are interned into.
+     * @throws IOException If the bytes cannot be decoded.
+     */
+    public Scanner(ByteBuffer bytes, Charset charset, SymbolTable symbols) throws IOException {
+        this(symbols);
+        reset(bytes, charset);
+    }
+
+    /**
+     * Constructor for creating a new Scanner object over an empty source, to be given one with reset().
+     * @param symbols The table identifiers are interned into.
+     */
+    public Scanner(SymbolTable symbols) {
+        this(new char[0], 0, 0, 1, 1, symbols);
+    }
+
+    /**
+     * Constructor for resuming a scan in the middle of a source.
+     * Between tokens the scanner's whole state is its cursor, so starting at a position with the row and
+     * column a full scan would have there gives exactly the tokens a full scan would produce from that point.
+     * @param buffer The source characters.
+     * @param limit The number of valid characters in buffer.
+     * @param pos The offset to start scanning at.
+     * @param row The line of the character at pos.
+     * @param col The column of the character at pos.
+     * @param symbols The table identifiers are interned into.
+     */
+    Scanner(char[] buffer, int limit, int pos, int row, int col, SymbolTable symbols) {
+        this.symbols = symbols;
+        this.buffer = buffer;
+        this.limit = limit;
+        this.pos = Math.min(pos, limit);
+        this.row = row;
+        this.col = col;
+        ch = this.pos < limit ? buffer[this.pos] : '\0';
+    }
+
+    /**
+     * Reads the next character from the buffer.
+     * row and col always describe the position of ch, so they are advanced past the character being left.
+     */
+    private void readChar() {
+        if (ch == '\n') {
             col = 1;
             row += 1;
         } else if (ch == '\r') {
             col = 1;
-        } else {
+        } else if (ch == '\t') {
+            col += tabWidth;
+        } else if (pos < limit) {
             col++;
         }
+
+        if (pos + 1 < limit) {
+            ch = buffer[++pos];
+        } else {
+            pos = limit;
+            ch = '\0'; // Indicates EOF
+        }
     }
 
     /**
-     * Returns the next token from the input stream.
+     * Returns the next token from the buffer.
      * @return The next token.
      * @throws IOException If an I/O error occurs.
      */
     public Token nextToken() throws IOException {
-        Token token;
+        scan();
+        if (tokenSymbol != SymbolTable.NO_SYMBOL) {
+            return new Token(tokenType, symbols.name(tokenSymbol), Position.pack(tokenStart, tokenRow, tokenCol));
+        }
+        return new Token(tokenType, new String(buffer, tokenStart, tokenLength),
+                Position.pack(tokenStart, tokenRow, tokenCol));
+    }
+
+    /**
+     * Sets how many columns a tab takes in the columns of later tokens. LineIndex must be given the same width
+     * to agree with them.
+     * @param tabWidth The width, DEFAULT_TAB_WIDTH unless set.
+     */
+    public void setTabWidth(int tabWidth) {
+        if (tabWidth < 1) {
+            throw new IllegalArgumentException("tabWidth must be at least 1, got " + tabWidth);
+        }
+        this.tabWidth = tabWidth;
+    }
+
+    /**
+     * Reports lexical errors to a collector instead of scanning them as ILLEGAL tokens, and recovers from each so
+     * that one pass finds them all. A stray character, such as a lone '!', is skipped. An unterminated string
+     * becomes a STRING token running to the end of its line, and scanning resumes on the next line. An
+     * unterminated comment runs to the end of the source. Scans without errors take the same path as without
+     * a collector.
+     * @param diagnostics The collector, or null to scan errors as ILLEGAL tokens again.
+     */
+    public void setDiagnostics(Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * Returns a lazily pulled stream of the remaining tokens with bounded lookahead.
+     * @param lookahead The maximum number of tokens the stream can peek at.
+     * @return The token stream.
+     */
+    public TokenStream stream(int lookahead) {
+        return new TokenStream(this, lookahead);
+    }
+
+    /**
+     * Gets the table identifiers are interned into.
+     * @return The symbol table.
+     */
+    public SymbolTable getSymbolTable() {
+        return symbols;
+    }
+
+    /**
+     * Scans every remaining token, including the final EOF token, into a new TokenBuffer.
+     * @return The scanned tokens.
+     * @throws IOException If an I/O error occurs.
+     */
+    public TokenBuffer tokenize() throws IOException {
+        TokenBuffer tokens = new TokenBuffer(buffer, limit, limit / 6 + 16); // roughly one token per six characters
+        tokenize(tokens);
+        return tokens;
+    }
+
+    /**
+     * Scans every remaining token, including the final EOF token, into an existing TokenBuffer.
+     * The buffer is cleared first, so its arrays can be reused across files.
+     * @param tokens The buffer to fill.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void tokenize(TokenBuffer tokens) throws IOException {
+        tokens.reset(buffer, limit);
+        do {
+            scan();
+            tokens.add(tokenType, tokenStart, tokenLength, tokenRow, tokenCol, tokenSymbol);
+        } while (tokenType != TokenType.EOF);
+    }
+
+    /**
+     * Scans the next token and appends it to a TokenBuffer.
+     * @param tokens The buffer to append to.
+     * @return The type of the token.
+     */
+    TokenType scanNext(TokenBuffer tokens) {
+        scan();
+        tokens.add(tokenType, tokenStart, tokenLength, tokenRow, tokenCol, tokenSymbol);
+        return tokenType;
+    }
+
+    /**
+     * Moves the cursor forward to a position without producing tokens, keeping row and col up to date.
+     * @param position The offset to move to.
+     */
+    void advanceTo(int position) {
+        while (pos < position && pos < limit) {
+            readChar();
+        }
+    }
+
+    /**
+     * Gets the cursor, which is where the next scan starts.
+     * @return The offset of the current character.
+     */
+    int position() {
+        return pos;
+    }
+
+    /**
+     * Gets the line of the current character.
+     * @return The line, starting at 1.
+     */
+    int row() {
+        return row;
+    }
+
+    /**
+     * Gets the column of the current character.
+     * @return The column, starting at 1.
+     */
+    int col() {
+        return col;
+    }
+
+    /**
+     * Scans the next token, skipping past stray characters when errors go to a collector.
+     */
+    private void scan() {
+        scanToken();
+        while (tokenType == TokenType.ILLEGAL && diagnostics != null) {
+            diagnostics.add(DiagnosticKind.UNEXPECTED_CHARACTER, tokenStart, tokenLength, tokenRow, tokenCol);
+            scanToken();
+        }
+    }
+
+    /**
+     * Scans the next token and records it as a range of the buffer instead of building its literal.
+     */
+    private void scanToken() {
         skipWhiteSpace();
         skipComments();
 
+        tokenStart = pos;
+        tokenRow = row;
+        tokenCol = col;
+        tokenSymbol = SymbolTable.NO_SYMBOL;
 
         switch (ch) {
             case '+':
                 if (peekChar() == '+') {
                     readChar();
-                    token = new Token(TokenType.INCRE, "++");
+                    tokenType = TokenType.INCRE;
                 } else {
-                    token = new Token(TokenType.PLUS, "+");
+                    tokenType = TokenType.PLUS;
                 }
                 break;
             case '-':
                 if (peekChar() == '-') {
                     readChar();
-                    token = new Token(TokenType.DECRE, "--");
+                    tokenType = TokenType.DECRE;
                 } else {
-                    token = new Token(TokenType.MINUS, "-");
+                    tokenType = TokenType.MINUS;
                 }
                 break;
             case '=':
                 if (peekChar() == '=') {
                     readChar();
-                    token = new Token(TokenType.EQ, "==");
+                    tokenType = TokenType.EQ;
                 } else {
-                    token = new Token(TokenType.ASSIGN, "=");
+                    tokenType = TokenType.ASSIGN;
                 }
                 break;
             case '<':
                 if (peekChar() == '=') {
                     readChar();
-                    token = new Token(TokenType.LTEQ, "<=");
+                    tokenType = TokenType.LTEQ;
                 } else {
-                    token = new Token(TokenType.LT, "<");
+                    tokenType = TokenType.LT;
                 }
                 break;
             case '>':
                 if (peekChar() == '=') {
                     readChar();
-                    token = new Token(TokenType.GTEQ, ">=");
+                    tokenType = TokenType.GTEQ;
                 } else {
-                    token = new Token(TokenType.GT, ">");
+                    tokenType = TokenType.GT;
                 }
                 break;
             case '!':
                 if (peekChar() == '=') {
                     readChar();
-                    token = new Token(TokenType.NOTEQ, "!=");
+                    tokenType = TokenType.NOTEQ;
                 } else {
-                    token = new Token(TokenType.ILLEGAL, "!");
+                    tokenType = TokenType.ILLEGAL;
                 }
                 break;
             case '\"':
-                String text = readString();
-                if (text != null) {
-                    return new Token(TokenType.STRING, text);
-                } else {
-                    token = new Token(TokenType.ILLEGAL, "\"");
+                if (readString()) {
+                    tokenType = TokenType.STRING;
+                    return;
                 }
-                break;
+                if (diagnostics != null) {
+                    recoverString();
+                    return;
+                }
+                // An unterminated string is reported as just its opening quote
+                tokenType = TokenType.ILLEGAL;
+                tokenLength = 1;
+                readChar();
+                return;
             case '{':
-                token = new Token(TokenType.LBRACE, "{");
+                tokenType = TokenType.LBRACE;
                 break;
             case '}':
-                token = new Token(TokenType.RBRACE, "}");
+                tokenType = TokenType.RBRACE;
                 break;
             case '(':
-                token = new Token(TokenType.LPAREN, "(");
+                tokenType = TokenType.LPAREN;
                 break;
             case ')':
-                token = new Token(TokenType.RPAREN, ")");
+                tokenType = TokenType.RPAREN;
                 break;
             case ';':
-                token = new Token(TokenType.SEMICOLON, ";");
+                tokenType = TokenType.SEMICOLON;
                 break;
             case ',':
-                token = new Token(TokenType.COMMA, ",");
+                tokenType = TokenType.COMMA;
                 break;
             case '\0':
-                token = new Token(TokenType.EOF, "");
-                break;
+                tokenType = TokenType.EOF;
+                tokenLength = 0;
+                readChar();
+                return;
             default:
                 if (isLetterOrUnderscore(ch)) {
-                    String identifier = readIdentifier();
-                    return new Token(Token.keywords.getOrDefault(identifier, TokenType.IDENTIFIER), identifier);
+                    readIdentifier();
+                    tokenType = Keywords.lookup(buffer, tokenStart, tokenLength);
+                    if (tokenType == TokenType.IDENTIFIER) {
+                        tokenSymbol = symbols.intern(buffer, tokenStart, tokenLength);
+                    }
+                    return;
                 } else if (Character.isDigit(ch)) {
-                    String digit = readDigit();
-                    return new Token(TokenType.NUMBER, digit);
+                    readDigit();
+                    tokenType = TokenType.NUMBER;
+                    return;
                 } else {
-                    token = new Token(TokenType.ILLEGAL, String.valueOf(ch));
+                    tokenType = TokenType.ILLEGAL;
                 }
         }
 
         readChar();
-
-        return token;
+        tokenLength = pos - tokenStart;
     }
 
     /**
@@ -178,149 +420,268 @@ public class Scanner {
     }
 
     /**
-     * Reads an identifier from the input stream.
-     * @return The identifier read.
-     * @throws IOException If an I/O error occurs.
+     * Reads an identifier from the buffer and records its length.
      */
-    private String readIdentifier() throws IOException {
-        StringBuilder identifier = new StringBuilder();
-
-        identifier.append(ch);
+    private void readIdentifier() {
         readChar();
 
         while (isLetterOrUnderscoreOrDigit(ch)) {
-            identifier.append(ch);
             readChar();
         }
 
-        return identifier.toString();
+        tokenLength = pos - tokenStart;
     }
 
     /**
-     * Reads a sequence of digits from the input stream.
-     * @return The sequence of digits read.
-     * @throws IOException If an I/O error occurs.
+     * Reads a sequence of digits from the buffer and records its length.
      */
-    private String readDigit() throws IOException {
-        StringBuilder digit = new StringBuilder();
-
-        digit.append(ch);
+    private void readDigit() {
         readChar();
 
         while (Character.isDigit(ch)) {
-            digit.append(ch);
             readChar();
         }
 
-        return digit.toString();
+        tokenLength = pos - tokenStart;
     }
 
     /**
-     * Peeks the next character in the input stream without consuming it.
+     * Peeks the next character in the buffer without consuming it.
      * @return The next character.
-     * @throws IOException If an I/O error occurs.
      */
-    private char peekChar() throws IOException {
-        reader.mark(1);
-        int nextCharInt = reader.read();
-        if (nextCharInt != -1) {
-            reader.reset();
-            return (char) nextCharInt;
-        } else {
-            return '\0'; // Indicates EOF
-        }
+    private char peekChar() {
+        return pos + 1 < limit ? buffer[pos + 1] : '\0'; // '\0' indicates EOF
     }
 
     /**
-     * Skips whitespace characters in the input stream.
-     * @throws IOException If an I/O error occurs.
+     * Skips whitespace characters in the buffer.
      */
-    private void skipWhiteSpace() throws IOException {
-        while (ch == ' ' || ch == '\t' || ch == '\n' || ch == '\r') {
-            readChar();
+    private void skipWhiteSpace() {
+        if (ch == ' ' || ch == '\t' || ch == '\n' || ch == '\r') {
+            if (pos + 1 < limit && buffer[pos + 1] > ' ') {
+                readChar(); // a lone separator, the common case
+            } else {
+                moveTo(SEARCH.skipWhiteSpace(buffer, pos + 1, limit));
+            }
         }
     }
 
     /**
-     * Skips single-line and multi-line comments in the input stream.
-     * @throws IOException If an I/O error occurs.
+     * Skips single-line and multi-line comments in the buffer.
      */
-    private void skipComments() throws  IOException {
+    private void skipComments() {
         skipMultiLineComment();
         skipSingleLineComment();
     }
 
     /**
-     * Skips single-line comments in the input stream.
-     * @throws IOException If an I/O error occurs.
+     * Skips single-line comments in the buffer.
      */
-    private void skipSingleLineComment() throws IOException {
+    private void skipSingleLineComment() {
         if (ch == '/' && peekChar() == '/') {
-            readChar();
-            readChar();
-
-            while (ch != '\0') {
-                if (ch == '\n') {
-                    readChar();
-                    skipWhiteSpace();
-                    return;
-                }
-                readChar();
+            int end = SEARCH.indexOfEither(buffer, pos + 2, limit, '\n', '\0');
+            if (end < limit && buffer[end] == '\n') {
+                moveTo(end + 1);
+                skipWhiteSpace();
+            } else {
+                moveTo(end);
             }
         }
     }
 
     /**
-     * Skips multi-line comments in the input stream.
-     * @throws IOException If an I/O error occurs.
+     * Skips multi-line comments in the buffer.
+     * An unterminated comment stops on its last character, or the one before a NUL character, unless errors go
+     * to a collector, in which case it is reported and runs to the end of the source.
      */
-    private void skipMultiLineComment() throws IOException {
+    private void skipMultiLineComment() {
         if (ch == '/' && peekChar() == '*') {
-            readChar();
-            readChar();
-
-            char c = peekChar();
-            while (c != '\0') {
-                if (ch == '*' && c == '/') {
-                    readChar();
-                    readChar();
-                    skipWhiteSpace();
+            int at = pos + 2; // The character after the opening "/*"
+            while (true) {
+                // Look for the '/' of a closing "*/" or for a NUL, one past the current character
+                int next = at + 1 < limit ? SEARCH.indexOfEither(buffer, at + 1, limit, '/', '\0') : limit;
+                if (next < limit && buffer[next] == '/') {
+                    if (buffer[next - 1] == '*') {
+                        moveTo(next + 1);
+                        skipWhiteSpace();
+                        return;
+                    }
+                    at = next;
+                } else if (diagnostics != null) {
+                    diagnostics.add(DiagnosticKind.UNTERMINATED_COMMENT, pos, 2, row, col);
+                    moveTo(next);
+                    return;
+                } else {
+                    moveTo(Math.max(at, next - 1));
                     return;
                 }
-                readChar();
-                c = peekChar();
             }
         }
     }
 
     /**
-     * Reads a string from the input stream.
-     * @return The string read.
-     * @throws IOException If an I/O error occurs.
+     * Reads a string from the buffer and records the range of its contents, without the quotes.
+     * @return True if the string was terminated, false if the buffer ended first.
      */
-    private String readString() throws IOException {
-        StringBuilder text = new StringBuilder();
+    private boolean readString() {
         readChar();
+        int contentStart = pos;
+        int end = SEARCH.indexOfEither(buffer, pos, limit, '\"', '\0');
+        moveTo(end);
 
-        while (ch != '\0') {
-            if (ch == '\"') {
-                readChar();
-                return text.toString();
-            }
-            text.append(ch);
+        if (ch == '\"') {
+            tokenStart = contentStart;
+            tokenLength = pos - contentStart;
             readChar();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reports the unterminated string starting at the token and rescans it as a string ending with its line.
+     * readString() left the cursor at the end of the source, so it is moved back to the opening quote, whose
+     * position the token still holds.
+     */
+    private void recoverString() {
+        diagnostics.add(DiagnosticKind.UNTERMINATED_STRING, tokenStart, 1, tokenRow, tokenCol);
+        pos = tokenStart;
+        row = tokenRow;
+        col = tokenCol;
+        ch = buffer[pos];
+        readChar();
+
+        int contentStart = pos;
+        int end = SEARCH.indexOfEither(buffer, pos, limit, '\n', '\0');
+        if (end > contentStart && buffer[end - 1] == '\r') {
+            end--;
+        }
+        moveTo(end);
+        tokenType = TokenType.STRING;
+        tokenStart = contentStart;
+        tokenLength = end - contentStart;
+    }
+
+    /**
+     * Moves the cursor forward over a run of characters at once, updating row and col in bulk.
+     * The result is the same as calling readChar() once per character.
+     * @param to The offset to move to, at most limit.
+     */
+    private void moveTo(int to) {
+        if (to > pos) {
+            long position = SEARCH.advance(buffer, pos, to, row, col, tabWidth);
+            row = (int) (position >>> 32);
+            col = (int) position;
+            pos = to;
         }
-        return null;
+        ch = pos < limit ? buffer[pos] : '\0';
+    }
+
+    /**
+     * Starts scanning another source, copied into this scanner's buffer.
+     * The symbol table, tab width and diagnostics collector are kept. The buffer is reused once it is large
+     * enough, so the tokens of a TokenBuffer from an earlier tokenize() no longer hold their literals;
+     * Tokens from nextToken() are unaffected.
+     * @param source The characters to be scanned.
+     */
+    public void reset(CharSequence source) {
+        int length = source.length();
+        SourceBuffer.copy(source, ensureBuffer(length));
+        restart(length);
     }
 
     /**
-     * Closes the input stream.
+     * Starts scanning another source, decoded with the platform default charset into this scanner's buffer.
+     * @param bytes The encoded source.
+     * @throws IOException If the bytes cannot be decoded.
+     * @see #reset(CharSequence)
+     */
+    public void reset(ByteBuffer bytes) throws IOException {
+        reset(bytes, Charset.defaultCharset());
+    }
+
+    /**
+     * Starts scanning another source, decoded into this scanner's buffer. The decoder of the last charset is kept.
+     * @param bytes The encoded source.
+     * @param charset The charset of the source.
+     * @throws IOException If the bytes cannot be decoded.
+     * @see #reset(CharSequence)
+     */
+    public void reset(ByteBuffer bytes, Charset charset) throws IOException {
+        if (decoder == null || !decoder.charset().equals(charset)) {
+            decoder = SourceBuffer.newDecoder(charset);
+        }
+        char[] chars = ensureBuffer(SourceBuffer.maxChars(decoder, bytes));
+        restart(SourceBuffer.decode(decoder, bytes, chars));
+    }
+
+    /**
+     * Starts scanning a file in the platform default charset, read through a byte buffer kept for the next file.
+     * @param file The file to be scanned.
      * @throws IOException If an I/O error occurs.
+     * @see #reset(CharSequence)
      */
-    public void close() throws IOException {
-        if (reader != null) {
-            reader.close();
+    public void reset(Path file) throws IOException {
+        ByteBuffer read = SourceBuffer.read(file, bytes);
+        if (!read.isDirect()) {
+            bytes = read;
         }
+        reset(read, Charset.defaultCharset());
+        fileName = file.toString();
+    }
+
+    /**
+     * Starts scanning an already loaded source in place. Its array is never overwritten by a later reset().
+     * @param source The source to be scanned.
+     */
+    public void reset(SourceBuffer source) {
+        buffer = source.chars();
+        ownsBuffer = false;
+        restart(source.length());
+    }
+
+    /**
+     * Gets a buffer of at least the given size that this scanner may overwrite.
+     * @param capacity The number of characters needed.
+     * @return The buffer.
+     */
+    private char[] ensureBuffer(int capacity) {
+        if (!ownsBuffer || buffer == null || buffer.length < capacity) {
+            int current = ownsBuffer && buffer != null ? buffer.length : 0;
+            buffer = new char[Math.max(capacity, current * 2)];
+            ownsBuffer = true;
+        }
+        return buffer;
+    }
+
+    /**
+     * Moves the cursor to the start of the buffer for a new source.
+     * @param limit The number of valid characters in buffer.
+     */
+    private void restart(int limit) {
+        fileName = null;
+        this.limit = limit;
+        pos = 0;
+        row = 1;
+        col = 1;
+        ch = limit > 0 ? buffer[0] : '\0';
+        tokenType = null;
+        tokenStart = 0;
+        tokenLength = 0;
+        tokenRow = 0;
+        tokenCol = 0;
+        tokenSymbol = SymbolTable.NO_SYMBOL;
+    }
+
+    /**
+     * Releases the source buffer. The file itself is already closed once the constructor returns.
+     * A closed scanner can still be reset() to a new source.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void close() throws IOException {
+        buffer = null;
+        ownsBuffer = false;
+        limit = 0;
     }
 
 
@@ -0,0 +1,60 @@
+package compiler.scanner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+
+/**
+ * One reusable Scanner per thread, for lexing many small inputs such as generated test snippets.
+ * Each call resets the calling thread's scanner to a new source instead of constructing one, so its buffers,
+ * decoder and symbol table are kept from input to input. A scanner is confined to its thread: getting another
+ * source on the same thread resets the scanner returned before, so it must be done with by then.
+ */
+public final class ScannerPool {
+    private final ThreadLocal<Scanner> scanners = ThreadLocal.withInitial(() -> new Scanner(new SymbolTable()));
+
+    /**
+     * Gets the calling thread's scanner, reset to scan characters.
+     * @param source The characters to be scanned.
+     * @return The scanner.
+     */
+    public Scanner get(CharSequence source) {
+        Scanner scanner = scanners.get();
+        scanner.reset(source);
+        return scanner;
+    }
+
+    /**
+     * Gets the calling thread's scanner, reset to scan encoded bytes.
+     * @param bytes The encoded source.
+     * @param charset The charset of the source.
+     * @return The scanner.
+     * @throws IOException If the bytes cannot be decoded.
+     */
+    public Scanner get(ByteBuffer bytes, Charset charset) throws IOException {
+        Scanner scanner = scanners.get();
+        scanner.reset(bytes, charset);
+        return scanner;
+    }
+
+    /**
+     * Gets the calling thread's scanner, reset to scan a file in the platform default charset.
+     * @param file The file to be scanned.
+     * @return The scanner.
+     * @throws IOException If an I/O error occurs.
+     */
+    public Scanner get(Path file) throws IOException {
+        Scanner scanner = scanners.get();
+        scanner.reset(file);
+        return scanner;
+    }
+
+    /**
+     * Gets the symbol table of the calling thread's scanner, which keeps every identifier the thread has scanned.
+     * @return The symbol table.
+     */
+    public SymbolTable getSymbolTable() {
+        return scanners.get().getSymbolTable();
+    }
+}
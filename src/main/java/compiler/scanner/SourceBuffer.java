@@ -0,0 +1,178 @@
+package compiler.scanner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A whole source file decoded into one contiguous character array.
+ */
+public final class SourceBuffer {
+    // Files at least this large are memory-mapped instead of read onto the heap
+    private static final long MAP_THRESHOLD = 1 << 20;
+
+    private final char[] chars; // The decoded characters, possibly with unused capacity at the end
+    private final int length; // The number of valid characters in chars
+
+    /**
+     * Constructs a new SourceBuffer over the first length characters of the given array.
+     * @param chars The characters of the source.
+     * @param length The number of valid characters.
+     */
+    public SourceBuffer(char[] chars, int length) {
+        if (length < 0 || length > chars.length) {
+            throw new IllegalArgumentException("length " + length + " out of range for " + chars.length + " chars");
+        }
+        this.chars = chars;
+        this.length = length;
+    }
+
+    /**
+     * Copies characters into a new SourceBuffer, for sources that are already in memory.
+     * @param source The characters of the source.
+     * @return The source.
+     */
+    public static SourceBuffer of(CharSequence source) {
+        char[] chars = new char[source.length()];
+        copy(source, chars);
+        return new SourceBuffer(chars, chars.length);
+    }
+
+    /**
+     * Reads a file into a new SourceBuffer using the platform default charset.
+     * @param fileName The name of the file to read.
+     * @return The decoded source.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static SourceBuffer load(String fileName) throws IOException {
+        return decode(read(Path.of(fileName), null), Charset.defaultCharset());
+    }
+
+    /**
+     * Decodes bytes into a new SourceBuffer, replacing malformed input like FileReader does.
+     * @param bytes The encoded source.
+     * @param charset The charset of the source.
+     * @return The decoded source.
+     * @throws IOException If the bytes cannot be decoded.
+     */
+    public static SourceBuffer decode(ByteBuffer bytes, Charset charset) throws IOException {
+        CharsetDecoder decoder = newDecoder(charset);
+        char[] chars = new char[maxChars(decoder, bytes)];
+        return new SourceBuffer(chars, decode(decoder, bytes, chars));
+    }
+
+    /**
+     * Reads the bytes of a file. Files of at least MAP_THRESHOLD bytes are memory-mapped, smaller ones are read
+     * into reuse when it is large enough.
+     * @param file The file to read.
+     * @param reuse A heap buffer to read into, or null.
+     * @return The bytes of the file, ready to be read from position 0.
+     * @throws IOException If an I/O error occurs.
+     */
+    static ByteBuffer read(Path file, ByteBuffer reuse) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to scan (" + size + " bytes)");
+            }
+            if (size >= MAP_THRESHOLD) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+
+            ByteBuffer bytes = reuse != null && reuse.capacity() >= size ? reuse : ByteBuffer.allocate((int) size);
+            bytes.clear().limit((int) size);
+            while (bytes.hasRemaining() && channel.read(bytes) != -1) {
+                // keep reading until the buffer is full or the file ends
+            }
+            return bytes.flip();
+        }
+    }
+
+    /**
+     * Creates a decoder that replaces malformed and unmappable input.
+     * @param charset The charset to decode.
+     * @return The decoder.
+     */
+    static CharsetDecoder newDecoder(Charset charset) {
+        return charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Gets how many characters decoding some bytes can produce at most.
+     * @param decoder The decoder.
+     * @param bytes The bytes that remain to be decoded.
+     * @return The maximum number of characters.
+     */
+    static int maxChars(CharsetDecoder decoder, ByteBuffer bytes) {
+        return (int) Math.ceil(bytes.remaining() * (double) decoder.maxCharsPerByte());
+    }
+
+    /**
+     * Decodes bytes into the start of an array, which must hold maxChars() characters.
+     * @param decoder The decoder, reset before use.
+     * @param bytes The encoded source.
+     * @param chars The array to decode into.
+     * @return The number of characters decoded.
+     * @throws IOException If the bytes cannot be decoded.
+     */
+    static int decode(CharsetDecoder decoder, ByteBuffer bytes, char[] chars) throws IOException {
+        CharBuffer out = CharBuffer.wrap(chars);
+        try {
+            CoderResult result = decoder.reset().decode(bytes, out, true);
+            if (!result.isUnderflow()) {
+                result.throwException();
+            }
+            result = decoder.flush(out);
+            if (!result.isUnderflow()) {
+                result.throwException();
+            }
+        } catch (CharacterCodingException e) {
+            throw new IOException("Could not decode source as " + decoder.charset(), e);
+        }
+        return out.position();
+    }
+
+    /**
+     * Copies characters into the start of an array.
+     * @param source The characters.
+     * @param chars The array, at least as long as source.
+     */
+    static void copy(CharSequence source, char[] chars) {
+        int length = source.length();
+        if (source instanceof String) {
+            ((String) source).getChars(0, length, chars, 0);
+        } else if (source instanceof StringBuilder) {
+            ((StringBuilder) source).getChars(0, length, chars, 0);
+        } else {
+            for (int i = 0; i < length; i++) {
+                chars[i] = source.charAt(i);
+            }
+        }
+    }
+
+    /**
+     * Gets the backing character array. Only the first length() characters are valid.
+     * @return The backing array.
+     */
+    public char[] chars() {
+        return chars;
+    }
+
+    /**
+     * Gets the number of valid characters.
+     * @return The length of the source.
+     */
+    public int length() {
+        return length;
+    }
+}
@@ -0,0 +1,204 @@
+package compiler.scanner;
+
+import java.util.Arrays;
+
+/**
+ * An interning table for identifiers.
+ * Names are hashed and compared straight from the scanner's character buffer using open
+ * addressing, so interning a name that is already present allocates nothing. Every distinct
+ * name gets one symbol id, and later phases can compare ids with == instead of comparing strings.
+ */
+public final class SymbolTable {
+    public static final int NO_SYMBOL = -1; // Symbol id of tokens that are not identifiers
+
+    private static final int INITIAL_SLOTS = 256;
+
+    private int[] slots; // Symbol id + 1 per slot, 0 for an empty slot
+    private char[] pool; // The characters of every name, back to back
+    private int poolSize;
+    private int[] starts; // Offset of each symbol's name in pool
+    private int[] lengths; // Length of each symbol's name
+    private int[] hashes; // Hash of each symbol's name
+    private String[] names; // Each symbol's name as a String, built on first request
+    private int size;
+
+    /**
+     * Constructs a new empty SymbolTable.
+     */
+    public SymbolTable() {
+        slots = new int[INITIAL_SLOTS];
+        pool = new char[INITIAL_SLOTS * 8];
+        starts = new int[INITIAL_SLOTS / 2];
+        lengths = new int[INITIAL_SLOTS / 2];
+        hashes = new int[INITIAL_SLOTS / 2];
+        names = new String[INITIAL_SLOTS / 2];
+    }
+
+    /**
+     * Interns a range of characters, adding it if it is not already present.
+     * @param buf The characters.
+     * @param start The offset of the name.
+     * @param length The length of the name.
+     * @return The symbol id of the name.
+     */
+    public int intern(char[] buf, int start, int length) {
+        int hash = hash(buf, start, length);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                int id = add(buf, start, length, hash);
+                slots[slot] = id + 1;
+                if (size * 2 > slots.length) {
+                    rehash();
+                }
+                return id;
+            }
+            if (matches(entry - 1, hash, buf, start, length)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Interns a name given as a String.
+     * @param name The name.
+     * @return The symbol id of the name.
+     */
+    public int intern(String name) {
+        return intern(name.toCharArray(), 0, name.length());
+    }
+
+    /**
+     * Finds a name without adding it.
+     * @param name The name.
+     * @return The symbol id of the name, or NO_SYMBOL if it has not been interned.
+     */
+    public int find(String name) {
+        char[] buf = name.toCharArray();
+        int hash = hash(buf, 0, buf.length);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (matches(slots[slot] - 1, hash, buf, 0, buf.length)) {
+                return slots[slot] - 1;
+            }
+        }
+        return NO_SYMBOL;
+    }
+
+    /**
+     * Gets the name of a symbol. The String is built once and shared by later calls.
+     * @param id The symbol id.
+     * @return The name.
+     */
+    public String name(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Symbol id " + id + " out of range for size " + size);
+        }
+        String name = names[id];
+        if (name == null) {
+            name = new String(pool, starts[id], lengths[id]);
+            names[id] = name;
+        }
+        return name;
+    }
+
+    /**
+     * Gets the number of distinct names.
+     * @return The number of symbols.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every symbol, keeping the allocated capacity.
+     */
+    public void clear() {
+        Arrays.fill(slots, 0);
+        Arrays.fill(names, 0, size, null);
+        poolSize = 0;
+        size = 0;
+    }
+
+    /**
+     * Hashes a range of characters.
+     * @param buf The characters.
+     * @param start The offset of the first character.
+     * @param length The number of characters.
+     * @return The hash, mixed so the low bits can index the table.
+     */
+    private static int hash(char[] buf, int start, int length) {
+        int hash = 0;
+        for (int i = start, end = start + length; i < end; i++) {
+            hash = 31 * hash + buf[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Checks whether a symbol's name equals a range of characters.
+     * @param id The symbol id.
+     * @param hash The hash of the range.
+     * @param buf The characters.
+     * @param start The offset of the range.
+     * @param length The length of the range.
+     * @return True if the name and the range are equal.
+     */
+    private boolean matches(int id, int hash, char[] buf, int start, int length) {
+        if (hashes[id] != hash || lengths[id] != length) {
+            return false;
+        }
+        int offset = starts[id];
+        for (int i = 0; i < length; i++) {
+            if (pool[offset + i] != buf[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies a new name into the pool and assigns it the next symbol id.
+     * @param buf The characters.
+     * @param start The offset of the name.
+     * @param length The length of the name.
+     * @param hash The hash of the name.
+     * @return The new symbol id.
+     */
+    private int add(char[] buf, int start, int length, int hash) {
+        if (size == starts.length) {
+            int capacity = size * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            names = Arrays.copyOf(names, capacity);
+        }
+        if (poolSize + length > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + length));
+        }
+
+        System.arraycopy(buf, start, pool, poolSize, length);
+        starts[size] = poolSize;
+        lengths[size] = length;
+        hashes[size] = hash;
+        poolSize += length;
+        return size++;
+    }
+
+    /**
+     * Doubles the slot table and reinserts every symbol.
+     */
+    private void rehash() {
+        int[] newSlots = new int[slots.length * 2];
+        int mask = newSlots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (newSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newSlots[slot] = id + 1;
+        }
+        slots = newSlots;
+    }
+}
@@ -0,0 +1,166 @@
+package compiler.scanner;
+
+/**
+ * Searches over runs of source characters that the scanner skips in bulk: whitespace, comment bodies and
+ * string contents, plus the counts it needs to update row and col for a whole run at once.
+ *
+ * The implementation is chosen when the class is loaded. When the jdk.incubator.vector module is present
+ * (the JVM was started with --add-modules jdk.incubator.vector) and the platform's preferred vector holds at
+ * least 8 chars, VectorTextSearch compares a whole vector of characters per step; otherwise the scalar
+ * loops here are used. Setting the system property compiler.scanner.simd to false forces the scalar loops.
+ */
+class TextSearch {
+    static final TextSearch INSTANCE = select();
+
+    /**
+     * Constructs the scalar implementation.
+     */
+    TextSearch() {
+    }
+
+    /**
+     * Picks the fastest implementation the running JVM supports.
+     * @return The implementation.
+     */
+    private static TextSearch select() {
+        if (!Boolean.parseBoolean(System.getProperty("compiler.scanner.simd", "true"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return new TextSearch();
+        }
+        try {
+            // Loaded reflectively so that this class links without the incubator module
+            Class<?> vector = Class.forName("compiler.scanner.VectorTextSearch");
+            TextSearch search = (TextSearch) vector.getDeclaredConstructor().newInstance();
+            return search.isUseful() ? search : new TextSearch();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new TextSearch();
+        }
+    }
+
+    /**
+     * Checks if this implementation is worth using on the running platform.
+     * @return True if it is.
+     */
+    boolean isUseful() {
+        return true;
+    }
+
+    /**
+     * Gets the name of the implementation, for diagnostics.
+     * @return The name.
+     */
+    String name() {
+        return "scalar";
+    }
+
+    /**
+     * Finds the first character that is not whitespace.
+     * @param buf The characters.
+     * @param from The offset to start at.
+     * @param to The offset to stop at.
+     * @return The offset of the first character other than ' ', '\t', '\n' and '\r', or to if there is none.
+     */
+    int skipWhiteSpace(char[] buf, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = buf[i];
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Finds the first occurrence of either of two characters.
+     * @param buf The characters.
+     * @param from The offset to start at.
+     * @param to The offset to stop at.
+     * @param a The first character to look for.
+     * @param b The second character to look for.
+     * @return The offset of the first match, or to if there is none.
+     */
+    int indexOfEither(char[] buf, int from, int to, char a, char b) {
+        for (int i = from; i < to; i++) {
+            char c = buf[i];
+            if (c == a || c == b) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Finds the last occurrence of either of two characters.
+     * @param buf The characters.
+     * @param from The offset to start at.
+     * @param to The offset to stop at.
+     * @param a The first character to look for.
+     * @param b The second character to look for.
+     * @return The offset of the last match, or -1 if there is none.
+     */
+    int lastIndexOfEither(char[] buf, int from, int to, char a, char b) {
+        for (int i = to - 1; i >= from; i--) {
+            char c = buf[i];
+            if (c == a || c == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Computes the row and column after a run of characters, as if the scanner read them one at a time:
+     * each '\n' starts a new row, the column restarts at 1 after '\n' or '\r', and a tab is tabWidth columns wide.
+     * @param buf The characters.
+     * @param from The offset of the first character of the run.
+     * @param to The offset after the run.
+     * @param row The row of the character at from.
+     * @param col The column of the character at from.
+     * @param tabWidth The number of columns a tab takes.
+     * @return The row at to in the high 32 bits and the column in the low 32 bits.
+     */
+    long advance(char[] buf, int from, int to, int row, int col, int tabWidth) {
+        for (int i = from; i < to; i++) {
+            char c = buf[i];
+            if (c == '\n') {
+                row++;
+                col = 1;
+            } else if (c == '\r') {
+                col = 1;
+            } else if (c == '\t') {
+                col += tabWidth;
+            } else {
+                col++;
+            }
+        }
+        return pack(row, col);
+    }
+
+    /**
+     * Packs a row and column into one long.
+     * @param row The row.
+     * @param col The column.
+     * @return The row in the high 32 bits and the column in the low 32 bits.
+     */
+    static long pack(int row, int col) {
+        return (long) row << 32 | (col & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Counts the occurrences of a character.
+     * @param buf The characters.
+     * @param from The offset to start at.
+     * @param to The offset to stop at.
+     * @param c The character to count.
+     * @return The number of occurrences.
+     */
+    int count(char[] buf, int from, int to, char c) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (buf[i] == c) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -9,6 +9,7 @@ import java.util.HashMap;
 public class Token {
     private final TokenType type; // The type of the token
     private final String literal; // The literal value of the token
+    private final long position; // Where the token is, packed by Position, or Position.NONE
     public static final Map<String, TokenType> keywords = new HashMap<>(); // Map of keywords to token types
 
     // Static block to initialize the keyword map
@@ -35,8 +36,19 @@ public class Token {
      * @param literal The literal value of the token.
      */
     public Token(TokenType type, String literal) {
+        this(type, literal, Position.NONE);
+    }
+
+    /**
+     * Constructs a new Token object with a location.
+     * @param type The type of the token.
+     * @param literal The literal value of the token.
+     * @param position Where the token is, packed by Position.pack(), or Position.NONE.
+     */
+    public Token(TokenType type, String literal, long position) {
         this.type = type;
         this.literal = literal;
+        this.position = position;
     }
 
     /**
@@ -55,6 +67,38 @@ public class Token {
         return literal;
     }
 
+    /**
+     * Gets where the token is.
+     * @return The position packed by Position, or Position.NONE if it is unknown.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Gets the offset of the token's literal in the source. A string's literal starts after its opening quote.
+     * @return The offset, or -1 if the position is unknown.
+     */
+    public int getOffset() {
+        return position == Position.NONE ? -1 : Position.offset(position);
+    }
+
+    /**
+     * Gets the line of the token.
+     * @return The line, starting at 1, or 0 if the position is unknown.
+     */
+    public int getRow() {
+        return position == Position.NONE ? 0 : Position.line(position);
+    }
+
+    /**
+     * Gets the column of the token.
+     * @return The column, starting at 1, or 0 if the position is unknown.
+     */
+    public int getCol() {
+        return position == Position.NONE ? 0 : Position.col(position);
+    }
+
     /**
      * Returns a string representation of the token.
      * @return A string representation of the token.
@@ -0,0 +1,275 @@
+package compiler.scanner;
+
+import java.util.Arrays;
+
+/**
+ * A growable, column-wise store of scanned tokens.
+ * Each token is a few primitive array slots pointing back into the source characters,
+ * so scanning into a TokenBuffer allocates nothing per token. Literals are only built
+ * when literal(int) or token(int) is called.
+ */
+public final class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private char[] source; // The characters the token ranges point into
+    private int sourceLength; // The number of valid characters in source
+    private byte[] types; // TokenType ordinals
+    private int[] starts; // Offsets of the first literal character in source
+    private int[] lengths; // Literal lengths
+    private int[] rows; // Lines of the first token character, starting at 1
+    private int[] cols; // Columns of the first token character, starting at 1
+    private int[] symbols; // Symbol ids of identifiers, SymbolTable.NO_SYMBOL for other tokens
+    private int size;
+
+    /**
+     * Constructs a new empty TokenBuffer over the given source characters.
+     * @param source The characters the tokens will point into.
+     */
+    public TokenBuffer(char[] source) {
+        this(source, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a new empty TokenBuffer with room for the given number of tokens.
+     * @param source The characters the tokens will point into.
+     * @param capacity The initial capacity.
+     */
+    public TokenBuffer(char[] source, int capacity) {
+        this(source, source.length, capacity);
+    }
+
+    /**
+     * Constructs a new empty TokenBuffer over the first sourceLength characters of an array.
+     * @param source The characters the tokens will point into.
+     * @param sourceLength The number of valid characters in source.
+     * @param capacity The initial capacity.
+     */
+    public TokenBuffer(char[] source, int sourceLength, int capacity) {
+        this.source = source;
+        this.sourceLength = sourceLength;
+        capacity = Math.max(capacity, 1);
+        types = new byte[capacity];
+        starts = new int[capacity];
+        lengths = new int[capacity];
+        rows = new int[capacity];
+        cols = new int[capacity];
+        symbols = new int[capacity];
+    }
+
+    /**
+     * Appends a token.
+     * @param type The type of the token.
+     * @param start The offset of the literal in the source.
+     * @param length The length of the literal.
+     * @param row The line of the token.
+     * @param col The column of the token.
+     * @param symbol The symbol id of an identifier, or SymbolTable.NO_SYMBOL.
+     */
+    public void add(TokenType type, int start, int length, int row, int col, int symbol) {
+        if (size == types.length) {
+            grow();
+        }
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        rows[size] = row;
+        cols[size] = col;
+        symbols[size] = symbol;
+        size++;
+    }
+
+    /**
+     * Doubles the capacity of every column.
+     */
+    private void grow() {
+        int capacity = types.length * 2;
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        rows = Arrays.copyOf(rows, capacity);
+        cols = Arrays.copyOf(cols, capacity);
+        symbols = Arrays.copyOf(symbols, capacity);
+    }
+
+    /**
+     * Appends a range of another buffer's tokens, shifting their offsets and rows.
+     * @param other The buffer to copy from.
+     * @param from The index of the first token to copy.
+     * @param to The index after the last token to copy.
+     * @param startDelta The amount added to every start offset.
+     * @param rowDelta The amount added to every row.
+     */
+    void appendRange(TokenBuffer other, int from, int to, int startDelta, int rowDelta) {
+        int count = to - from;
+        while (size + count > types.length) {
+            grow();
+        }
+        System.arraycopy(other.types, from, types, size, count);
+        System.arraycopy(other.starts, from, starts, size, count);
+        System.arraycopy(other.lengths, from, lengths, size, count);
+        System.arraycopy(other.rows, from, rows, size, count);
+        System.arraycopy(other.cols, from, cols, size, count);
+        System.arraycopy(other.symbols, from, symbols, size, count);
+        if (startDelta != 0 || rowDelta != 0) {
+            for (int i = size; i < size + count; i++) {
+                starts[i] += startDelta;
+                rows[i] += rowDelta;
+            }
+        }
+        size += count;
+    }
+
+    /**
+     * Removes every token and points the buffer at a new source, keeping the allocated capacity.
+     * @param source The characters the next tokens will point into.
+     * @param sourceLength The number of valid characters in source.
+     */
+    public void reset(char[] source, int sourceLength) {
+        this.source = source;
+        this.sourceLength = sourceLength;
+        size = 0;
+    }
+
+    /**
+     * Points the buffer at another array holding the same characters, such as a grown copy, keeping the tokens.
+     * @param source The characters the tokens point into.
+     * @param sourceLength The number of valid characters in source.
+     */
+    void retarget(char[] source, int sourceLength) {
+        this.source = source;
+        this.sourceLength = sourceLength;
+    }
+
+    /**
+     * Gets the number of tokens.
+     * @return The number of tokens.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the source characters the tokens point into.
+     * @return The source characters.
+     */
+    public char[] source() {
+        return source;
+    }
+
+    /**
+     * Gets the number of valid characters in the source.
+     * @return The source length.
+     */
+    public int sourceLength() {
+        return sourceLength;
+    }
+
+    /**
+     * Gets the type of a token.
+     * @param index The index of the token.
+     * @return The type of the token.
+     */
+    public TokenType type(int index) {
+        return TYPES[typeOrdinal(index)];
+    }
+
+    /**
+     * Gets the TokenType ordinal of a token without touching the enum.
+     * @param index The index of the token.
+     * @return The ordinal of the token type.
+     */
+    public int typeOrdinal(int index) {
+        checkIndex(index);
+        return types[index];
+    }
+
+    /**
+     * Gets the offset of a token's literal in the source.
+     * @param index The index of the token.
+     * @return The start offset.
+     */
+    public int start(int index) {
+        checkIndex(index);
+        return starts[index];
+    }
+
+    /**
+     * Gets the length of a token's literal.
+     * @param index The index of the token.
+     * @return The literal length.
+     */
+    public int length(int index) {
+        checkIndex(index);
+        return lengths[index];
+    }
+
+    /**
+     * Gets the line of a token.
+     * @param index The index of the token.
+     * @return The line, starting at 1.
+     */
+    public int row(int index) {
+        checkIndex(index);
+        return rows[index];
+    }
+
+    /**
+     * Gets the column of a token.
+     * @param index The index of the token.
+     * @return The column, starting at 1.
+     */
+    public int col(int index) {
+        checkIndex(index);
+        return cols[index];
+    }
+
+    /**
+     * Gets the symbol id of a token.
+     * @param index The index of the token.
+     * @return The symbol id of an identifier, or SymbolTable.NO_SYMBOL for other tokens.
+     */
+    public int symbol(int index) {
+        checkIndex(index);
+        return symbols[index];
+    }
+
+    /**
+     * Builds the literal value of a token.
+     * @param index The index of the token.
+     * @return The literal value.
+     */
+    public String literal(int index) {
+        checkIndex(index);
+        return new String(source, starts[index], lengths[index]);
+    }
+
+    /**
+     * Gets the location of a token packed into one long.
+     * @param index The index of the token.
+     * @return The position, packed by Position.pack().
+     */
+    public long position(int index) {
+        checkIndex(index);
+        return Position.pack(starts[index], rows[index], cols[index]);
+    }
+
+    /**
+     * Builds a Token view of a stored token.
+     * @param index The index of the token.
+     * @return The token.
+     */
+    public Token token(int index) {
+        return new Token(type(index), literal(index), position(index));
+    }
+
+    /**
+     * Checks that an index refers to a stored token.
+     * @param index The index to check.
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Token index " + index + " out of range for size " + size);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package compiler.scanner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The spelling of each token type, as the rules the DFA lexer's tables are generated from.
+ * A rule is either a fixed text or a pattern of one character from a first set followed by any number
+ * from a rest set. When several rules match the same longest text, the earlier rule wins, so keywords
+ * come before identifiers and the catch-all ILLEGAL rule comes last.
+ * Whitespace, comments, strings and EOF are not described here: their scanning has side rules (the
+ * comment and unterminated string quirks of Scanner) that DfaScanner handles outside the tables.
+ */
+final class TokenSpec {
+
+    /**
+     * A set of characters a pattern rule is built from.
+     */
+    enum CharSet {
+        WORD_START, // Letters and underscore
+        WORD_PART, // Letters, underscore and digits
+        DIGIT,
+        ANY;
+
+        /**
+         * Checks if a character is in the set.
+         * @param c The character to check.
+         * @return True if the character is in the set.
+         */
+        boolean contains(char c) {
+            switch (this) {
+                case WORD_START:
+                    return Character.isLetter(c) || c == '_';
+                case WORD_PART:
+                    return Character.isLetter(c) || c == '_' || Character.isDigit(c);
+                case DIGIT:
+                    return Character.isDigit(c);
+                default:
+                    return true;
+            }
+        }
+    }
+
+    /**
+     * One rule: a token type and how it is spelled.
+     */
+    static final class Rule {
+        final TokenType type; // The token type the rule produces
+        final String text; // The fixed text, or null for a pattern
+        final CharSet first; // The set of the pattern's first character
+        final CharSet rest; // The set of the pattern's later characters, or null for a single character
+
+        private Rule(TokenType type, String text, CharSet first, CharSet rest) {
+            this.type = type;
+            this.text = text;
+            this.first = first;
+            this.rest = rest;
+        }
+    }
+
+    static final List<Rule> RULES;
+
+    // Static block to list the rules in priority order
+    static {
+        List<Rule> rules = new ArrayList<>();
+        rules.add(text(TokenType.INCRE, "++"));
+        rules.add(text(TokenType.DECRE, "--"));
+        rules.add(text(TokenType.EQ, "=="));
+        rules.add(text(TokenType.NOTEQ, "!="));
+        rules.add(text(TokenType.GTEQ, ">="));
+        rules.add(text(TokenType.LTEQ, "<="));
+        rules.add(text(TokenType.PLUS, "+"));
+        rules.add(text(TokenType.MINUS, "-"));
+        rules.add(text(TokenType.ASSIGN, "="));
+        rules.add(text(TokenType.GT, ">"));
+        rules.add(text(TokenType.LT, "<"));
+        rules.add(text(TokenType.LPAREN, "("));
+        rules.add(text(TokenType.RPAREN, ")"));
+        rules.add(text(TokenType.LBRACE, "{"));
+        rules.add(text(TokenType.RBRACE, "}"));
+        rules.add(text(TokenType.COMMA, ","));
+        rules.add(text(TokenType.SEMICOLON, ";"));
+
+        // Sorted so the generated tables do not depend on HashMap order
+        for (Map.Entry<String, TokenType> keyword : new TreeMap<>(Token.keywords).entrySet()) {
+            rules.add(text(keyword.getValue(), keyword.getKey()));
+        }
+
+        rules.add(pattern(TokenType.IDENTIFIER, CharSet.WORD_START, CharSet.WORD_PART));
+        rules.add(pattern(TokenType.NUMBER, CharSet.DIGIT, CharSet.DIGIT));
+        rules.add(pattern(TokenType.ILLEGAL, CharSet.ANY, null)); // Any other single character, such as a lone '!'
+        RULES = Collections.unmodifiableList(rules);
+    }
+
+    private TokenSpec() {
+    }
+
+    /**
+     * Creates a rule for a fixed text.
+     * @param type The token type.
+     * @param text The text, which must be ASCII.
+     * @return The rule.
+     */
+    private static Rule text(TokenType type, String text) {
+        return new Rule(type, text, null, null);
+    }
+
+    /**
+     * Creates a rule for a pattern.
+     * @param type The token type.
+     * @param first The set of the first character.
+     * @param rest The set of the later characters, or null if the token is a single character.
+     * @return The rule.
+     */
+    private static Rule pattern(TokenType type, CharSet first, CharSet rest) {
+        return new Rule(type, null, first, rest);
+    }
+}
@@ -0,0 +1,122 @@
+package compiler.scanner;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A lazily pulled stream of tokens with a fixed amount of lookahead.
+ * Tokens are scanned only when next() or peek(int) needs them and are held in a ring buffer,
+ * so memory use depends on the lookahead, not on the size of the source.
+ * The stream ends after it has returned the EOF token.
+ */
+public final class TokenStream implements Iterator<Token> {
+    private final Scanner scanner; // The scanner tokens are pulled from
+    private final Token[] ring; // Tokens that have been scanned but not consumed
+    private int head; // The index of the next token in ring
+    private int count; // The number of buffered tokens
+    private boolean scannedEof; // Whether the EOF token has been scanned
+    private boolean returnedEof; // Whether next() has returned the EOF token
+
+    /**
+     * Constructs a new TokenStream.
+     * @param scanner The scanner tokens are pulled from.
+     * @param lookahead The maximum number of tokens peek(int) can see, at least 1.
+     */
+    public TokenStream(Scanner scanner, int lookahead) {
+        if (lookahead < 1) {
+            throw new IllegalArgumentException("lookahead must be at least 1, got " + lookahead);
+        }
+        this.scanner = scanner;
+        this.ring = new Token[lookahead];
+    }
+
+    /**
+     * Checks whether there are tokens left, including the final EOF token.
+     * @return True if next() will return a token.
+     */
+    @Override
+    public boolean hasNext() {
+        return !returnedEof;
+    }
+
+    /**
+     * Consumes the next token.
+     * @return The next token.
+     * @throws NoSuchElementException If the EOF token has already been returned.
+     * @throws UncheckedIOException If the scanner fails.
+     */
+    @Override
+    public Token next() {
+        if (returnedEof) {
+            throw new NoSuchElementException("The EOF token has already been returned");
+        }
+        fill(1);
+        Token token = ring[head];
+        ring[head] = null;
+        head = (head + 1) % ring.length;
+        count--;
+        if (token.getType() == TokenType.EOF) {
+            returnedEof = true;
+        }
+        return token;
+    }
+
+    /**
+     * Looks at a token ahead without consuming it. Past the end of the source this is the EOF token.
+     * @param k How far to look ahead, where 1 is the token next() would return.
+     * @return The k-th next token.
+     * @throws IllegalArgumentException If k is less than 1 or more than the lookahead.
+     * @throws NoSuchElementException If the EOF token has already been returned.
+     * @throws UncheckedIOException If the scanner fails.
+     */
+    public Token peek(int k) {
+        if (k < 1 || k > ring.length) {
+            throw new IllegalArgumentException("k must be between 1 and " + ring.length + ", got " + k);
+        }
+        if (returnedEof) {
+            throw new NoSuchElementException("The EOF token has already been returned");
+        }
+        fill(k);
+        return ring[(head + Math.min(k, count) - 1) % ring.length];
+    }
+
+    /**
+     * Scans tokens until k are buffered or the EOF token has been scanned.
+     * @param k The number of tokens wanted.
+     */
+    private void fill(int k) {
+        while (count < k && !scannedEof) {
+            Token token;
+            try {
+                token = scanner.nextToken();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            ring[(head + count) % ring.length] = token;
+            count++;
+            scannedEof = token.getType() == TokenType.EOF;
+        }
+    }
+
+    /**
+     * Views the remaining tokens as an ordered, sequential Spliterator.
+     * @return A Spliterator over the remaining tokens.
+     */
+    public Spliterator<Token> spliterator() {
+        return Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    /**
+     * Views the remaining tokens as a sequential Stream.
+     * @return A Stream over the remaining tokens.
+     */
+    public Stream<Token> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+}
@@ -0,0 +1,149 @@
+package compiler.scanner;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * TextSearch on the incubating Vector API. Characters are loaded as lanes of the platform's preferred
+ * short vector, 16 to 64 bytes at a time, and compared all at once; the tail shorter than a vector falls
+ * back to the scalar loops. Only loaded by TextSearch when the jdk.incubator.vector module is present.
+ */
+final class VectorTextSearch extends TextSearch {
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    /**
+     * Checks that a vector holds at least 8 characters, below which the scalar loops are as fast.
+     * @return True if the vectors are wide enough.
+     */
+    @Override
+    boolean isUseful() {
+        return LANES >= 8;
+    }
+
+    /**
+     * Gets the name of the implementation, for diagnostics.
+     * @return The name and vector width.
+     */
+    @Override
+    String name() {
+        return "vector(" + SPECIES.vectorBitSize() + " bits)";
+    }
+
+    /**
+     * Finds the first character that is not whitespace.
+     * @param buf The characters.
+     * @param from The offset to start at.
+     * @param to The offset to stop at.
+     * @return The offset of the first character other than ' ', '\t', '\n' and '\r', or to if there is none.
+     */
+    @Override
+    int skipWhiteSpace(char[] buf, int from, int to) {
+        // Most runs are a single space or a newline and indent, which a vector load would only slow down
+        int i = from;
+        if (i < to && buf[i] != ' ' && buf[i] != '\t' && buf[i] != '\n' && buf[i] != '\r') {
+            return i;
+        }
+        for (; i <= to - LANES; i += LANES) {
+            ShortVector v = ShortVector.fromCharArray(SPECIES, buf, i);
+            VectorMask<Short> space = v.eq((short) ' ')
+                    .or(v.eq((short) '\n'))
+                    .or(v.eq((short) '\t'))
+                    .or(v.eq((short) '\r'));
+            if (!space.allTrue()) {
+                return i + space.not().firstTrue();
+            }
+        }
+        return super.skipWhiteSpace(buf, i, to);
+    }
+
+    /**
+     * Finds the first occurrence of either of two characters.
+     * @param buf The characters.
+     * @param from The offset to start at.
+     * @param to The offset to stop at.
+     * @param a The first character to look for.
+     * @param b The second character to look for.
+     * @return The offset of the first match, or to if there is none.
+     */
+    @Override
+    int indexOfEither(char[] buf, int from, int to, char a, char b) {
+        int i = from;
+        for (; i <= to - LANES; i += LANES) {
+            ShortVector v = ShortVector.fromCharArray(SPECIES, buf, i);
+            VectorMask<Short> match = v.eq((short) a).or(v.eq((short) b));
+            if (match.anyTrue()) {
+                return i + match.firstTrue();
+            }
+        }
+        return super.indexOfEither(buf, i, to, a, b);
+    }
+
+    /**
+     * Finds the last occurrence of either of two characters.
+     * @param buf The characters.
+     * @param from The offset to start at.
+     * @param to The offset to stop at.
+     * @param a The first character to look for.
+     * @param b The second character to look for.
+     * @return The offset of the last match, or -1 if there is none.
+     */
+    @Override
+    int lastIndexOfEither(char[] buf, int from, int to, char a, char b) {
+        int i = to;
+        for (; i - LANES >= from; i -= LANES) {
+            ShortVector v = ShortVector.fromCharArray(SPECIES, buf, i - LANES);
+            VectorMask<Short> match = v.eq((short) a).or(v.eq((short) b));
+            if (match.anyTrue()) {
+                return i - LANES + match.lastTrue();
+            }
+        }
+        return super.lastIndexOfEither(buf, from, i, a, b);
+    }
+
+    /**
+     * Computes the row and column after a run of characters, as if the scanner read them one at a time.
+     * Runs of at least one vector are counted in bulk: the newlines give the row, and the column only
+     * depends on the characters after the last '\n' or '\r'.
+     * @param buf The characters.
+     * @param from The offset of the first character of the run.
+     * @param to The offset after the run.
+     * @param row The row of the character at from.
+     * @param col The column of the character at from.
+     * @param tabWidth The number of columns a tab takes.
+     * @return The row at to in the high 32 bits and the column in the low 32 bits.
+     */
+    @Override
+    long advance(char[] buf, int from, int to, int row, int col, int tabWidth) {
+        if (to - from < LANES) {
+            return super.advance(buf, from, to, row, col, tabWidth);
+        }
+        int extra = tabWidth - 1; // The columns a tab takes beyond the one every character takes
+        int lastBreak = lastIndexOfEither(buf, from, to, '\n', '\r');
+        if (lastBreak < 0) {
+            return pack(row, col + to - from + extra * count(buf, from, to, '\t'));
+        }
+        int lineStart = lastBreak + 1;
+        return pack(row + count(buf, from, lastBreak + 1, '\n'),
+                1 + to - lineStart + extra * count(buf, lineStart, to, '\t'));
+    }
+
+    /**
+     * Counts the occurrences of a character.
+     * @param buf The characters.
+     * @param from The offset to start at.
+     * @param to The offset to stop at.
+     * @param c The character to count.
+     * @return The number of occurrences.
+     */
+    @Override
+    int count(char[] buf, int from, int to, char c) {
+        int count = 0;
+        int i = from;
+        for (; i <= to - LANES; i += LANES) {
+            count += ShortVector.fromCharArray(SPECIES, buf, i).eq((short) c).trueCount();
+        }
+        return count + super.count(buf, i, to, c);
+    }
+}
@@ -0,0 +1,183 @@
+package cache;
+
+import compiler.Main;
+import compiler.cache.CompilationCache;
+import compiler.cache.CompiledUnit;
+import compiler.codegen.CodegenException;
+import compiler.optimizer.Pipeline;
+import compiler.parser.Ast;
+import compiler.parser.ParseException;
+import compiler.parser.Parser;
+import compiler.scanner.Scanner;
+import compiler.scanner.SourceBuffer;
+import compiler.scanner.SymbolTable;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class CompilationCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String SOURCE = "let a = 1 + 2;\n"
+            + "let f = function(x) { if (x < a) { return x; } return f(x - 1) + a; }\n"
+            + "print(f(5), \"done\");\n";
+
+    private static SourceBuffer buffer(String text) {
+        return new SourceBuffer(text.toCharArray(), text.length());
+    }
+
+    private static Ast parse(String text) throws IOException, ParseException {
+        Scanner scanner = new Scanner(buffer(text), new SymbolTable());
+        Ast ast = Pipeline.standard().run(new Parser(scanner.tokenize()).parse());
+        scanner.close();
+        return ast;
+    }
+
+    private static CompiledUnit unit(String text) throws IOException, ParseException {
+        return CompiledUnit.of(parse(text), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String key(String text) {
+        return CompilationCache.key(text.getBytes(StandardCharsets.UTF_8), "test");
+    }
+
+    private static long files(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void testTreeRoundTrip() throws IOException, ParseException {
+        Ast ast = parse(SOURCE);
+        Ast read = CompiledUnit.of(ast, new byte[0]).ast(buffer(SOURCE), new SymbolTable());
+        assertEquals(ast.size(), read.size());
+        for (int node = 0; node < ast.size(); node++) {
+            assertEquals(ast.kindOrdinal(node), read.kindOrdinal(node));
+            assertEquals(ast.token(node), read.token(node));
+            assertEquals(ast.firstChild(node), read.firstChild(node));
+            assertEquals(ast.nextSibling(node), read.nextSibling(node));
+            assertEquals(ast.isFolded(node), read.isFolded(node));
+            if (ast.isFolded(node)) {
+                assertEquals(ast.value(node), read.value(node));
+            }
+        }
+    }
+
+    @Test
+    public void testKeyDependsOnSourceAndOptions() {
+        byte[] source = SOURCE.getBytes(StandardCharsets.UTF_8);
+        assertEquals(CompilationCache.key(source, "a"), CompilationCache.key(source.clone(), "a"));
+        assertNotEquals(CompilationCache.key(source, "a"), CompilationCache.key(source, "b"));
+        assertNotEquals(CompilationCache.key(source, "a"), CompilationCache.key(new byte[] {'x'}, "a"));
+    }
+
+    @Test
+    public void testOtherCompilerVersionMisses() throws IOException, ParseException {
+        byte[] source = SOURCE.getBytes(StandardCharsets.UTF_8);
+        String version = CompilationCache.compilerVersion();
+        assertNotEquals("unversioned", version); // Tests run from target/classes, whose class files are hashed
+        assertEquals(CompilationCache.key(source, "a"), CompilationCache.key(source, "a", version));
+        String otherKey = CompilationCache.key(source, "a", version + "-changed");
+        assertNotEquals(CompilationCache.key(source, "a"), otherKey);
+
+        Path directory = folder.newFolder("cache").toPath();
+        CompilationCache cache = new CompilationCache(directory);
+        cache.put(CompilationCache.key(source, "a"), unit(SOURCE));
+        assertNull(new CompilationCache(directory).get(otherKey));
+        assertNull(cache.get(otherKey));
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testHitsFromMemoryThenDisk() throws IOException, ParseException {
+        Path directory = folder.newFolder("cache").toPath();
+        CompilationCache cache = new CompilationCache(directory);
+        assertNull(cache.get(key(SOURCE)));
+        cache.put(key(SOURCE), unit(SOURCE));
+        assertNotNull(cache.get(key(SOURCE)));
+        assertEquals(1, cache.getMemoryHits());
+        assertEquals(1, cache.getMisses());
+
+        CompilationCache reopened = new CompilationCache(directory);
+        CompiledUnit unit = reopened.get(key(SOURCE));
+        assertArrayEquals(SOURCE.getBytes(StandardCharsets.UTF_8), unit.getC());
+        assertEquals(1, reopened.getDiskHits());
+        assertNotNull(reopened.get(key(SOURCE)));
+        assertEquals(1, reopened.getMemoryHits());
+    }
+
+    @Test
+    public void testMemoryTierEvictsLeastRecentlyUsed() throws IOException, ParseException {
+        String[] sources = {"let a = 1;", "let b = 2;", "let c = 3;"};
+        long size = unit(sources[0]).size();
+        CompilationCache cache = new CompilationCache(folder.newFolder("cache").toPath(), size * 2, Long.MAX_VALUE);
+        cache.put(key(sources[0]), unit(sources[0]));
+        cache.put(key(sources[1]), unit(sources[1]));
+        cache.get(key(sources[0]));
+        cache.put(key(sources[2]), unit(sources[2]));
+        assertEquals(size * 2, cache.getMemoryBytes());
+
+        cache.get(key(sources[0]));
+        cache.get(key(sources[2]));
+        assertEquals(3, cache.getMemoryHits());
+        cache.get(key(sources[1]));
+        assertEquals(1, cache.getDiskHits());
+    }
+
+    @Test
+    public void testDiskTierEvictsBySize() throws IOException, ParseException {
+        Path directory = folder.newFolder("cache").toPath();
+        CompilationCache cache = new CompilationCache(directory, 0, Long.MAX_VALUE);
+        cache.put(key("let a = 1;"), unit("let a = 1;"));
+        long size = cache.getDiskBytes();
+
+        cache = new CompilationCache(directory, 0, size * 2);
+        cache.put(key("let b = 2;"), unit("let b = 2;"));
+        cache.put(key("let c = 3;"), unit("let c = 3;"));
+        assertEquals(2, files(directory));
+        assertEquals(size * 2, cache.getDiskBytes());
+    }
+
+    @Test
+    public void testCorruptFileIsMiss() throws IOException, ParseException {
+        Path directory = folder.newFolder("cache").toPath();
+        CompilationCache cache = new CompilationCache(directory, 0, Long.MAX_VALUE);
+        cache.put(key(SOURCE), unit(SOURCE));
+        Path file = directory.resolve(key(SOURCE) + ".unit");
+        Files.write(file, new byte[] {1, 2, 3});
+        assertNull(cache.get(key(SOURCE)));
+        assertEquals(1, cache.getMisses());
+        assertEquals(0, files(directory));
+    }
+
+    @Test
+    public void testCachedCompilationWritesSameC() throws IOException, ParseException, CodegenException {
+        Path source = folder.newFile("source.txt").toPath();
+        Files.writeString(source, SOURCE);
+        Path expected = folder.getRoot().toPath().resolve("expected.c");
+        Main.compileToC(source.toString(), expected.toString(), Pipeline.standard());
+
+        CompilationCache cache = new CompilationCache(folder.newFolder("cache").toPath());
+        for (int i = 0; i < 2; i++) {
+            Path target = folder.getRoot().toPath().resolve("target" + i + ".c");
+            Main.compileToC(source.toString(), target.toString(), Pipeline.standard(), cache);
+            assertArrayEquals(Files.readAllBytes(expected), Files.readAllBytes(target));
+        }
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getMemoryHits());
+    }
+}
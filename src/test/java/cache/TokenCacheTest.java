@@ -0,0 +1,79 @@
+package cache;
+
+import compiler.cache.TokenCache;
+import compiler.scanner.SymbolTable;
+import compiler.scanner.TokenBuffer;
+import compiler.scanner.TokenType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+
+public class TokenCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private long entries(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void testUnchangedSourceIsReadFromCache() throws IOException {
+        Path directory = folder.newFolder("cache").toPath();
+        Path source = folder.newFile("source.txt").toPath();
+        Files.writeString(source, "let a = b + 1;");
+        TokenCache cache = new TokenCache(directory);
+
+        TokenBuffer first = cache.tokenize(source, new SymbolTable());
+        assertEquals(1, entries(directory));
+        TokenBuffer second = cache.tokenize(source, new SymbolTable());
+        assertEquals(1, entries(directory));
+
+        assertEquals(first.size(), second.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.type(i), second.type(i));
+            assertEquals(first.literal(i), second.literal(i));
+        }
+    }
+
+    @Test
+    public void testChangedSourceGetsNewEntry() throws IOException {
+        Path directory = folder.newFolder("cache").toPath();
+        Path source = folder.newFile("source.txt").toPath();
+        TokenCache cache = new TokenCache(directory);
+
+        Files.writeString(source, "let a = 1;");
+        cache.tokenize(source, new SymbolTable());
+        Files.writeString(source, "let a = \"one\";");
+        TokenBuffer tokens = cache.tokenize(source, new SymbolTable());
+
+        assertEquals(2, entries(directory));
+        assertEquals(TokenType.STRING, tokens.type(3));
+        assertEquals("one", tokens.literal(3));
+    }
+
+    @Test
+    public void testCorruptEntryIsRebuilt() throws IOException {
+        Path directory = folder.newFolder("cache").toPath();
+        Path source = folder.newFile("source.txt").toPath();
+        Files.writeString(source, "print(x);");
+        TokenCache cache = new TokenCache(directory);
+        cache.tokenize(source, new SymbolTable());
+
+        try (Stream<Path> files = Files.list(directory)) {
+            Files.write(files.findFirst().get(), new byte[] {1, 2, 3});
+        }
+        TokenBuffer tokens = cache.tokenize(source, new SymbolTable());
+
+        assertEquals(6, tokens.size());
+        assertEquals("x", tokens.literal(2));
+    }
+}
@@ -0,0 +1,180 @@
+package codegen;
+
+import compiler.codegen.CGenerator;
+import compiler.codegen.CodegenException;
+import compiler.parser.Ast;
+import compiler.parser.ParseException;
+import compiler.parser.Parser;
+import compiler.scanner.Scanner;
+import compiler.scanner.SourceBuffer;
+import compiler.scanner.SymbolTable;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CGeneratorTest {
+
+    private static Ast parse(String text) throws IOException, ParseException {
+        return new Parser(new Scanner(new SourceBuffer(text.toCharArray(), text.length()), new SymbolTable()).tokenize())
+                .parse();
+    }
+
+    private static String generate(String text) throws IOException, ParseException, CodegenException {
+        StringWriter out = new StringWriter();
+        new CGenerator(parse(text)).generate(out);
+        return out.toString();
+    }
+
+    @Test
+    public void testExampleProgram() throws IOException, ParseException, CodegenException {
+        StringWriter out = new StringWriter();
+        new CGenerator(Parser.parse("src/main/resources/sourceCode.txt")).generate(out);
+        assertEquals("#include <stdio.h>\n"
+                + "\n"
+                + "long fibonacci(long nums);\n"
+                + "\n"
+                + "long fibonacci(long nums) {\n"
+                + "    long a = 0;\n"
+                + "    long b = 1;\n"
+                + "    while (nums > 0) {\n"
+                + "        printf(\"%ld\", (long) a);\n"
+                + "        putchar('\\n');\n"
+                + "        long c = a + b;\n"
+                + "        a = b;\n"
+                + "        b = c;\n"
+                + "        nums--;\n"
+                + "    }\n"
+                + "    return 0;\n"
+                + "}\n"
+                + "\n"
+                + "int main(void) {\n"
+                + "    fibonacci(5);\n"
+                + "    return 0;\n"
+                + "}\n", out.toString());
+    }
+
+    @Test
+    public void testGlobalsAndMain() throws IOException, ParseException, CodegenException {
+        assertEquals("#include <stdio.h>\n"
+                + "\n"
+                + "static long x;\n"
+                + "static long n;\n"
+                + "\n"
+                + "int main(void) {\n"
+                + "    x = 1;\n"
+                + "    if (scanf(\"%ld\", &n) != 1) n = 0;\n"
+                + "    x = x + n;\n"
+                + "    fputs(\"x is\", stdout);\n"
+                + "    putchar(' ');\n"
+                + "    printf(\"%ld\", (long) (x - (-n)));\n"
+                + "    putchar('\\n');\n"
+                + "    return 0;\n"
+                + "}\n", generate("let x = 1; input(n); let x = x + n; print(\"x is\", x - -n);"));
+    }
+
+    @Test
+    public void testStatementsAndScopes() throws IOException, ParseException, CodegenException {
+        String c = generate("let f = function(k) {\n"
+                + "    for (let i = 0; i < k; i++) { if (i == 1) { continue; } else if (i > 3) break; else print(i); }\n"
+                + "    for (;;) { let i = 2; { let i = i + 1; let j = true; } let j = 0; return j; }\n"
+                + "    while (k) k = k - 1;\n"
+                + "};");
+        assertTrue(c, c.contains("long f(long k) {\n"
+                + "    for (long i = 0; i < k; i++) {\n"
+                + "        if (i == 1) {\n"
+                + "            continue;\n"
+                + "        } else if (i > 3) {\n"
+                + "            break;\n"
+                + "        } else {\n"
+                + "            printf(\"%ld\", (long) i);\n"
+                + "            putchar('\\n');\n"
+                + "        }\n"
+                + "    }\n"
+                + "    for (;;) {\n"
+                + "        long i = 2;\n"
+                + "        {\n"
+                + "            i = i + 1;\n"
+                + "            long j = 1;\n"
+                + "        }\n"
+                + "        long j = 0;\n"
+                + "        return j;\n"
+                + "    }\n"
+                + "    while (k) {\n"
+                + "        k = k - 1;\n"
+                + "    }\n"
+                + "    return 0;\n"
+                + "}\n"));
+    }
+
+    @Test
+    public void testNamesNumbersAndStrings() throws IOException, ParseException, CodegenException {
+        String c = generate("let int = 007; let int_ = 000; let main = function(printf) { return printf; };"
+                + " print(main(int), int_, \"a\\b?\");");
+        assertTrue(c, c.contains("static long int_;\nstatic long int__;\n"));
+        assertTrue(c, c.contains("long main_(long printf_) {\n    return printf_;\n"));
+        assertTrue(c, c.contains("    int_ = 7;\n    int__ = 0;\n"));
+        assertTrue(c, c.contains("printf(\"%ld\", (long) main_(int_));"));
+        assertTrue(c, c.contains("fputs(\"a\\\\b\\?\", stdout);"));
+    }
+
+    @Test
+    public void testCallsAndAssignments() throws IOException, ParseException, CodegenException {
+        String c = generate("let fib = function(n) { if (n < 2) { return n; } return fib(n - 1) + fib(n - 2); };"
+                + " let k = 3; k = k - 1; print(fib(k = k + 1), -fib(k) + 2);");
+        assertTrue(c, c.contains("    return (fib(n - 1) + fib(n - 2));\n"));
+        assertTrue(c, c.contains("    k = k - 1;\n"));
+        assertTrue(c, c.contains("printf(\"%ld\", (long) fib(k = k + 1));"));
+        assertTrue(c, c.contains("printf(\"%ld\", (long) ((-fib(k)) + 2));"));
+    }
+
+    @Test
+    public void testDeepExpressions() throws IOException, ParseException, CodegenException {
+        int n = 100000;
+        String c = generate("let x = " + "(".repeat(n) + "1" + ")".repeat(n) + "; let y = x" + " + 1".repeat(n) + ";");
+        assertTrue(c.contains("    x = 1;\n"));
+        assertTrue(c.contains("    y = " + "(".repeat(n - 1) + "x + 1)" + " + 1)".repeat(n - 2) + " + 1;\n"));
+    }
+
+    @Test
+    public void testChannelOutput() throws IOException, ParseException, CodegenException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new CGenerator(parse("print(\"\u00e9\");")).generate(Channels.newChannel(bytes));
+        assertEquals(generate("print(\"\u00e9\");"), bytes.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testErrors() throws IOException, ParseException {
+        assertError("let f = 1; let f = function() {};", "'f' is defined more than once at 1:16");
+        assertError("if (true) { let f = function() {}; }", "Functions can only be bound by a top-level let at 1:21");
+        assertError("let s = \"text\";", "A string can only be printed at 1:9");
+        assertError("let x = 1; x(2);", "Only a function bound by a top-level let can be called at 1:13");
+        assertError("let f = function() {}; let g = f;", "The function 'f' can only be called at 1:32");
+        assertError("let x = 1; (x + 1)++;", "Only a variable can be incremented or decremented at 1:19");
+        assertError("print(x); let x = 1; print(y);", "'y' is not defined at 1:28");
+        assertError("let f = function() { let a = 1; } ; let g = function() { return a; }; f();",
+                "'a' is not defined at 1:65");
+        assertError("if (true) { let b = 1; } b = 2;", "'b' is not defined at 1:26");
+        assertError("let x = 1; if (x) { break; }", "'break' outside a loop at 1:21");
+        assertError("let f = function() { continue; }; while (true) { f(); }", "'continue' outside a loop at 1:22");
+        assertError("let f = function(a, b) { return a; }; print(f(1));",
+                "'f' takes 2 arguments but is given 1 at 1:46");
+        assertError("let f = function() {}; f(1);", "'f' takes 0 arguments but is given 1 at 1:25");
+    }
+
+    private static void assertError(String text, String message) throws IOException, ParseException {
+        try {
+            generate(text);
+            fail("Expected a CodegenException for " + text);
+        } catch (CodegenException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+}
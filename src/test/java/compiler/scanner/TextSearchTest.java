@@ -0,0 +1,99 @@
+package compiler.scanner;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that VectorTextSearch finds exactly what the scalar TextSearch loops find.
+ * This test lives in the scanner's own package because both implementations are package-private.
+ */
+public class TextSearchTest {
+    // Characters the searches look for, and characters whose low byte matches one of them
+    private static final String ALPHABET = "    \t\n\r*/\"ab;\0\u00e9\u0120\u0109\u012a\u0a0d\uffff";
+
+    private final TextSearch scalar = new TextSearch();
+    private TextSearch vector;
+
+    @Before
+    public void setUp() {
+        assumeTrue("jdk.incubator.vector is not in the boot layer",
+                ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent());
+        vector = new VectorTextSearch();
+    }
+
+    private static char[] random(Random random, int length, String alphabet) {
+        char[] buf = new char[length];
+        for (int i = 0; i < length; i++) {
+            buf[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        return buf;
+    }
+
+    /**
+     * Compares every search over one range.
+     */
+    private void assertAgree(char[] buf, int from, int to) {
+        String range = "[" + from + ", " + to + ") of " + new String(buf);
+        assertEquals(range, scalar.skipWhiteSpace(buf, from, to), vector.skipWhiteSpace(buf, from, to));
+        assertEquals(range, scalar.indexOfEither(buf, from, to, '*', '/'), vector.indexOfEither(buf, from, to, '*', '/'));
+        assertEquals(range, scalar.indexOfEither(buf, from, to, '\n', '\n'),
+                vector.indexOfEither(buf, from, to, '\n', '\n'));
+        assertEquals(range, scalar.lastIndexOfEither(buf, from, to, '\n', '\r'),
+                vector.lastIndexOfEither(buf, from, to, '\n', '\r'));
+        assertEquals(range, scalar.count(buf, from, to, '\t'), vector.count(buf, from, to, '\t'));
+        assertEquals(range, scalar.count(buf, from, to, '\n'), vector.count(buf, from, to, '\n'));
+        for (int tabWidth : new int[] {1, 4, 8}) {
+            assertEquals(range, scalar.advance(buf, from, to, 3, 7, tabWidth),
+                    vector.advance(buf, from, to, 3, 7, tabWidth));
+        }
+    }
+
+    @Test
+    public void testEveryRangeAroundVectorWidths() {
+        Random random = new Random(3);
+        int lanes = 64; // More than the widest vector of chars, so every tail and boundary is crossed
+        for (int n = 0; n < 20; n++) {
+            char[] buf = random(random, 2 * lanes + 3, ALPHABET);
+            for (int from = 0; from <= 3; from++) {
+                for (int to = from; to <= buf.length; to++) {
+                    assertAgree(buf, from, to);
+                }
+            }
+            for (int from = 0; from <= buf.length; from++) {
+                assertAgree(buf, from, buf.length);
+            }
+        }
+    }
+
+    @Test
+    public void testLongRuns() {
+        Random random = new Random(7);
+        for (String alphabet : new String[] {ALPHABET, " ", " \t", "ab", "\n\r", "\u00e9\u0120"}) {
+            for (int n = 0; n < 20; n++) {
+                char[] buf = random(random, random.nextInt(3000), alphabet);
+                assertAgree(buf, 0, buf.length);
+                if (buf.length > 2) {
+                    assertAgree(buf, 1, buf.length - 1);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMatchAtEveryOffset() {
+        for (int length = 1; length <= 130; length++) {
+            for (int at = 0; at < length; at++) {
+                for (char c : new char[] {'*', '/', '\n', '\r', '\t', 'x'}) {
+                    char[] buf = " ".repeat(length).toCharArray();
+                    buf[at] = c;
+                    assertAgree(buf, 0, length);
+                }
+            }
+        }
+    }
+}
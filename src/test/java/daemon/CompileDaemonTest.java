@@ -0,0 +1,191 @@
+package daemon;
+
+import compiler.Main;
+import compiler.daemon.CompileDaemon;
+import compiler.daemon.CompileRequest;
+import compiler.daemon.CompileResult;
+import compiler.daemon.DaemonClient;
+import compiler.optimizer.Pipeline;
+import compiler.output.TokenEncoding;
+import compiler.scanner.SymbolTable;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompileDaemonTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String SOURCE = "let a = 1 + 2;\n"
+            + "let f = function(x) { if (x < a) { return x; } return f(x - 1) + a; }\n"
+            + "print(f(5), \"done\");\n";
+
+    private static SocketAddress loopback() {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+    }
+
+    @Test
+    public void testTokensMatchMain() throws Exception {
+        Path source = Path.of("src/test/resources/testFile1.txt");
+        Path expected = folder.newFile("expected.txt").toPath();
+        Main.compile(source.toString(), expected.toString());
+
+        try (CompileDaemon daemon = new CompileDaemon(loopback())) {
+            CompileResult result = daemon.compile(CompileRequest.tokens(Files.readAllBytes(source), TokenEncoding.TEXT));
+            assertTrue(result.isSuccess());
+            assertArrayEquals(Files.readAllBytes(expected), result.getOutput());
+        }
+    }
+
+    @Test
+    public void testCMatchesMain() throws Exception {
+        byte[] expected = Main.compileToC(SOURCE.getBytes(), Pipeline.standard(), null, new SymbolTable());
+
+        try (CompileDaemon daemon = new CompileDaemon(loopback())) {
+            CompileResult result = daemon.compile(CompileRequest.c(SOURCE.getBytes(), true));
+            assertTrue(result.isSuccess());
+            assertArrayEquals(expected, result.getOutput());
+        }
+    }
+
+    @Test
+    public void testParseErrorIsDiagnostic() throws Exception {
+        try (CompileDaemon daemon = new CompileDaemon(loopback())) {
+            CompileResult result = daemon.compile(CompileRequest.c("let = ;".getBytes(), true));
+            assertFalse(result.isSuccess());
+            assertEquals(0, result.getOutput().length);
+            assertFalse(result.getDiagnostics().isEmpty());
+        }
+    }
+
+    @Test
+    public void testServesOverLoopback() throws Exception {
+        CompileDaemon daemon = new CompileDaemon(loopback(), 2, null);
+        Thread server = new Thread(() -> {
+            try {
+                daemon.serve();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        server.start();
+
+        byte[] expected = daemon.compile(CompileRequest.c(SOURCE.getBytes(), false)).getOutput();
+        try (DaemonClient client = new DaemonClient(daemon.getAddress())) {
+            for (int i = 0; i < 3; i++) {
+                CompileResult result = client.send(CompileRequest.c(SOURCE.getBytes(), false));
+                assertTrue(result.isSuccess());
+                assertArrayEquals(expected, result.getOutput());
+            }
+            CompileResult failed = client.send(CompileRequest.c("print(".getBytes(), false));
+            assertFalse(failed.isSuccess());
+            assertTrue(client.send(CompileRequest.shutdown()).isSuccess());
+        }
+
+        server.join(10_000);
+        assertFalse(server.isAlive());
+        assertTrue(daemon.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testServesOverUnixDomainSocket() throws Exception {
+        Path socket = folder.getRoot().toPath().resolve("daemon.sock");
+        CompileDaemon daemon = new CompileDaemon(UnixDomainSocketAddress.of(socket), 1, null);
+        Thread server = new Thread(() -> {
+            try {
+                daemon.serve();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        server.start();
+
+        try (DaemonClient client = new DaemonClient(CompileDaemon.parseAddress(socket.toString()))) {
+            CompileResult result = client.send(CompileRequest.tokens("let x = 1;".getBytes(), TokenEncoding.TEXT));
+            assertTrue(result.isSuccess());
+            assertTrue(new String(result.getOutput()).startsWith("Type: LET | Literal: let"));
+            client.send(CompileRequest.shutdown());
+        }
+
+        server.join(10_000);
+        assertFalse(server.isAlive());
+        assertFalse(Files.exists(socket));
+    }
+
+    @Test
+    public void testParseAddress() {
+        assertEquals(new InetSocketAddress(InetAddress.getLoopbackAddress(), 7000), CompileDaemon.parseAddress("7000"));
+        assertEquals(new InetSocketAddress("localhost", 7000), CompileDaemon.parseAddress("localhost:7000"));
+        assertEquals(UnixDomainSocketAddress.of("/tmp/compiler.sock"), CompileDaemon.parseAddress("/tmp/compiler.sock"));
+        assertEquals(new InetSocketAddress("127.0.0.1", 7000), CompileDaemon.parseAddress("127.0.0.1:7000"));
+    }
+
+    @Test
+    public void testRejectsAddressesOtherHostsCanReach() throws IOException {
+        for (String address : new String[] {"0.0.0.0:9000", "[::]:9000", "192.0.2.1:9000"}) {
+            try {
+                CompileDaemon.parseAddress(address);
+                fail("Expected " + address + " to be rejected");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains("not a loopback address"));
+            }
+        }
+        try (CompileDaemon daemon = new CompileDaemon(new InetSocketAddress(0))) {
+            fail("Expected the wildcard address to be rejected, bound " + daemon.getAddress());
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("not a loopback address"));
+        }
+    }
+
+    @Test
+    public void testUnixDomainAddressInUse() throws Exception {
+        Path file = folder.newFile("not-a-socket").toPath();
+        Files.writeString(file, "keep me");
+        try (CompileDaemon daemon = new CompileDaemon(UnixDomainSocketAddress.of(file))) {
+            fail("Expected a regular file to be left alone, bound " + daemon.getAddress());
+        } catch (BindException e) {
+            assertTrue(e.getMessage().contains("address in use"));
+        }
+        assertEquals("keep me", Files.readString(file));
+
+        Path socket = folder.getRoot().toPath().resolve("live.sock");
+        try (CompileDaemon live = new CompileDaemon(UnixDomainSocketAddress.of(socket))) {
+            try (CompileDaemon second = new CompileDaemon(UnixDomainSocketAddress.of(socket))) {
+                fail("Expected a live daemon's socket to be kept, bound " + second.getAddress());
+            } catch (BindException e) {
+                assertTrue(e.getMessage().contains("address in use"));
+            }
+            assertTrue(Files.exists(socket));
+        }
+    }
+
+    @Test
+    public void testReplacesStaleUnixDomainSocket() throws Exception {
+        Path socket = folder.getRoot().toPath().resolve("stale.sock");
+        try (ServerSocketChannel crashed = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            crashed.bind(UnixDomainSocketAddress.of(socket)); // Closing the channel leaves the file behind
+        }
+        assertTrue(Files.exists(socket));
+        try (CompileDaemon daemon = new CompileDaemon(UnixDomainSocketAddress.of(socket))) {
+            assertEquals(UnixDomainSocketAddress.of(socket), daemon.getAddress());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package driver;
+
+import compiler.Main;
+import compiler.driver.CompilationDriver;
+import compiler.driver.FileReport;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CompilationDriverTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReportsInInputOrder() throws IOException {
+        Path sources = folder.newFolder("sources").toPath();
+        for (int i = 0; i < 20; i++) {
+            Files.writeString(sources.resolve(String.format("file%02d.txt", i)), "let x" + i + " = " + i + ";");
+        }
+        Path output = folder.newFolder("output").toPath();
+
+        List<FileReport> reports = new CompilationDriver(4).compile(List.of(sources), output);
+
+        assertEquals(20, reports.size());
+        for (int i = 0; i < 20; i++) {
+            FileReport report = reports.get(i);
+            assertTrue(report.isSuccess());
+            assertEquals(String.format("file%02d.txt", i), report.getSource().getFileName().toString());
+            assertEquals(5, report.getTokens());
+        }
+    }
+
+    @Test
+    public void testMatchesSerialCompile() throws IOException {
+        Path output = folder.newFolder("output").toPath();
+        Path source = Path.of("src/test/resources/testFile1.txt");
+        Path expected = folder.newFile("expected.txt").toPath();
+        Main.compile(source.toString(), expected.toString());
+
+        List<FileReport> reports = new CompilationDriver(2).compile(List.of(source), output);
+
+        assertTrue(reports.get(0).isSuccess());
+        assertEquals(Files.readString(expected), Files.readString(reports.get(0).getTarget()));
+    }
+
+    @Test
+    public void testFailuresAreReportedPerFile() throws IOException {
+        Path output = folder.newFolder("output").toPath();
+        Path good = folder.newFile("good.txt").toPath();
+        Files.writeString(good, "print(1);");
+        Path missing = folder.getRoot().toPath().resolve("missing.txt");
+
+        List<FileReport> reports = new CompilationDriver(2).compile(List.of(missing, good), output);
+
+        assertFalse(reports.get(0).isSuccess());
+        assertTrue(reports.get(1).isSuccess());
+        assertNull(reports.get(1).getError());
+    }
+}
@@ -0,0 +1,136 @@
+package interp;
+
+import compiler.codegen.CodegenException;
+import compiler.interp.BytecodeCompiler;
+import compiler.interp.Interpreter;
+import compiler.interp.InterpreterException;
+import compiler.interp.Program;
+import compiler.parser.Ast;
+import compiler.parser.ParseException;
+import compiler.parser.Parser;
+import compiler.scanner.Scanner;
+import compiler.scanner.SourceBuffer;
+import compiler.scanner.SymbolTable;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class InterpreterTest {
+
+    private static Ast parse(String text) throws IOException, ParseException {
+        return new Parser(new Scanner(new SourceBuffer(text.toCharArray(), text.length()), new SymbolTable()).tokenize())
+                .parse();
+    }
+
+    private static String run(String text, String input)
+            throws IOException, ParseException, CodegenException, InterpreterException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Interpreter(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out)
+                .run(BytecodeCompiler.compile(parse(text)));
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testExampleProgram()
+            throws IOException, ParseException, CodegenException, InterpreterException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Program program = BytecodeCompiler.compile(Parser.parse("src/main/resources/sourceCode.txt"));
+        new Interpreter(new ByteArrayInputStream(new byte[0]), out).run(program);
+        assertEquals("0\n1\n1\n2\n3\n", out.toString(StandardCharsets.UTF_8));
+        assertEquals(1, program.functionCount());
+    }
+
+    @Test
+    public void testStatements() throws IOException, ParseException, CodegenException, InterpreterException {
+        assertEquals("55 10\n", run("let s = 0;\n"
+                + "let i = 0;\n"
+                + "while (true) {\n"
+                + "    i++;\n"
+                + "    if (i > 10) { break; }\n"
+                + "    s = s + i;\n"
+                + "}\n"
+                + "print(s, i - 1);", ""));
+        assertEquals("15\n", run("let s = 0;\n"
+                + "for (let i = 0; i < 10; i++) {\n"
+                + "    if (i == 2) continue;\n"
+                + "    if (i == 4) continue;\n"
+                + "    if (i >= 7) { continue; } else if (i == 6) { s = s + 100; }\n"
+                + "    s = s + i;\n"
+                + "}\n"
+                + "print(s - 100);", ""));
+        assertEquals("0 1 -1 1\n", run("print(1 < 0, 2 != 3, -(4 - 3), true);", ""));
+        assertEquals("-9223372036854775808\n", run("let x = 9223372036854775807; x++; print(x);", ""));
+    }
+
+    @Test
+    public void testFunctionsAndScopes() throws IOException, ParseException, CodegenException, InterpreterException {
+        assertEquals("832040\n", run("let fib = function(n) {\n"
+                + "    if (n < 2) { return n; }\n"
+                + "    return fib(n - 1) + fib(n - 2);\n"
+                + "}\n"
+                + "print(fib(30));", ""));
+        assertEquals("7 -1\n", run("let g = 1;\n"
+                + "let f = function(a) { let g = g + a; let h = a; return h; }\n"
+                + "let h = 0;\n"
+                + "{ let h = 5; h = h + f(1); print(h + g - 1, f(1) - g + 1); }", ""));
+    }
+
+    @Test
+    public void testInputAndStrings() throws IOException, ParseException, CodegenException, InterpreterException {
+        assertEquals("Sum: 40 é\n", run("let a = 0; let b = 0;\n"
+                + "input(a); input(b);\n"
+                + "print(\"Sum:\", a + b, \"é\");", "  -2\n42 "));
+        assertEquals("0\n", run("let a = 5; input(a); print(a);", "x"));
+    }
+
+    @Test
+    public void testDeepExpression() throws IOException, ParseException, CodegenException, InterpreterException {
+        StringBuilder text = new StringBuilder("print(");
+        for (int i = 0; i < 5000; i++) {
+            text.append("1 + (");
+        }
+        text.append('0');
+        for (int i = 0; i < 5000; i++) {
+            text.append(')');
+        }
+        text.append(");");
+        assertEquals("5000\n", run(text.toString(), ""));
+    }
+
+    @Test
+    public void testDeepRecursion() throws IOException, ParseException, CodegenException {
+        try {
+            run("let f = function(n) { return f(n + 1); }\nf(0);", "");
+            fail();
+        } catch (InterpreterException e) {
+            assertEquals("Calls nested deeper than " + Interpreter.DEFAULT_MAX_DEPTH, e.getMessage());
+        }
+    }
+
+    @Test
+    public void testErrors() throws IOException, ParseException {
+        String[][] cases = {
+                {"print(x);", "'x' is not defined at 1:7"},
+                {"let f = function(a) { return a; }\nf(1, 2);", "'f' takes 1 arguments but is given 2 at 2:2"},
+                {"break;", "'break' outside a loop at 1:1"},
+                {"let f = function() { continue; };\nwhile (true) { f(); }", "'continue' outside a loop at 1:22"},
+                {"let f = function() { return 0; }\nprint(f);", "The function 'f' can only be called at 2:7"},
+        };
+        for (String[] c : cases) {
+            try {
+                run(c[0], "");
+                fail(c[0]);
+            } catch (CodegenException e) {
+                assertEquals(c[1], e.getMessage());
+            } catch (InterpreterException e) {
+                fail(e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package interp;
+
+import compiler.codegen.CodegenException;
+import compiler.interp.BytecodeCompiler;
+import compiler.interp.Interpreter;
+import compiler.interp.InterpreterException;
+import compiler.interp.Program;
+import compiler.parser.ParseException;
+import compiler.parser.Parser;
+import compiler.scanner.Scanner;
+import compiler.scanner.SourceBuffer;
+import compiler.scanner.SymbolTable;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class JvmCompilerTest {
+
+    private static final String PROGRAM = "let total = 0;\n"
+            + "let fib = function(n) {\n"
+            + "    if (n < 2) { return n; }\n"
+            + "    return fib(n - 1) + fib(n - 2);\n"
+            + "}\n"
+            + "let sum = function(limit, step) {\n"
+            + "    let s = 0;\n"
+            + "    for (let i = 0; i < limit; i++) {\n"
+            + "        if (i == 3) continue;\n"
+            + "        let j = i;\n"
+            + "        while (true) { j = j - step; if (j <= 0) { break; } }\n"
+            + "        s = s + i + j + (i >= 5) - (i != 7);\n"
+            + "        total++;\n"
+            + "    }\n"
+            + "    return s;\n"
+            + "}\n"
+            + "let n = 0;\n"
+            + "input(n);\n"
+            + "for (let k = 0; k < n; k++) {\n"
+            + "    print(\"round\", k, fib(k), sum(k + k + k, 2), 3000000000 + k, -k);\n"
+            + "}\n"
+            + "print(total, total == 302, -9223372036854775807 - 1);\n";
+
+    private static String run(String text, String input, int compileThreshold)
+            throws IOException, ParseException, CodegenException, InterpreterException {
+        Program program = BytecodeCompiler.compile(
+                new Parser(new Scanner(new SourceBuffer(text.toCharArray(), text.length()), new SymbolTable())
+                        .tokenize()).parse());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Interpreter(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out,
+                Interpreter.DEFAULT_MAX_DEPTH, compileThreshold).run(program);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testModesAgree() throws IOException, ParseException, CodegenException, InterpreterException {
+        String expected = run(PROGRAM, "15", Interpreter.NO_COMPILATION);
+        assertEquals("round 0 0 0 3000000000 0\n", expected.substring(0, expected.indexOf('\n') + 1));
+        assertEquals(expected, run(PROGRAM, "15", 0));
+        for (int threshold : new int[] {1, 2, 7, 100}) {
+            assertEquals("threshold " + threshold, expected, run(PROGRAM, "15", threshold));
+        }
+    }
+
+    @Test
+    public void testLoopEntryKeepsState() throws IOException, ParseException, CodegenException, InterpreterException {
+        // The loop in main is compiled after a few iterations and must carry on from where the interpreter was
+        String text = "let a = 1;\n"
+                + "let b = 0;\n"
+                + "{\n"
+                + "    let local = 10;\n"
+                + "    for (let i = 0; i < 50; i++) { b = b + a - 1 + i; local++; if (i == 48) { print(local); } }\n"
+                + "    print(b, local);\n"
+                + "}\n";
+        assertEquals("59\n1225 60\n", run(text, "", 5));
+        assertEquals("59\n1225 60\n", run(text, "", Interpreter.NO_COMPILATION));
+    }
+
+    @Test
+    public void testManyLocalsAndArguments()
+            throws IOException, ParseException, CodegenException, InterpreterException {
+        // Enough locals to need wide local variable instructions
+        StringBuilder text = new StringBuilder("let f = function(");
+        for (int i = 0; i < 100; i++) {
+            text.append(i == 0 ? "" : ", ").append("p").append(i);
+        }
+        text.append(") {\n");
+        for (int i = 0; i < 100; i++) {
+            text.append("    let v").append(i).append(" = p").append(i).append(" + ").append(i).append(";\n");
+        }
+        text.append("    return v0 + v99 + p50;\n}\nprint(f(");
+        for (int i = 0; i < 100; i++) {
+            text.append(i == 0 ? "" : ", ").append(i);
+        }
+        text.append("));\n");
+        assertEquals("248\n", run(text.toString(), "", 0));
+        assertEquals("248\n", run(text.toString(), "", Interpreter.NO_COMPILATION));
+    }
+
+    @Test
+    public void testInputInCompiledCode() throws IOException, ParseException, CodegenException, InterpreterException {
+        String text = "let total = 0;\n"
+                + "let read = function() { let x = 0; input(x); return x; }\n"
+                + "for (let i = 0; i < 4; i++) { let v = 0; input(v); input(total); total = total + v + read(); }\n"
+                + "print(total);\n";
+        assertEquals("110\n", run(text, "1 2 3 4 5 6 7 8 9 10 100 x", 1));
+    }
+
+    @Test
+    public void testDeepCompiledRecursion() throws IOException, ParseException, CodegenException {
+        try {
+            run("let f = function(n) { return f(n + 1) + 1; }\nf(0);", "", 0);
+            fail();
+        } catch (InterpreterException e) {
+            assertEquals("Compiled calls nested deeper than the Java stack allows", e.getMessage());
+        }
+    }
+}
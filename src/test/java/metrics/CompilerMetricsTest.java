@@ -0,0 +1,148 @@
+package metrics;
+
+import compiler.Main;
+import compiler.metrics.CompilerMetrics;
+import compiler.metrics.Phase;
+import compiler.metrics.PhaseTimer;
+import compiler.scanner.TokenType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CompilerMetricsTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        CompilerMetrics.reset();
+        CompilerMetrics.setEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        CompilerMetrics.setEnabled(false);
+        CompilerMetrics.reset();
+    }
+
+    @Test
+    public void testCompileRecordsPhases() throws Exception {
+        Path source = folder.newFile("source.txt").toPath();
+        Files.writeString(source, "let a = 1;\nlet b = a;\n");
+        Path target = folder.getRoot().toPath().resolve("target.txt");
+
+        int tokens = Main.compile(source.toString(), target.toString());
+
+        assertEquals(1, CompilerMetrics.getRuns(Phase.READ));
+        assertEquals(Files.size(source), CompilerMetrics.getBytes(Phase.READ));
+        assertEquals(1, CompilerMetrics.getRuns(Phase.LEX));
+        assertEquals(1, CompilerMetrics.getRuns(Phase.OUTPUT));
+        assertEquals(Files.size(target), CompilerMetrics.getBytes(Phase.OUTPUT));
+        assertEquals(2, CompilerMetrics.getTokens(TokenType.LET));
+        assertEquals(3, CompilerMetrics.getTokens(TokenType.IDENTIFIER));
+        assertEquals(1, CompilerMetrics.getTokens(TokenType.EOF));
+        assertEquals(tokens + 1, sumTokens());
+        assertEquals(2, CompilerMetrics.getIdentifiersInterned());
+        assertTrue(CompilerMetrics.getWallNanos(Phase.LEX) > 0);
+    }
+
+    @Test
+    public void testDisabledRecordsNothing() throws Exception {
+        CompilerMetrics.setEnabled(false);
+        PhaseTimer timer = CompilerMetrics.start(Phase.PARSE);
+        assertFalse(timer.isRecording());
+        timer.stop(100);
+
+        Main.compile("src/test/resources/testFile1.txt", folder.newFile("target.txt").toString());
+
+        for (Phase phase : Phase.values()) {
+            assertEquals(0, CompilerMetrics.getRuns(phase));
+        }
+        assertEquals(0, sumTokens());
+    }
+
+    @Test
+    public void testEventsWhileDisabled() throws Exception {
+        CompilerMetrics.setEnabled(false);
+        assertFalse(CompilerMetrics.start(Phase.PARSE).isRecording());
+
+        Path dump = folder.getRoot().toPath().resolve("phases.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("compiler.Phase");
+            recording.start();
+            PhaseTimer timer = CompilerMetrics.start(Phase.PARSE);
+            assertFalse(timer.isRecording());
+            timer.stop(9);
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        assertEquals(1, events.size());
+        assertEquals("parse", events.get(0).getString("phase"));
+        assertEquals(9, events.get(0).getLong("bytes"));
+        assertEquals(0, CompilerMetrics.getRuns(Phase.PARSE));
+    }
+
+    @Test
+    public void testJson() {
+        PhaseTimer timer = CompilerMetrics.start(Phase.READ);
+        timer.stop(42);
+
+        String json = CompilerMetrics.toJson();
+        assertTrue(json.contains("\"bytesRead\": 42"));
+        assertTrue(json.contains("\"tokens\": {}"));
+        assertTrue(json.contains("\"read\": {\"runs\": 1,"));
+        assertFalse(json.contains("\"parse\""));
+    }
+
+    @Test
+    public void testLabelsIgnoreLocale() {
+        Locale locale = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+            assertEquals("optimize", Phase.OPTIMIZE.label());
+            assertEquals("lex", Phase.LEX.label());
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void testMXBean() throws Exception {
+        CompilerMetrics.register();
+        CompilerMetrics.register();
+        CompilerMetrics.start(Phase.READ).stop(7);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(CompilerMetrics.OBJECT_NAME);
+        assertEquals(7L, server.getAttribute(name, "BytesRead"));
+        assertEquals(true, server.getAttribute(name, "Enabled"));
+    }
+
+    private static long sumTokens() {
+        long sum = 0;
+        for (TokenType type : TokenType.values()) {
+            sum += CompilerMetrics.getTokens(type);
+        }
+        return sum;
+    }
+}
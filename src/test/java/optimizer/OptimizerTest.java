@@ -0,0 +1,187 @@
+package optimizer;
+
+import compiler.Main;
+import compiler.codegen.CodegenException;
+import compiler.interp.Interpreter;
+import compiler.optimizer.ConstantFolding;
+import compiler.optimizer.DeadCodeElimination;
+import compiler.optimizer.LoopInvariantHoisting;
+import compiler.optimizer.Pass;
+import compiler.optimizer.PassTiming;
+import compiler.optimizer.Pipeline;
+import compiler.parser.Ast;
+import compiler.parser.NodeKind;
+import compiler.parser.ParseException;
+import compiler.parser.Parser;
+import compiler.scanner.Scanner;
+import compiler.scanner.SourceBuffer;
+import compiler.scanner.SymbolTable;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OptimizerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Ast parse(String text) throws IOException, ParseException {
+        return new Parser(new Scanner(new SourceBuffer(text.toCharArray(), text.length()), new SymbolTable()).tokenize())
+                .parse();
+    }
+
+    /**
+     * Renders a tree as an S-expression, with folded values in square brackets.
+     */
+    private static String render(Ast ast, int node) {
+        StringBuilder out = new StringBuilder("(").append(ast.kind(node));
+        if (ast.isFolded(node)) {
+            out.append(" [").append(ast.value(node)).append(']');
+        } else if (ast.token(node) != Ast.NO_TOKEN && ast.kind(node) != NodeKind.EMPTY) {
+            out.append(' ').append(ast.literal(node));
+        }
+        for (int child = ast.firstChild(node); child != Ast.NO_NODE; child = ast.nextSibling(child)) {
+            out.append(' ').append(render(ast, child));
+        }
+        return out.append(')').toString();
+    }
+
+    /**
+     * Runs passes over a source, checks the result is a well-formed arena and renders it.
+     */
+    private static String optimize(String text, Pass... passes) throws IOException, ParseException {
+        Ast ast = new Pipeline(List.of(passes)).run(parse(text));
+        int reachable = 0;
+        for (int node = 0; node < ast.size(); node++) {
+            for (int child = ast.firstChild(node); child != Ast.NO_NODE; child = ast.nextSibling(child)) {
+                assertTrue(child < node);
+                reachable++;
+            }
+        }
+        assertEquals(ast.size() - 1, reachable); // no orphans left behind
+        return render(ast, ast.root());
+    }
+
+    @Test
+    public void testConstantFolding() throws IOException, ParseException {
+        assertEquals("(PROGRAM (LET x (NUMBER [4])) (PRINT print (BOOLEAN [1]) (BINARY + (IDENTIFIER x) (NUMBER [7]))"
+                + " (NUMBER [-1])))",
+                optimize("let x = 1 + 2 - -1; print(2 < 3 == true, x + (3 + 4), -(true + 0));", new ConstantFolding()));
+        assertEquals("(PROGRAM (LET x (NUMBER [-9223372036854775808])))",
+                optimize("let x = 9223372036854775807 + 1;", new ConstantFolding()));
+        assertEquals("(PROGRAM (LET x (BINARY + (NUMBER 99999999999999999999) (NUMBER 1))))",
+                optimize("let x = 99999999999999999999 + 1;", new ConstantFolding()));
+    }
+
+    @Test
+    public void testDeadCodeElimination() throws IOException, ParseException {
+        assertEquals("(PROGRAM (WHILE while (IDENTIFIER c) (BLOCK { (BREAK break))) (BLOCK if (PRINT print (NUMBER 1)))"
+                + " (BLOCK { (LET y (NUMBER 2))))",
+                optimize("while (c) { break; print(0); } if (true) print(1); else print(2); if (false) {} "
+                        + "if (0) print(3); else { let y = 2; } while (false) print(4);", new DeadCodeElimination()));
+        assertEquals("(PROGRAM (LET f (FUNCTION function (BLOCK { (IF if (IDENTIFIER c) (RETURN return (NUMBER 1))"
+                + " (BLOCK { (RETURN return (NUMBER 2))))))) (RETURN return) (PRINT print (NUMBER 3)))",
+                optimize("let f = function() { if (c) return 1; else { return 2; } print(0); }; return; print(3);",
+                        new DeadCodeElimination()));
+    }
+
+    @Test
+    public void testLoopInvariantHoisting() throws IOException, ParseException {
+        assertEquals("(PROGRAM (LET n (NUMBER 3)) (BLOCK while (LET k (BINARY + (IDENTIFIER n) (NUMBER 1)))"
+                + " (LET j (UNARY - (IDENTIFIER k))) (WHILE while (IDENTIFIER c) (BLOCK { (PRINT print (IDENTIFIER j))))))",
+                optimize("let n = 3; while (c) { let k = n + 1; let j = -k; print(j); }", new LoopInvariantHoisting()));
+
+        // Not hoisted: reads a variable the loop assigns, assigns a visible variable, is assigned again,
+        // reads the loop variable, is not worth it, or reads a global the called function may change (a parameter
+        // it cannot)
+        String loop = "let n = 3; let m = 1; for (let i = 0; i < n; i++) { let a = n + 1; let m = n + 1;"
+                + " let b = n + 1; b++; let d = i + 1; let e = n; n = n - 1; }";
+        assertEquals(render(parse(loop), parse(loop).root()), optimize(loop, new LoopInvariantHoisting()));
+        // Nor when the name is read before the let declares it, which would give that read a variable
+        for (String early : new String[] {
+                "let n = 5; let i = 0; while (i < 3) { if (i > 0) { print(k); } let k = n + 1; i++; }",
+                "let n = 5; while (k) { let k = n + 1; }", "let n = 5; while (n) { let k = n + k; }"}) {
+            assertEquals(render(parse(early), parse(early).root()), optimize(early, new LoopInvariantHoisting()));
+        }
+        String call = "let n = 3; let f = function(x) { while (x) { let a = n + 1; let b = x + 1; f(a); } };";
+        assertEquals("(PROGRAM (LET n (NUMBER 3)) (LET f (FUNCTION function (PARAMETER x) (BLOCK { (BLOCK while"
+                + " (LET b (BINARY + (IDENTIFIER x) (NUMBER 1))) (WHILE while (IDENTIFIER x) (BLOCK { (LET a (BINARY +"
+                + " (IDENTIFIER n) (NUMBER 1))) (EXPRESSION f (CALL ( (IDENTIFIER f) (IDENTIFIER a))))))))))",
+                optimize(call, new LoopInvariantHoisting()));
+    }
+
+    @Test
+    public void testPipeline() throws IOException, ParseException {
+        Pipeline pipeline = Pipeline.standard();
+        Ast ast = parse("let f = function(n, k) { while (n > 0) { let s = k + (2 + 3); if (1 > 2) { print(s); } n--; } };");
+        Ast optimized = pipeline.run(ast);
+        assertEquals("(PROGRAM (LET f (FUNCTION function (PARAMETER n) (PARAMETER k) (BLOCK { (BLOCK while (LET s (BINARY +"
+                + " (IDENTIFIER k) (NUMBER [5])))"
+                + " (WHILE while (BINARY > (IDENTIFIER n) (NUMBER 0)) (BLOCK { (EXPRESSION n (POSTFIX -- (IDENTIFIER n))))))))))",
+                render(optimized, optimized.root()));
+
+        List<PassTiming> timings = pipeline.getTimings();
+        assertEquals(3, timings.size());
+        assertEquals("constant-folding", timings.get(0).getPass());
+        assertEquals(2, timings.get(0).getChanges());
+        assertEquals(ast.size(), timings.get(0).getNodesBefore());
+        assertEquals("dead-code", timings.get(1).getPass());
+        assertEquals(1, timings.get(1).getChanges());
+        assertEquals("loop-invariant-hoisting", timings.get(2).getPass());
+        assertEquals(1, timings.get(2).getChanges());
+        assertEquals(optimized.size(), timings.get(2).getNodesAfter());
+    }
+
+    @Test
+    public void testRejectsWhatUnoptimizedCompilationRejects() throws Exception {
+        String[] sources = {
+                "if (false) { print(zz); }",
+                "let x = 1; while (x) { return; print(qq); }",
+                "let n = 5; let i = 0; while (i < 3) { if (i > 0) { print(k); } let k = n + 1; i++; }",
+        };
+        for (String source : sources) {
+            Path file = folder.newFile().toPath();
+            Files.writeString(file, source);
+            String expected = null;
+            for (Pipeline pipeline : new Pipeline[] {Pipeline.none(), Pipeline.standard()}) {
+                try {
+                    Main.compileToC(source.getBytes(), pipeline, null, new SymbolTable());
+                    fail("Expected " + source + " to be rejected by " + pipeline);
+                } catch (CodegenException e) {
+                    if (expected == null) {
+                        expected = e.getMessage();
+                    }
+                    assertEquals(expected, e.getMessage());
+                }
+                try {
+                    Main.run(file.toString(), pipeline, Interpreter.NO_COMPILATION, null);
+                    fail("Expected " + source + " to be rejected by " + pipeline);
+                } catch (CodegenException e) {
+                    assertEquals(expected, e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testUnchangedTreeIsReturnedAsIs() throws IOException, ParseException {
+        Ast ast = Parser.parse("src/main/resources/sourceCode.txt");
+        assertSame(ast, Pipeline.standard().run(ast));
+    }
+
+    @Test
+    public void testDeepExpressions() throws IOException, ParseException {
+        int n = 100000;
+        assertEquals("(PROGRAM (LET x (NUMBER [" + n + "])))", optimize("let x = 0" + " + 1".repeat(n) + ";",
+                new ConstantFolding(), new DeadCodeElimination(), new LoopInvariantHoisting()));
+    }
+}
@@ -0,0 +1,113 @@
+package output;
+
+import compiler.output.TokenEncoding;
+import compiler.output.TokenOutput;
+import compiler.scanner.BinaryTokenReader;
+import compiler.scanner.Scanner;
+import compiler.scanner.SourceBuffer;
+import compiler.scanner.SymbolTable;
+import compiler.scanner.Token;
+import compiler.scanner.TokenBuffer;
+import compiler.scanner.TokenType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TokenOutputTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TokenBuffer tokenize(String source) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8));
+        Scanner scanner = new Scanner(SourceBuffer.decode(bytes, StandardCharsets.UTF_8), new SymbolTable());
+        TokenBuffer tokens = scanner.tokenize();
+        scanner.close();
+        return tokens;
+    }
+
+    @Test
+    public void testTextMatchesTokenToString() throws IOException {
+        TokenBuffer tokens = tokenize(Files.readString(Path.of("src/test/resources/testFile1.txt")));
+        Path target = folder.newFile().toPath();
+
+        int count = new TokenOutput(StandardCharsets.UTF_8).write(tokens, target, TokenEncoding.TEXT);
+
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < tokens.size() - 1; i++) {
+            expected.append(tokens.token(i)).append(System.lineSeparator());
+        }
+        assertEquals(tokens.size() - 1, count);
+        assertEquals(expected.toString(), Files.readString(target, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testNonAsciiLiterals() throws IOException {
+        TokenBuffer tokens = tokenize("print(\"héllo wörld\");");
+        Path target = folder.newFile().toPath();
+
+        new TokenOutput(StandardCharsets.UTF_8).write(tokens, target, TokenEncoding.TEXT);
+
+        List<String> lines = Files.readAllLines(target, StandardCharsets.UTF_8);
+        assertEquals("Type: STRING | Literal: héllo wörld", lines.get(2));
+    }
+
+    @Test
+    public void testCharsetsThatAreNotAsciiCompatible() throws IOException {
+        TokenBuffer tokens = tokenize("let a = \"héllo ✓\";\nprint(a);");
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < tokens.size() - 1; i++) {
+            expected.append(tokens.token(i)).append(System.lineSeparator());
+        }
+
+        for (Charset charset : new Charset[] {StandardCharsets.UTF_16, StandardCharsets.UTF_16LE,
+                Charset.forName("UTF-32"), Charset.forName("IBM037")}) {
+            Path target = folder.newFile().toPath();
+            TokenOutput output = new TokenOutput(charset);
+            output.write(tokens, target, TokenEncoding.TEXT);
+            output.write(tokens, target, TokenEncoding.TEXT);
+            assertArrayEquals(charset.name(), expected.toString().getBytes(charset), Files.readAllBytes(target));
+        }
+    }
+
+    @Test
+    public void testReusedAcrossFiles() throws IOException {
+        TokenOutput output = new TokenOutput(StandardCharsets.UTF_8);
+        Path first = folder.newFile().toPath();
+        Path second = folder.newFile().toPath();
+
+        output.write(tokenize("let a = 1;"), first, TokenEncoding.TEXT);
+        output.write(tokenize("b--;"), second, TokenEncoding.TEXT);
+
+        assertEquals(5, Files.readAllLines(first, StandardCharsets.UTF_8).size());
+        assertEquals(List.of("Type: IDENTIFIER | Literal: b", "Type: DECRE | Literal: --",
+                "Type: SEMICOLON | Literal: ;"), Files.readAllLines(second, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testBinaryEncoding() throws IOException {
+        TokenBuffer tokens = tokenize("let a = \"text\";");
+        Path target = folder.newFile().toPath();
+
+        new TokenOutput().write(tokens, target, TokenEncoding.BINARY);
+
+        List<Token> read;
+        try (InputStream in = Files.newInputStream(target)) {
+            read = new BinaryTokenReader(in).readTokens();
+        }
+        assertEquals(tokens.size(), read.size());
+        assertEquals("text", read.get(3).getLiteral());
+        assertEquals(TokenType.EOF, read.get(read.size() - 1).getType());
+    }
+}
@@ -0,0 +1,171 @@
+package parser;
+
+import compiler.parser.Ast;
+import compiler.parser.NodeKind;
+import compiler.parser.ParseException;
+import compiler.parser.Parser;
+import compiler.scanner.Scanner;
+import compiler.scanner.SourceBuffer;
+import compiler.scanner.SymbolTable;
+import compiler.scanner.TokenBuffer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParserTest {
+
+    private static TokenBuffer tokenize(String text) throws IOException {
+        return new Scanner(new SourceBuffer(text.toCharArray(), text.length()), new SymbolTable()).tokenize();
+    }
+
+    private static Ast parse(String text) throws IOException, ParseException {
+        return new Parser(tokenize(text)).parse();
+    }
+
+    /**
+     * Parses a source in the default and the iterative mode and checks that the arenas are identical.
+     */
+    private static Ast parseBothWays(String text) throws IOException, ParseException {
+        TokenBuffer tokens = tokenize(text);
+        Ast recursive = new Parser(tokens).parse();
+        Ast iterative = new Parser(tokens, true).parse();
+        assertEquals(recursive.size(), iterative.size());
+        for (int node = 0; node < recursive.size(); node++) {
+            assertEquals(recursive.kind(node), iterative.kind(node));
+            assertEquals(recursive.token(node), iterative.token(node));
+            assertEquals(recursive.firstChild(node), iterative.firstChild(node));
+            assertEquals(recursive.nextSibling(node), iterative.nextSibling(node));
+        }
+        return recursive;
+    }
+
+    /**
+     * Renders a subtree as an S-expression of kinds and token literals.
+     */
+    private static String render(Ast ast, int node) {
+        StringBuilder out = new StringBuilder("(").append(ast.kind(node));
+        if (ast.token(node) != Ast.NO_TOKEN && ast.kind(node) != NodeKind.EMPTY) {
+            out.append(' ').append(ast.literal(node));
+        }
+        for (int child = ast.firstChild(node); child != Ast.NO_NODE; child = ast.nextSibling(child)) {
+            out.append(' ').append(render(ast, child));
+        }
+        return out.append(')').toString();
+    }
+
+    private static String render(String text) throws IOException, ParseException {
+        Ast ast = parse(text);
+        return render(ast, ast.root());
+    }
+
+    @Test
+    public void testExampleProgram() throws IOException, ParseException {
+        Ast ast = Parser.parse("src/main/resources/sourceCode.txt");
+        assertEquals(NodeKind.PROGRAM, ast.kind(ast.root()));
+        assertEquals(2, ast.childCount(ast.root()));
+
+        int let = ast.child(ast.root(), 0);
+        assertEquals(NodeKind.LET, ast.kind(let));
+        assertEquals("fibonacci", ast.literal(let));
+        int function = ast.firstChild(let);
+        assertEquals(NodeKind.FUNCTION, ast.kind(function));
+        assertEquals("nums", ast.literal(ast.child(function, 0)));
+        assertEquals(NodeKind.BLOCK, ast.kind(ast.child(function, 1)));
+        assertEquals(3, ast.childCount(ast.child(function, 1)));
+
+        assertEquals("(EXPRESSION fibonacci (CALL ( (IDENTIFIER fibonacci) (NUMBER 5)))",
+                render(ast, ast.child(ast.root(), 1)));
+    }
+
+    @Test
+    public void testChildrenAreStoredBeforeParents() throws IOException, ParseException {
+        Ast ast = Parser.parse("src/main/resources/sourceCode.txt");
+        int reachable = 0;
+        for (int node = 0; node < ast.size(); node++) {
+            for (int child = ast.firstChild(node); child != Ast.NO_NODE; child = ast.nextSibling(child)) {
+                assertTrue(child < node);
+                reachable++;
+            }
+        }
+        assertEquals(ast.size() - 1, reachable); // every node but the root has exactly one parent
+    }
+
+    @Test
+    public void testPrecedenceAndAssociativity() throws IOException, ParseException {
+        assertEquals("(PROGRAM (EXPRESSION a (BINARY - (BINARY - (IDENTIFIER a) (IDENTIFIER b)) (IDENTIFIER c))))",
+                render("a - b - c;"));
+        assertEquals("(PROGRAM (EXPRESSION a (BINARY == (BINARY < (IDENTIFIER a) (BINARY + (IDENTIFIER b) (NUMBER 1)))"
+                + " (BOOLEAN true))))", render("a < b + 1 == true;"));
+        assertEquals("(PROGRAM (EXPRESSION - (UNARY - (POSTFIX ++ (IDENTIFIER x)))))", render("-x++;"));
+        assertEquals("(PROGRAM (EXPRESSION x (ASSIGN = (IDENTIFIER x) (ASSIGN = (IDENTIFIER y) (BINARY + (NUMBER 1)"
+                + " (NUMBER 2))))))", render("x = y = (1 + 2);"));
+        assertEquals("(PROGRAM (EXPRESSION f (CALL ( (CALL ( (IDENTIFIER f) (NUMBER 1) (CALL ( (IDENTIFIER g))) (STRING s))))",
+                render("f(1, g())(\"s\");"));
+    }
+
+    @Test
+    public void testStatements() throws IOException, ParseException {
+        assertEquals("(PROGRAM (FOR for (LET i (NUMBER 0)) (BINARY < (IDENTIFIER i) (NUMBER 3)) (POSTFIX ++ (IDENTIFIER i))"
+                + " (BLOCK { (IF if (BINARY == (IDENTIFIER i) (NUMBER 1)) (BLOCK { (CONTINUE continue))"
+                + " (IF if (BINARY > (IDENTIFIER i) (NUMBER 1)) (BREAK break) (BLOCK { (PRINT print (IDENTIFIER i)"
+                + " (STRING x))))))))",
+                render("for (let i = 0; i < 3; i++) { if (i == 1) { continue; } else if (i > 1) break; else { print(i, \"x\"); } }"));
+        assertEquals("(PROGRAM (FOR for (EMPTY) (EMPTY) (EMPTY) (BLOCK {)))", render("for (;;) {}"));
+        assertEquals("(PROGRAM (INPUT input (IDENTIFIER n)) (PRINT print) (WHILE while (BOOLEAN false) (RETURN return)))",
+                render("input(n); print(); while (false) return;"));
+        assertEquals("(PROGRAM (LET f (FUNCTION function (BLOCK { (RETURN return (IDENTIFIER a))))) (LET g (FUNCTION function"
+                + " (PARAMETER a) (PARAMETER b) (BLOCK {))))", render("let f = function() { return a; }; let g = function(a, b) {}"));
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        assertError("let x = 1\nlet y = 2;", "Expected ';' after the let binding but found 'let' at 2:1");
+        assertError("print(a;", "Expected ')' after the arguments but found ';' at 1:8");
+        assertError("let x = #;", "Unexpected character '#' at 1:9");
+        assertError("1 + 2 = 3;", "Only a variable can be assigned to at 1:7");
+        assertError("while (x) {", "Expected '}' to close the block at 1:12");
+    }
+
+    @Test
+    public void testIterativeModeBuildsTheSameTree() throws IOException, ParseException {
+        parseBothWays(Files.readString(Path.of("src/main/resources/sourceCode.txt")));
+        parseBothWays("x = y = -(a - b - -c++) + f(1, g(h()), (2))(3) == --d != e <= (f > g);");
+        parseBothWays("let f = function(a) { return a(b + 1, function() { print(c = d); }); }; print(f(1)--, 2);");
+    }
+
+    @Test
+    public void testPathologicalNesting() throws IOException, ParseException {
+        int n = 100000;
+        Ast ast = parseBothWays("let x = " + "(".repeat(n) + "1" + ")".repeat(n) + ";");
+        assertEquals(NodeKind.NUMBER, ast.kind(ast.firstChild(ast.child(ast.root(), 0))));
+
+        ast = parseBothWays("let x = " + "- ".repeat(n) + "1;");
+        assertEquals(n + 3, ast.size());
+
+        ast = parseBothWays("x" + " = x".repeat(n) + ";");
+        assertEquals(NodeKind.ASSIGN, ast.kind(ast.firstChild(ast.child(ast.root(), 0))));
+
+        ast = parseBothWays("f(".repeat(n) + ")".repeat(n) + ";");
+        assertEquals(2 * n + 2, ast.size());
+
+        ast = parseBothWays("let x = 1" + " + 1".repeat(n) + ";");
+        assertEquals(2 * n + 3, ast.size());
+    }
+
+    private static void assertError(String text, String message) throws IOException {
+        for (boolean iterative : new boolean[] {false, true}) {
+            try {
+                new Parser(tokenize(text), iterative).parse();
+                fail("Expected a ParseException for " + text);
+            } catch (ParseException e) {
+                assertEquals(message, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package scanner;
+
+import compiler.scanner.BinaryTokenReader;
+import compiler.scanner.BinaryTokenWriter;
+import compiler.scanner.Scanner;
+import compiler.scanner.SourceBuffer;
+import compiler.scanner.SymbolTable;
+import compiler.scanner.Token;
+import compiler.scanner.TokenBuffer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryTokenFormatTest {
+    private static final Path TEST_FILE = Path.of("src/test/resources/testFile1.txt");
+
+    private SourceBuffer source;
+    private TokenBuffer tokens;
+    private byte[] encoded;
+
+    @Before
+    public void setUp() throws IOException {
+        source = SourceBuffer.decode(ByteBuffer.wrap(Files.readAllBytes(TEST_FILE)), Charset.defaultCharset());
+        Scanner scanner = new Scanner(source, new SymbolTable());
+        tokens = scanner.tokenize();
+        scanner.close();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BinaryTokenWriter().write(tokens, out);
+        encoded = out.toByteArray();
+    }
+
+    @Test
+    public void testRoundTripWithSource() throws IOException {
+        SymbolTable symbols = new SymbolTable();
+        TokenBuffer read = new BinaryTokenReader(new ByteArrayInputStream(encoded)).readTokens(source, symbols);
+
+        assertEquals(tokens.size(), read.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            assertEquals(tokens.type(i), read.type(i));
+            assertEquals(tokens.start(i), read.start(i));
+            assertEquals(tokens.length(i), read.length(i));
+            assertEquals(tokens.row(i), read.row(i));
+            assertEquals(tokens.col(i), read.col(i));
+            assertEquals(tokens.symbol(i), read.symbol(i));
+        }
+    }
+
+    @Test
+    public void testRoundTripWithoutSource() throws IOException {
+        List<Token> read = new BinaryTokenReader(new ByteArrayInputStream(encoded)).readTokens();
+
+        assertEquals(tokens.size(), read.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            assertEquals(tokens.type(i), read.get(i).getType());
+            assertEquals(tokens.literal(i), read.get(i).getLiteral());
+        }
+    }
+
+    @Test
+    public void testSmallerThanTextDump() {
+        int textSize = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            textSize += tokens.token(i).toString().length() + 1;
+        }
+        assertTrue(encoded.length * 4 < textSize);
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsTruncatedData() throws IOException {
+        byte[] truncated = new byte[encoded.length / 2];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+        new BinaryTokenReader(new ByteArrayInputStream(truncated)).readTokens(source, new SymbolTable());
+    }
+}
@@ -0,0 +1,171 @@
+package scanner;
+
+import compiler.scanner.ByteScanner;
+import compiler.scanner.Position;
+import compiler.scanner.Scanner;
+import compiler.scanner.SourceBuffer;
+import compiler.scanner.SymbolTable;
+import compiler.scanner.Token;
+import compiler.scanner.TokenBuffer;
+import compiler.scanner.TokenType;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ByteScannerTest {
+
+    /**
+     * Checks that lexing the encoded bytes gives the tokens Scanner gives for the decoded source.
+     */
+    private void assertMatchesScanner(byte[] bytes, Charset charset) throws IOException {
+        SymbolTable expectedSymbols = new SymbolTable();
+        SourceBuffer source = SourceBuffer.decode(ByteBuffer.wrap(bytes), charset);
+        TokenBuffer expected = new Scanner(source, expectedSymbols).tokenize();
+        SymbolTable symbols = new SymbolTable();
+        TokenBuffer actual = new ByteScanner(bytes, charset, symbols).tokenize();
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.type(i), actual.type(i));
+            assertEquals(expected.literal(i), actual.literal(i));
+            assertEquals(expected.row(i), actual.row(i));
+            assertEquals(expected.col(i), actual.col(i));
+            assertEquals(expected.symbol(i), actual.symbol(i));
+        }
+        assertEquals(expectedSymbols.size(), symbols.size());
+    }
+
+    private void assertMatchesScanner(String text) throws IOException {
+        assertMatchesScanner(text.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testExampleFile() throws IOException {
+        assertMatchesScanner(Files.readAllBytes(Path.of("src/test/resources/testFile1.txt")), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testOperatorsAndKeywords() throws IOException {
+        assertMatchesScanner("+++ --- === !!= <<= >>= ! < > ( ) { } , ;");
+        assertMatchesScanner("if iff else elsewhere for fo while whiles let lets _let return returned void "
+                + "true false break print printf function input inputs continue x1 _ 123abc 007 @ #");
+    }
+
+    @Test
+    public void testNonAsciiText() throws IOException {
+        assertMatchesScanner("print(\"héllo wörld ✓\"); // ünïcode comment\n/* 日本語 */ let a = 1;");
+        assertMatchesScanner("let café = 1;\nlet δx = café + 2; € ٣٤ x٣");
+        assertMatchesScanner("\tlet s = \"tab\tand ✓\";\r\nprint(s);");
+    }
+
+    @Test
+    public void testQuirks() throws IOException {
+        assertMatchesScanner("/* a */ /* b */ // c\n// d\nlet x;");
+        assertMatchesScanner("let a = 1;\n/* never closed é");
+        assertMatchesScanner("/**/x/*/y*/z//");
+        assertMatchesScanner("print(\"never closed ✓\nlet b = 2;\n");
+        assertMatchesScanner("let a = 1;\0let b = 2;");
+        assertMatchesScanner("");
+    }
+
+    @Test
+    public void testLatin1AndAscii() throws IOException {
+        String text = "let café = \"déjà vu\"; // ½\nprint(café);";
+        assertMatchesScanner(text.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.ISO_8859_1);
+        assertMatchesScanner(text.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.US_ASCII);
+        assertTrue(ByteScanner.supports(StandardCharsets.UTF_8));
+        assertFalse(ByteScanner.supports(StandardCharsets.UTF_16));
+    }
+
+    @Test
+    public void testRandomSources() throws IOException {
+        Random random = new Random(11);
+        String alphabet = " \t\n\r+-=<>!\";{}(),/*ab_19éü✓日";
+        for (int n = 0; n < 50; n++) {
+            StringBuilder source = new StringBuilder();
+            for (int i = random.nextInt(400); i > 0; i--) {
+                source.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertMatchesScanner(source.toString());
+        }
+
+        // Valid and malformed UTF-8 mixed with bytes that end tokens, comments and strings. A supplementary
+        // character is left out, since ByteScanner scans it as one character where Scanner sees two surrogates
+        byte[] pieces = {' ', '\n', '\t', '"', '/', '*', 'a', '1', ';', (byte) 0x80, (byte) 0x9F, (byte) 0xA0,
+                (byte) 0xBF, (byte) 0xC0, (byte) 0xC1, (byte) 0xC3, (byte) 0xE0, (byte) 0xE2, (byte) 0xED,
+                (byte) 0xEF, (byte) 0xF0, (byte) 0xF4, (byte) 0xF5, (byte) 0xFF};
+        for (int n = 0; n < 300; n++) {
+            byte[] bytes = new byte[random.nextInt(40)];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = pieces[random.nextInt(pieces.length)];
+            }
+            if (new String(bytes, StandardCharsets.UTF_8).codePoints().noneMatch(Character::isSupplementaryCodePoint)) {
+                assertMatchesScanner(bytes, StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    @Test
+    public void testMalformedUtf8() throws IOException {
+        int[][] sources = {
+                {'a', 0xE0, 0x81, 0xA1, 'b'}, // Overlong, three replacements
+                {'a', 0xE2, 0x82}, // Truncated at the end, one replacement
+                {'a', 0xE2, 0x82, 'b', ' ', 'c'}, // Truncated before an ASCII byte
+                {0xED, 0xA0, 0x80, ' ', 'x'}, // A surrogate, one replacement as the JDK decodes it
+                {0xF4, 0x90, 0x80, 0x80, ' ', 'x'}, // Past U+10FFFF
+                {0xC0, 0xAF, 0xC1, 0xBF, 0xF5, 0xFF, ' ', 'x'}, // Bytes that never lead a sequence
+                {0xF0, 0x90, 0x80, ';', '"', 0xF0, 0x90, 0x80, 0x80, '"'}, // A truncated and a whole 4-byte character
+                {'"', 0xE2, 0x82, 0x80, 0x80, 0xE0, 0x80, '"', ';'}, // In a string
+                {'/', '*', 0xE2, 0x82}, // At the end of an unterminated comment
+                {'/', '*', 'x', 0xC3, 0xA9, 0x80}, // A stray continuation byte there
+                {'/', '/', 0xF0, 0x90, '\n', 0xE1, 0x80, ' ', 'x'},
+        };
+        for (int[] source : sources) {
+            byte[] bytes = new byte[source.length];
+            for (int i = 0; i < source.length; i++) {
+                bytes[i] = (byte) source[i];
+            }
+            assertMatchesScanner(bytes, StandardCharsets.UTF_8);
+        }
+
+        TokenBuffer tokens = new ByteScanner(new byte[] {'a', (byte) 0xE0, (byte) 0x81, (byte) 0xA1, 'b'},
+                StandardCharsets.UTF_8, new SymbolTable()).tokenize();
+        assertEquals(6, tokens.size());
+        assertEquals(TokenType.IDENTIFIER, tokens.type(0));
+        for (int i = 1; i <= 3; i++) {
+            assertEquals(TokenType.ILLEGAL, tokens.type(i));
+            assertEquals("\uFFFD", tokens.literal(i));
+            assertEquals(i + 1, tokens.col(i));
+        }
+        assertEquals(5, tokens.col(4));
+    }
+
+    @Test
+    public void testNextToken() {
+        byte[] bytes = "let s = \"✓\";\nprint(s);".getBytes(StandardCharsets.UTF_8);
+        ByteScanner scanner = new ByteScanner(bytes, StandardCharsets.UTF_8, new SymbolTable());
+        String[] literals = {"let", "s", "=", "✓", ";", "print", "(", "s", ")", ";", ""};
+        for (String literal : literals) {
+            assertEquals(literal, scanner.nextToken().getLiteral());
+        }
+
+        scanner = new ByteScanner(bytes, StandardCharsets.UTF_8, new SymbolTable());
+        for (int i = 0; i < 4; i++) {
+            scanner.nextToken();
+        }
+        Token semicolon = scanner.nextToken();
+        assertEquals(TokenType.SEMICOLON, semicolon.getType());
+        assertEquals(13, semicolon.getOffset()); // The check mark takes three bytes but one column
+        assertEquals(12, Position.col(semicolon.getPosition()));
+    }
+}
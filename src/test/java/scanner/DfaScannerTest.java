@@ -0,0 +1,114 @@
+package scanner;
+
+import compiler.scanner.DfaScanner;
+import compiler.scanner.Scanner;
+import compiler.scanner.SourceBuffer;
+import compiler.scanner.SymbolTable;
+import compiler.scanner.TokenBuffer;
+import compiler.scanner.TokenType;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class DfaScannerTest {
+
+    /**
+     * Checks that the DFA backend produces exactly the tokens Scanner does.
+     */
+    private void assertMatchesScanner(String text) throws IOException {
+        SourceBuffer source = new SourceBuffer(text.toCharArray(), text.length());
+
+        SymbolTable expectedSymbols = new SymbolTable();
+        TokenBuffer expected = new Scanner(source, expectedSymbols).tokenize();
+        SymbolTable symbols = new SymbolTable();
+        TokenBuffer actual = new DfaScanner(source, symbols).tokenize();
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.type(i), actual.type(i));
+            assertEquals(expected.start(i), actual.start(i));
+            assertEquals(expected.length(i), actual.length(i));
+            assertEquals(expected.row(i), actual.row(i));
+            assertEquals(expected.col(i), actual.col(i));
+            assertEquals(expected.symbol(i), actual.symbol(i));
+        }
+        assertEquals(expectedSymbols.size(), symbols.size());
+    }
+
+    @Test
+    public void testExampleFile() throws IOException {
+        assertMatchesScanner(Files.readString(Path.of("src/test/resources/testFile1.txt")));
+    }
+
+    @Test
+    public void testOperatorsAndKeywords() throws IOException {
+        assertMatchesScanner("+++ --- === !!= <<= >>= ! < > ( ) { } , ;");
+        assertMatchesScanner("if iff else elsewhere for fo while whiles let lets _let return returned void "
+                + "true false break print printf function input inputs continue x1 _ 123abc 007");
+    }
+
+    @Test
+    public void testCommentQuirks() throws IOException {
+        assertMatchesScanner("/* a */ /* b */ // c\n// d\nlet x;");
+        assertMatchesScanner("let a = 1;\n/* never closed\n");
+        assertMatchesScanner("/**/x/*/y*/z//");
+        assertMatchesScanner("print(\"never closed\nlet b = 2;\n");
+        assertMatchesScanner("let a\0 = \"x\0\";");
+    }
+
+    @Test
+    public void testNonAscii() throws IOException {
+        assertMatchesScanner("let café = 3; let ναι = \"é\"; ٣٤ + x٣ € 😀 ü_1");
+    }
+
+    @Test
+    public void testRandomSources() throws IOException {
+        Random random = new Random(11);
+        String alphabet = " \t\n\r+-=<>!\";{}(),/*#ab_19elsifunctér٣\0";
+        for (int n = 0; n < 200; n++) {
+            StringBuilder source = new StringBuilder();
+            for (int i = random.nextInt(300); i > 0; i--) {
+                source.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertMatchesScanner(source.toString());
+        }
+    }
+
+    /**
+     * Long whitespace, comment and string runs, which the DFA steps through one character at a time while Scanner
+     * skips them in bulk. TextSearchTest checks the bulk searches themselves.
+     */
+    @Test
+    public void testLongRuns() throws IOException {
+        String words = "lorem ipsum\tdolor\r\nsit amet ".repeat(20);
+        assertMatchesScanner("/* " + words + "*/\n" + " \t\n\r".repeat(40) + "let s = \"" + words + "\";\n"
+                + "// " + words.replace('\n', ' ') + "\nprint(s);\n/* " + words + "* /" + words);
+
+        Random random = new Random(5);
+        String alphabet = "    \t\n\r*/\"ab;\0";
+        for (int n = 0; n < 100; n++) {
+            StringBuilder source = new StringBuilder();
+            for (int i = random.nextInt(2000); i > 0; i--) {
+                source.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertMatchesScanner(source.toString());
+        }
+    }
+
+    @Test
+    public void testNextToken() {
+        String text = "let x = 10;";
+        DfaScanner scanner = new DfaScanner(new SourceBuffer(text.toCharArray(), text.length()), new SymbolTable());
+        assertEquals(TokenType.LET, scanner.nextToken().getType());
+        assertEquals("x", scanner.nextToken().getLiteral());
+        assertEquals(TokenType.ASSIGN, scanner.nextToken().getType());
+        assertEquals("10", scanner.nextToken().getLiteral());
+        assertEquals(TokenType.SEMICOLON, scanner.nextToken().getType());
+        assertEquals(TokenType.EOF, scanner.nextToken().getType());
+    }
+}
@@ -0,0 +1,118 @@
+package scanner;
+
+import compiler.Main;
+import compiler.optimizer.Pipeline;
+import compiler.parser.LexicalException;
+import compiler.scanner.DiagnosticKind;
+import compiler.scanner.Diagnostics;
+import compiler.scanner.Scanner;
+import compiler.scanner.SourceBuffer;
+import compiler.scanner.SymbolTable;
+import compiler.scanner.TokenBuffer;
+import compiler.scanner.TokenType;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DiagnosticsTest {
+    private static TokenBuffer scan(String text, Diagnostics diagnostics) throws IOException {
+        Scanner scanner = new Scanner(new SourceBuffer(text.toCharArray(), text.length()), new SymbolTable());
+        scanner.setDiagnostics(diagnostics);
+        TokenBuffer tokens = scanner.tokenize();
+        scanner.close();
+        return tokens;
+    }
+
+    private static String types(TokenBuffer tokens) {
+        StringBuilder types = new StringBuilder();
+        for (int i = 0; i < tokens.size(); i++) {
+            types.append(i == 0 ? "" : " ").append(tokens.type(i));
+        }
+        return types.toString();
+    }
+
+    @Test
+    public void testCleanSourceHasNoDiagnostics() throws IOException {
+        Diagnostics diagnostics = new Diagnostics();
+        TokenBuffer tokens = scan("let a = 1; /* c */ print(\"s\");", diagnostics);
+        assertTrue(diagnostics.isEmpty());
+        assertEquals(types(scan("let a = 1; /* c */ print(\"s\");", null)), types(tokens));
+    }
+
+    @Test
+    public void testStrayCharactersAreSkipped() throws IOException {
+        Diagnostics diagnostics = new Diagnostics();
+        TokenBuffer tokens = scan("let a = !1;\nlet b = #2 != 3;", diagnostics);
+
+        assertEquals("LET IDENTIFIER ASSIGN NUMBER SEMICOLON LET IDENTIFIER ASSIGN NUMBER NOTEQ NUMBER SEMICOLON EOF",
+                types(tokens));
+        assertEquals(2, diagnostics.size());
+        assertEquals(DiagnosticKind.UNEXPECTED_CHARACTER, diagnostics.kind(0));
+        assertEquals(8, diagnostics.offset(0));
+        assertEquals(1, diagnostics.row(0));
+        assertEquals(9, diagnostics.col(0));
+        assertEquals(2, diagnostics.row(1));
+        assertEquals(9, diagnostics.col(1));
+    }
+
+    @Test
+    public void testUnterminatedStringEndsWithItsLine() throws IOException {
+        Diagnostics diagnostics = new Diagnostics();
+        TokenBuffer tokens = scan("print(\"open);\r\nlet b = 2;", diagnostics);
+
+        assertEquals("PRINT LPAREN STRING LET IDENTIFIER ASSIGN NUMBER SEMICOLON EOF", types(tokens));
+        assertEquals("open);", tokens.literal(2));
+        assertEquals(2, tokens.row(3));
+        assertEquals(1, tokens.col(3));
+        assertEquals(1, diagnostics.size());
+        assertEquals(DiagnosticKind.UNTERMINATED_STRING, diagnostics.kind(0));
+        assertEquals(1, diagnostics.row(0));
+        assertEquals(7, diagnostics.col(0));
+    }
+
+    @Test
+    public void testUnterminatedCommentRunsToEnd() throws IOException {
+        Diagnostics diagnostics = new Diagnostics();
+        TokenBuffer tokens = scan("let a = 1;\n  /* never closed\nlet b = 2;", diagnostics);
+
+        assertEquals("LET IDENTIFIER ASSIGN NUMBER SEMICOLON EOF", types(tokens));
+        assertEquals(1, diagnostics.size());
+        assertEquals(DiagnosticKind.UNTERMINATED_COMMENT, diagnostics.kind(0));
+        assertEquals(2, diagnostics.row(0));
+        assertEquals(3, diagnostics.col(0));
+    }
+
+    @Test
+    public void testOnePassReportsEveryError() throws IOException {
+        Diagnostics diagnostics = new Diagnostics();
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            source.append("let x").append(i).append(" = ").append(i).append(" ! 1;\n");
+        }
+        source.append("print(\"a\n/*");
+        scan(source.toString(), diagnostics);
+
+        assertEquals(22, diagnostics.size());
+        assertEquals(DiagnosticKind.UNTERMINATED_STRING, diagnostics.kind(20));
+        assertEquals(DiagnosticKind.UNTERMINATED_COMMENT, diagnostics.kind(21));
+
+        diagnostics.clear();
+        assertTrue(diagnostics.isEmpty());
+    }
+
+    @Test
+    public void testMainReportsEveryError() throws Exception {
+        try {
+            Main.compileToC("let a = !1;\nprint(\"x);\n".getBytes(), Pipeline.none(), null, new SymbolTable());
+            fail("Expected a LexicalException");
+        } catch (LexicalException e) {
+            assertEquals("Unexpected character '!' at 1:9\nUnterminated string at 2:7", e.getMessage());
+            assertEquals(1, e.getRow());
+            assertEquals(9, e.getCol());
+        }
+    }
+}
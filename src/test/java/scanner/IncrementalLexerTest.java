@@ -0,0 +1,118 @@
+package scanner;
+
+import compiler.scanner.IncrementalLexer;
+import compiler.scanner.Scanner;
+import compiler.scanner.SymbolTable;
+import compiler.scanner.TokenBuffer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IncrementalLexerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SymbolTable symbols = new SymbolTable();
+
+    private TokenBuffer tokenize(String source, SymbolTable symbols, int tabWidth) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.writeString(file, source);
+        Scanner scanner = new Scanner(file.toString(), symbols);
+        scanner.setTabWidth(tabWidth);
+        TokenBuffer tokens = scanner.tokenize();
+        scanner.close();
+        return tokens;
+    }
+
+    /**
+     * Applies an edit incrementally and checks the result against a full scan of the edited text.
+     */
+    private IncrementalLexer.Result assertEdit(String source, int offset, int removed, String inserted) throws IOException {
+        return assertEdit(source, offset, removed, inserted, Scanner.DEFAULT_TAB_WIDTH);
+    }
+
+    private IncrementalLexer.Result assertEdit(String source, int offset, int removed, String inserted, int tabWidth)
+            throws IOException {
+        TokenBuffer before = tokenize(source, symbols, tabWidth);
+        IncrementalLexer.Result result = new IncrementalLexer(symbols, tabWidth).relex(before, offset, removed, inserted);
+
+        String edited = source.substring(0, offset) + inserted + source.substring(offset + removed);
+        TokenBuffer expected = tokenize(edited, symbols, tabWidth);
+        TokenBuffer actual = result.getTokens();
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.type(i), actual.type(i));
+            assertEquals(expected.start(i), actual.start(i));
+            assertEquals(expected.length(i), actual.length(i));
+            assertEquals(expected.row(i), actual.row(i));
+            assertEquals(expected.col(i), actual.col(i));
+            assertEquals(expected.symbol(i), actual.symbol(i));
+        }
+        assertEquals(actual.size() - result.getNewEnd(), before.size() - result.getOldEnd());
+        return result;
+    }
+
+    @Test
+    public void testTabWidth() throws IOException {
+        String source = "let a\t= 1;\n\tlet b\t= a;\tprint(b);\n\t\tlet c = 3;\n";
+        for (int tabWidth : new int[] {1, 2, 8}) {
+            assertEdit(source, source.indexOf("= a") + 2, 1, "a +\t2", tabWidth);
+            assertEdit(source, source.indexOf("let b"), 0, "\t", tabWidth);
+            assertEdit(source, 0, 0, "\t\t", tabWidth);
+        }
+    }
+
+    @Test
+    public void testEditInsideLineOnlyRelexesThatLine() throws IOException {
+        String source = Files.readString(Path.of("src/test/resources/testFile1.txt"));
+        int offset = source.indexOf("let x = 5;") + "let x = ".length();
+
+        IncrementalLexer.Result result = assertEdit(source, offset, 1, "42 + y");
+
+        // Only the tokens up to the next line are re-lexed
+        assertEquals(14, result.getFirstChanged());
+        assertTrue(result.getNewEnd() - result.getFirstChanged() <= 5);
+    }
+
+    @Test
+    public void testOpeningACommentRelexesUntilItCloses() throws IOException {
+        String source = "let a = 1;\nlet b = 2;\n*/\nlet c = 3;\n";
+        IncrementalLexer.Result result = assertEdit(source, source.indexOf("let b"), 0, "/*");
+
+        assertEquals(5, result.getFirstChanged());
+    }
+
+    @Test
+    public void testStringsAndJoins() throws IOException {
+        assertEdit("print(\"abc\");\nlet x = 1;\n", 8, 0, "\"");
+        assertEdit("let a = 1;\nlet b = 2;\n", 9, 2, "");
+        assertEdit("a + b", 1, 1, "+");
+        assertEdit("", 0, 0, "let x = 1;");
+        assertEdit("let x = 1;", 0, 10, "");
+    }
+
+    @Test
+    public void testRandomEdits() throws IOException {
+        Random random = new Random(11);
+        String alphabet = " \n\t+-=<>!\";{}(),/*ab_19";
+        String source = Files.readString(Path.of("src/test/resources/testFile1.txt"));
+        for (int n = 0; n < 200; n++) {
+            int offset = random.nextInt(source.length() + 1);
+            int removed = random.nextInt(Math.min(8, source.length() - offset) + 1);
+            StringBuilder inserted = new StringBuilder();
+            for (int i = random.nextInt(6); i > 0; i--) {
+                inserted.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertEdit(source, offset, removed, inserted.toString());
+        }
+    }
+}
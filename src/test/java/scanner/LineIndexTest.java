@@ -0,0 +1,108 @@
+package scanner;
+
+import compiler.scanner.DfaScanner;
+import compiler.scanner.LineIndex;
+import compiler.scanner.Position;
+import compiler.scanner.Scanner;
+import compiler.scanner.SourceBuffer;
+import compiler.scanner.SymbolTable;
+import compiler.scanner.Token;
+import compiler.scanner.TokenBuffer;
+import compiler.scanner.TokenType;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class LineIndexTest {
+    private static final String SOURCE = "let a = 1;\r\n\tprint(\"s\");\n\n  let b\t= a;";
+
+    private static SourceBuffer buffer(String text) {
+        return new SourceBuffer(text.toCharArray(), text.length());
+    }
+
+    private static TokenBuffer tokenize(String text, int tabWidth) throws IOException {
+        Scanner scanner = new Scanner(buffer(text), new SymbolTable());
+        scanner.setTabWidth(tabWidth);
+        TokenBuffer tokens = scanner.tokenize();
+        scanner.close();
+        return tokens;
+    }
+
+    @Test
+    public void testPositionPacking() {
+        long position = Position.pack(123_456_789, 54_321, 77);
+        assertEquals(123_456_789, Position.offset(position));
+        assertEquals(54_321, Position.line(position));
+        assertEquals(77, Position.col(position));
+        assertEquals("54321:77", Position.toString(position));
+
+        long saturated = Position.pack(Integer.MAX_VALUE, 5_000_000, 100_000);
+        assertEquals(Integer.MAX_VALUE, Position.offset(saturated));
+        assertEquals(Position.LINE_MAX, Position.line(saturated));
+        assertEquals(Position.COL_MAX, Position.col(saturated));
+        assertEquals("?", Position.toString(Position.NONE));
+    }
+
+    @Test
+    public void testTokensCarryPositions() throws IOException {
+        Scanner scanner = new Scanner(buffer(SOURCE), new SymbolTable());
+        TokenBuffer tokens = tokenize(SOURCE, Scanner.DEFAULT_TAB_WIDTH);
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = scanner.nextToken();
+            assertEquals(tokens.position(i), token.getPosition());
+            assertEquals(tokens.start(i), token.getOffset());
+            assertEquals(tokens.row(i), token.getRow());
+            assertEquals(tokens.col(i), token.getCol());
+            assertEquals(tokens.position(i), tokens.token(i).getPosition());
+        }
+        assertEquals(0, new Token(TokenType.EOF, "").getRow());
+    }
+
+    @Test
+    public void testIndexAgreesWithScanner() throws IOException {
+        for (int tabWidth : new int[] {1, 4, 8}) {
+            TokenBuffer tokens = tokenize(SOURCE, tabWidth);
+            LineIndex index = new LineIndex(SOURCE.toCharArray(), SOURCE.length(), tabWidth);
+            for (int i = 0; i < tokens.size(); i++) {
+                int offset = tokens.type(i) == TokenType.STRING ? tokens.start(i) - 1 : tokens.start(i);
+                assertEquals(tokens.row(i), index.line(offset));
+                assertEquals(tokens.col(i), index.column(offset));
+            }
+        }
+    }
+
+    @Test
+    public void testDfaScannerTabWidth() throws IOException {
+        TokenBuffer tokens = tokenize(SOURCE, 2);
+        DfaScanner scanner = new DfaScanner(buffer(SOURCE), new SymbolTable());
+        scanner.setTabWidth(2);
+        for (int i = 0; i < tokens.size(); i++) {
+            assertEquals(tokens.position(i), scanner.nextToken().getPosition());
+        }
+    }
+
+    @Test
+    public void testLines() {
+        LineIndex index = new LineIndex(SOURCE.toCharArray(), SOURCE.length());
+        assertEquals(4, index.lineCount());
+        assertEquals("let a = 1;", index.lineText(1));
+        assertEquals("\tprint(\"s\");", index.lineText(2));
+        assertEquals("", index.lineText(3));
+        assertEquals("  let b\t= a;", index.lineText(4));
+        assertEquals(12, index.lineStart(2));
+        assertEquals(1, index.line(11));
+        assertEquals(2, index.line(12));
+        assertEquals(4, index.line(SOURCE.length()));
+        assertEquals(2, new LineIndex("a\n".toCharArray(), 2).lineCount());
+    }
+
+    @Test
+    public void testSnippet() {
+        LineIndex index = new LineIndex(SOURCE.toCharArray(), SOURCE.length());
+        assertEquals("let a = 1;\n        ^", index.snippet(8, 1));
+        assertEquals("\tprint(\"s\");\n\t^^^^^", index.snippet(13, 5));
+        assertEquals("  let b\t= a;\n       \t  ^^", index.snippet(SOURCE.length() - 2, 10));
+    }
+}
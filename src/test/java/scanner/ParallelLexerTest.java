@@ -0,0 +1,117 @@
+package scanner;
+
+import compiler.scanner.ParallelLexer;
+import compiler.scanner.Scanner;
+import compiler.scanner.SourceBuffer;
+import compiler.scanner.SymbolTable;
+import compiler.scanner.TokenBuffer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+public class ParallelLexerTest {
+    private static ForkJoinPool pool;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void startPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterClass
+    public static void stopPool() {
+        pool.shutdown();
+    }
+
+    /**
+     * Checks that a parallel lex matches a serial scan for several chunk sizes.
+     * Small chunks make chunk boundaries fall inside strings and multi-line comments.
+     */
+    private void assertMatchesSerial(String source) throws IOException {
+        assertMatchesSerial(source, Scanner.DEFAULT_TAB_WIDTH);
+    }
+
+    private void assertMatchesSerial(String source, int tabWidth) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.writeString(file, source);
+
+        SymbolTable serialSymbols = new SymbolTable();
+        Scanner scanner = new Scanner(file.toString(), serialSymbols);
+        scanner.setTabWidth(tabWidth);
+        TokenBuffer expected = scanner.tokenize();
+        scanner.close();
+
+        for (int chunkSize : new int[] {1, 7, 16, 64, 1000}) {
+            SymbolTable symbols = new SymbolTable();
+            TokenBuffer actual = new ParallelLexer(pool, chunkSize, tabWidth).tokenize(file.toString(), symbols);
+
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.type(i), actual.type(i));
+                assertEquals(expected.start(i), actual.start(i));
+                assertEquals(expected.length(i), actual.length(i));
+                assertEquals(expected.row(i), actual.row(i));
+                assertEquals(expected.col(i), actual.col(i));
+                assertEquals(expected.symbol(i), actual.symbol(i));
+            }
+            assertEquals(serialSymbols.size(), symbols.size());
+        }
+    }
+
+    @Test
+    public void testExampleFile() throws IOException {
+        assertMatchesSerial(Files.readString(Path.of("src/test/resources/testFile1.txt")));
+    }
+
+    @Test
+    public void testTabWidth() throws IOException {
+        String source = "let a\t= 1;\n\tprint(a);\n/* \t\n\t*/\tlet s = \"\t\n\t\";\t\ts;\n";
+        for (int tabWidth : new int[] {1, 2, 8}) {
+            assertMatchesSerial(source, tabWidth);
+        }
+    }
+
+    @Test
+    public void testChunksStartingInsideStringsAndComments() throws IOException {
+        assertMatchesSerial("print(\"a string\nthat spans\n\nlines\");\n"
+                + "/* a comment\nlet x = 1;\n\"not a string\n*/\nlet y = 2;\n"
+                + "// line comment \"\nlet z = \"\n\";\n");
+    }
+
+    @Test
+    public void testUnterminatedTokens() throws IOException {
+        assertMatchesSerial("let a = 1;\n/* never closed\nlet b = 2;\n");
+        assertMatchesSerial("let a = 1;\nprint(\"never closed\nlet b = 2;\n");
+    }
+
+    @Test
+    public void testRandomSources() throws IOException {
+        Random random = new Random(7);
+        String alphabet = " \t\n\r+-=<>!\";{}(),/*ab_19";
+        for (int n = 0; n < 20; n++) {
+            StringBuilder source = new StringBuilder();
+            for (int i = random.nextInt(400); i > 0; i--) {
+                source.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertMatchesSerial(source.toString());
+        }
+    }
+
+    @Test
+    public void testEmptySource() {
+        TokenBuffer tokens = new ParallelLexer(pool, 4).tokenize(new SourceBuffer(new char[0], 0), new SymbolTable());
+        assertEquals(1, tokens.size());
+    }
+}
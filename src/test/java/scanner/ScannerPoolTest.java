@@ -0,0 +1,141 @@
+package scanner;
+
+import compiler.scanner.Scanner;
+import compiler.scanner.ScannerPool;
+import compiler.scanner.SourceBuffer;
+import compiler.scanner.SymbolTable;
+import compiler.scanner.Token;
+import compiler.scanner.TokenBuffer;
+import compiler.scanner.TokenType;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ScannerPoolTest {
+    private static final String FILE = "src/test/resources/testFile1.txt";
+    private static final String[] SNIPPETS = {
+            "let a = 1;",
+            "print(\"a long string literal that needs a larger buffer than the first snippet\", a);",
+            "",
+            "/* unterminated",
+            "let b = a + 2; // comment\nwhile (b > 0) { b--; }",
+            "x",
+    };
+
+    private static List<Token> tokens(Scanner scanner) throws IOException {
+        List<Token> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = scanner.nextToken();
+            tokens.add(token);
+        } while (token.getType() != TokenType.EOF);
+        return tokens;
+    }
+
+    private static void assertSameTokens(List<Token> expected, List<Token> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getType(), actual.get(i).getType());
+            assertEquals(expected.get(i).getLiteral(), actual.get(i).getLiteral());
+            assertEquals(expected.get(i).getPosition(), actual.get(i).getPosition());
+        }
+    }
+
+    @Test
+    public void testResetMatchesNewScanner() throws IOException {
+        Scanner reused = new Scanner(new SymbolTable());
+        for (int round = 0; round < 2; round++) {
+            for (String snippet : SNIPPETS) {
+                reused.reset(snippet);
+                assertSameTokens(tokens(new Scanner(SourceBuffer.of(snippet), new SymbolTable())), tokens(reused));
+
+                reused.reset(ByteBuffer.wrap(snippet.getBytes(StandardCharsets.UTF_16BE)), StandardCharsets.UTF_16BE);
+                assertSameTokens(tokens(new Scanner(snippet.toCharArray(), new SymbolTable())), tokens(reused));
+            }
+        }
+    }
+
+    @Test
+    public void testResetMidScan() throws IOException {
+        Scanner scanner = new Scanner(new SymbolTable());
+        scanner.reset(new StringBuilder("let a = 1;"));
+        scanner.nextToken();
+        scanner.nextToken();
+        scanner.reset(new StringBuilder("print(b);"));
+        assertSameTokens(tokens(new Scanner("print(b);".toCharArray(), new SymbolTable())), tokens(scanner));
+    }
+
+    @Test
+    public void testResetToFiles() throws IOException {
+        Scanner scanner = new Scanner(new SymbolTable());
+        scanner.reset("let a = 1;");
+        scanner.reset(Path.of(FILE));
+        List<Token> first = tokens(scanner);
+        assertSameTokens(tokens(new Scanner(FILE)), first);
+
+        scanner.close();
+        scanner.reset(Path.of(FILE));
+        assertSameTokens(first, tokens(scanner));
+    }
+
+    @Test
+    public void testResetNeverOverwritesBorrowedSource() throws IOException {
+        char[] chars = "let a = 1;".toCharArray();
+        Scanner scanner = new Scanner(chars, new SymbolTable());
+        TokenBuffer tokens = scanner.tokenize();
+        scanner.reset("print(bcd);");
+        tokens(scanner);
+        assertEquals("let a = 1;", new String(chars));
+        assertEquals("a", tokens.literal(1));
+
+        SourceBuffer source = SourceBuffer.of("let b;");
+        scanner.reset(source);
+        tokens(scanner);
+        scanner.reset("x");
+        assertEquals("let b;", new String(source.chars()));
+    }
+
+    @Test
+    public void testMemoryConstructors() throws IOException {
+        String text = "let é = \"✓\";";
+        List<Token> expected = tokens(new Scanner(text.toCharArray(), new SymbolTable()));
+        Charset charset = StandardCharsets.UTF_8;
+        assertSameTokens(expected, tokens(new Scanner(ByteBuffer.wrap(text.getBytes(charset)), charset,
+                new SymbolTable())));
+    }
+
+    @Test
+    public void testPoolKeepsSymbolsPerThread() throws Exception {
+        ScannerPool pool = new ScannerPool();
+        Scanner first = pool.get("let a = b;");
+        tokens(first);
+        Scanner second = pool.get(ByteBuffer.wrap("print(b, c);".getBytes(StandardCharsets.UTF_8)),
+                StandardCharsets.UTF_8);
+        tokens(second);
+        assertSame(first, second);
+        assertEquals(3, pool.getSymbolTable().size()); // a, b and c, with b interned once
+        assertEquals(1, pool.getSymbolTable().find("b"));
+        assertSame(first, pool.get(Path.of(FILE)));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Scanner> other = executor.submit(() -> pool.get("let z;"));
+            assertNotSame(first, other.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package scanner;
+
+import compiler.scanner.SymbolTable;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+public class SymbolTableTest {
+
+    @Test
+    public void testInternFromRange() {
+        SymbolTable symbols = new SymbolTable();
+        char[] source = "let a = nums + a;".toCharArray();
+
+        int a = symbols.intern(source, 4, 1);
+        int nums = symbols.intern(source, 8, 4);
+        assertEquals(a, symbols.intern(source, 15, 1));
+        assertNotEquals(a, nums);
+        assertEquals("nums", symbols.name(nums));
+        assertEquals(2, symbols.size());
+    }
+
+    @Test
+    public void testNamesAreShared() {
+        SymbolTable symbols = new SymbolTable();
+        int id = symbols.intern("fibonacci");
+        assertSame(symbols.name(id), symbols.name(symbols.intern("fibonacci")));
+    }
+
+    @Test
+    public void testGrowth() {
+        SymbolTable symbols = new SymbolTable();
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i, symbols.intern("name" + i));
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i, symbols.find("name" + i));
+        }
+        assertEquals(SymbolTable.NO_SYMBOL, symbols.find("missing"));
+    }
+}
@@ -0,0 +1,99 @@
+package scanner;
+
+import compiler.scanner.Scanner;
+import compiler.scanner.SymbolTable;
+import compiler.scanner.Token;
+import compiler.scanner.TokenBuffer;
+import compiler.scanner.TokenType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class TokenBufferTest {
+    private static final String TEST_FILE = "src/test/resources/testFile1.txt";
+
+    private TokenBuffer tokens;
+
+    @Before
+    public void setUp() throws IOException {
+        Scanner scanner = new Scanner(TEST_FILE);
+        tokens = scanner.tokenize();
+        scanner.close();
+    }
+
+    @Test
+    public void testMatchesNextToken() throws IOException {
+        Scanner scanner = new Scanner(TEST_FILE);
+        int i = 0;
+        Token token;
+        do {
+            token = scanner.nextToken();
+            assertEquals(token.getType(), tokens.type(i));
+            assertEquals(token.getLiteral(), tokens.literal(i));
+            i++;
+        } while (token.getType() != TokenType.EOF);
+        scanner.close();
+
+        assertEquals(i, tokens.size());
+    }
+
+    @Test
+    public void testTokenPositions() {
+        // "+-;,({})=<>" starts the file
+        assertEquals(1, tokens.row(0));
+        assertEquals(1, tokens.col(0));
+        assertEquals(1, tokens.row(10));
+        assertEquals(11, tokens.col(10));
+
+        // "let x = 5;" is on line 3
+        assertEquals(TokenType.LET, tokens.type(11));
+        assertEquals(3, tokens.row(11));
+        assertEquals(1, tokens.col(11));
+        assertEquals(3, tokens.row(14));
+        assertEquals(9, tokens.col(14));
+    }
+
+    @Test
+    public void testStringLiteralRange() {
+        int i = 19;
+        assertEquals(TokenType.LPAREN, tokens.type(i++));
+        assertEquals(TokenType.STRING, tokens.type(i));
+        assertEquals("How many fibonacci numbers do you want?", tokens.literal(i));
+        assertEquals(39, tokens.length(i));
+        assertEquals(TokenType.STRING, tokens.token(i).getType());
+    }
+
+    @Test
+    public void testEndsWithEOF() {
+        int last = tokens.size() - 1;
+        assertEquals(TokenType.EOF, tokens.type(last));
+        assertEquals(0, tokens.length(last));
+        assertEquals("", tokens.literal(last));
+    }
+
+    @Test
+    public void testIdentifiersShareSymbols() {
+        // "input(nums);" and "fibonacci(nums);" refer to the same name
+        int first = -1;
+        int count = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.type(i) == TokenType.IDENTIFIER && tokens.literal(i).equals("nums")) {
+                if (first == -1) {
+                    first = tokens.symbol(i);
+                }
+                assertEquals(first, tokens.symbol(i));
+                count++;
+            }
+        }
+        assertEquals(5, count);
+    }
+
+    @Test
+    public void testKeywordsHaveNoSymbol() {
+        assertEquals(TokenType.LET, tokens.type(11));
+        assertEquals(SymbolTable.NO_SYMBOL, tokens.symbol(11));
+    }
+}
@@ -0,0 +1,88 @@
+package scanner;
+
+import compiler.scanner.Scanner;
+import compiler.scanner.Token;
+import compiler.scanner.TokenStream;
+import compiler.scanner.TokenType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class TokenStreamTest {
+    private Scanner scanner;
+    private TokenStream stream;
+
+    @Before
+    public void setUp() throws IOException {
+        scanner = new Scanner("src/test/resources/testFile1.txt");
+        stream = scanner.stream(3);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        scanner.close();
+    }
+
+    @Test
+    public void testPeekDoesNotConsume() {
+        assertEquals(TokenType.PLUS, stream.peek(1).getType());
+        assertEquals(TokenType.MINUS, stream.peek(2).getType());
+        assertEquals(TokenType.SEMICOLON, stream.peek(3).getType());
+
+        assertEquals(TokenType.PLUS, stream.next().getType());
+        assertEquals(TokenType.MINUS, stream.peek(1).getType());
+        assertEquals(TokenType.COMMA, stream.peek(3).getType());
+        assertEquals(TokenType.MINUS, stream.next().getType());
+    }
+
+    @Test
+    public void testMatchesNextToken() throws IOException {
+        Scanner other = new Scanner("src/test/resources/testFile1.txt");
+        int count = 0;
+        while (stream.hasNext()) {
+            Token expected = other.nextToken();
+            Token actual = stream.next();
+            assertEquals(expected.getType(), actual.getType());
+            assertEquals(expected.getLiteral(), actual.getLiteral());
+            count++;
+        }
+        other.close();
+        assertEquals(91, count);
+    }
+
+    @Test
+    public void testPeekPastEndReturnsEOF() {
+        while (stream.peek(1).getType() != TokenType.RPAREN || stream.peek(2).getType() != TokenType.SEMICOLON
+                || stream.peek(3).getType() != TokenType.EOF) {
+            stream.next();
+        }
+        stream.next();
+        stream.next();
+        assertEquals(TokenType.EOF, stream.peek(3).getType());
+        assertEquals(TokenType.EOF, stream.next().getType());
+        assertFalse(stream.hasNext());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testNextAfterEOF() {
+        stream.stream().forEach(token -> { });
+        stream.next();
+    }
+
+    @Test
+    public void testStreamCountsTokens() {
+        assertEquals(5, stream.stream().filter(token -> token.getLiteral().equals("nums")).count());
+        assertFalse(stream.hasNext());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPeekBeyondLookahead() {
+        stream.peek(4);
+    }
+}